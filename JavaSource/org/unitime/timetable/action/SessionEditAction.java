@@ -46,6 +46,7 @@ import org.unitime.timetable.model.dao.DatePatternDAO;
 import org.unitime.timetable.model.dao.InstructionalMethodDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.StudentSectioningStatusDAO;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
@@ -236,6 +237,8 @@ public class SessionEditAction extends UniTimeAction<SessionEditForm> {
                     null, 
                     null);
             
+            PermissionCache.invalidate();
+
             if (form.getSessionId() != null)
             	StudentSectioningQueue.sessionStatusChanged(hibSession, sessionContext.getUser(), form.getSessionId(), false);
             
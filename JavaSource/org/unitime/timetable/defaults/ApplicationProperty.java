@@ -78,6 +78,7 @@ import org.unitime.timetable.onlinesectioning.custom.StudentEnrollmentProvider;
 import org.unitime.timetable.onlinesectioning.custom.StudentHoldsCheckProvider;
 import org.unitime.timetable.onlinesectioning.custom.VariableTitleCourseProvider;
 import org.unitime.timetable.onlinesectioning.custom.WaitListValidationProvider;
+import org.unitime.timetable.solver.SolverPassivationPolicy;
 import org.unitime.timetable.spring.ldap.SpringLdapExternalUidLookup;
 import org.unitime.timetable.spring.ldap.SpringLdapExternalUidTranslation;
 
@@ -676,6 +677,26 @@ public enum ApplicationProperty {
 
 	@Description("Online Student Scheduling Log: besides of the database, also log the actions in the given file (if set)")
 	OnlineSchedulingLogFile("unitime.sectioning.log.file"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Student Scheduling Log: write the log file (unitime.sectioning.log.file) in the binary format (length-delimited protobuf messages) instead of the text format")
+	OnlineSchedulingLogFileBinary("unitime.sectioning.log.file.binary"),
+
+	@Type(Integer.class)
+	@DefaultValue("5000")
+	@Description("Online Student Scheduling Log: limit on the number of records held in memory before written in the log file (unitime.sectioning.log.file), records over the limit are dropped")
+	OnlineSchedulingLogFileLimit("unitime.sectioning.log.file.limit"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Online Student Scheduling Log: how often (in seconds) are the recorded actions persisted")
+	OnlineSchedulingLogFlushInterval("unitime.sectioning.log.flushInterval"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Online Student Scheduling Log: JDBC batch size used when persisting the recorded actions (the actions are also persisted sooner when this many are waiting)")
+	OnlineSchedulingLogBatchSize("unitime.sectioning.log.batchSize"),
 	
 	@Type(Boolean.class)
 	@DefaultValue("true")
@@ -1381,6 +1402,16 @@ public enum ApplicationProperty {
 	@DefaultValue("true")
 	@Description("Event ICS Calendar: set main contact as organizer")
 	EventCalendarSetOrganizer("unitime.events.ics_set_organizer"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Event ICS Calendar: maximal number of rendered calendar feeds (calendar servlet) kept in memory (disable the cache by setting to zero)")
+	EventCalendarFeedCacheSize("unitime.events.ics_cache.size"),
+
+	@Type(Integer.class)
+	@DefaultValue("900")
+	@Description("Event ICS Calendar: number of seconds a rendered calendar feed is kept in memory before it is generated again (feeds are also invalidated on enrollment, event, or solution commit changes)")
+	EventCalendarFeedCacheTTL("unitime.events.ics_cache.ttl"),
 	
 	@Type(Boolean.class)
 	@DefaultValue("false")
@@ -1620,6 +1651,41 @@ public enum ApplicationProperty {
 	@Description("Clustering: solver request timeout in milliseconds (0 means wait until all responses have been received)")
 	SolverClusterTimeout("unitime.solver.timeout"),
 
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Clustering: keep a replicated directory of solver locations (when disabled, each solver lookup is broadcasted to all the cluster members)")
+	SolverClusterDirectory("unitime.solver.directory"),
+
+	@Type(Integer.class)
+	@DefaultValue("30")
+	@Description("Clustering: how often (in seconds) each solver server broadcasts its resource usage telemetry, used when placing new solvers (0 to disable)")
+	SolverTelemetryInterval("unitime.solver.telemetry.interval"),
+
+	@Type(Integer.class)
+	@DefaultValue("600")
+	@Description("Clustering: how often (in seconds) the memory usage of each live solver is re-estimated for the solver server telemetry")
+	SolverTelemetryMemUsageRefresh("unitime.solver.telemetry.memUsageRefresh"),
+
+	@Type(Integer.class)
+	@DefaultValue("65536")
+	@Description("Clustering: results of remote solver calls that are larger than this threshold (in bytes) are compressed (-1 to disable compression)")
+	SolverRpcCompressionThreshold("unitime.solver.rpc.compressionThreshold"),
+
+	@Type(Integer.class)
+	@DefaultValue("1048576")
+	@Description("Clustering: results of remote solver calls that are (after compression) larger than this size (in bytes) are returned in chunks of this size (0 to disable chunking)")
+	SolverRpcChunkSize("unitime.solver.rpc.chunkSize"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Clustering: when a solver server is shut down, move its running solvers (including their current and best solutions) to other solver servers")
+	SolverMigrateOnShutdown("unitime.solver.migration.onShutdown"),
+
+	@Type(Integer.class)
+	@DefaultValue("600000")
+	@Description("Clustering: timeout (in milliseconds) of the migration of a solver to another solver server")
+	SolverMigrationTimeout("unitime.solver.migration.timeout"),
+
 	@Type(Integer.class)
 	@DefaultValue("100")
 	@Description("Test HQL: maximum number of returned lines")
@@ -1897,6 +1963,32 @@ public enum ApplicationProperty {
 	@Description("Solver: passivate solution after given number of minutes of inactivity (disable passivation by setting to zero)")
 	SolverPasivationTime("unitime.solver.passivation.time"),
 
+	@Type(Class.class)
+	@Implements(SolverPassivationPolicy.class)
+	@DefaultValue("org.unitime.timetable.solver.DefaultSolverPassivationPolicy")
+	@Description("Solver: passivation policy, deciding which solvers are to be passivated and in what order")
+	SolverPassivationPolicyClass("unitime.solver.passivation.policy"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Solver: heap usage threshold (in percent of the maximal heap, measured after a garbage collection) above which idle solvers are passivated to release memory (disabled when set to zero, the default; when enabled, the collection usage threshold of the JVM heap memory pools is set)")
+	SolverPassivationMemoryThreshold("unitime.solver.passivation.memoryThreshold"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Solver: minimal number of seconds of inactivity after which a solution can be passivated when the heap usage is over the threshold")
+	SolverPassivationMinIdleTime("unitime.solver.passivation.minIdleTime"),
+
+	@Type(Integer.class)
+	@DefaultValue("2")
+	@Description("Solver: number of background threads used to passivate solvers")
+	SolverPassivationThreads("unitime.solver.passivation.threads"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Solver: use a compressed binary format for solver passivation and backups instead of the XML format (backups in either format can be restored)")
+	SolverBackupBinary("unitime.solver.backup.binary"),
+
 	@Type(Integer.class)
 	@DefaultValue("300")
 	@Description("Online Student Scheduling: sectioning queue load interval in seconds")
@@ -1926,6 +2018,38 @@ public enum ApplicationProperty {
 	@Description("Online Student Scheduling: asynchronous execution thread pool size")
 	OnlineSchedulingServerAsyncPoolSize("unitime.enrollment.server.asyncPoolSize"),
 
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Online Student Scheduling: maximal number of queued asynchronous actions (when reached, new asynchronous actions are rejected right away)")
+	OnlineSchedulingServerAsyncQueueSize("unitime.enrollment.server.asyncQueueSize"),
+
+	@Description("Online Student Scheduling: directory in which binary snapshots of the in-memory server are stored (snapshots are disabled when not set)")
+	OnlineSchedulingServerSnapshotDir("unitime.enrollment.server.snapshot.dir"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Online Student Scheduling: how often (in minutes) is the snapshot of the in-memory server written")
+	OnlineSchedulingServerSnapshotInterval("unitime.enrollment.server.snapshot.interval"),
+
+	@Type(Integer.class)
+	@DefaultValue("24")
+	@Description("Online Student Scheduling: maximal age (in hours) of a snapshot that can be used to start the in-memory server")
+	OnlineSchedulingServerSnapshotMaxAge("unitime.enrollment.server.snapshot.maxAge"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Student Scheduling: keep a read-only replica of an online sectioning server that is running on a different node of the cluster and use it for read-only actions")
+	OnlineSchedulingServerReplica("unitime.enrollment.server.replica"),
+
+	@DefaultValue("list-courses|list-classes|find-enrollment-info|find-student-infos|find-enrollments")
+	@Description("Online Student Scheduling: regular expression matching names of the read-only actions that can be executed on a replica (a replica may lag slightly behind the master, so only lookups that do not need to see the latest changes should be listed, e.g., not get-assignment, get-request, section, or suggestions that a student uses right after a change)")
+	OnlineSchedulingServerReplicaActions("unitime.enrollment.server.replica.actions"),
+
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Online Student Scheduling: maximal number of changes sent to the replicas in one message")
+	OnlineSchedulingServerReplicaBatchSize("unitime.enrollment.server.replica.batchSize"),
+
 	@Type(Integer.class)
 	@DefaultValue("366")
 	@Description("Change Log: automatically remove records after the given number of days")
@@ -2807,6 +2931,21 @@ public enum ApplicationProperty {
 	@Description("Task Scheduler: is task scheduler enabled (set to false to disable automatic task execution)")
 	TaskSchedulerEnabled("unitime.taskScheduler.enabled"),
 	
+	@Type(Integer.class)
+	@DefaultValue("4")
+	@Description("Queue Processor: maximal number of queued items (scripts, reports, data exchange, etc.) that are executed at the same time")
+	QueueProcessorWorkers("unitime.queue.workers"),
+	
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Queue Processor: maximal number of queued items of the same type that are executed at the same time (unless set for the type)")
+	QueueProcessorDefaultConcurrency("unitime.queue.concurrency"),
+	
+	@Type(Integer.class)
+	@Description("Queue Processor: maximal number of queued items of type % that are executed at the same time (% is the item type without spaces, e.g., Script, PDFExamReport, DataExchange, or RollForward)")
+	@Parameter("item type")
+	QueueProcessorTypeConcurrency("unitime.queue.concurrency.%"),
+	
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Reservations: only require locking when there is a wait-listed request")
@@ -43,8 +43,11 @@ import org.unitime.timetable.model.Meeting;
 import org.unitime.timetable.model.Session;
 import org.unitime.timetable.model.dao.EventDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.unitime.timetable.security.rights.Right;
+import org.unitime.timetable.util.CalendarFeedCache;
 import org.unitime.timetable.util.Formats;
+import org.unitime.timetable.util.RoomAvailability;
 
 /**
  * @author Tomas Muller
@@ -196,6 +199,9 @@ public class ApproveEventBackend extends EventAction<ApproveEventRpcRequest, Sav
 			n.setLink(attachment == null ? null : QueryEncoderBackend.encode("event=" + event.getUniqueId() + "&note=" + note.getUserId()));
 			response.addNote(n);
 			
+			// meeting statuses have changed, do not reuse decisions made earlier in this request
+			PermissionCache.invalidate();
+			
 			if (event.getMeetings().isEmpty()) {
 				response.setEvent(EventDetailBackend.getEventDetail(SessionDAO.getInstance().get(request.getSessionId(), hibSession), event, context));
 				response.getEvent().setId(null);
@@ -207,6 +213,9 @@ public class ApproveEventBackend extends EventAction<ApproveEventRpcRequest, Sav
 			
 			tx.commit(); tx = null;
 			
+			CalendarFeedCache.eventUpdated(event);
+			RoomAvailability.eventUpdated(event.getUniqueId());
+			
 			new EventEmail(request, response).send(context);
 			
 			return response;
@@ -70,10 +70,13 @@ import org.unitime.timetable.model.dao.InstructionalOfferingDAO;
 import org.unitime.timetable.model.dao.LocationDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.SponsoringOrganizationDAO;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.unitime.timetable.security.rights.Right;
+import org.unitime.timetable.util.CalendarFeedCache;
 import org.unitime.timetable.util.CalendarUtils;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
+import org.unitime.timetable.util.RoomAvailability;
 
 /**
  * @author Tomas Muller
@@ -651,6 +654,9 @@ public class SaveEventBackend extends EventAction<SaveEventRpcRequest, SaveOrApp
 					}
 			}
 			
+			// meeting statuses may have changed, do not reuse decisions made earlier in this request
+			PermissionCache.invalidate();
+			
 			if (event.getUniqueId() == null) {
 				hibSession.persist(event);
 				response.setEvent(EventDetailBackend.getEventDetail(SessionDAO.getInstance().get(request.getSessionId(), hibSession), event, context));
@@ -665,6 +671,11 @@ public class SaveEventBackend extends EventAction<SaveEventRpcRequest, SaveOrApp
 			
 			tx.commit();
 			
+			if (event.getUniqueId() != null) {
+				CalendarFeedCache.eventUpdated(event);
+				RoomAvailability.eventUpdated(event.getUniqueId());
+			}
+			
 			new EventEmail(request, response).send(context);
 			
 			return response;
@@ -26,6 +26,9 @@ import java.util.List;
 import org.unitime.timetable.export.Exporter.Printer;
 
 /**
+ * Printer that keeps all the lines in memory until {@link #close()} is called,
+ * e.g., so that they can be sorted. Avoid for large exports.
+ * 
  * @author Tomas Muller
  */
 public class BufferedPrinter implements Printer {
@@ -37,6 +37,15 @@ public interface Exporter {
 		public Enumeration<String> getParameterNames();
 	}
 	
+	/**
+	 * Table printer. Printers are expected to stream: {@link #printHeader(String...)} and
+	 * {@link #printLine(String...)} should pass the row on to the output (or to a temporary
+	 * file) right away and not keep it afterwards, so that an export of any size can be
+	 * produced in constant memory. {@link #flush()} ends a group of lines (the next line is
+	 * printed with a separator and without the check for repeated values) and
+	 * {@link #close()} completes the document. Use {@link BufferedPrinter} when the lines
+	 * need to be post-processed (e.g., sorted) before they are printed.
+	 */
 	public static interface Printer {
 		public String getContentType();
 		public void hideColumn(int col);
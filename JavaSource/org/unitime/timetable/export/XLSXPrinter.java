@@ -0,0 +1,516 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.export;
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.unitime.timetable.export.Exporter.Printer;
+import org.unitime.timetable.export.PDFPrinter.A;
+import org.unitime.timetable.export.PDFPrinter.F;
+
+/**
+ * Streaming XLSX (Office Open XML) printer. Unlike {@link XLSPrinter}, which builds the whole
+ * workbook in memory, the rows of the current sheet are written to a temporary file as they
+ * are printed and copied into the resulting zip file when the sheet is completed. Only the
+ * column widths and the cell styles are kept in memory, so the memory use does not depend
+ * on the number of rows. Cell strings are written inline (no shared string table) and
+ * images are not supported.
+ * 
+ * @author agent
+ */
+public class XLSXPrinter implements Printer {
+	private static Pattern sNumber = Pattern.compile("[+-]?[0-9]*\\.?[0-9]*[a-z]?");
+	private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+	private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	private static final String NS_PKG = "http://schemas.openxmlformats.org/package/2006/relationships";
+	private static final float sDefaultRowHeight = 12.75f;
+	private static final int sMaxColumnWidth = 80;
+	
+	private ZipOutputStream iZip;
+	private Object[] iLastLine = null;
+	private boolean iCheckLast = false;
+	private Set<Integer> iHiddenColumns = new HashSet<Integer>();
+	
+	private List<String> iSheetNames = new ArrayList<String>();
+	private File iSheetFile = null;
+	private Writer iSheet = null;
+	private int iRowNum = 0;
+	private List<Integer> iColumnWidths = new ArrayList<Integer>();
+	
+	private List<String> iFonts = new ArrayList<String>();
+	private Map<String, Integer> iFontIds = new HashMap<String, Integer>();
+	private List<String> iFills = new ArrayList<String>();
+	private Map<String, Integer> iFillIds = new HashMap<String, Integer>();
+	private List<String> iFormats = new ArrayList<String>();
+	private Map<String, Integer> iFormatIds = new HashMap<String, Integer>();
+	private List<String> iStyles = new ArrayList<String>();
+	private Map<String, Integer> iStyleIds = new HashMap<String, Integer>();
+	
+	private static final int BORDER_NONE = 0, BORDER_HEADER = 1, BORDER_DASHED = 2;
+	
+	public XLSXPrinter(OutputStream output, boolean checkLast) throws IOException {
+		iZip = new ZipOutputStream(output);
+		iCheckLast = checkLast;
+		iFills.add("<fill><patternFill patternType=\"none\"/></fill>");
+		iFills.add("<fill><patternFill patternType=\"gray125\"/></fill>");
+		getStyle(getFont(false, false, false, Color.BLACK), 0, BORDER_NONE, null, "left", false);
+		newSheet();
+	}
+	
+	public int getSheetIndex() {
+		return iSheetNames.size() - 1;
+	}
+	
+	public int getRow() { return iRowNum; }
+	
+	public void newSheet() throws IOException {
+		newSheet(null);
+	}
+	
+	public void newSheet(String name) throws IOException {
+		finishSheet();
+		iSheetNames.add(sheetName(name, iSheetNames.size() + 1));
+		iSheetFile = File.createTempFile("unitime-sheet", ".xml");
+		try {
+			iSheet = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(iSheetFile.toPath()), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			dispose();
+			throw e;
+		}
+		iRowNum = 0;
+		iColumnWidths.clear();
+		iLastLine = null;
+	}
+	
+	public void setSheetName(String name) {
+		if (!iSheetNames.isEmpty())
+			iSheetNames.set(iSheetNames.size() - 1, sheetName(name, iSheetNames.size()));
+	}
+	
+	@Override
+	public String getContentType() {
+		return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+	}
+	
+	@Override
+	public void hideColumn(int col) {
+		iHiddenColumns.add(col);
+	}
+	
+	@Override
+	public void printHeader(String... fields) throws IOException {
+		int style = getStyle(getFont(true, false, false, Color.BLACK), getFill(new Color(0xCC, 0xCC, 0xFF)), BORDER_HEADER, null, "left", true);
+		StringBuilder row = new StringBuilder();
+		int cellIdx = 0;
+		int nrLines = 1;
+		for (int idx = 0; idx < fields.length; idx++) {
+			if (iHiddenColumns.contains(idx)) continue;
+			String f = fields[idx];
+			if (f == null || f.isEmpty()) {
+				cell(row, cellIdx++, style, null, null);
+			} else {
+				cell(row, cellIdx++, style, "inlineStr", "<is>" + text(f) + "</is>");
+				nrLines = Math.max(nrLines, measure(cellIdx - 1, f));
+			}
+		}
+		writeRow(row, nrLines);
+	}
+	
+	@Override
+	public void printLine(String... fields) throws IOException {
+		StringBuilder row = new StringBuilder();
+		int cellIdx = 0;
+		int nrLines = 1;
+		for (int idx = 0; idx < fields.length; idx++) {
+			if (iHiddenColumns.contains(idx)) continue;
+			String f = fields[idx];
+			if (f == null || f.isEmpty() || (iCheckLast && f.equals(iLastLine == null || idx >= iLastLine.length ? null : iLastLine[idx]))) f = "";
+			
+			boolean number = sNumber.matcher(f).matches();
+			int style = getStyle(getFont(false, false, false, Color.BLACK), 0, BORDER_NONE, null, number ? "right" : "left", !number);
+			Double value = (number ? toNumber(f) : null);
+			if (f.isEmpty()) {
+				cell(row, cellIdx++, style, null, null);
+			} else if (value != null) {
+				cell(row, cellIdx++, style, null, "<v>" + value + "</v>");
+				measure(cellIdx - 1, f);
+			} else {
+				cell(row, cellIdx++, style, "inlineStr", "<is>" + text(f) + "</is>");
+				nrLines = Math.max(nrLines, measure(cellIdx - 1, f));
+			}
+		}
+		writeRow(row, nrLines);
+		iLastLine = fields;
+	}
+	
+	public void printLine(A... fields) throws IOException {
+		StringBuilder row = new StringBuilder();
+		int cellIdx = 0;
+		int nrLines = 1;
+		for (int idx = 0; idx < fields.length; idx++) {
+			if (iHiddenColumns.contains(idx)) continue;
+			A f = fields[idx];
+			if (f == null || f.isEmpty() || (iCheckLast && f.equals(iLastLine == null || idx >= iLastLine.length ? null : iLastLine[idx]))) {
+				f = new A();
+				if (fields[idx] != null && fields[idx].has(F.NOSEPARATOR))
+					f.set(F.NOSEPARATOR);
+			}
+			
+			int style = getStyle(
+					getFont(f.has(F.BOLD), f.has(F.ITALIC), f.has(F.UNDERLINE), f.getColor()),
+					f.hasBackground() ? getFill(f.getBackground()) : 0,
+					iLastLine == null && !f.has(F.NOSEPARATOR) ? BORDER_DASHED : BORDER_NONE,
+					f.getPattern(),
+					f.has(F.RIGHT) ? "right" : f.has(F.CENTER) ? "center" : "left",
+					true);
+			
+			if (f.isNumber()) {
+				cell(row, cellIdx++, style, null, "<v>" + f.getNumber() + "</v>");
+				measure(cellIdx - 1, f.getNumber().toString());
+			} else if (f.isDate()) {
+				cell(row, cellIdx++, style, null, "<v>" + DateUtil.getExcelDate(f.getDate()) + "</v>");
+				measure(cellIdx - 1, f.getPattern() == null ? "00/00/0000" : f.getPattern());
+			} else if (f.hasText()) {
+				Double value = (f.has(F.RIGHT) && sNumber.matcher(f.getText()).matches() ? toNumber(f.getText()) : null);
+				if (value != null) {
+					cell(row, cellIdx++, style, null, "<v>" + value + "</v>");
+					measure(cellIdx - 1, f.getText());
+				} else {
+					cell(row, cellIdx++, style, "inlineStr", "<is>" + text(f.getText()) + "</is>");
+					nrLines = Math.max(nrLines, measure(cellIdx - 1, f.getText()));
+				}
+			} else if (f.hasChunks()) {
+				StringBuilder runs = new StringBuilder();
+				StringBuilder text = new StringBuilder();
+				for (A g: f.getChunks()) {
+					if (g.hasText()) {
+						String t = (text.length() > 0 ? f.has(F.INLINE) ? " " : "\n" : "") + g.getText();
+						runs.append(run(g, t));
+						text.append(t);
+					}
+					if (g.hasChunks()) {
+						for (A h: g.getChunks()) {
+							if (h.hasText()) {
+								String t = (text.length() > 0 ? " " : "") + h.getText();
+								runs.append(run(h, t));
+								text.append(t);
+							}
+						}
+					}
+				}
+				if (runs.length() == 0) {
+					cell(row, cellIdx++, style, null, null);
+				} else {
+					cell(row, cellIdx++, style, "inlineStr", "<is>" + runs + "</is>");
+					nrLines = Math.max(nrLines, measure(cellIdx - 1, text.toString()));
+				}
+			} else {
+				cell(row, cellIdx++, style, null, null);
+			}
+		}
+		writeRow(row, nrLines);
+		iLastLine = fields;
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		iLastLine = null;
+		if (iSheet != null) iSheet.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			finishSheet();
+			
+			writeEntry("[Content_Types].xml", contentTypes());
+			writeEntry("_rels/.rels",
+					"<Relationships xmlns=\"" + NS_PKG + "\">" +
+					"<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+					"</Relationships>");
+			
+			StringBuilder workbook = new StringBuilder("<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\"><sheets>");
+			StringBuilder rels = new StringBuilder("<Relationships xmlns=\"" + NS_PKG + "\">");
+			for (int i = 0; i < iSheetNames.size(); i++) {
+				workbook.append("<sheet name=\"" + escape(iSheetNames.get(i)) + "\" sheetId=\"" + (i + 1) + "\" r:id=\"rId" + (i + 1) + "\"/>");
+				rels.append("<Relationship Id=\"rId" + (i + 1) + "\" Type=\"" + NS_REL + "/worksheet\" Target=\"worksheets/sheet" + (i + 1) + ".xml\"/>");
+			}
+			workbook.append("</sheets></workbook>");
+			rels.append("<Relationship Id=\"rId" + (iSheetNames.size() + 1) + "\" Type=\"" + NS_REL + "/styles\" Target=\"styles.xml\"/>");
+			rels.append("</Relationships>");
+			writeEntry("xl/workbook.xml", workbook.toString());
+			writeEntry("xl/_rels/workbook.xml.rels", rels.toString());
+			writeEntry("xl/styles.xml", styles());
+			
+			iZip.finish();
+			iZip.flush();
+		} finally {
+			dispose();
+		}
+	}
+	
+	/**
+	 * Delete the temporary file of the current sheet (if any). Called by {@link #close()}, but it should be also called
+	 * in a finally block by the exporter, so that the file is not left behind when the export fails before the printer is closed.
+	 */
+	public void dispose() {
+		if (iSheet != null) {
+			try {
+				iSheet.close();
+			} catch (IOException e) {}
+			iSheet = null;
+		}
+		if (iSheetFile != null) {
+			iSheetFile.delete(); iSheetFile = null;
+		}
+	}
+	
+	protected void writeRow(StringBuilder cells, int nrLines) throws IOException {
+		iRowNum ++;
+		iSheet.write("<row r=\"" + iRowNum + "\"");
+		if (nrLines > 1)
+			iSheet.write(" ht=\"" + (nrLines * sDefaultRowHeight + 1f) + "\" customHeight=\"1\"");
+		iSheet.write(">");
+		iSheet.write(cells.toString());
+		iSheet.write("</row>");
+	}
+	
+	protected void cell(StringBuilder row, int col, int style, String type, String content) {
+		row.append("<c r=\"" + columnName(col) + (iRowNum + 1) + "\"");
+		if (style > 0) row.append(" s=\"" + style + "\"");
+		if (type != null) row.append(" t=\"" + type + "\"");
+		if (content == null) {
+			row.append("/>");
+		} else {
+			row.append(">").append(content).append("</c>");
+		}
+	}
+	
+	protected int measure(int col, String text) {
+		int lines = 0, width = 0;
+		for (String line: text.split("\n")) {
+			lines ++;
+			width = Math.max(width, line.length());
+		}
+		while (iColumnWidths.size() <= col) iColumnWidths.add(0);
+		if (iColumnWidths.get(col) < width) iColumnWidths.set(col, width);
+		return Math.max(1, lines);
+	}
+	
+	protected void finishSheet() throws IOException {
+		if (iSheet == null) return;
+		try {
+			iSheet.close(); iSheet = null;
+			iZip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + iSheetNames.size() + ".xml"));
+			Writer out = new OutputStreamWriter(iZip, StandardCharsets.UTF_8);
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+			out.write("<worksheet xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\">");
+			out.write("<sheetPr><pageSetUpPr fitToPage=\"1\"/></sheetPr>");
+			out.write("<sheetViews><sheetView showGridLines=\"0\" workbookViewId=\"0\"" + (iSheetNames.size() == 1 ? " tabSelected=\"1\"" : "") + "/></sheetViews>");
+			out.write("<sheetFormatPr defaultRowHeight=\"" + sDefaultRowHeight + "\"/>");
+			if (!iColumnWidths.isEmpty()) {
+				out.write("<cols>");
+				for (int i = 0; i < iColumnWidths.size(); i++)
+					out.write("<col min=\"" + (i + 1) + "\" max=\"" + (i + 1) + "\" width=\"" + Math.min(sMaxColumnWidth, Math.max(8, iColumnWidths.get(i) + 2)) + "\" customWidth=\"1\"/>");
+				out.write("</cols>");
+			}
+			out.write("<sheetData>");
+			out.flush();
+			Files.copy(iSheetFile.toPath(), iZip);
+			out.write("</sheetData>");
+			out.write("<printOptions horizontalCentered=\"1\"/>");
+			out.write("<pageMargins left=\"0.7\" right=\"0.7\" top=\"0.75\" bottom=\"0.75\" header=\"0.3\" footer=\"0.3\"/>");
+			out.write("<pageSetup orientation=\"landscape\" fitToWidth=\"1\" fitToHeight=\"1\"/>");
+			out.write("</worksheet>");
+			out.flush();
+			iZip.closeEntry();
+		} finally {
+			iSheetFile.delete(); iSheetFile = null;
+		}
+	}
+	
+	protected void writeEntry(String name, String xml) throws IOException {
+		iZip.putNextEntry(new ZipEntry(name));
+		iZip.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" + xml).getBytes(StandardCharsets.UTF_8));
+		iZip.closeEntry();
+	}
+	
+	protected String contentTypes() {
+		StringBuilder ret = new StringBuilder("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+		ret.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+		ret.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+		ret.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+		for (int i = 0; i < iSheetNames.size(); i++)
+			ret.append("<Override PartName=\"/xl/worksheets/sheet" + (i + 1) + ".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+		ret.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+		ret.append("</Types>");
+		return ret.toString();
+	}
+	
+	protected String styles() {
+		StringBuilder ret = new StringBuilder("<styleSheet xmlns=\"" + NS_MAIN + "\">");
+		if (!iFormats.isEmpty()) {
+			ret.append("<numFmts count=\"" + iFormats.size() + "\">");
+			for (int i = 0; i < iFormats.size(); i++)
+				ret.append("<numFmt numFmtId=\"" + (164 + i) + "\" formatCode=\"" + escape(iFormats.get(i)) + "\"/>");
+			ret.append("</numFmts>");
+		}
+		ret.append("<fonts count=\"" + iFonts.size() + "\">");
+		for (String font: iFonts) ret.append(font);
+		ret.append("</fonts>");
+		ret.append("<fills count=\"" + iFills.size() + "\">");
+		for (String fill: iFills) ret.append(fill);
+		ret.append("</fills>");
+		ret.append("<borders count=\"3\">");
+		ret.append("<border><left/><right/><top/><bottom/><diagonal/></border>");
+		ret.append("<border><left/><right/><top/><bottom style=\"thin\"><color rgb=\"FF000000\"/></bottom><diagonal/></border>");
+		ret.append("<border><left/><right/><top style=\"dashed\"><color rgb=\"FF000000\"/></top><bottom/><diagonal/></border>");
+		ret.append("</borders>");
+		ret.append("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+		ret.append("<cellXfs count=\"" + iStyles.size() + "\">");
+		for (String style: iStyles) ret.append(style);
+		ret.append("</cellXfs>");
+		ret.append("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+		ret.append("</styleSheet>");
+		return ret.toString();
+	}
+	
+	protected int getFont(boolean bold, boolean italic, boolean underline, Color c) {
+		String color = rgb(c == null ? Color.BLACK : c);
+		String fontId = (bold ? "b" : "") + (italic ? "i" : "") + (underline ? "u" : "") + color;
+		Integer id = iFontIds.get(fontId);
+		if (id == null) {
+			id = iFonts.size();
+			iFonts.add("<font>" + (bold ? "<b/>" : "") + (italic ? "<i/>" : "") + (underline ? "<u/>" : "") +
+					"<sz val=\"10\"/><color rgb=\"" + color + "\"/><name val=\"Arial\"/><family val=\"2\"/></font>");
+			iFontIds.put(fontId, id);
+		}
+		return id;
+	}
+	
+	protected int getFill(Color c) {
+		String color = rgb(c);
+		Integer id = iFillIds.get(color);
+		if (id == null) {
+			id = iFills.size();
+			iFills.add("<fill><patternFill patternType=\"solid\"><fgColor rgb=\"" + color + "\"/><bgColor indexed=\"64\"/></patternFill></fill>");
+			iFillIds.put(color, id);
+		}
+		return id;
+	}
+	
+	protected int getFormat(String pattern) {
+		if (pattern == null) return 0;
+		Integer id = iFormatIds.get(pattern);
+		if (id == null) {
+			id = 164 + iFormats.size();
+			iFormats.add(pattern);
+			iFormatIds.put(pattern, id);
+		}
+		return id;
+	}
+	
+	protected int getStyle(int font, int fill, int border, String pattern, String alignment, boolean wrap) {
+		int format = getFormat(pattern);
+		String styleId = font + ":" + fill + ":" + border + ":" + format + ":" + alignment + (wrap ? ":w" : "");
+		Integer id = iStyleIds.get(styleId);
+		if (id == null) {
+			id = iStyles.size();
+			iStyles.add("<xf numFmtId=\"" + format + "\" fontId=\"" + font + "\" fillId=\"" + fill + "\" borderId=\"" + border + "\" xfId=\"0\"" +
+					(format > 0 ? " applyNumberFormat=\"1\"" : "") + (font > 0 ? " applyFont=\"1\"" : "") +
+					(fill > 0 ? " applyFill=\"1\"" : "") + (border > 0 ? " applyBorder=\"1\"" : "") + " applyAlignment=\"1\">" +
+					"<alignment horizontal=\"" + alignment + "\" vertical=\"top\"" + (wrap ? " wrapText=\"1\"" : "") + "/></xf>");
+			iStyleIds.put(styleId, id);
+		}
+		return id;
+	}
+	
+	protected String run(A chunk, String text) {
+		return "<r><rPr><rFont val=\"Arial\"/>" + (chunk.has(F.BOLD) ? "<b/>" : "") + (chunk.has(F.ITALIC) ? "<i/>" : "") +
+				"<color rgb=\"" + rgb(chunk.getColor() == null ? Color.BLACK : chunk.getColor()) + "\"/><sz val=\"10\"/>" +
+				(chunk.has(F.UNDERLINE) ? "<u/>" : "") + "</rPr>" + text(text) + "</r>";
+	}
+	
+	protected static String text(String text) {
+		return "<t xml:space=\"preserve\">" + escape(text) + "</t>";
+	}
+	
+	protected static Double toNumber(String text) {
+		try {
+			return Double.valueOf(text);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	protected static String rgb(Color c) {
+		return String.format("FF%02X%02X%02X", c.getRed(), c.getGreen(), c.getBlue());
+	}
+	
+	protected static String columnName(int col) {
+		String name = "";
+		for (int c = col + 1; c > 0; c = (c - 1) / 26)
+			name = (char)('A' + (c - 1) % 26) + name;
+		return name;
+	}
+	
+	protected static String sheetName(String name, int index) {
+		if (name == null || name.isEmpty()) return "Sheet" + index;
+		name = name.replaceAll("[\\[\\]\\*\\?/\\\\:]", " ");
+		return (name.length() > 31 ? name.substring(0, 31) : name);
+	}
+	
+	protected static String escape(String text) {
+		if (text == null) return "";
+		StringBuilder ret = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			switch (ch) {
+			case '&': ret.append("&amp;"); break;
+			case '<': ret.append("&lt;"); break;
+			case '>': ret.append("&gt;"); break;
+			case '"': ret.append("&quot;"); break;
+			case '\n': case '\t': ret.append(ch); break;
+			case '\r': break;
+			default:
+				if (ch >= 0x20) ret.append(ch);
+			}
+		}
+		return ret.toString();
+	}
+}
@@ -27,10 +27,12 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 
 import org.cpsolver.ifs.util.JProf;
 import org.unitime.commons.Debug;
 import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 
 
 /**
@@ -65,6 +67,7 @@ public class HibSessionFilter implements Filter {
 		if (request.getAttribute("TimeStamp")==null)
 			request.setAttribute("TimeStamp", Double.valueOf(JProf.currentTimeSec()));
 		
+		PermissionCache.begin();
 		try {
 			// Process request
 			chain.doFilter(request,response);
@@ -79,6 +82,8 @@ public class HibSessionFilter implements Filter {
 
             // Let others handle it... maybe another interceptor for exceptions?
             throw new ServletException(ex);
+        } finally {
+        	PermissionCache.end(request instanceof HttpServletRequest ? ((HttpServletRequest)request).getRequestURI() : null);
         }
  		
 	}
@@ -142,6 +142,8 @@ public class ScriptPage extends Composite {
 		header.add(new UniTimeTableHeader(MESSAGES.colCreated()));
 		header.add(new UniTimeTableHeader(MESSAGES.colStarted()));
 		header.add(new UniTimeTableHeader(MESSAGES.colFinished()));
+		header.add(new UniTimeTableHeader(MESSAGES.colQueueWaitTime()));
+		header.add(new UniTimeTableHeader(MESSAGES.colQueueRunTime()));
 		header.add(new UniTimeTableHeader(MESSAGES.colOutput()));
 		header.add(new UniTimeTableHeader(""));
 		iQueue.addRow(null, header);
@@ -312,6 +314,8 @@ public class ScriptPage extends Composite {
 			line.add(new Label(q.getCreated() == null ? "" : sTS.format(q.getCreated())));
 			line.add(new Label(q.getStarted() == null ? "" : sTS.format(q.getStarted())));
 			line.add(new Label(q.getFinished() == null ? "" : sTS.format(q.getFinished())));
+			line.add(new Label(q.getWaitTime() == null ? "" : q.getWaitTime()));
+			line.add(new Label(q.getRunTime() == null ? "" : q.getRunTime()));
 			if (q.getOtuput() != null) {
 				line.add(new Anchor(q.getOtuput().substring(1 + q.getOtuput().lastIndexOf('.')), q.getOtuputLink()));
 			} else {
@@ -652,7 +652,7 @@ public class EventResourceTimetable extends Composite implements EventMeetingTab
 						@Override
 						public void execute() {
 							popup.hide();
-							export("output=" + (getSelectedTab() <= 1 ? "events" : "meetings") + ".xls&flags=" + EventCookie.getInstance().getFlags(), true);
+							export("output=" + (getSelectedTab() <= 1 ? "events" : "meetings") + ".xlsx&flags=" + EventCookie.getInstance().getFlags(), true);
 						}
 					});
 					exportXls.getElement().getStyle().setCursor(Cursor.POINTER);
@@ -768,6 +768,12 @@ public interface GwtMessages extends Messages {
 	@DefaultMessage("Finished")
 	String colFinished();
 	
+	@DefaultMessage("Waited")
+	String colQueueWaitTime();
+	
+	@DefaultMessage("Run Time")
+	String colQueueRunTime();
+	
 	@DefaultMessage("Output")
 	String colOutput();
 	
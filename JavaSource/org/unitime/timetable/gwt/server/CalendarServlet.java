@@ -19,9 +19,12 @@
 */
 package org.unitime.timetable.gwt.server;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.text.SimpleDateFormat;
@@ -31,10 +34,12 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
 
@@ -84,6 +89,7 @@ import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.UserContext;
 import org.unitime.timetable.server.CourseDetailsBackend;
 import org.unitime.timetable.solver.service.SolverServerService;
+import org.unitime.timetable.util.CalendarFeedCache;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.DateUtils;
 
@@ -143,6 +149,13 @@ public class CalendarServlet extends HttpServlet {
 			else
 				sessionId = (Long)request.getSession().getAttribute("sessionId");
 		}
+		CalendarFeedCache cache = CalendarFeedCache.getInstance();
+		String cacheKey = getCacheKey(params, sessionId);
+		CalendarFeedCache.Feed feed = (cache.isEnabled() ? cache.get(cacheKey) : null);
+		if (feed != null) {
+			writeFeed(request, response, feed);
+			return;
+		}
 		if (params.getParameter("term") != null) {
 			org.hibernate.Session hibSession = CurriculumDAO.getInstance().getSession();
 			try {
@@ -171,10 +184,8 @@ public class CalendarServlet extends HttpServlet {
     	String eventIds = params.getParameter("eid");
     	String userId = params.getParameter("uid");
     	if (q == null) userId = QueryEncoderBackend.decode(userId);
-   
-		response.setContentType("text/calendar; charset=UTF-8");
-		response.setCharacterEncoding("UTF-8");
-		response.setHeader( "Content-Disposition", "attachment; filename=\"schedule.ics\"" );
+    	Set<String> dependencies = new HashSet<String>();
+    	dependencies.add("session:" + session.getUniqueId());
         
 		ICalendar ical = new ICalendar();
 		ical.setVersion(ICalVersion.V2_0);
@@ -195,7 +206,7 @@ public class CalendarServlet extends HttpServlet {
     				CourseOffering course = CourseOfferingDAO.getInstance().get(Long.valueOf(courseAndClassId[0]), hibSession);
     				Class_ clazz = Class_DAO.getInstance().get(Long.valueOf(courseAndClassId[1]), hibSession);
     				if (course == null || clazz == null) continue;
-            		printClass(course, clazz, ical);
+            		printClass(course, clazz, ical, dependencies);
         		}
         	}
         	if (fts != null && !fts.isEmpty()) {
@@ -214,7 +225,7 @@ public class CalendarServlet extends HttpServlet {
             		try {
                 		Exam exam = ExamDAO.getInstance().get(Long.valueOf(examId), hibSession);
                 		if (exam != null)
-                			printExam(exam, ical);
+                			printExam(exam, ical, dependencies);
             		} catch (NumberFormatException e) {}
             	}
             }
@@ -223,12 +234,14 @@ public class CalendarServlet extends HttpServlet {
             		if (eventId.isEmpty()) continue;
             		try {
             			Event event = EventDAO.getInstance().get(Long.valueOf(eventId), hibSession);
+            			dependencies.add("event:" + eventId);
             			if (event != null)
             				exporter.print(ical, EventDetailBackend.getEventDetail(session, event, null));
             		} catch (NumberFormatException e) {}
             	}
             }
             if (userId != null && !userId.isEmpty()) {
+            	dependencies.add("user:" + userId);
                 for (DepartmentalInstructor instructor: hibSession.createQuery("select i from DepartmentalInstructor i " +
                 		"where i.externalUniqueId = :externalId and i.department.session.uniqueId = :sessionId", DepartmentalInstructor.class).
                 		setParameter("sessionId", sessionId).setParameter("externalId", userId).list()) {
@@ -238,37 +251,38 @@ public class CalendarServlet extends HttpServlet {
                 		DepartmentStatusType type = (status == null || status.getStatus() == null ? instructor.getSession().getStatusType() : status.getStatus());
                 		if (t.getType() == ExamType.sExamTypeFinal && type.canNoRoleReportExamFinal()) {
                 			for (Exam exam: instructor.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		} else if (t.getType() == ExamType.sExamTypeMidterm && type.canNoRoleReportExamMidterm()) {
                 			for (Exam exam: instructor.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		}
                 	}
                     if (instructor.getDepartment().getSession().getStatusType().canNoRoleReportClass()) {
                         for (ClassInstructor ci: instructor.getClasses()) {
-                            printClass(ci.getClassInstructing().getSchedulingSubpart().getInstrOfferingConfig().getControllingCourseOffering(), ci.getClassInstructing(), ical);
+                            printClass(ci.getClassInstructing().getSchedulingSubpart().getInstrOfferingConfig().getControllingCourseOffering(), ci.getClassInstructing(), ical, dependencies);
                         }
                     }
                 }
                 for (Student student: hibSession.createQuery("select s from Student s where " +
                 		"s.externalUniqueId=:externalId and s.session.uniqueId = :sessionId", Student.class).
                 		setParameter("sessionId", sessionId).setParameter("externalId", userId).list()) {
+                	dependencies.add("student:" + student.getUniqueId());
                 	if (!PersonalizedExamReportAction.canDisplay(student.getSession())) continue;
                 	for (ExamType t: ExamType.findAll(hibSession)) {
                 		ExamStatus status = ExamStatus.findStatus(hibSession, student.getSession().getUniqueId(), t.getUniqueId());
                 		DepartmentStatusType type = (status == null || status.getStatus() == null ? student.getSession().getStatusType() : status.getStatus());
                 		if (t.getType() == ExamType.sExamTypeFinal && type.canNoRoleReportExamFinal()) {
                 			for (Exam exam: student.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		} else if (t.getType() == ExamType.sExamTypeMidterm && type.canNoRoleReportExamMidterm()) {
                 			for (Exam exam: student.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		}
                 	}
                     if (student.getSession().getStatusType().canNoRoleReportClass()) {
                         for (Iterator i=student.getClassEnrollments().iterator();i.hasNext();) {
                             StudentClassEnrollment sce = (StudentClassEnrollment)i.next();
-                            printClass(sce.getCourseOffering(), sce.getClazz(), ical);
+                            printClass(sce.getCourseOffering(), sce.getClazz(), ical, dependencies);
                         }
                     }
                 }
@@ -276,9 +290,11 @@ public class CalendarServlet extends HttpServlet {
         } catch (Exception e) {
         	Debug.error(e.getMessage(), e);
         	response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        	return;
         }
 		
-		PrintWriter out = response.getWriter();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Writer out = new OutputStreamWriter(bytes, "UTF-8");
         ICalWriter writer = new ICalWriter(out, ICalVersion.V2_0);
 		try {
 			try {
@@ -293,9 +309,77 @@ public class CalendarServlet extends HttpServlet {
 			out.close();
 			writer.close();
 		}
+		
+		writeFeed(request, response, cache.put(cacheKey, bytes.toByteArray(), dependencies));
+	}
+	
+	/**
+	 * Normalized query: the parameters that affect the feed in a fixed order, with the lists of ids sorted.
+	 * When no academic session is given, the current academic session of the user is included.
+	 */
+	protected String getCacheKey(Params params, Long sessionId) {
+		StringBuffer key = new StringBuffer();
+		for (String name: new String[] {"sid", "term", "cid", "ft", "xid", "eid", "uid"}) {
+			String value = params.getParameter(name);
+			if (value == null || value.isEmpty()) continue;
+			if (key.length() > 0) key.append('&');
+			key.append(name).append('=');
+			if ("cid".equals(name) || "ft".equals(name) || "xid".equals(name) || "eid".equals(name)) {
+				TreeSet<String> values = new TreeSet<String>();
+				for (String v: value.split(","))
+					if (!v.isEmpty()) values.add(v);
+				key.append(String.join(",", values));
+			} else {
+				key.append(value);
+			}
+		}
+		if (params.getParameter("sid") == null && params.getParameter("term") == null)
+			key.append(key.length() > 0 ? "&" : "").append("session=").append(sessionId);
+		return key.toString();
+	}
+	
+	/**
+	 * Write the feed, or respond with 304 (Not Modified) when the client already has the current version
+	 */
+	protected void writeFeed(HttpServletRequest request, HttpServletResponse response, CalendarFeedCache.Feed feed) throws IOException {
+		response.setHeader("ETag", feed.getETag());
+		response.setDateHeader("Last-Modified", feed.getLastModified());
+		response.setHeader("Cache-Control", "private, no-cache");
+		
+		boolean notModified = false;
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag: ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) tag = tag.substring(2);
+				if (tag.equals("*") || tag.equals(feed.getETag())) { notModified = true; break; }
+			}
+		} else {
+			try {
+				long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+				notModified = (ifModifiedSince >= 0 && feed.getLastModified() <= ifModifiedSince);
+			} catch (IllegalArgumentException e) {}
+		}
+		if (notModified) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
+		response.setContentType("text/calendar; charset=UTF-8");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader( "Content-Disposition", "attachment; filename=\"schedule.ics\"" );
+		response.setContentLength(feed.getData().length);
+		OutputStream out = response.getOutputStream();
+		try {
+			out.write(feed.getData());
+			out.flush();
+		} finally {
+			out.close();
+		}
 	}
 
-	private void printExam(Exam exam, ICalendar ical) throws IOException {
+	private void printExam(Exam exam, ICalendar ical, Set<String> dependencies) throws IOException {
+		dependencies.add("exam:" + exam.getUniqueId());
 		if (exam.getAssignedPeriod() == null) return;
 
         VEvent vevent = new VEvent();
@@ -321,7 +405,8 @@ public class CalendarServlet extends HttpServlet {
         ical.addEvent(vevent);
 	}
 
-	private void printClass(CourseOffering course, Class_ clazz, ICalendar ical) throws IOException {
+	private void printClass(CourseOffering course, Class_ clazz, ICalendar ical, Set<String> dependencies) throws IOException {
+		dependencies.add("class:" + clazz.getUniqueId());
 		Assignment assignment = clazz.getCommittedAssignment();
 		if (assignment == null) return;
 		TimeLocation time = assignment.getTimeLocation();
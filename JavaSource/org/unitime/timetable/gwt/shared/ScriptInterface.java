@@ -308,6 +308,7 @@ public class ScriptInterface implements GwtRpcResponse, Comparable<ScriptInterfa
 		private String iId;
 		private String iName, iStatus, iProgress, iOwner, iSession, iOutput, iLog, iHost, iOutputLink;
 		private Date iCreated, iStarted, iFinished;
+		private String iWaitTime, iRunTime;
 		private boolean iCanDelete = false;
 		
 		private ExecuteScriptRpcRequest iExecutionRequest;
@@ -350,6 +351,12 @@ public class ScriptInterface implements GwtRpcResponse, Comparable<ScriptInterfa
 		public Date getFinished() { return iFinished; }
 		public void setFinished(Date finished) { iFinished = finished; }
 		
+		public String getWaitTime() { return iWaitTime; }
+		public void setWaitTime(String waitTime) { iWaitTime = waitTime; }
+		
+		public String getRunTime() { return iRunTime; }
+		public void setRunTime(String runTime) { iRunTime = runTime; }
+		
 		public String getLog() { return iLog; }
 		public void setLog(String log) { iLog = log; }
 		
@@ -55,6 +55,7 @@ import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
 import org.unitime.timetable.solver.exam.ui.ExamInfo;
 import org.unitime.timetable.solver.exam.ui.ExamRoomInfo;
 import org.unitime.timetable.util.Constants;
+import org.unitime.timetable.util.RoomAvailability;
 
 /**
  * @author Tomas Muller, Stephanie Schluttenhofer
@@ -727,6 +728,7 @@ public class Exam extends BaseExam implements Comparable<Exam> {
             tx = hibSession.beginTransaction();
             
             ExamAssignment oldAssignment = new ExamAssignment(this); 
+            Long oldEventId = (getEvent() == null ? null : getEvent().getUniqueId());
             
             setAssignedPeriod(assignment.getPeriod(hibSession));
             if (getAssignedRooms()==null) setAssignedRooms(new HashSet());
@@ -880,6 +882,11 @@ public class Exam extends BaseExam implements Comparable<Exam> {
                     dept);
 
             tx.commit();
+            
+            List<Long> eventIds = new ArrayList<Long>();
+            if (oldEventId != null) eventIds.add(oldEventId);
+            if (event != null && event.getUniqueId() != null && !event.getUniqueId().equals(oldEventId)) eventIds.add(event.getUniqueId());
+            RoomAvailability.eventsUpdated(eventIds);
             return null;
         } catch (Exception e) {
             if (tx!=null) tx.rollback();
@@ -944,7 +951,10 @@ public class Exam extends BaseExam implements Comparable<Exam> {
                     subject,
                     dept);
 
-            if (tx!=null) tx.commit();
+            if (tx!=null) {
+            	tx.commit();
+            	if (event != null) RoomAvailability.eventUpdated(event.getUniqueId());
+            }
             return null;
         } catch (Exception e) {
             if (tx!=null) tx.rollback();
@@ -78,6 +78,7 @@ import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 import org.unitime.timetable.solver.ui.PropertiesInfo;
 import org.unitime.timetable.solver.ui.TimetableInfo;
 import org.unitime.timetable.solver.ui.TimetableInfoFileProxy;
+import org.unitime.timetable.util.CalendarFeedCache;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
 
@@ -197,6 +198,8 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 		// Manually fix the Clazz_.committedAssignment cache.
 		for (Assignment a: getAssignments())
 			a.getClazz().setCommittedAssignment(null);
+		
+		CalendarFeedCache.notifyChanged("session:" + getSession().getUniqueId());
 	}
 	
 	public boolean commitSolution(Vector messages, org.hibernate.Session hibSession) {
@@ -551,6 +554,8 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 		// Manually fix the Clazz_.committedAssignment cache.
 		for (Assignment a: getAssignments())
 			a.getClazz().setCommittedAssignment(a);
+		
+		CalendarFeedCache.notifyChanged("session:" + getSession().getUniqueId());
 
 		return true;
 	}
@@ -23,13 +23,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,13 +39,25 @@ import org.cpsolver.ifs.util.ToolBox;
 
 
 /**
+ * Exclusive locks on multiple ids.<br>
+ * There is no global monitor: the individual locks are acquired in the order of their ids (which avoids deadlocks
+ * without the need to wait for all the ids to become available at once), so a waiting thread is only woken up when
+ * the particular id it waits for is released. Lock entries are reference counted and removed as soon as they are no
+ * longer used. A lock does not belong to the thread that acquired it and can be released by any thread
+ * (see {@link org.unitime.timetable.onlinesectioning.OnlineSectioningServer#lockOffering(Long)}).<br>
+ * The time spent waiting for an id that is locked by someone else is recorded, both in total and for the (at most
+ * {@link #MAX_WAIT_STATISTICS}) ids with the longest waits, so that the hot ids can be identified.
+ *
  * @author Tomas Muller
  */
 public class MultiLock {
     private Log iLog = LogFactory.getLog(MultiLock.class);
-    private Lock iLock = new ReentrantLock();
-    private Condition iAllLocked = null;
-    private Map<Long, Condition> iIndividualLocks = new HashMap<Long, Condition>();
+    private StampedLock iGlobalLock = new StampedLock();
+    private Map<Long, LockEntry> iIndividualLocks = new ConcurrentHashMap<Long, LockEntry>();
+    private Set<Long> iLocked = ConcurrentHashMap.newKeySet();
+    public static final int MAX_WAIT_STATISTICS = 100;
+    private WaitStatistics iWaitStatistics = new WaitStatistics();
+    private Map<Long, WaitStatistics> iIdWaitStatistics = new HashMap<Long, WaitStatistics>();
 
     public MultiLock() {
     	iLog = LogFactory.getLog(MultiLock.class.getName() + ".lock");
@@ -53,13 +67,16 @@ public class MultiLock {
     	iLog = LogFactory.getLog(MultiLock.class.getName() + ".lock[" + session.toCompactString() + "]");
     }
     
-	private Condition hasLock(Collection<Long> ids) {
-		if (iAllLocked != null) return iAllLocked;
-		for (Long id: ids) {
-			Condition c = iIndividualLocks.get(id);
-			if (c != null) return c;
-		}
-		return null;
+	private LockEntry acquireEntry(Long id) {
+		return iIndividualLocks.compute(id, (k, e) -> {
+			if (e == null) e = new LockEntry();
+			e.iUsage ++;
+			return e;
+		});
+	}
+	
+	private void releaseEntry(Long id) {
+		iIndividualLocks.computeIfPresent(id, (k, e) -> (--e.iUsage <= 0 ? null : e));
 	}
 	
 	public Unlock lock(Long... ids) {
@@ -70,107 +87,153 @@ public class MultiLock {
 	}
 	
 	public UnlockAll lockAll() {
-		iLock.lock();
-		try {
-			iLog.debug("Locking all ...");
-			while (iAllLocked != null)
-				iAllLocked.awaitUninterruptibly();
-			iAllLocked = iLock.newCondition();
-			while (!iIndividualLocks.isEmpty()) {
-				Condition otherCondition = iIndividualLocks.values().iterator().next();
-				otherCondition.awaitUninterruptibly();
+		iLog.debug("Locking all ...");
+		long stamp = iGlobalLock.writeLock();
+		iLog.debug("Locked: all");
+		return new UnlockAll(stamp);
+	}
+	
+	public Unlock lock(Collection<Long> ids) {
+		if (ids == null || ids.isEmpty()) return new Unlock(ids, 0l, null);
+		iLog.debug("Locking " + ids + " ...");
+		long stamp = iGlobalLock.readLock();
+		List<LockEntry> entries = new ArrayList<LockEntry>(ids.size());
+		List<Long> sorted = new ArrayList<Long>(new TreeSet<Long>(ids));
+		for (Long id: sorted) {
+			LockEntry entry = acquireEntry(id);
+			if (!entry.iSemaphore.tryAcquire()) {
+				long t0 = System.currentTimeMillis();
+				entry.iSemaphore.acquireUninterruptibly();
+				recordWait(id, System.currentTimeMillis() - t0);
 			}
-			iLog.debug("Locked: all");
-			return new UnlockAll();
-		} finally {
-			iLock.unlock();
+			iLocked.add(id);
+			entries.add(entry);
 		}
+		iLog.debug("Locked: " + ids);
+		return new Unlock(sorted, stamp, entries);
 	}
 	
-	public void unlockAll() {
-		iLock.lock();
-		try {
-			iLog.debug("Unlocking all ...");
-			Condition allLocked = iAllLocked;
-			iAllLocked = null;
-			allLocked.signalAll();
-			iLog.debug("Unlocked: all");
-		} finally {
-			iLock.unlock();
+	private void unlock(List<Long> ids, long stamp, List<LockEntry> entries) {
+		if (ids == null || ids.isEmpty()) return;
+		iLog.debug("Unlocking " + ids + " ...");
+		for (int i = ids.size() - 1; i >= 0; i--) {
+			iLocked.remove(ids.get(i));
+			entries.get(i).iSemaphore.release();
+			releaseEntry(ids.get(i));
 		}
+		iGlobalLock.unlockRead(stamp);
+		iLog.debug("Unlocked: " + ids);
 	}
 	
-	public Unlock lock(Collection<Long> ids) {
-		iLock.lock();
-		try {
-			if (ids == null || ids.isEmpty()) return new Unlock(ids);
-			iLog.debug("Locking " + ids + " ...");
-			Condition otherCondition = null;
-			while ((otherCondition = hasLock(ids)) != null)
-				otherCondition.awaitUninterruptibly();
-			Condition myCondition = iLock.newCondition();
-			for (Long id: ids)
-				iIndividualLocks.put(id, myCondition);
-			iLog.debug("Locked: " + ids);
-			return new Unlock(ids);
-		} finally {
-			iLock.unlock();
+	private void recordWait(Long id, long waitTime) {
+		iWaitStatistics.record(waitTime);
+		synchronized (iIdWaitStatistics) {
+			WaitStatistics stats = iIdWaitStatistics.get(id);
+			if (stats == null) {
+				if (iIdWaitStatistics.size() >= MAX_WAIT_STATISTICS) {
+					// replace the id with the least total wait time, unless it has waited longer than this one
+					Map.Entry<Long, WaitStatistics> least = null;
+					for (Map.Entry<Long, WaitStatistics> e: iIdWaitStatistics.entrySet())
+						if (least == null || e.getValue().getTotalWaitTime() < least.getValue().getTotalWaitTime()) least = e;
+					if (least.getValue().getTotalWaitTime() >= waitTime) return;
+					iIdWaitStatistics.remove(least.getKey());
+				}
+				stats = new WaitStatistics();
+				iIdWaitStatistics.put(id, stats);
+			}
+			stats.record(waitTime);
 		}
 	}
 	
-	private void unlock(Collection<Long> ids) {
-		iLock.lock();
-		try {
-			if (ids == null || ids.isEmpty()) return;
-			iLog.debug("Unlocking " + ids + " ...");
-			Condition myCondition = null;
-			for (Long id: ids)
-				myCondition = iIndividualLocks.remove(id);
-			if (myCondition != null)
-				myCondition.signalAll();
-			iLog.debug("Unlocked: " + ids);
-		} finally {
-			iLock.unlock();
+	/** Waits of all the ids */
+	public WaitStatistics getWaitStatistics() {
+		return iWaitStatistics;
+	}
+	
+	/** Ids with the longest total wait time (ordered by the total wait time, the longest first) */
+	public Map<Long, WaitStatistics> getMostWaitedFor(int limit) {
+		List<Map.Entry<Long, WaitStatistics>> entries;
+		synchronized (iIdWaitStatistics) {
+			entries = new ArrayList<Map.Entry<Long, WaitStatistics>>(iIdWaitStatistics.entrySet());
+		}
+		entries.sort((a, b) -> Long.compare(b.getValue().getTotalWaitTime(), a.getValue().getTotalWaitTime()));
+		Map<Long, WaitStatistics> ret = new LinkedHashMap<Long, WaitStatistics>();
+		for (Map.Entry<Long, WaitStatistics> e: entries) {
+			if (ret.size() >= limit) break;
+			ret.put(e.getKey(), e.getValue());
 		}
+		return ret;
 	}
 	
 	public Set<Long> locked() {
-		iLock.lock();
-		try {
-			return new TreeSet<Long>(iIndividualLocks.keySet());
-		} finally {
-			iLock.unlock();
-		}
+		return new TreeSet<Long>(iLocked);
 	}
 	
 	public boolean isLocked(Long id) {
-		iLock.lock();
-		try {
-			return iIndividualLocks.containsKey(id);
-		} finally {
-			iLock.unlock();
+		return iLocked.contains(id);
+	}
+	
+	public static class WaitStatistics {
+		private AtomicLong iCount = new AtomicLong(0);
+		private AtomicLong iWaitTime = new AtomicLong(0), iMaxWaitTime = new AtomicLong(0);
+		
+		protected void record(long waitTime) {
+			iCount.incrementAndGet();
+			iWaitTime.addAndGet(waitTime);
+			iMaxWaitTime.accumulateAndGet(waitTime, Math::max);
+		}
+		
+		/** Number of lock acquisitions that had to wait */
+		public long getCount() { return iCount.get(); }
+		/** Total time spent waiting in milliseconds */
+		public long getTotalWaitTime() { return iWaitTime.get(); }
+		/** Average wait time in milliseconds */
+		public double getAverageWaitTime() { return iCount.get() == 0 ? 0.0 : ((double)iWaitTime.get()) / iCount.get(); }
+		/** Longest wait time in milliseconds */
+		public long getMaxWaitTime() { return iMaxWaitTime.get(); }
+		
+		@Override
+		public String toString() {
+			return getCount() + "x (" + getTotalWaitTime() + " ms total, " + Math.round(getAverageWaitTime()) + " ms avg, " + getMaxWaitTime() + " ms max)";
 		}
 	}
 	
+	private static class LockEntry {
+		private Semaphore iSemaphore = new Semaphore(1);
+		private int iUsage = 0;
+	}
+	
 	public class Unlock implements OnlineSectioningServer.Lock {
-		private Collection<Long> iIds;
+		private List<Long> iIds;
+		private long iStamp;
+		private List<LockEntry> iEntries;
 		
-		private Unlock(Collection<Long> ids) {
-			iIds = ids;
+		private Unlock(Collection<Long> ids, long stamp, List<LockEntry> entries) {
+			iIds = (ids == null ? null : new ArrayList<Long>(ids));
+			iStamp = stamp;
+			iEntries = entries;
 		}
 		
-		public void release() {
-			unlock(iIds);
+		public synchronized void release() {
+			List<Long> ids = iIds;
+			iIds = null;
+			unlock(ids, iStamp, iEntries);
 		}
 	}
 
 	public class UnlockAll implements OnlineSectioningServer.Lock {
+		private long iStamp;
 		
-		private UnlockAll() {
+		private UnlockAll(long stamp) {
+			iStamp = stamp;
 		}
 		
-		public void release() {
-			unlockAll();
+		public synchronized void release() {
+			if (iStamp == 0l) return;
+			iLog.debug("Unlocking all ...");
+			iGlobalLock.unlockWrite(iStamp);
+			iStamp = 0l;
+			iLog.debug("Unlocked: all");
 		}
 	}
 
@@ -222,13 +285,13 @@ public class MultiLock {
 									Thread.sleep(ToolBox.random(5000));
 								} catch (InterruptedException e) {}
 								System.out.println(Thread.currentThread().getName() + "Locking all...");
-								lock.lockAll();
+								UnlockAll unlock = lock.lockAll();
 								System.out.println(Thread.currentThread().getName() + "All locked.");
 								try {
 									Thread.sleep(ToolBox.random(1000));
 								} catch (InterruptedException e) {}
 								System.out.println(Thread.currentThread().getName() + "Unlocking all.");
-								lock.unlockAll();
+								unlock.release();
 								System.out.println(Thread.currentThread().getName() + "All unlocked.");
 							}
 						} catch (Exception e) {
@@ -19,15 +19,26 @@
 */
 package org.unitime.timetable.onlinesectioning;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,22 +48,35 @@ import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningConstants;
 import org.unitime.timetable.gwt.server.DayCode;
 import org.unitime.timetable.model.Session;
-import org.unitime.timetable.model.Student;
 import org.unitime.timetable.model.dao.OnlineSectioningLogDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao.StudentDAO;
+import org.unitime.timetable.util.CalendarFeedCache;
 
 /**
+ * Online sectioning log writer.<br>
+ * Recorded actions are put in a lock-free queue, the logger thread persists them in batches every
+ * unitime.sectioning.log.flushInterval seconds (or sooner, when unitime.sectioning.log.batchSize actions are waiting).
+ * When a log file is configured, the actions are also written into the file by the logger thread, either in the
+ * protobuf text format or, when unitime.sectioning.log.file.binary is set, as length-delimited binary protobuf messages.
+ * Both queues are bounded (unitime.sectioning.log.limit and unitime.sectioning.log.file.limit), actions over the limit are dropped and counted.
+ * 
  * @author Tomas Muller
  */
 public class OnlineSectioningLogger extends Thread {
 	private static Log sLog = LogFactory.getLog(OnlineSectioningLogger.class);
 	protected static StudentSectioningConstants CONST = Localization.create(StudentSectioningConstants.class);
-	private List<OnlineSectioningLog.Action> iActions = new Vector<OnlineSectioningLog.Action>();
-	private boolean iActive = false;
+	private Queue<OnlineSectioningLog.Action> iActions = new ConcurrentLinkedQueue<OnlineSectioningLog.Action>();
+	private AtomicInteger iActionsSize = new AtomicInteger(0);
+	private Queue<OnlineSectioningLog.Action> iFileActions = null;
+	private AtomicInteger iFileActionsSize = new AtomicInteger(0);
+	private AtomicInteger iDropped = new AtomicInteger(0), iFileDropped = new AtomicInteger(0);
+	private volatile boolean iActive = false;
 	private boolean iEnabled = false;
-	private int iLogLimit = -1;
+	private int iLogLimit = -1, iFileLimit = -1;
+	private int iBatchSize = 100;
+	private long iFlushInterval = 60000;
 	private PrintWriter iOut = null;
+	private OutputStream iBinaryOut = null;
 	
 	private static OnlineSectioningLogger sInstance = null;
 	
@@ -84,9 +108,17 @@ public class OnlineSectioningLogger extends Thread {
 		setDaemon(true);
 		iEnabled = ApplicationProperty.OnlineSchedulingLoggingEnabled.isTrue(); 
 		iLogLimit = ApplicationProperty.OnlineSchedulingLogLimit.intValue();
+		iFileLimit = ApplicationProperty.OnlineSchedulingLogFileLimit.intValue();
+		iBatchSize = Math.max(1, ApplicationProperty.OnlineSchedulingLogBatchSize.intValue());
+		iFlushInterval = 1000l * Math.max(1, ApplicationProperty.OnlineSchedulingLogFlushInterval.intValue());
 		try {
-			if (ApplicationProperty.OnlineSchedulingLogFile.value() != null)
-				iOut = new PrintWriter(new FileWriter(new File(ApplicationProperty.OnlineSchedulingLogFile.value()), true));
+			if (ApplicationProperty.OnlineSchedulingLogFile.value() != null) {
+				if (ApplicationProperty.OnlineSchedulingLogFileBinary.isTrue())
+					iBinaryOut = new BufferedOutputStream(new FileOutputStream(new File(ApplicationProperty.OnlineSchedulingLogFile.value()), true));
+				else
+					iOut = new PrintWriter(new FileWriter(new File(ApplicationProperty.OnlineSchedulingLogFile.value()), true));
+				iFileActions = new ConcurrentLinkedQueue<OnlineSectioningLog.Action>();
+			}
 		} catch (IOException e) {
 			sLog.warn("Unable to create sectioning log: " + e.getMessage(), e);
 		}
@@ -97,22 +129,113 @@ public class OnlineSectioningLogger extends Thread {
 	public boolean isActive() { return iActive; }
 
 	public void record(OnlineSectioningLog.Log log) {
-		if (log == null || !isEnabled() || !isActive()) return;
+		if (log == null) return;
+		invalidateCalendarFeeds(log);
+		if (!isEnabled() || !isActive()) return;
 		for (OnlineSectioningLog.Action action: log.getActionList()) {
 			if (action.hasStartTime() && action.hasStudent() && action.hasOperation() && action.hasSession() && ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation())
 				&& ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation() + "." + (action.hasResult() ? action.getResult().name() : "NULL"))) {
-				synchronized (iActions) {
-					if (iLogLimit <= 0 || iActions.size() < iLogLimit)
-						iActions.add(action);
+				int size = iActionsSize.incrementAndGet();
+				if (iLogLimit <= 0 || size <= iLogLimit) {
+					iActions.offer(action);
+				} else {
+					iActionsSize.decrementAndGet();
+					iDropped.incrementAndGet();
 				}
-				if (iOut != null) {
-					synchronized (iOut) {
-						iOut.print(OnlineSectioningLog.Log.newBuilder().addAction(action).build().toString());
-						iOut.flush();
+				if (iFileActions != null) {
+					int fileSize = iFileActionsSize.incrementAndGet();
+					if (iFileLimit <= 0 || fileSize <= iFileLimit) {
+						iFileActions.offer(action);
+					} else {
+						iFileActionsSize.decrementAndGet();
+						iFileDropped.incrementAndGet();
 					}
+					if (fileSize == iBatchSize)
+						LockSupport.unpark(this);
+				}
+				if (size == iBatchSize)
+					LockSupport.unpark(this);
+			}
+		}
+	}
+	
+	/**
+	 * Invalidate cached calendar feeds of students whose enrollments have been stored.
+	 * The logger runs where the action was executed (which is often a remote solver server), so the feeds are
+	 * invalidated on all the web servers of the cluster.
+	 */
+	protected void invalidateCalendarFeeds(OnlineSectioningLog.Log log) {
+		List<String> dependencies = null;
+		for (OnlineSectioningLog.Action action: log.getActionList()) {
+			if (!action.hasStudent()) continue;
+			for (OnlineSectioningLog.Enrollment enrollment: action.getEnrollmentList()) {
+				if (enrollment.getType() == OnlineSectioningLog.Enrollment.EnrollmentType.STORED) {
+					if (dependencies == null) dependencies = new ArrayList<String>();
+					if (action.getStudent().hasUniqueId())
+						dependencies.add("student:" + action.getStudent().getUniqueId());
+					if (action.getStudent().hasExternalId())
+						dependencies.add("user:" + action.getStudent().getExternalId());
+					break;
 				}
 			}
 		}
+		if (dependencies != null)
+			CalendarFeedCache.notifyChanged(dependencies);
+	}
+	
+	/** Number of actions waiting to be persisted */
+	public int getQueueSize() {
+		return iActionsSize.get();
+	}
+	
+	private List<OnlineSectioningLog.Action> takeActions() {
+		List<OnlineSectioningLog.Action> actions = new ArrayList<OnlineSectioningLog.Action>();
+		OnlineSectioningLog.Action action;
+		while ((action = iActions.poll()) != null) {
+			iActionsSize.decrementAndGet();
+			actions.add(action);
+		}
+		return actions;
+	}
+	
+	private void writeFile() {
+		if (iFileActions == null) return;
+		int dropped = iFileDropped.getAndSet(0);
+		if (dropped > 0)
+			sLog.warn("The limit of " + iFileLimit + " unwritten log messages was reached, " + dropped + " messages have not been written in the log file.");
+		try {
+			OnlineSectioningLog.Action action;
+			while ((action = iFileActions.poll()) != null) {
+				iFileActionsSize.decrementAndGet();
+				if (iBinaryOut != null)
+					action.writeDelimitedTo(iBinaryOut);
+				else if (iOut != null)
+					iOut.print(OnlineSectioningLog.Log.newBuilder().addAction(action).build().toString());
+			}
+			if (iBinaryOut != null) iBinaryOut.flush();
+			if (iOut != null) iOut.flush();
+		} catch (IOException e) {
+			sLog.warn("Failed to write sectioning log: " + e.getMessage(), e);
+		}
+	}
+	
+	private Map<Long, String> getStudentExternalIds(org.hibernate.Session hibSession, List<OnlineSectioningLog.Action> actions) {
+		Set<Long> studentIds = new HashSet<Long>();
+		for (OnlineSectioningLog.Action q: actions)
+			if ((!q.getStudent().hasExternalId() || q.getStudent().getExternalId().isEmpty()) && q.getStudent().hasUniqueId())
+				studentIds.add(q.getStudent().getUniqueId());
+		Map<Long, String> ret = new HashMap<Long, String>();
+		if (studentIds.isEmpty()) return ret;
+		List<Long> ids = new ArrayList<Long>(studentIds);
+		for (int i = 0; i < ids.size(); i += 1000) {
+			for (Object[] o: hibSession.createQuery(
+					"select s.uniqueId, s.externalUniqueId from Student s where s.uniqueId in :studentIds", Object[].class)
+					.setParameterList("studentIds", ids.subList(i, Math.min(i + 1000, ids.size())), Long.class)
+					.list()) {
+				if (o[1] != null) ret.put((Long)o[0], (String)o[1]);
+			}
+		}
+		return ret;
 	}
 	
 	protected static String getRequestMessage(OnlineSectioningLog.Action action) {
@@ -249,35 +372,36 @@ public class OnlineSectioningLogger extends Thread {
 		try {
 			iActive = true;
 			while (true) {
-				try {
-					sleep(60000);
-				} catch (InterruptedException e) {
-				}
-				List<OnlineSectioningLog.Action> actionsToSave = null;
-				synchronized (iActions) {
-					if (!iActions.isEmpty()) {
-						actionsToSave = new ArrayList<OnlineSectioningLog.Action>(iActions);
-						iActions.clear();
-					}
+				long wakeUp = System.currentTimeMillis() + iFlushInterval;
+				while (iActive && iActionsSize.get() < iBatchSize && iFileActionsSize.get() < iBatchSize) {
+					long wait = wakeUp - System.currentTimeMillis();
+					if (wait <= 0) break;
+					LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+					if (interrupted() && !iActive) break;
 				}
+				writeFile();
+				List<OnlineSectioningLog.Action> actionsToSave = takeActions();
 				try {
-					if (actionsToSave != null) {
+					if (!actionsToSave.isEmpty()) {
 						sLog.debug("Persisting " + actionsToSave.size() + " actions...");
-						if (iLogLimit > 0 && actionsToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
+						int dropped = iDropped.getAndSet(0);
+						if (dropped > 0)
+							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, " + dropped + " messages have been dropped.");
 						org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
 						hibSession.setCacheMode(CacheMode.IGNORE);
+						hibSession.setJdbcBatchSize(iBatchSize);
 						try {
 							Hashtable<Long, Session> sessions = new Hashtable<Long, Session>();
+							Map<Long, String> externalIds = getStudentExternalIds(hibSession, actionsToSave);
+							List<org.unitime.timetable.model.OnlineSectioningLog> batch = new ArrayList<org.unitime.timetable.model.OnlineSectioningLog>();
 							for (OnlineSectioningLog.Action q: actionsToSave) {
 								org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
 								log.setAction(q.toByteArray());
 								log.setOperation(q.getOperation());
 								String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
 								if (studentExternalId == null || studentExternalId.isEmpty()) {
-									Student student = StudentDAO.getInstance().get(q.getStudent().getUniqueId(), hibSession);
-									if (student == null) continue;
-									studentExternalId = student.getExternalUniqueId();
+									studentExternalId = externalIds.get(q.getStudent().getUniqueId());
+									if (studentExternalId == null) continue;
 								}
 								log.setStudent(studentExternalId);
 								log.setTimeStamp(new Date(q.getStartTime()));
@@ -319,6 +443,13 @@ public class OnlineSectioningLogger extends Thread {
 								}
 								log.setSession(session);
 								hibSession.persist(log);
+								batch.add(log);
+								if (batch.size() >= iBatchSize) {
+									hibSession.flush();
+									for (org.unitime.timetable.model.OnlineSectioningLog l: batch)
+										hibSession.evict(l);
+									batch.clear();
+								}
 							}
 							hibSession.flush();
 						} finally {
@@ -334,8 +465,15 @@ public class OnlineSectioningLogger extends Thread {
 			sLog.error("Online Sectioning Logger failed: " + t.getMessage(), t);
 		} finally {
 			iActive = false;
+			writeFile();
 			if (iOut != null) { iOut.flush(); iOut.close(); }
+			if (iBinaryOut != null) {
+				try {
+					iBinaryOut.flush(); iBinaryOut.close();
+				} catch (IOException e) {}
+			}
 		}
-		sLog.info("Online Sectioning Logger is down.");	}
+		sLog.info("Online Sectioning Logger is down.");
+	}
 
 }
@@ -47,60 +47,60 @@ public class XAreaClassificationMajor implements Serializable, Externalizable, C
 	}
 
     public XAreaClassificationMajor(String area, String classification, String major) {
-        iAreaCode = area;
-        iClassificationCode = classification;
-        iMajorCode = major;
+        iAreaCode = XDictionary.intern(area);
+        iClassificationCode = XDictionary.intern(classification);
+        iMajorCode = XDictionary.intern(major);
     }
     
     public XAreaClassificationMajor(StudentAreaClassificationMinor acm) {
-        iAreaCode = acm.getAcademicArea().getAcademicAreaAbbreviation();
-        iAreaLabel = acm.getAcademicArea().getTitle();
-        iClassificationCode = acm.getAcademicClassification().getCode();
-        iClassificationLabel = acm.getAcademicClassification().getName();
-        iMajorCode = acm.getMinor().getCode();
-        iMajorLabel = acm.getMinor().getName();
+        iAreaCode = XDictionary.intern(acm.getAcademicArea().getAcademicAreaAbbreviation());
+        iAreaLabel = XDictionary.intern(acm.getAcademicArea().getTitle());
+        iClassificationCode = XDictionary.intern(acm.getAcademicClassification().getCode());
+        iClassificationLabel = XDictionary.intern(acm.getAcademicClassification().getName());
+        iMajorCode = XDictionary.intern(acm.getMinor().getCode());
+        iMajorLabel = XDictionary.intern(acm.getMinor().getName());
     }
     
     public XAreaClassificationMajor(StudentAreaClassificationMajor acm) {
-        iAreaCode = acm.getAcademicArea().getAcademicAreaAbbreviation();
-        iAreaLabel = acm.getAcademicArea().getTitle();
-        iClassificationCode = acm.getAcademicClassification().getCode();
-        iClassificationLabel = acm.getAcademicClassification().getName();
-        iMajorCode = acm.getMajor().getCode();
-        iMajorLabel = acm.getMajor().getName();
+        iAreaCode = XDictionary.intern(acm.getAcademicArea().getAcademicAreaAbbreviation());
+        iAreaLabel = XDictionary.intern(acm.getAcademicArea().getTitle());
+        iClassificationCode = XDictionary.intern(acm.getAcademicClassification().getCode());
+        iClassificationLabel = XDictionary.intern(acm.getAcademicClassification().getName());
+        iMajorCode = XDictionary.intern(acm.getMajor().getCode());
+        iMajorLabel = XDictionary.intern(acm.getMajor().getName());
         if (acm.getConcentration() != null) {
-        	iConcentrationCode = acm.getConcentration().getCode();
-        	iConcentrationLabel = acm.getConcentration().getName();
+        	iConcentrationCode = XDictionary.intern(acm.getConcentration().getCode());
+        	iConcentrationLabel = XDictionary.intern(acm.getConcentration().getName());
         }
         if (acm.getDegree() != null) {
-        	iDegreeCode = acm.getDegree().getReference();
-        	iDegreeLabel = acm.getDegree().getLabel();
+        	iDegreeCode = XDictionary.intern(acm.getDegree().getReference());
+        	iDegreeLabel = XDictionary.intern(acm.getDegree().getLabel());
         }
         if (acm.getProgram() != null) {
-        	iProgramCode = acm.getProgram().getReference();
-        	iProgramLabel = acm.getProgram().getLabel();
+        	iProgramCode = XDictionary.intern(acm.getProgram().getReference());
+        	iProgramLabel = XDictionary.intern(acm.getProgram().getLabel());
         }
         if (acm.getCampus() != null) {
-        	iCampusCode = acm.getCampus().getReference();
-        	iCampusLabel = acm.getCampus().getLabel();
+        	iCampusCode = XDictionary.intern(acm.getCampus().getReference());
+        	iCampusLabel = XDictionary.intern(acm.getCampus().getLabel());
         }
         if (acm.getWeight() != null)
         	iWeight = acm.getWeight();
     }
     
     public XAreaClassificationMajor(AreaClassificationMajor acm) {
-    	iAreaCode = acm.getArea();
-    	iAreaLabel = acm.getAreaName();
-        iClassificationCode = acm.getClassification();
-        iClassificationLabel = acm.getClassificationName();
-        iMajorCode = acm.getMajor();
-        iMajorLabel = acm.getMajorName();
-        iConcentrationCode = acm.getConcentration();
-        iConcentrationLabel = acm.getConcentrationName();
-        iDegreeCode = acm.getDegree();
-        iDegreeLabel = acm.getDegreeName();
-        iProgramCode = acm.getProgram();
-        iProgramLabel = acm.getProgramName();
+    	iAreaCode = XDictionary.intern(acm.getArea());
+    	iAreaLabel = XDictionary.intern(acm.getAreaName());
+        iClassificationCode = XDictionary.intern(acm.getClassification());
+        iClassificationLabel = XDictionary.intern(acm.getClassificationName());
+        iMajorCode = XDictionary.intern(acm.getMajor());
+        iMajorLabel = XDictionary.intern(acm.getMajorName());
+        iConcentrationCode = XDictionary.intern(acm.getConcentration());
+        iConcentrationLabel = XDictionary.intern(acm.getConcentrationName());
+        iDegreeCode = XDictionary.intern(acm.getDegree());
+        iDegreeLabel = XDictionary.intern(acm.getDegreeName());
+        iProgramCode = XDictionary.intern(acm.getProgram());
+        iProgramLabel = XDictionary.intern(acm.getProgramName());
         iWeight = acm.getWeight();
     }
 
@@ -161,20 +161,20 @@ public class XAreaClassificationMajor implements Serializable, Externalizable, C
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		iAreaCode = (String)in.readObject();
-		iAreaLabel = (String)in.readObject();
-		iClassificationCode = (String)in.readObject();
-		iClassificationLabel = (String)in.readObject();
-		iMajorCode = (String)in.readObject();
-		iMajorLabel = (String)in.readObject();
-		iConcentrationCode = (String)in.readObject();
-		iConcentrationLabel = (String)in.readObject();
-		iDegreeCode = (String)in.readObject();
-		iDegreeLabel = (String)in.readObject();
-		iProgramCode = (String)in.readObject();
-		iProgramLabel = (String)in.readObject();
-		iCampusCode = (String)in.readObject();
-		iCampusLabel = (String)in.readObject();
+		iAreaCode = XDictionary.intern((String)in.readObject());
+		iAreaLabel = XDictionary.intern((String)in.readObject());
+		iClassificationCode = XDictionary.intern((String)in.readObject());
+		iClassificationLabel = XDictionary.intern((String)in.readObject());
+		iMajorCode = XDictionary.intern((String)in.readObject());
+		iMajorLabel = XDictionary.intern((String)in.readObject());
+		iConcentrationCode = XDictionary.intern((String)in.readObject());
+		iConcentrationLabel = XDictionary.intern((String)in.readObject());
+		iDegreeCode = XDictionary.intern((String)in.readObject());
+		iDegreeLabel = XDictionary.intern((String)in.readObject());
+		iProgramCode = XDictionary.intern((String)in.readObject());
+		iProgramLabel = XDictionary.intern((String)in.readObject());
+		iCampusCode = XDictionary.intern((String)in.readObject());
+		iCampusLabel = XDictionary.intern((String)in.readObject());
 		iWeight = in.readDouble();
 	}
 
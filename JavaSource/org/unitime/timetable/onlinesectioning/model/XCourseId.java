@@ -53,17 +53,17 @@ public class XCourseId implements Serializable, Comparable<XCourseId>, Externali
 	public XCourseId(CourseOffering course) {
 		iOfferingId = course.getInstructionalOffering().getUniqueId();
 		iCourseId = course.getUniqueId();
-		iSubjectArea = course.getSubjectAreaAbbv().trim();
-		iCourseNumber = course.getCourseNbr().trim();
-		iTitle = (course.getTitle() == null ? null : course.getTitle().trim());
-		iType = (course.getCourseType() == null ? null : course.getCourseType().getReference());
+		iSubjectArea = XDictionary.intern(course.getSubjectAreaAbbv().trim());
+		iCourseNumber = XDictionary.intern(course.getCourseNbr().trim());
+		iTitle = (course.getTitle() == null ? null : XDictionary.intern(course.getTitle().trim()));
+		iType = (course.getCourseType() == null ? null : XDictionary.intern(course.getCourseType().getReference()));
 	}
 	
 	public XCourseId(Long offeringId, Long courseId, String subjectArea, String courseNumber) {
 		iOfferingId = offeringId;
 		iCourseId = courseId;
-		iSubjectArea = subjectArea;
-		iCourseNumber = courseNumber;
+		iSubjectArea = XDictionary.intern(subjectArea);
+		iCourseNumber = XDictionary.intern(courseNumber);
 	}
 	
 	public XCourseId(XCourseId course) {
@@ -186,11 +186,11 @@ public class XCourseId implements Serializable, Comparable<XCourseId>, Externali
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		iOfferingId = in.readLong();
 		iCourseId = in.readLong();
-		iSubjectArea = (String)in.readObject();
-		iCourseNumber = (String)in.readObject();
-		iTitle = (String)in.readObject();
+		iSubjectArea = XDictionary.intern((String)in.readObject());
+		iCourseNumber = XDictionary.intern((String)in.readObject());
+		iTitle = XDictionary.intern((String)in.readObject());
 		iHasUniqueName = in.readBoolean();
-		iType = (String)in.readObject();
+		iType = XDictionary.intern((String)in.readObject());
 	}
 
 	@Override
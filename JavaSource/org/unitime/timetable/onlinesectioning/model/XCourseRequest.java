@@ -70,7 +70,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
  */
 public class XCourseRequest extends XRequest {
 	private static final long serialVersionUID = 1L;
-	private List<XCourseId> iCourseIds = new ArrayList<XCourseId>();
+	private ArrayList<XCourseId> iCourseIds = new ArrayList<XCourseId>(1);
     private boolean iWaitlist = false;
     private boolean iNoSub = false;
     private Date iTimeStamp = null;
@@ -175,6 +175,7 @@ public class XCourseRequest extends XRequest {
         }
         if (demand.getWaitListSwapWithCourseOffering() != null)
         	iWaitListSwapWithCourseOffering = new XCourseId(demand.getWaitListSwapWithCourseOffering());
+        iCourseIds.trimToSize();
     }
     
     public XCourseRequest(Student student, CourseOffering course, int priority, OnlineSectioningHelper helper, Collection<StudentClassEnrollment> classes) {
@@ -713,6 +714,7 @@ public class XCourseRequest extends XRequest {
     	iCourseIds.clear();
     	for (int i = 0; i < nrCourses; i++)
     		iCourseIds.add(new XCourseId(in));
+    	iCourseIds.trimToSize();
     	
     	iWaitlist = in.readBoolean();
     	iNoSub = in.readBoolean();
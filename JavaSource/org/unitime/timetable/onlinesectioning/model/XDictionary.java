@@ -0,0 +1,74 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Dictionary of strings that are repeated many times across the online sectioning model
+ * (e.g., academic area, classification and major codes and labels, student group names, subject areas and course numbers).
+ * All students of the same area, major or group share the same string instance instead of each holding its own copy
+ * (which is what happens when the model is loaded from the database or de-serialized from a cluster cache).<br>
+ * Only values with a limited number of distinct instances should be placed in the dictionary, not student names, emails, or external ids.<br>
+ * The dictionary only holds weak references, so a string is dropped once it is no longer used by any loaded server.
+ * It is also cleared when the last online sectioning server is unloaded (see {@link #clear()}).
+ *
+ * @author agent
+ */
+public class XDictionary {
+	private static Map<String, WeakReference<String>> sStrings = new WeakHashMap<String, WeakReference<String>>();
+
+	/** Return the shared instance of the given string, null when null */
+	public static synchronized String intern(String value) {
+		if (value == null) return null;
+		WeakReference<String> ref = sStrings.get(value);
+		String ret = (ref == null ? null : ref.get());
+		if (ret != null) return ret;
+		sStrings.put(value, new WeakReference<String>(value));
+		return value;
+	}
+
+	/** Number of strings in the dictionary */
+	public static synchronized int size() {
+		return sStrings.size();
+	}
+
+	/** All strings in the dictionary (a copy) */
+	public static synchronized Collection<String> getStrings() {
+		List<String> ret = new ArrayList<String>(sStrings.size());
+		for (WeakReference<String> ref: sStrings.values()) {
+			String value = ref.get();
+			if (value != null) ret.add(value);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Empty the dictionary. Strings that are already in use remain valid, they are just no longer shared with the newly interned ones.
+	 */
+	public static synchronized void clear() {
+		sStrings.clear();
+	}
+}
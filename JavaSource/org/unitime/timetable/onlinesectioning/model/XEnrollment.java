@@ -25,7 +25,6 @@ import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Set;
 
 
@@ -45,7 +44,7 @@ public class XEnrollment extends XCourseId implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private Long iStudentId = null;
 	private Long iConfigId = null;
-	private Set<Long> iSectionIds = new HashSet<Long>();
+	private XLongSet iSectionIds = new XLongSet();
     private Date iTimeStamp = null;
     private XApproval iApproval = null;
     private XReservationId iReservation = null;
@@ -235,8 +234,10 @@ public class XEnrollment extends XCourseId implements Serializable {
 		
 		iSectionIds.clear();
 		int nrSections = in.readInt();
+		long[] sectionIds = new long[nrSections];
 		for (int i = 0; i < nrSections; i++)
-			iSectionIds.add(in.readLong());
+			sectionIds[i] = in.readLong();
+		iSectionIds.addAll(sectionIds);
 		
 		iTimeStamp = (in.readBoolean() ? new Date(in.readLong()) : null);
 		iApproval = (in.readBoolean() ? new XApproval(in) : null);
@@ -0,0 +1,160 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of unique ids backed by a sorted array of primitive longs.<br>
+ * Used in place of a {@link java.util.HashSet} of {@link Long} for small sets of ids (e.g., sections of an enrollment):
+ * a set of three ids takes 40 bytes instead of about 250. Lookups are logarithmic, modifications linear in the size of the set.
+ * The iteration order is ascending. The set is not synchronized.
+ *
+ * @author agent
+ */
+public class XLongSet extends AbstractSet<Long> implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final long[] EMPTY = new long[0];
+	private long[] iIds = EMPTY;
+
+	public XLongSet() {}
+
+	public XLongSet(Collection<Long> ids) {
+		if (ids != null) addAll(ids);
+	}
+
+	@Override
+	public int size() {
+		return iIds.length;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return (o instanceof Long) && contains(((Long)o).longValue());
+	}
+
+	public boolean contains(long id) {
+		return Arrays.binarySearch(iIds, id) >= 0;
+	}
+
+	@Override
+	public boolean add(Long id) {
+		return add(id.longValue());
+	}
+
+	public boolean add(long id) {
+		int idx = Arrays.binarySearch(iIds, id);
+		if (idx >= 0) return false;
+		idx = -idx - 1;
+		long[] ids = new long[iIds.length + 1];
+		System.arraycopy(iIds, 0, ids, 0, idx);
+		ids[idx] = id;
+		System.arraycopy(iIds, idx, ids, idx + 1, iIds.length - idx);
+		iIds = ids;
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Long> ids) {
+		long[] array = new long[ids.size()];
+		int idx = 0;
+		for (Long id: ids)
+			array[idx++] = id;
+		return addAll(array);
+	}
+
+	public boolean addAll(long[] ids) {
+		if (ids.length == 0) return false;
+		long[] merged = Arrays.copyOf(iIds, iIds.length + ids.length);
+		System.arraycopy(ids, 0, merged, iIds.length, ids.length);
+		Arrays.sort(merged);
+		int unique = 0;
+		for (int i = 0; i < merged.length; i++)
+			if (unique == 0 || merged[unique - 1] != merged[i])
+				merged[unique++] = merged[i];
+		if (unique == iIds.length) return false;
+		iIds = (unique == merged.length ? merged : Arrays.copyOf(merged, unique));
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Long)) return false;
+		int idx = Arrays.binarySearch(iIds, (Long)o);
+		if (idx < 0) return false;
+		removeAt(idx);
+		return true;
+	}
+
+	private void removeAt(int idx) {
+		if (iIds.length == 1) {
+			iIds = EMPTY;
+		} else {
+			long[] ids = new long[iIds.length - 1];
+			System.arraycopy(iIds, 0, ids, 0, idx);
+			System.arraycopy(iIds, idx + 1, ids, idx, iIds.length - idx - 1);
+			iIds = ids;
+		}
+	}
+
+	@Override
+	public void clear() {
+		iIds = EMPTY;
+	}
+
+	/** Ids as an array (a copy) */
+	public long[] toLongArray() {
+		return iIds.clone();
+	}
+
+	@Override
+	public Iterator<Long> iterator() {
+		return new Iterator<Long>() {
+			private long[] iArray = iIds;
+			private int iNext = 0;
+			private boolean iCanRemove = false;
+
+			@Override
+			public boolean hasNext() {
+				return iNext < iArray.length;
+			}
+
+			@Override
+			public Long next() {
+				if (iNext >= iArray.length) throw new NoSuchElementException();
+				iCanRemove = true;
+				return iArray[iNext++];
+			}
+
+			@Override
+			public void remove() {
+				if (!iCanRemove) throw new IllegalStateException();
+				iCanRemove = false;
+				int idx = Arrays.binarySearch(iIds, iArray[iNext - 1]);
+				if (idx >= 0) removeAt(idx);
+			}
+		};
+	}
+}
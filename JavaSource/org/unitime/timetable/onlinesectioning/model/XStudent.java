@@ -115,7 +115,7 @@ public class XStudent extends XStudentId implements Externalizable {
 
     public XStudent(Student student, OnlineSectioningHelper helper, BitSet freeTimePattern, Date firstDay) {
     	super(student, helper);
-    	iStatus = student.getSectioningStatus() == null ? null : student.getSectioningStatus().getReference();
+    	iStatus = student.getSectioningStatus() == null ? null : XDictionary.intern(student.getSectioningStatus().getReference());
     	iEmail = student.getEmail();
     	iEmailTimeStamp = student.getScheduleEmailedDate() == null ? null : student.getScheduleEmailedDate();
     	iLastStudentChange = student.getLastChangedByStudent();
@@ -195,6 +195,7 @@ public class XStudent extends XStudentId implements Externalizable {
         iPin = student.getPin();
         iPinReleased = (student.isPinReleased() != null && student.isPinReleased().booleanValue());
         updatePreferences(student, firstDay);
+        compact();
     }
     
     public void updatePreferences(Student student, Date firstDay) {
@@ -234,7 +235,7 @@ public class XStudent extends XStudentId implements Externalizable {
     
     public XStudent(XStudent student) {
     	super(student);
-    	iStatus = student.getStatus();
+    	iStatus = XDictionary.intern(student.getStatus());
     	iEmail = student.getEmail();
     	iEmailTimeStamp = student.getEmailTimeStamp();
     	iLastStudentChange = student.getLastStudentChange();
@@ -261,7 +262,7 @@ public class XStudent extends XStudentId implements Externalizable {
     
     public XStudent(XStudent student, Collection<CourseDemand> demands, OnlineSectioningHelper helper, BitSet freeTimePattern) {
     	super(student);
-    	iStatus = student.getStatus();
+    	iStatus = XDictionary.intern(student.getStatus());
     	iEmail = student.getEmail();
     	iEmailTimeStamp = student.getEmailTimeStamp();
     	iLastStudentChange = student.getLastStudentChange();
@@ -324,7 +325,7 @@ public class XStudent extends XStudentId implements Externalizable {
     
     public XStudent(org.cpsolver.studentsct.model.Student student, Assignment<Request, Enrollment> assignment) {
     	super(student);
-    	iStatus = student.getStatus();
+    	iStatus = XDictionary.intern(student.getStatus());
     	iAllowDisabled = student.isAllowDisabled();
     	iEmailTimeStamp = (student.getEmailTimeStamp() == null ? null : new Date(student.getEmailTimeStamp()));
     	if (student.hasMaxCredit())
@@ -354,6 +355,7 @@ public class XStudent extends XStudentId implements Externalizable {
     	iClassEndDate = student.getClassLastDate();
     	iBackToBackPreference = student.getBackToBackPreference();
     	iModalityPreference = student.getModalityPreference();
+    	compact();
     }
     
     public String getPin() { return iPin; }
@@ -538,7 +540,7 @@ public class XStudent extends XStudentId implements Externalizable {
     /**
      * Set student status
      */
-    public void setStatus(String status) { iStatus = status; }
+    public void setStatus(String status) { iStatus = XDictionary.intern(status); }
     
     /**
      * Get last email time stamp (online sectioning only)
@@ -665,7 +667,7 @@ public class XStudent extends XStudentId implements Externalizable {
 		for (int i = 0; i < nrRequests; i++)
 			iRequests.add(in.readBoolean() ? new XCourseRequest(in) : new XFreeTimeRequest(in));
 		
-		iStatus = (String)in.readObject();
+		iStatus = XDictionary.intern((String)in.readObject());
 		iEmail = (String)in.readObject();
 		iEmailTimeStamp = (in.readBoolean() ? new Date(in.readLong()) : null);
 		iLastStudentChange = (in.readBoolean() ? new Date(in.readLong()) : null);
@@ -693,6 +695,7 @@ public class XStudent extends XStudentId implements Externalizable {
 		iClassEndDate = (Integer)in.readObject();
 		iBackToBackPreference = BackToBackPreference.values()[in.readInt()];
 		iModalityPreference = ModalityPreference.values()[in.readInt()];
+		compact();
 	}
 
 	@Override
@@ -762,29 +765,42 @@ public class XStudent extends XStudentId implements Externalizable {
 		out.writeInt(iModalityPreference.ordinal());
 	}
 	
+	/**
+	 * Release the unused capacity of the lists of the student (most students have just one or two majors, groups, or advisors).
+	 * Called at the end of the constructors that load the student and after de-serialization.
+	 */
+	protected void compact() {
+		trim(iMajors); trim(iMinors); trim(iGroups); trim(iAccomodations); trim(iRequests); trim(iInstructorAssignments); trim(iAdvisors);
+		if (iAdvisorRequests != null) trim(iAdvisorRequests);
+	}
+	
+	private static void trim(List<?> list) {
+		if (list instanceof ArrayList) ((ArrayList<?>)list).trimToSize();
+	}
+	
 	public static class XGroup implements Externalizable {
 		public String iType, iAbbreaviation, iTitle;
 		
 		public XGroup(StudentGroup g) {
-			iType = (g.getType() == null ? null: g.getType().getReference());
-			iAbbreaviation = g.getGroupAbbreviation();
-			iTitle = (g.getGroupName() == null ? null : g.getGroupName());
+			iType = (g.getType() == null ? null: XDictionary.intern(g.getType().getReference()));
+			iAbbreaviation = XDictionary.intern(g.getGroupAbbreviation());
+			iTitle = XDictionary.intern(g.getGroupName());
 		}
 		
 		public XGroup(StudentAccomodation a) {
-			iAbbreaviation = a.getAbbreviation();
-			iTitle = a.getName();
+			iAbbreaviation = XDictionary.intern(a.getAbbreviation());
+			iTitle = XDictionary.intern(a.getName());
 		}
 		
 		public XGroup(org.cpsolver.studentsct.model.StudentGroup g) {
-			iType = (g.getType() == null || g.getType().isEmpty() ? null : g.getType());
-			iAbbreaviation = g.getReference();
-			iTitle = (g.getName() == null ? null : g.getName());
+			iType = (g.getType() == null || g.getType().isEmpty() ? null : XDictionary.intern(g.getType()));
+			iAbbreaviation = XDictionary.intern(g.getReference());
+			iTitle = XDictionary.intern(g.getName());
 		}
 		
 		public XGroup(String abbv, String title) {
-			iAbbreaviation = abbv;
-			iTitle = title;
+			iAbbreaviation = XDictionary.intern(abbv);
+			iTitle = XDictionary.intern(title);
 		}
 		
 		public XGroup(ObjectInput in) throws IOException, ClassNotFoundException {
@@ -799,11 +815,11 @@ public class XStudent extends XStudentId implements Externalizable {
 		@Override
 		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 			if (in.readBoolean())
-				iType = (String)in.readObject();
+				iType = XDictionary.intern((String)in.readObject());
 			else
 				iType = null;
-			iAbbreaviation = (String)in.readObject();
-			iTitle = (String)in.readObject();
+			iAbbreaviation = XDictionary.intern((String)in.readObject());
+			iTitle = XDictionary.intern((String)in.readObject());
 		}
 
 		@Override
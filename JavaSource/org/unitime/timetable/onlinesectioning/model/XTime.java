@@ -52,7 +52,7 @@ public class XTime implements Serializable, Externalizable {
 	private int iLength;
 	private int iBreakTime = 0;
 	private int iDays;
-	private BitSet iWeeks = null;
+	private XWeekPattern iWeeks = null;
 	private Long iDatePatternId = null;
 	private String iDatePatternName = null;
 	
@@ -76,8 +76,8 @@ public class XTime implements Serializable, Externalizable {
 			iBreakTime = assignment.getTimePattern().getBreakTime();
 		}
 		iDatePatternId = assignment.getDatePattern().getUniqueId();
-		iDatePatternName = datePatternName(assignment, datePatternFormat);
-		iWeeks = assignment.getDatePattern().getPatternBitSet();
+		iDatePatternName = XDictionary.intern(datePatternName(assignment, datePatternFormat));
+		iWeeks = XWeekPattern.getInstance(assignment.getDatePattern().getPatternBitSet());
 	}
 	
 	public XTime(DatePattern pattern, String datePatternFormat) {
@@ -95,14 +95,15 @@ public class XTime implements Serializable, Externalizable {
     		Date last = pattern.getEndDate();
     		iDatePatternName = dpf.format(first) + (first.equals(last) ? "" : " - " + dpf.format(last));
     	}
-		iWeeks = pattern.getPatternBitSet();
+    	iDatePatternName = XDictionary.intern(iDatePatternName);
+		iWeeks = XWeekPattern.getInstance(pattern.getPatternBitSet());
 	}
 	
 	public XTime(FreeTime free, BitSet freeTimePattern) {
 		iSlot = free.getStartSlot();
 		iLength = free.getLength();
 		iDays = free.getDayCode();
-		iWeeks = freeTimePattern;
+		iWeeks = XWeekPattern.getInstance(freeTimePattern);
 	}
 	
 	public XTime(TimeLocation time) {
@@ -111,15 +112,16 @@ public class XTime implements Serializable, Externalizable {
 		iLength = time.getLength();
 		iBreakTime = time.getBreakTime();
 		iDatePatternId = time.getDatePatternId();
-		iDatePatternName = time.getDatePatternName();
-		iWeeks = time.getWeekCode();
+		iDatePatternName = XDictionary.intern(time.getDatePatternName());
+		iWeeks = XWeekPattern.getInstance(time.getWeekCode());
 	}
 	
 	public int getSlot() { return iSlot; }
 	public int getLength() { return iLength; }
 	public int getDays() { return iDays; }
 	public int getBreakTime() { return iBreakTime; }
-	public BitSet getWeeks() { return iWeeks; }
+	public BitSet getWeeks() { return iWeeks == null ? null : iWeeks.getWeeks(); }
+	public XWeekPattern getWeekPattern() { return iWeeks; }
 	public Long getDatePatternId() { return iDatePatternId; }
 	public String getDatePatternName() { return iDatePatternName; }
 	
@@ -153,7 +155,7 @@ public class XTime implements Serializable, Externalizable {
     }
     
     public boolean shareWeeks(XTime other) {
-    	return getWeeks() == null ? true : other.getWeeks() == null ? true : getWeeks().intersects(other.getWeeks());
+    	return iWeeks == null ? true : other.iWeeks == null ? true : iWeeks.intersects(other.iWeeks);
     }
     
     public boolean hasIntersection(XTime other) {
@@ -423,10 +425,10 @@ public class XTime implements Serializable, Externalizable {
 		iLength = in.readInt();
 		iBreakTime = in.readInt();
 		iDays = in.readInt();
-		iWeeks = (BitSet)in.readObject();
+		iWeeks = XWeekPattern.getInstance((BitSet)in.readObject());
 		iDatePatternId = in.readLong();
 		if (iDatePatternId < 0) iDatePatternId = null;
-		iDatePatternName = (String)in.readObject();
+		iDatePatternName = XDictionary.intern((String)in.readObject());
 	}
 
 	@Override
@@ -435,7 +437,7 @@ public class XTime implements Serializable, Externalizable {
 		out.writeInt(iLength);
 		out.writeInt(iBreakTime);
 		out.writeInt(iDays);
-		out.writeObject(iWeeks);
+		out.writeObject(getWeeks());
 		out.writeLong(iDatePatternId == null ? -1 : iDatePatternId);
 		out.writeObject(iDatePatternName);
 	}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical (shared) week pattern of {@link XTime}.<br>
+ * There is only one instance for each distinct pattern, so all the sections that use the same date pattern share the same bit set.
+ * Each instance has a unique index that is used to cache the results of the overlap checks between two patterns,
+ * making {@link XTime#shareWeeks(XTime)} a simple array lookup once the pair has been checked.
+ * The bit set of a pattern must not be modified.<br>
+ * The pool only holds weak references, so a pattern is dropped once it is no longer used by any loaded server.
+ * It is also cleared when the last online sectioning server is unloaded (see {@link #clear()}).
+ *
+ * @author agent
+ */
+public final class XWeekPattern {
+	private static final byte UNKNOWN = 0, DISJOINT = 1, OVERLAP = 2;
+	private static Pool sPool = new Pool();
+	
+	private final Pool iPool;
+	private final BitSet iWeeks;
+	private final int iIndex;
+	private final int iHashCode;
+	private final boolean iEmpty;
+	private volatile byte[] iOverlaps = new byte[0];
+	
+	private XWeekPattern(Pool pool, BitSet weeks, int index) {
+		iPool = pool;
+		iWeeks = weeks;
+		iIndex = index;
+		iHashCode = weeks.hashCode();
+		iEmpty = weeks.isEmpty();
+	}
+	
+	/**
+	 * Return the shared week pattern for the given bit set, null when null.
+	 * The given bit set is copied when the pattern is not known yet, so it can be modified afterwards.
+	 */
+	public static synchronized XWeekPattern getInstance(BitSet weeks) {
+		if (weeks == null) return null;
+		WeakReference<XWeekPattern> ref = sPool.iPatterns.get(weeks);
+		XWeekPattern pattern = (ref == null ? null : ref.get());
+		if (pattern != null) return pattern;
+		BitSet copy = (BitSet)weeks.clone();
+		pattern = new XWeekPattern(sPool, copy, sPool.iIndex++);
+		sPool.iPatterns.put(copy, new WeakReference<XWeekPattern>(pattern));
+		return pattern;
+	}
+	
+	/** Return the shared bit set for the given bit set, null when null */
+	public static BitSet intern(BitSet weeks) {
+		XWeekPattern pattern = getInstance(weeks);
+		return (pattern == null ? null : pattern.getWeeks());
+	}
+	
+	/** Number of distinct week patterns */
+	public static synchronized int size() {
+		return sPool.iPatterns.size();
+	}
+	
+	/**
+	 * Empty the pool. Patterns that are already in use remain valid, they are just no longer shared with the newly created ones.
+	 * A new pool is started, so the overlap caches (indexed by the pattern index) are never mixed between the old and the new patterns.
+	 */
+	public static synchronized void clear() {
+		sPool = new Pool();
+	}
+	
+	/** Shared bit set of the pattern, must not be modified */
+	public BitSet getWeeks() { return iWeeks; }
+	
+	public boolean isEmpty() { return iEmpty; }
+	
+	/**
+	 * True if the two patterns have a week (day) in common. The result is cached.
+	 * Concurrent calls may compute the same pair more than once, which is harmless as the result is always the same.
+	 * Patterns of different pools (see {@link #clear()}) are compared directly.
+	 */
+	public boolean intersects(XWeekPattern other) {
+		if (other == this) return !iEmpty;
+		if (other.iPool != iPool) return iWeeks.intersects(other.iWeeks);
+		byte[] overlaps = iOverlaps;
+		int index = other.iIndex;
+		if (index < overlaps.length) {
+			byte cached = overlaps[index];
+			if (cached != UNKNOWN) return cached == OVERLAP;
+		}
+		boolean ret = iWeeks.intersects(other.iWeeks);
+		if (index >= overlaps.length) {
+			overlaps = Arrays.copyOf(overlaps, Math.max(index + 1, iPool.iIndex));
+			iOverlaps = overlaps;
+		}
+		overlaps[index] = (ret ? OVERLAP : DISJOINT);
+		return ret;
+	}
+	
+	@Override
+	public int hashCode() {
+		return iHashCode;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (o == null || !(o instanceof XWeekPattern)) return false;
+		return iWeeks.equals(((XWeekPattern)o).iWeeks);
+	}
+	
+	@Override
+	public String toString() {
+		return iWeeks.toString();
+	}
+	
+	/** Known patterns (keyed by their own bit sets) and the next pattern index */
+	private static class Pool {
+		private Map<BitSet, WeakReference<XWeekPattern>> iPatterns = new WeakHashMap<BitSet, WeakReference<XWeekPattern>>();
+		private volatile int iIndex = 0;
+	}
+}
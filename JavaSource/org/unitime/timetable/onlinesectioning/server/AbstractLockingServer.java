@@ -25,8 +25,11 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.cpsolver.ifs.util.ToolBox;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
@@ -34,24 +37,30 @@ import org.unitime.timetable.onlinesectioning.MultiLock;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XDictionary;
 import org.unitime.timetable.onlinesectioning.model.XRequest;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.model.XWeekPattern;
 
 /**
  * @author Tomas Muller
  */
 public abstract class AbstractLockingServer extends AbstractServer {
+	private static AtomicInteger sLoadedServers = new AtomicInteger(0);
+	private AtomicBoolean iReleased = new AtomicBoolean(false);
 	private ReentrantReadWriteLock iLock = new ReentrantReadWriteLock();
 	private MultiLock iMultiLock;
 	private Map<Long, Lock> iOfferingLocks = new Hashtable<Long, Lock>();
 	
 	public AbstractLockingServer(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
+		sLoadedServers.incrementAndGet();
 	}
 	
 	protected AbstractLockingServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
 		super(session, allowAsyncCalls);
 		iMultiLock = new MultiLock(getAcademicSession());
+		sLoadedServers.incrementAndGet();
 	}
 	
 	@Override
@@ -60,6 +69,26 @@ public abstract class AbstractLockingServer extends AbstractServer {
 		super.load(context);
 	}
 	
+	@Override
+	public void unload() {
+		super.unload();
+		if (iMultiLock != null && iMultiLock.getWaitStatistics().getCount() > 0)
+			iLog.info("Lock wait statistics: " + iMultiLock.getWaitStatistics() + ", most waited for: " + ToolBox.dict2string(iMultiLock.getMostWaitedFor(20), 2));
+		releaseSharedModel();
+	}
+	
+	/**
+	 * To be called once the server is unloaded. When there is no other in-memory server loaded in this JVM,
+	 * the shared dictionaries of the model (see {@link XDictionary} and {@link XWeekPattern}) are cleared.
+	 */
+	protected void releaseSharedModel() {
+		if (iReleased.compareAndSet(false, true) && sLoadedServers.decrementAndGet() <= 0) {
+			iLog.info("Last in-memory server unloaded, clearing shared dictionaries (" + XDictionary.size() + " strings, " + XWeekPattern.size() + " week patterns).");
+			XDictionary.clear();
+			XWeekPattern.clear();
+		}
+	}
+	
 	@Override
 	public Lock readLock() {
 		if (iLock == null)
@@ -19,6 +19,7 @@
 */
 package org.unitime.timetable.onlinesectioning.server;
 
+import java.io.File;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.text.DecimalFormat;
@@ -32,7 +33,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -46,7 +48,6 @@ import org.cpsolver.studentsct.online.expectations.AvoidUnbalancedWhenNoExpectat
 import org.cpsolver.studentsct.online.expectations.OverExpectedCriterion;
 import org.cpsolver.studentsct.online.selection.StudentSchedulingAssistantWeights;
 import org.hibernate.CacheMode;
-import org.unitime.commons.hibernate.util.HibernateUtil;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
@@ -74,14 +75,17 @@ import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.custom.CourseDetailsProvider;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XDictionary;
 import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XTime;
 import org.unitime.timetable.onlinesectioning.updates.CheckAllOfferingsAction;
+import org.unitime.timetable.onlinesectioning.updates.LoadServerSnapshot;
 import org.unitime.timetable.onlinesectioning.updates.PersistExpectedSpacesAction;
 import org.unitime.timetable.onlinesectioning.updates.ReloadAllData;
+import org.unitime.timetable.onlinesectioning.updates.SaveServerSnapshot;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.DateUtils;
-import org.unitime.timetable.util.Formats;
 import org.unitime.timetable.util.MemoryCounter;
 
 /**
@@ -94,11 +98,11 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	private DataProperties iConfig = null;
 	private OnlineSectioningActionFactory iActionFactory = null;
 	
-	protected List<AsyncExecutor> iExecutors = new ArrayList<AsyncExecutor>();
-	private Queue<Runnable> iExecutorQueue = new LinkedList<Runnable>();
+	protected ServerExecutor iExecutor = null;
 	private HashSet<CacheElement<Long>> iOfferingsToPersistExpectedSpaces = new HashSet<CacheElement<Long>>();
 	private static ThreadLocal<LinkedList<OnlineSectioningHelper>> sHelper = new ThreadLocal<LinkedList<OnlineSectioningHelper>>();
 	protected Map<String, Object> iProperties = new HashMap<String, Object>();
+	private List<ChangeListener> iChangeListeners = new CopyOnWriteArrayList<ChangeListener>();
 	
 	public AbstractServer(OnlineSectioningServerContext context) throws SectioningException {
 		iConfig = new ServerConfig();
@@ -123,8 +127,8 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			iLog = LogFactory.getLog(OnlineSectioningServer.class.getName() + ".server[" + academicSession.toCompactString() + "]");
 			iProperties.put("AcademicSession", academicSession);
 			int asncPoolSize = ApplicationProperty.OnlineSchedulingServerAsyncPoolSize.intValue();
-			for (int i = 0; i < asncPoolSize; i++)
-				new AsyncExecutor(academicSession, 1 + i).start();
+			if (asncPoolSize > 0)
+				iExecutor = new ServerExecutor(academicSession, asncPoolSize, ApplicationProperty.OnlineSchedulingServerAsyncQueueSize.intValue(), iLog);
 		} finally {
 			hibSession.close();
 		}
@@ -147,25 +151,32 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		iProperties.put("AcademicSession", session);
 		if (allowAsyncCalls) {
 			int asncPoolSize = ApplicationProperty.OnlineSchedulingServerAsyncPoolSize.intValue();
-			for (int i = 0; i < asncPoolSize; i++)
-				new AsyncExecutor(session, 1 + i).start();
+			if (asncPoolSize > 0)
+				iExecutor = new ServerExecutor(session, asncPoolSize, ApplicationProperty.OnlineSchedulingServerAsyncQueueSize.intValue(), iLog);
 		}
 	}
 	
 	protected void load(OnlineSectioningServerContext context) throws SectioningException {
+		if (SaveServerSnapshot.isSupported(this)) {
+			File snapshot = SaveServerSnapshot.getSnapshotFile(getAcademicSession().getUniqueId());
+			if (snapshot != null && snapshot.exists())
+				setProperty("LoadFromSnapshot", Boolean.TRUE);
+		}
 		loadOnMaster(context);
 	}
 		
 	protected void loadOnMaster(OnlineSectioningServerContext context) throws SectioningException {
 		try {
 			setProperty("ReloadIsNeeded", Boolean.FALSE);
+			final ReloadAllData reloadAction = (Boolean.TRUE.equals(getProperty("LoadFromSnapshot", Boolean.FALSE)) ? createAction(LoadServerSnapshot.class) : createAction(ReloadAllData.class));
+			setProperty("LoadFromSnapshot", null);
 			final OnlineSectioningLog.Entity user = OnlineSectioningLog.Entity.newBuilder()
 					.setExternalId(StudentClassEnrollment.SystemChange.SYSTEM.name())
 					.setName(StudentClassEnrollment.SystemChange.SYSTEM.getName())
 					.setType(OnlineSectioningLog.Entity.EntityType.OTHER).build();
 			if (context.isWaitTillStarted()) {
 				try {
-					execute(createAction(ReloadAllData.class), user);
+					execute(reloadAction, user);
 				} catch (Throwable exception) {
 					iLog.error("Failed to load server: " + exception.getMessage(), exception);
 					throw exception;
@@ -186,7 +197,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 					return;
 				}
 				setProperty("ReloadingAllData", Boolean.TRUE);
-				execute(createAction(ReloadAllData.class), user, new ServerCallback<Boolean>() {
+				execute(reloadAction, user, new ServerCallback<Boolean>() {
 					@Override
 					public void onSuccess(Boolean result) {
 						if (getAcademicSession().isSectioningEnabled())
@@ -253,9 +264,42 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			clazz = clazz.getSuperclass();
 		}
 		iLog.info("Total Allocated " + df.format(total / 1024.0) + " kB (of " + df.format((rt.totalMemory() - rt.freeMemory()) / 1048576.0) + " MB), details: " + ToolBox.dict2string(info, 2));
+		logStudentMemUsage(df);
 		return total;
 	}
 	
+	/**
+	 * Students that are kept in memory, used by {@link #getMemUsage()} to estimate the memory footprint of a student.
+	 * Returns null when students are not kept in memory.
+	 */
+	protected Collection<XStudent> getStudentsInMemory() {
+		return null;
+	}
+	
+	/**
+	 * Log average memory footprint of a student (including course requests and enrollments), computed on a sample of up to 1000 students.
+	 * The strings of the {@link XDictionary} are shared and therefore counted separately.
+	 */
+	protected void logStudentMemUsage(DecimalFormat df) {
+		Collection<XStudent> students = getStudentsInMemory();
+		if (students == null || students.isEmpty()) return;
+		MemoryCounter mc = new MemoryCounter();
+		long dictionary = 0;
+		for (String value: XDictionary.getStrings()) {
+			dictionary += mc.deepSizeOfObject(value);
+			mc.ignore(value);
+		}
+		int step = Math.max(1, students.size() / 1000), index = 0, sample = 0;
+		long size = 0;
+		for (XStudent student: students) {
+			if ((index++ % step) != 0) continue;
+			size += mc.deepSizeOfObject(student);
+			sample ++;
+		}
+		iLog.info("Students: " + students.size() + ", " + df.format(((double)size) / sample) + " bytes per student (sample of " + sample + "), " +
+				"estimated total " + df.format(students.size() * ((double)size) / sample / 1048576.0) + " MB; dictionary: " + XDictionary.size() + " strings, " + df.format(dictionary / 1024.0) + " kB");
+	}
+	
 	private long estimate(MemoryCounter mc, Object obj) {
 		if (obj instanceof Map) {
 			Map map = (Map)obj;
@@ -327,6 +371,38 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	@Override
 	public AcademicSessionInfo getAcademicSession() { return getProperty("AcademicSession", null); }
 	
+	/**
+	 * Listener that is notified about every change of the in-memory data of the server.
+	 * The listener is called while the server holds the lock of the change, so it must return quickly.
+	 * The change is already frozen ({@link ServerChange#freeze()}), so it can be safely passed to another thread.
+	 */
+	public static interface ChangeListener {
+		public void changed(ServerChange change);
+	}
+	
+	public void addChangeListener(ChangeListener listener) {
+		iChangeListeners.add(listener);
+	}
+	
+	public void removeChangeListener(ChangeListener listener) {
+		iChangeListeners.remove(listener);
+	}
+	
+	protected boolean hasChangeListeners() {
+		return iChangeListeners != null && !iChangeListeners.isEmpty();
+	}
+	
+	/**
+	 * Notify change listeners (if there are any) about the given change, to be called by the implementations of the update methods
+	 * while the lock of the change is still held (the changed object is serialized here, before it can be modified again).
+	 */
+	protected void fireChange(ServerChange change) {
+		if (!hasChangeListeners()) return;
+		change.freeze();
+		for (ChangeListener listener: iChangeListeners)
+			listener.changed(change);
+	}
+	
 	@Override
 	public String getCourseDetails(Long courseId, CourseDetailsProvider provider) {
 		XCourse course = getCourse(courseId);
@@ -440,7 +516,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	
 	@Override
 	public <E> void execute(final OnlineSectioningAction<E> action, final OnlineSectioningLog.Entity user, final ServerCallback<E> callback) throws SectioningException {
-		if (iExecutors == null || iExecutors.isEmpty()) {
+		if (iExecutor == null || iExecutor.isShutdown()) {
 			try {
 				callback.onSuccess(execute(action, user));
 			} catch (Throwable t) {
@@ -449,8 +525,8 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			return;
 		}
 		final String locale = Localization.getLocale();
-		synchronized (iExecutorQueue) {
-			iExecutorQueue.offer(new Runnable() {
+		try {
+			iExecutor.execute(action.name(), getPriority(action, user), new Runnable() {
 				@Override
 				public void run() {
 					Localization.setLocale(locale);
@@ -466,49 +542,34 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 					return action.name();
 				}
 			});
-			iExecutorQueue.notify();
+		} catch (RejectedExecutionException e) {
+			callback.onFailure(new SectioningException(MSG.exceptionUnknown(e.getMessage()), e));
 		}
 	}
 	
-	public class AsyncExecutor extends Thread {
-		private boolean iStop = false;
-		private int iId;
-		
-		public AsyncExecutor(AcademicSessionInfo session, int id) {
-			iId = id;
-			setName("AsyncExecutor[" + session + "-" + id + "]");
-			setDaemon(true);
-			iExecutors.add(this);
-		}
-		
-		public void run() {
+	/**
+	 * Priority of an asynchronously executed action. It can be set using the [action name].Priority parameter,
+	 * defaults to background for actions executed by the system and to interactive for actions triggered by a user.
+	 */
+	protected ServerExecutor.Priority getPriority(OnlineSectioningAction<?> action, OnlineSectioningLog.Entity user) {
+		String priority = getConfig().getProperty(action.name() + ".Priority");
+		if (priority != null && !priority.isEmpty()) {
 			try {
-				ApplicationProperties.setSessionId(getAcademicSession().getUniqueId());
-				Runnable job;
-				while (!iStop) {
-					synchronized (iExecutorQueue) {
-						job = iExecutorQueue.poll();
-						if (job == null) {
-							try {
-								iLog.debug("Executor " + iId + " is waiting for a new job...");
-								iExecutorQueue.wait();
-							} catch (InterruptedException e) {}
-							continue;
-						}		
-					}
-					job.run();
-					if (HibernateUtil.closeCurrentThreadSessions())
-						iLog.debug("Job " + job + " did not close current-thread hibernate session.");
-				}
-				iLog.info("Executor " + iId + " stopped.");
-			} finally {
-				ApplicationProperties.setSessionId(null);
-				Localization.removeLocale();
-				Formats.removeFormats();
-				iExecutors.remove(this);
+				return ServerExecutor.Priority.valueOf(priority.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				iLog.warn("Unknown priority " + priority + " of " + action.name() + ".");
 			}
 		}
-		
+		if (user == null || StudentClassEnrollment.SystemChange.SYSTEM.name().equals(user.getExternalId()))
+			return ServerExecutor.Priority.BACKGROUND;
+		return ServerExecutor.Priority.INTERACTIVE;
+	}
+	
+	/**
+	 * Asynchronous execution statistics (by action name), null when asynchronous calls are not allowed
+	 */
+	public Map<String, ServerExecutor.ActionStatistics> getAsyncExecutionStatistics() {
+		return (iExecutor == null ? null : iExecutor.getStatistics());
 	}
 	
 	@Override
@@ -518,13 +579,17 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			iLog.info("There are " + offeringIds.size() + " offerings that need expected spaces persisted.");
 			execute(createAction(PersistExpectedSpacesAction.class).forOfferings(offeringIds), getSystemUser());
 		}
-		if (iExecutors != null) {
-			for (AsyncExecutor ex: iExecutors)
-				ex.iStop = true;
-			synchronized (iExecutorQueue) {
-				iExecutorQueue.notifyAll();
+		if (isReady() && SaveServerSnapshot.isSupported(this)) {
+			try {
+				execute(createAction(SaveServerSnapshot.class), getSystemUser());
+			} catch (Exception e) {
+				iLog.error("Failed to save server snapshot: " + e.getMessage(), e);
 			}
 		}
+		if (iExecutor != null) {
+			iExecutor.shutdown();
+			iLog.info("Asynchronous execution statistics: " + iExecutor + ", details: " + ToolBox.dict2string(iExecutor.getStatistics(), 2));
+		}
 	}
 
 	@Override
@@ -663,6 +728,9 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			setProperty("status-change.LockOfferings", "false");
 			setProperty("student-email.LockOfferings", "false");
 			setProperty("eligibility.LockOfferings", "false");
+			setProperty("check-offering.Priority", "BACKGROUND");
+			setProperty("persist-expectations.Priority", "BACKGROUND");
+			setProperty("critical-courses.Priority", "BACKGROUND");
 			
 			org.hibernate.Session hibSession = SessionDAO.getInstance().createNewSession();
 			try {
@@ -0,0 +1,525 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourse;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * In-memory online sectioning server that does not use the global server lock for lookups.<br>
+ * Students, offerings, and expectations are kept in concurrent hash maps. The list of course requests of an offering
+ * is never changed in place: it is replaced by a new (copy-on-write) list whenever a request is added or removed,
+ * so {@link #getRequests(Long)} can return the current list without copying it.
+ * Course name lookups use a separate read-write lock that is only write-locked when an offering is updated.<br>
+ * Updates only take the shared (read) lock of the server, so that they can run in parallel for different students
+ * and offerings (these are protected by the student and offering locks of the action), while
+ * {@link #lockAll()} and {@link #clearAll()} still exclude all of them.
+ * The request list and the enrollment aggregate ({@link XEnrollments}) of an offering are kept together in one immutable
+ * entry that is replaced atomically. The aggregate is created on the first {@link #getEnrollments(Long)} call after the
+ * requests of the offering have changed and then returned by all the following calls until the next change.<br>
+ * Use unitime.enrollment.server.class=org.unitime.timetable.onlinesectioning.server.ConcurrentInMemoryServer to enable.
+ *
+ * @author agent
+ */
+public class ConcurrentInMemoryServer extends AbstractLockingServer {
+	private ReentrantReadWriteLock iCourseLock = new ReentrantReadWriteLock();
+	private Map<Long, XCourseId> iCourseForId = new ConcurrentHashMap<Long, XCourseId>();
+	private Map<String, TreeSet<XCourseId>> iCourseForName = new ConcurrentHashMap<String, TreeSet<XCourseId>>();
+	private CourseSearchIndex iCourseSearchIndex = new CourseSearchIndex();
+
+	private Map<Long, XStudent> iStudentTable = new ConcurrentHashMap<Long, XStudent>();
+	private Map<Long, XOffering> iOfferingTable = new ConcurrentHashMap<Long, XOffering>();
+	private Map<Long, OfferingRequests> iOfferingRequests = new ConcurrentHashMap<Long, OfferingRequests>();
+	private Map<Long, XExpectations> iExpectations = new ConcurrentHashMap<Long, XExpectations>();
+	private Map<String, Set<Long>> iInstructedOfferings = new ConcurrentHashMap<String, Set<Long>>();
+
+	public ConcurrentInMemoryServer(OnlineSectioningServerContext context) throws SectioningException {
+		super(context);
+	}
+
+	private Lock courseReadLock() {
+		if (iCourseLock == null)
+			return new Lock() {
+				public void release() {}
+			};
+		iCourseLock.readLock().lock();
+		return new Lock() {
+			public void release() {
+				iCourseLock.readLock().unlock();
+			}
+		};
+	}
+
+	private Lock courseWriteLock() {
+		if (iCourseLock == null)
+			return new Lock() {
+				public void release() {}
+			};
+		iCourseLock.writeLock().lock();
+		return new Lock() {
+			public void release() {
+				iCourseLock.writeLock().unlock();
+			}
+		};
+	}
+
+	private void addRequest(Long offeringId, final XCourseRequest request) {
+		iOfferingRequests.compute(offeringId, (id, requests) -> {
+			List<XCourseRequest> ret = (requests == null ? new ArrayList<XCourseRequest>(1) : new ArrayList<XCourseRequest>(requests.getRequests()));
+			ret.add(request);
+			return new OfferingRequests(id, ret);
+		});
+	}
+
+	private void removeRequest(Long offeringId, final XCourseRequest request) {
+		iOfferingRequests.computeIfPresent(offeringId, (id, requests) -> {
+			if (!requests.getRequests().contains(request)) return requests;
+			List<XCourseRequest> ret = new ArrayList<XCourseRequest>(requests.getRequests());
+			ret.remove(request);
+			return new OfferingRequests(id, ret);
+		});
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
+		return findCourses(query, limit, matcher, new CourseComparator(query));
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher, Comparator<XCourseId> cmp) {
+		if (matcher != null) matcher.setServer(this);
+		Collection<XCourseId> byName, byTitle = null;
+		String queryInLowerCase = query.toLowerCase();
+		Lock lock = courseReadLock();
+		try {
+			byName = iCourseSearchIndex.findByName(queryInLowerCase);
+			if (queryInLowerCase.length() > 2)
+				byTitle = iCourseSearchIndex.findByTitle(queryInLowerCase);
+		} finally {
+			lock.release();
+		}
+		SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, cmp);
+		for (XCourseId c : byName) {
+			if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+		}
+		if (!ret.isLimitReached() && byTitle != null) {
+			for (XCourseId c : byTitle) {
+				if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(CourseMatcher matcher) {
+		if (matcher != null) matcher.setServer(this);
+		Set<XCourseId> ret = new TreeSet<XCourseId>();
+		for (XCourseId c : iCourseForId.values()) {
+			if (matcher == null || matcher.match(c)) ret.add(c);
+		}
+		return ret;
+	}
+
+	@Override
+	protected Collection<XStudent> getStudentsInMemory() {
+		return new ArrayList<XStudent>(iStudentTable.values());
+	}
+
+	@Override
+	public Collection<XStudent> findStudents(StudentMatcher matcher) {
+		if (matcher != null) matcher.setServer(this);
+		List<XStudent> ret = new ArrayList<XStudent>();
+		for (XStudent s: iStudentTable.values())
+			if (matcher == null || matcher.match(s)) ret.add(s);
+		return ret;
+	}
+
+	@Override
+	public XCourseId getCourse(String course) {
+		Lock lock = courseReadLock();
+		try {
+			for (int idx = course.indexOf('-'); idx >= 0; idx = course.indexOf('-', idx + 1)) {
+				String courseName = course.substring(0, idx).trim();
+				String title = course.substring(idx + 1).trim();
+				TreeSet<XCourseId> infos = iCourseForName.get(courseName.toLowerCase());
+				if (infos!= null && !infos.isEmpty())
+					for (XCourseId info: infos)
+						if (title.equalsIgnoreCase(info.getTitle())) return info;
+			}
+			TreeSet<XCourseId> infos = iCourseForName.get(course.toLowerCase());
+			if (infos!= null && !infos.isEmpty()) return infos.first();
+			return null;
+		} finally {
+			lock.release();
+		}
+	}
+
+	private XCourse toCourse(XCourseId course) {
+		if (course == null) return null;
+		if (course instanceof XCourse)
+			return (XCourse)course;
+		XOffering offering = getOffering(course.getOfferingId());
+		return offering == null ? null : offering.getCourse(course);
+	}
+
+	@Override
+	public XCourse getCourse(Long courseId) {
+		return toCourse(iCourseForId.get(courseId));
+	}
+
+	@Override
+	public XStudent getStudent(Long studentId) {
+		return iStudentTable.get(studentId);
+	}
+
+	@Override
+	public XOffering getOffering(Long offeringId) {
+		return iOfferingTable.get(offeringId);
+	}
+
+	@Override
+	public Collection<XCourseRequest> getRequests(Long offeringId) {
+		OfferingRequests requests = iOfferingRequests.get(offeringId);
+		return requests == null ? null : Collections.unmodifiableList(requests.getRequests());
+	}
+
+	@Override
+	public XEnrollments getEnrollments(Long offeringId) {
+		OfferingRequests requests = iOfferingRequests.get(offeringId);
+		return requests == null ? new XEnrollments(offeringId, null) : requests.getEnrollments();
+	}
+
+	@Override
+	public XExpectations getExpectations(Long offeringId) {
+		XExpectations expectations = iExpectations.get(offeringId);
+		return expectations == null ? new XExpectations(offeringId) : expectations;
+	}
+
+	@Override
+	public void update(XExpectations expectations) {
+		Lock lock = readLock();
+		try {
+			iExpectations.put(expectations.getOfferingId(), expectations);
+			fireChange(ServerChange.update(expectations));
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void remove(XStudent student) {
+		Lock lock = readLock();
+		try {
+			XStudent oldStudent = iStudentTable.remove(student.getStudentId());
+			if (oldStudent != null) {
+				for (XRequest request: oldStudent.getRequests())
+					if (request instanceof XCourseRequest)
+						for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+							removeRequest(course.getOfferingId(), (XCourseRequest)request);
+			}
+			fireChange(ServerChange.remove(student));
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void update(XStudent student, boolean updateRequests) {
+		Lock lock = readLock();
+		try {
+			XStudent oldStudent = iStudentTable.put(student.getStudentId(), student);
+			if (updateRequests) {
+				if (oldStudent != null) {
+					for (XRequest request: oldStudent.getRequests())
+						if (request instanceof XCourseRequest)
+							for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+								removeRequest(course.getOfferingId(), (XCourseRequest)request);
+				}
+				for (XRequest request: student.getRequests())
+					if (request instanceof XCourseRequest) {
+						XCourseRequest cr = (XCourseRequest)request;
+						for (XCourseId course: cr.getCourseIds()) {
+							if (cr.isDuplicateOffering(course)) continue;
+							addRequest(course.getOfferingId(), cr);
+						}
+					}
+			}
+			fireChange(ServerChange.update(student, updateRequests));
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void remove(XOffering offering) {
+		Lock lock = readLock();
+		try {
+			remove(offering, true);
+			fireChange(ServerChange.remove(offering));
+		} finally {
+			lock.release();
+		}
+	}
+
+	protected void remove(XOffering offering, boolean removeExpectations) {
+		Lock lock = readLock();
+		Lock courseLock = courseWriteLock();
+		try {
+			for (XCourse course: offering.getCourses()) {
+				XCourseId oldCourse = iCourseForId.remove(course.getCourseId());
+				if (oldCourse != null) iCourseSearchIndex.remove(oldCourse);
+				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
+				if (courses != null) {
+					courses.remove(course);
+					if (courses.size() == 1)
+						for (XCourseId x: courses) x.setHasUniqueName(true);
+					if (courses.isEmpty())
+						iCourseForName.remove(course.getCourseNameInLowerCase());
+				}
+			}
+			iOfferingTable.remove(offering.getOfferingId());
+			if (removeExpectations)
+				iExpectations.remove(offering.getOfferingId());
+			for (String externalId: offering.getInstructorExternalIds()) {
+				Set<Long> offeringIds = iInstructedOfferings.get(externalId);
+				if (offeringIds != null) offeringIds.remove(offering.getOfferingId());
+			}
+		} finally {
+			courseLock.release();
+			lock.release();
+		}
+	}
+
+	@Override
+	public void update(XOffering offering) {
+		Lock lock = readLock();
+		Lock courseLock = courseWriteLock();
+		try {
+			XOffering oldOffering = iOfferingTable.get(offering.getOfferingId());
+			if (oldOffering != null)
+				remove(oldOffering, false);
+
+			iOfferingTable.put(offering.getOfferingId(), offering);
+			for (XCourse course: offering.getCourses()) {
+				XCourseId oldCourse = iCourseForId.put(course.getCourseId(), course);
+				if (oldCourse != null) iCourseSearchIndex.remove(oldCourse);
+				iCourseSearchIndex.add(course);
+				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
+				if (courses == null) {
+					courses = new TreeSet<XCourseId>();
+					iCourseForName.put(course.getCourseNameInLowerCase(), courses);
+				}
+				courses.add(course);
+				if (courses.size() == 1)
+					for (XCourseId x: courses) x.setHasUniqueName(true);
+				else if (courses.size() > 1)
+					for (XCourseId x: courses) x.setHasUniqueName(false);
+			}
+			for (String externalId: offering.getInstructorExternalIds())
+				iInstructedOfferings.computeIfAbsent(externalId, id -> ConcurrentHashMap.newKeySet()).add(offering.getOfferingId());
+			fireChange(ServerChange.update(offering));
+		} finally {
+			courseLock.release();
+			lock.release();
+		}
+	}
+
+	@Override
+	public void clearAll() {
+		Lock lock = writeLock();
+		Lock courseLock = courseWriteLock();
+		try {
+			if (iStudentTable == null)
+				iStudentTable = new ConcurrentHashMap<Long, XStudent>();
+			else
+				iStudentTable.clear();
+			if (iOfferingTable == null)
+				iOfferingTable = new ConcurrentHashMap<Long, XOffering>();
+			else
+				iOfferingTable.clear();
+			if (iOfferingRequests == null)
+				iOfferingRequests = new ConcurrentHashMap<Long, OfferingRequests>();
+			else
+				iOfferingRequests.clear();
+			if (iExpectations == null)
+				iExpectations = new ConcurrentHashMap<Long, XExpectations>();
+			else
+				iExpectations.clear();
+			if (iCourseForId == null)
+				iCourseForId = new ConcurrentHashMap<Long, XCourseId>();
+			else
+				iCourseForId.clear();
+			if (iCourseForName == null)
+				iCourseForName = new ConcurrentHashMap<String, TreeSet<XCourseId>>();
+			else
+				iCourseForName.clear();
+			if (iInstructedOfferings == null)
+				iInstructedOfferings = new ConcurrentHashMap<String, Set<Long>>();
+			else
+				iInstructedOfferings.clear();
+			if (iCourseSearchIndex == null)
+				iCourseSearchIndex = new CourseSearchIndex();
+			else
+				iCourseSearchIndex.clear();
+			fireChange(ServerChange.clearAll());
+		} finally {
+			courseLock.release();
+			lock.release();
+		}
+	}
+
+	@Override
+	public void clearAllStudents() {
+		Lock lock = writeLock();
+		try {
+			iStudentTable.clear();
+			iOfferingRequests.clear();
+			fireChange(ServerChange.clearAllStudents());
+		} finally {
+			lock.release();
+		}
+	}
+
+	private XCourseRequest findRequest(XCourseRequest request) {
+		XStudent student = iStudentTable.get(request.getStudentId());
+		if (student == null) return null;
+		for (XRequest r: student.getRequests())
+			if (r.equals(request)) return (XCourseRequest)r;
+		return null;
+	}
+
+	@Override
+	public XCourseRequest assign(XCourseRequest request, XEnrollment enrollment) {
+		Lock lock = readLock();
+		try {
+			XCourseRequest cr = findRequest(request);
+			if (cr == null) return null;
+
+			// remove old requests
+			for (XCourseId course: cr.getCourseIds())
+				removeRequest(course.getOfferingId(), cr);
+
+			// assign
+			cr.setEnrollment(enrollment);
+
+			// put new requests
+			for (XCourseId course: cr.getCourseIds()) {
+				if (cr.isDuplicateOffering(course)) continue;
+				addRequest(course.getOfferingId(), cr);
+			}
+
+			fireChange(ServerChange.assign(request, enrollment));
+			return cr;
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XCourseRequest waitlist(XCourseRequest request, boolean waitlist) {
+		Lock lock = readLock();
+		try {
+			XCourseRequest cr = findRequest(request);
+			if (cr == null) return null;
+
+			// remove old requests
+			for (XCourseId course: cr.getCourseIds())
+				removeRequest(course.getOfferingId(), cr);
+
+			// assign
+			cr.setWaitlist(waitlist);
+			cr.setWaitListedTimeStamp(request.getWaitListedTimeStamp());
+			cr.setWaitListSwapWithCourseOffering(request.getWaitListSwapWithCourseOffering());
+
+			// put new requests
+			for (XCourseId course: cr.getCourseIds()) {
+				if (cr.isDuplicateOffering(course)) continue;
+				addRequest(course.getOfferingId(), cr);
+			}
+
+			fireChange(ServerChange.waitlist(request, waitlist));
+			return cr;
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public Collection<Long> getInstructedOfferings(String instructorExternalId) {
+		return iInstructedOfferings.get(instructorExternalId);
+	}
+
+	@Override
+	public Set<Long> getRequestedCourseIds(Long studentId) {
+		XStudent student = iStudentTable.get(studentId);
+		return (student == null ? null : student.getRequestedCourseIds());
+	}
+
+
+	/**
+	 * Course requests of an offering together with the enrollment aggregate computed from them. Instances are never
+	 * changed: adding or removing a request replaces the whole entry, so the aggregate always matches the requests.
+	 */
+	private static class OfferingRequests {
+		private Long iOfferingId;
+		private List<XCourseRequest> iRequests;
+		private volatile XEnrollments iEnrollments = null;
+		
+		private OfferingRequests(Long offeringId, List<XCourseRequest> requests) {
+			iOfferingId = offeringId;
+			iRequests = requests;
+		}
+		
+		public List<XCourseRequest> getRequests() {
+			return iRequests;
+		}
+		
+		public XEnrollments getEnrollments() {
+			XEnrollments enrollments = iEnrollments;
+			if (enrollments == null) {
+				enrollments = new XEnrollments(iOfferingId, iRequests);
+				iEnrollments = enrollments;
+			}
+			return enrollments;
+		}
+	}
+}
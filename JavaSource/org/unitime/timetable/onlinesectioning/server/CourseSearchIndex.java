@@ -0,0 +1,132 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+
+/**
+ * Prefix index of the courses used by {@link InMemoryServer#findCourses(String, Integer, org.unitime.timetable.onlinesectioning.match.CourseMatcher, java.util.Comparator)}.
+ * The course names index contains all the strings for which {@link XCourseId#matchCourseName(String)} does a prefix match,
+ * the title index contains all suffixes of the course title that start at a beginning of a word (which is what {@link XCourseId#matchTitle(String)} checks).
+ * A lookup returns a superset of the matching courses (a course is returned at most once), the caller is expected to re-check
+ * the returned courses using the match methods.<br>
+ * The index is not synchronized, it is expected to be guarded by the locks of the server.
+ *
+ * @author agent
+ */
+public class CourseSearchIndex {
+	private TreeMap<String, List<XCourseId>> iNames = new TreeMap<String, List<XCourseId>>();
+	private TreeMap<String, List<XCourseId>> iTitles = new TreeMap<String, List<XCourseId>>();
+
+	public CourseSearchIndex() {}
+
+	protected Set<String> getNameKeys(XCourseId course) {
+		Set<String> keys = new LinkedHashSet<String>();
+		String name = course.getCourseName();
+		keys.add(name.toLowerCase());
+		keys.add(course.getCourseNumber().toLowerCase());
+		if (name.indexOf('-') >= 0)
+			keys.add(name.substring(name.lastIndexOf('-') + 1).trim().toLowerCase());
+		if (course.getTitle() != null) {
+			keys.add((name + " " + course.getTitle()).toLowerCase());
+			keys.add((name + " - " + course.getTitle()).toLowerCase());
+		}
+		return keys;
+	}
+
+	protected Set<String> getTitleKeys(XCourseId course) {
+		Set<String> keys = new LinkedHashSet<String>();
+		if (course.getTitle() == null) return keys;
+		String title = course.getTitle().toLowerCase();
+		keys.add(title);
+		for (int idx = title.indexOf(' '); idx >= 0; idx = title.indexOf(' ', idx + 1))
+			keys.add(title.substring(idx + 1));
+		return keys;
+	}
+
+	private static void put(TreeMap<String, List<XCourseId>> index, String key, XCourseId course) {
+		List<XCourseId> courses = index.get(key);
+		if (courses == null) {
+			courses = new ArrayList<XCourseId>(1);
+			index.put(key, courses);
+		}
+		courses.add(course);
+	}
+
+	private static void remove(TreeMap<String, List<XCourseId>> index, String key, XCourseId course) {
+		List<XCourseId> courses = index.get(key);
+		if (courses != null) {
+			courses.remove(course);
+			if (courses.isEmpty()) index.remove(key);
+		}
+	}
+
+	private static Collection<XCourseId> lookup(TreeMap<String, List<XCourseId>> index, String prefix) {
+		Set<XCourseId> ret = new LinkedHashSet<XCourseId>();
+		for (Map.Entry<String, List<XCourseId>> e: index.tailMap(prefix, true).entrySet()) {
+			if (!e.getKey().startsWith(prefix)) break;
+			ret.addAll(e.getValue());
+		}
+		return ret;
+	}
+
+	/** Add course into the index */
+	public void add(XCourseId course) {
+		for (String key: getNameKeys(course))
+			put(iNames, key, course);
+		for (String key: getTitleKeys(course))
+			put(iTitles, key, course);
+	}
+
+	/** Remove course from the index */
+	public void remove(XCourseId course) {
+		for (String key: getNameKeys(course))
+			remove(iNames, key, course);
+		for (String key: getTitleKeys(course))
+			remove(iTitles, key, course);
+	}
+
+	/** Courses that may match the given query by their course name (see {@link XCourseId#matchCourseName(String)}) */
+	public Collection<XCourseId> findByName(String queryInLowerCase) {
+		return lookup(iNames, queryInLowerCase);
+	}
+
+	/** Courses that may match the given query by their title (see {@link XCourseId#matchTitle(String)}) */
+	public Collection<XCourseId> findByTitle(String queryInLowerCase) {
+		return lookup(iTitles, queryInLowerCase);
+	}
+
+	public void clear() {
+		iNames.clear();
+		iTitles.clear();
+	}
+
+	public int size() {
+		return iNames.size() + iTitles.size();
+	}
+}
@@ -29,6 +29,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
 import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
@@ -36,6 +37,7 @@ import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollments;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XOffering;
 import org.unitime.timetable.onlinesectioning.model.XRequest;
@@ -53,11 +55,17 @@ public class InMemoryServer extends AbstractLockingServer {
 	private Hashtable<Long, List<XCourseRequest>> iOfferingRequests = new Hashtable<Long, List<XCourseRequest>>();
 	private Hashtable<Long, XExpectations> iExpectations = new Hashtable<Long, XExpectations>();
 	private Hashtable<String, Set<Long>> iInstructedOfferings = new Hashtable<String, Set<Long>>();
+	private CourseSearchIndex iCourseSearchIndex = new CourseSearchIndex();
+	private Hashtable<Long, XEnrollments> iOfferingEnrollments = new Hashtable<Long, XEnrollments>();
 	
 	public InMemoryServer(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
 	}
 	
+	protected InMemoryServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
+		super(session, allowAsyncCalls);
+	}
+	
 	@Override
 	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
 		return findCourses(query, limit, matcher, new CourseComparator(query));
@@ -70,11 +78,11 @@ public class InMemoryServer extends AbstractLockingServer {
 		try {
 			SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, cmp);
 			String queryInLowerCase = query.toLowerCase();
-			for (XCourseId c : iCourseForId.values()) {
+			for (XCourseId c : iCourseSearchIndex.findByName(queryInLowerCase)) {
 				if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
 			}
 			if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
-				for (XCourseId c : iCourseForId.values()) {
+				for (XCourseId c : iCourseSearchIndex.findByTitle(queryInLowerCase)) {
 					if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
 				}
 			}
@@ -99,6 +107,11 @@ public class InMemoryServer extends AbstractLockingServer {
 		}
 	}
 
+	@Override
+	protected Collection<XStudent> getStudentsInMemory() {
+		return new ArrayList<XStudent>(iStudentTable.values());
+	}
+
 	@Override
 	public Collection<XStudent> findStudents(StudentMatcher matcher) {
 		if (matcher != null) matcher.setServer(this);
@@ -182,6 +195,38 @@ public class InMemoryServer extends AbstractLockingServer {
 		}		
 	}
 
+	@Override
+	public XEnrollments getEnrollments(Long offeringId) {
+		Lock lock = readLock();
+		try {
+			XEnrollments enrollments = iOfferingEnrollments.get(offeringId);
+			if (enrollments == null) {
+				enrollments = new XEnrollments(offeringId, iOfferingRequests.get(offeringId));
+				XEnrollments other = iOfferingEnrollments.putIfAbsent(offeringId, enrollments);
+				if (other != null) enrollments = other;
+			}
+			return enrollments;
+		} finally {
+			lock.release();
+		}
+	}
+	
+	private void addRequest(Long offeringId, XCourseRequest request) {
+		List<XCourseRequest> requests = iOfferingRequests.get(offeringId);
+		if (requests == null) {
+			requests = new ArrayList<XCourseRequest>();
+			iOfferingRequests.put(offeringId, requests);
+		}
+		requests.add(request);
+		iOfferingEnrollments.remove(offeringId);
+	}
+	
+	private void removeRequest(Long offeringId, XCourseRequest request) {
+		List<XCourseRequest> requests = iOfferingRequests.get(offeringId);
+		if (requests != null) requests.remove(request);
+		iOfferingEnrollments.remove(offeringId);
+	}
+
 	@Override
 	public XExpectations getExpectations(Long offeringId) {
 		Lock lock = readLock();
@@ -198,6 +243,7 @@ public class InMemoryServer extends AbstractLockingServer {
 		Lock lock = writeLock();
 		try {
 			iExpectations.put(expectations.getOfferingId(), expectations);
+			fireChange(ServerChange.update(expectations));
 		} finally {
 			lock.release();
 		}
@@ -211,11 +257,10 @@ public class InMemoryServer extends AbstractLockingServer {
 			if (oldStudent != null) {
 				for (XRequest request: oldStudent.getRequests())
 					if (request instanceof XCourseRequest)
-						for (XCourseId course: ((XCourseRequest)request).getCourseIds()) {
-							List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-							if (requests != null) requests.remove(request);
-						}
+						for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+							removeRequest(course.getOfferingId(), (XCourseRequest)request);
 			}
+			fireChange(ServerChange.remove(student));
 		} finally {
 			lock.release();
 		}
@@ -230,25 +275,19 @@ public class InMemoryServer extends AbstractLockingServer {
 				if (oldStudent != null) {
 					for (XRequest request: oldStudent.getRequests())
 						if (request instanceof XCourseRequest)
-							for (XCourseId course: ((XCourseRequest)request).getCourseIds()) {
-								List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-								if (requests != null) requests.remove(request);
-							}
+							for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+								removeRequest(course.getOfferingId(), (XCourseRequest)request);
 				}
 				for (XRequest request: student.getRequests())
 					if (request instanceof XCourseRequest) {
 						XCourseRequest cr = (XCourseRequest)request;
 						for (XCourseId course: cr.getCourseIds()) {
 							if (cr.isDuplicateOffering(course)) continue;
-							List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-							if (requests == null) {
-								requests = new ArrayList<XCourseRequest>();
-								iOfferingRequests.put(course.getOfferingId(), requests);
-							}
-							requests.add((XCourseRequest)request);
+							addRequest(course.getOfferingId(), cr);
 						}
 					}
 			}
+			fireChange(ServerChange.update(student, updateRequests));
 		} finally {
 			lock.release();
 		}
@@ -256,14 +295,21 @@ public class InMemoryServer extends AbstractLockingServer {
 
 	@Override
 	public void remove(XOffering offering) {
-		remove(offering, true);
+		Lock lock = writeLock();
+		try {
+			remove(offering, true);
+			fireChange(ServerChange.remove(offering));
+		} finally {
+			lock.release();
+		}
 	}
 	
 	protected void remove(XOffering offering, boolean removeExpectations) {
 		Lock lock = writeLock();
 		try {
 			for (XCourse course: offering.getCourses()) {
-				iCourseForId.remove(course.getCourseId());
+				XCourseId oldCourse = iCourseForId.remove(course.getCourseId());
+				if (oldCourse != null) iCourseSearchIndex.remove(oldCourse);
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses != null) {
 					courses.remove(course);
@@ -295,7 +341,9 @@ public class InMemoryServer extends AbstractLockingServer {
 			
 			iOfferingTable.put(offering.getOfferingId(), offering);
 			for (XCourse course: offering.getCourses()) {
-				iCourseForId.put(course.getCourseId(), course);
+				XCourseId oldCourse = iCourseForId.put(course.getCourseId(), course);
+				if (oldCourse != null) iCourseSearchIndex.remove(oldCourse);
+				iCourseSearchIndex.add(course);
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses == null) {
 					courses = new TreeSet<XCourseId>();
@@ -315,6 +363,7 @@ public class InMemoryServer extends AbstractLockingServer {
 				}
 				offeringIds.add(offering.getOfferingId());
 			}
+			fireChange(ServerChange.update(offering));
 		} finally {
 			lock.release();
 		}
@@ -352,6 +401,15 @@ public class InMemoryServer extends AbstractLockingServer {
 				iInstructedOfferings = new Hashtable<String, Set<Long>>();
 			else
 				iInstructedOfferings.clear();
+			if (iCourseSearchIndex == null)
+				iCourseSearchIndex = new CourseSearchIndex();
+			else
+				iCourseSearchIndex.clear();
+			if (iOfferingEnrollments == null)
+				iOfferingEnrollments = new Hashtable<Long, XEnrollments>();
+			else
+				iOfferingEnrollments.clear();
+			fireChange(ServerChange.clearAll());
 		} finally {
 			lock.release();
 		}
@@ -363,6 +421,8 @@ public class InMemoryServer extends AbstractLockingServer {
 		try {
 			iStudentTable.clear();
 			iOfferingRequests.clear();
+			iOfferingEnrollments.clear();
+			fireChange(ServerChange.clearAllStudents());
 		} finally {
 			lock.release();
 		}
@@ -378,10 +438,8 @@ public class InMemoryServer extends AbstractLockingServer {
 					XCourseRequest cr = (XCourseRequest)r;
 
 					// remove old requests
-					for (XCourseId course: cr.getCourseIds()) {
-						List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-						if (requests != null) requests.remove(cr);
-					}
+					for (XCourseId course: cr.getCourseIds())
+						removeRequest(course.getOfferingId(), cr);
 
 					// assign
 					cr.setEnrollment(enrollment);
@@ -389,14 +447,10 @@ public class InMemoryServer extends AbstractLockingServer {
 					// put new requests
 					for (XCourseId course: cr.getCourseIds()) {
 						if (cr.isDuplicateOffering(course)) continue;
-						List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-						if (requests == null) {
-							requests = new ArrayList<XCourseRequest>();
-							iOfferingRequests.put(course.getOfferingId(), requests);
-						}
-						requests.add(cr);
+						addRequest(course.getOfferingId(), cr);
 					}
 					
+					fireChange(ServerChange.assign(request, enrollment));
 					return cr;
 				}
 			}
@@ -416,10 +470,8 @@ public class InMemoryServer extends AbstractLockingServer {
 					XCourseRequest cr = (XCourseRequest)r;
 
 					// remove old requests
-					for (XCourseId course: cr.getCourseIds()) {
-						List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-						if (requests != null) requests.remove(cr);
-					}
+					for (XCourseId course: cr.getCourseIds())
+						removeRequest(course.getOfferingId(), cr);
 
 					// assign
 					cr.setWaitlist(waitlist);
@@ -429,14 +481,10 @@ public class InMemoryServer extends AbstractLockingServer {
 					// put new requests
 					for (XCourseId course: cr.getCourseIds()) {
 						if (cr.isDuplicateOffering(course)) continue;
-						List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-						if (requests == null) {
-							requests = new ArrayList<XCourseRequest>();
-							iOfferingRequests.put(course.getOfferingId(), requests);
-						}
-						requests.add(cr);
+						addRequest(course.getOfferingId(), cr);
 					}
 					
+					fireChange(ServerChange.waitlist(request, waitlist));
 					return cr;
 				}
 			}
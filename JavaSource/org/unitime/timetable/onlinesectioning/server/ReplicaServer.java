@@ -0,0 +1,197 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.List;
+
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * Read-only copy of an in-memory online sectioning server that is running on a different node of the cluster.<br>
+ * The replica does not load any data from the database, it is populated and kept up to date by the changes
+ * ({@link ServerChange}) published by the master server. The changes are expected to come in the order of their
+ * sequence numbers: when a change is missing, the replica stops serving until it is synchronized again.
+ * Only read-only actions are to be executed on the replica, any attempt to change its data outside of
+ * {@link #apply(List)} fails.
+ *
+ * @author agent
+ */
+public class ReplicaServer extends InMemoryServer {
+	private long iLastSequence = -1;
+	private boolean iSynchronized = false, iClosed = false;
+	private long iLastUpdate = System.currentTimeMillis();
+	private volatile Thread iApplyingThread = null;
+
+	public ReplicaServer(AcademicSessionInfo session) {
+		super(session, false);
+		getConfig().setProperty("DatePattern.DayOfWeekOffset", Integer.toString(session.getDayOfWeekOffset()));
+	}
+	
+	/**
+	 * Apply the given changes, in the given order.
+	 * @return false if a change is missing (the replica needs to be synchronized again, see {@link #reset()})
+	 */
+	public boolean apply(List<ServerChange> changes) {
+		Lock lock = lockAll();
+		iApplyingThread = Thread.currentThread();
+		try {
+			iLastUpdate = System.currentTimeMillis();
+			for (ServerChange change: changes) {
+				switch (change.getType()) {
+				case SYNCHRONIZED:
+					iLastSequence = change.getSequence();
+					iSynchronized = true;
+					iLog.info("Replica synchronized (last change #" + iLastSequence + ")");
+					break;
+				case CLOSED:
+					iSynchronized = false;
+					iClosed = true;
+					return true;
+				default:
+					if (change.getSequence() > 0) {
+						// changes of the stream are ignored until the initial synchronization is done
+						if (!iSynchronized || change.getSequence() <= iLastSequence) continue;
+						if (change.getSequence() != iLastSequence + 1) {
+							iLog.warn("Replica out of sync: expected change #" + (iLastSequence + 1) + ", received #" + change.getSequence() + ".");
+							iSynchronized = false;
+							iLastSequence = -1;
+							return false;
+						}
+						iLastSequence = change.getSequence();
+					}
+					change.apply(this);
+				}
+			}
+			return true;
+		} finally {
+			iApplyingThread = null;
+			lock.release();
+		}
+	}
+	
+	/** Drop all data, the replica needs to be synchronized again */
+	public void reset() {
+		Lock lock = lockAll();
+		iApplyingThread = Thread.currentThread();
+		try {
+			iSynchronized = false;
+			iLastSequence = -1;
+			clearAll();
+		} finally {
+			iApplyingThread = null;
+			lock.release();
+		}
+	}
+	
+	/** The master server has been unloaded */
+	public boolean isClosed() { return iClosed; }
+	
+	/** Time of the last change received from the master server */
+	public long getLastUpdate() { return iLastUpdate; }
+	
+	/** Sequence number of the last applied change, -1 if the replica is not synchronized */
+	public long getLastSequence() { return iLastSequence; }
+	
+	@Override
+	public boolean isReady() {
+		return iSynchronized;
+	}
+	
+	protected void checkWritable() {
+		if (iApplyingThread != Thread.currentThread())
+			throw new SectioningException("Online sectioning server " + getAcademicSession() + " is a read-only replica.");
+	}
+	
+	@Override
+	public void update(XExpectations expectations) {
+		checkWritable();
+		super.update(expectations);
+	}
+	
+	@Override
+	public void remove(XStudent student) {
+		checkWritable();
+		super.remove(student);
+	}
+	
+	@Override
+	public void update(XStudent student, boolean updateRequests) {
+		checkWritable();
+		super.update(student, updateRequests);
+	}
+	
+	@Override
+	public void remove(XOffering offering) {
+		checkWritable();
+		super.remove(offering);
+	}
+	
+	@Override
+	public void update(XOffering offering) {
+		checkWritable();
+		super.update(offering);
+	}
+	
+	@Override
+	public void clearAll() {
+		checkWritable();
+		super.clearAll();
+	}
+	
+	@Override
+	public void clearAllStudents() {
+		checkWritable();
+		super.clearAllStudents();
+	}
+	
+	@Override
+	public XCourseRequest assign(XCourseRequest request, XEnrollment enrollment) {
+		checkWritable();
+		return super.assign(request, enrollment);
+	}
+	
+	@Override
+	public XCourseRequest waitlist(XCourseRequest request, boolean waitlist) {
+		checkWritable();
+		return super.waitlist(request, waitlist);
+	}
+	
+	@Override
+	public void persistExpectedSpaces(Long offeringId) {
+		// expected spaces are persisted by the master server
+	}
+	
+	@Override
+	public void reload() {
+		reset();
+	}
+	
+	@Override
+	public void unload() {
+		iLog.info("Replica unloaded.");
+		releaseSharedModel();
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.unitime.timetable.gwt.shared.SectioningException;
+
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * A change of the in-memory data of an online sectioning server, as published by {@link AbstractServer#fireChange(ServerChange)}.
+ * Each change carries the complete object that was updated, so replaying the same change twice is harmless.
+ * Changes are used to keep the read-only replicas ({@link ReplicaServer}) of a server up to date.<br>
+ * The updated object is a live object of the server that may change later on, use {@link #freeze()} (while the
+ * lock of the change is still held) to take a copy of it before the change is handed over to another thread.
+ *
+ * @author agent
+ */
+public class ServerChange implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	public static enum Type {
+		UPDATE_STUDENT,
+		UPDATE_STUDENT_AND_REQUESTS,
+		REMOVE_STUDENT,
+		UPDATE_OFFERING,
+		REMOVE_OFFERING,
+		UPDATE_EXPECTATIONS,
+		ASSIGN,
+		WAITLIST,
+		CLEAR_ALL,
+		CLEAR_ALL_STUDENTS,
+		/** Initial synchronization of a replica is complete, sequence contains the last change included in the synchronization */
+		SYNCHRONIZED,
+		/** The master server has been unloaded */
+		CLOSED,
+		;
+	}
+	
+	private Type iType;
+	private long iSequence = 0;
+	private Serializable iObject;
+	private XEnrollment iEnrollment;
+	private boolean iFlag;
+	private byte[] iData;
+	
+	public ServerChange(Type type, Serializable object) {
+		iType = type; iObject = object;
+	}
+	
+	public static ServerChange update(XStudent student, boolean updateRequests) {
+		return new ServerChange(updateRequests ? Type.UPDATE_STUDENT_AND_REQUESTS : Type.UPDATE_STUDENT, student);
+	}
+	
+	public static ServerChange remove(XStudent student) {
+		return new ServerChange(Type.REMOVE_STUDENT, student);
+	}
+	
+	public static ServerChange update(XOffering offering) {
+		return new ServerChange(Type.UPDATE_OFFERING, offering);
+	}
+	
+	public static ServerChange remove(XOffering offering) {
+		return new ServerChange(Type.REMOVE_OFFERING, offering);
+	}
+	
+	public static ServerChange update(XExpectations expectations) {
+		return new ServerChange(Type.UPDATE_EXPECTATIONS, expectations);
+	}
+	
+	public static ServerChange assign(XCourseRequest request, XEnrollment enrollment) {
+		ServerChange change = new ServerChange(Type.ASSIGN, request);
+		change.iEnrollment = enrollment;
+		return change;
+	}
+	
+	public static ServerChange waitlist(XCourseRequest request, boolean waitlist) {
+		ServerChange change = new ServerChange(Type.WAITLIST, request);
+		change.iFlag = waitlist;
+		return change;
+	}
+	
+	public static ServerChange clearAll() {
+		return new ServerChange(Type.CLEAR_ALL, null);
+	}
+	
+	public static ServerChange clearAllStudents() {
+		return new ServerChange(Type.CLEAR_ALL_STUDENTS, null);
+	}
+	
+	public Type getType() { return iType; }
+	
+	/** Sequence number of the change, 0 for changes that are not part of the change stream (initial synchronization) */
+	public long getSequence() { return iSequence; }
+	public void setSequence(long sequence) { iSequence = sequence; }
+	
+	public Serializable getObject() { thaw(); return iObject; }
+	public XEnrollment getEnrollment() { thaw(); return iEnrollment; }
+	public boolean getFlag() { return iFlag; }
+	
+	/** True if the updated object has been serialized by {@link #freeze()} and not deserialized yet */
+	public boolean isFrozen() { return iData != null; }
+	
+	/**
+	 * Serialize the updated object (and the enrollment) into a byte array, dropping the references to the live objects of the server.
+	 * This must be called while the caller still holds the lock under which the change was made.
+	 */
+	public ServerChange freeze() {
+		if (iData != null || (iObject == null && iEnrollment == null)) return this;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(iObject);
+			out.writeObject(iEnrollment);
+			out.flush(); out.close();
+			iData = bytes.toByteArray();
+			iObject = null; iEnrollment = null;
+		} catch (IOException e) {
+			throw new SectioningException("Failed to serialize " + iType.name() + " change: " + e.getMessage(), e);
+		}
+		return this;
+	}
+	
+	/** Deserialize the updated object, if frozen */
+	protected void thaw() {
+		if (iData == null) return;
+		try {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(iData));
+			iObject = (Serializable)in.readObject();
+			iEnrollment = (XEnrollment)in.readObject();
+			in.close();
+			iData = null;
+		} catch (IOException | ClassNotFoundException e) {
+			throw new SectioningException("Failed to deserialize " + iType.name() + " change: " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Apply the change on the given server
+	 */
+	public void apply(AbstractServer server) {
+		thaw();
+		switch (iType) {
+		case UPDATE_STUDENT:
+			server.update((XStudent)iObject, false);
+			break;
+		case UPDATE_STUDENT_AND_REQUESTS:
+			server.update((XStudent)iObject, true);
+			break;
+		case REMOVE_STUDENT:
+			server.remove((XStudent)iObject);
+			break;
+		case UPDATE_OFFERING:
+			server.update((XOffering)iObject);
+			break;
+		case REMOVE_OFFERING:
+			server.remove((XOffering)iObject);
+			break;
+		case UPDATE_EXPECTATIONS:
+			server.update((XExpectations)iObject);
+			break;
+		case ASSIGN:
+			server.assign((XCourseRequest)iObject, iEnrollment);
+			break;
+		case WAITLIST:
+			server.waitlist((XCourseRequest)iObject, iFlag);
+			break;
+		case CLEAR_ALL:
+			server.clearAll();
+			break;
+		case CLEAR_ALL_STUDENTS:
+			server.clearAllStudents();
+			break;
+		default:
+			break;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return iType.name() + (iSequence > 0 ? "#" + iSequence : "") + (iData != null ? " [" + iData.length + " bytes]" : iObject == null ? "" : " " + iObject);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.util.Formats;
+
+/**
+ * Asynchronous execution of online sectioning actions.<br>
+ * A fixed pool of threads takes the jobs from a priority queue: {@link Priority#INTERACTIVE} jobs are always
+ * taken before {@link Priority#BACKGROUND} ones, jobs of the same priority are executed in the order in which
+ * they were submitted. The queue is bounded: when it is full, the job is rejected right away. The submitting thread
+ * never waits for a free slot nor executes the job itself, as it may be holding some of the server locks that
+ * the queued jobs (or the job itself) need.
+ * Queue wait and execution times are recorded per action name.
+ *
+ * @author agent
+ */
+public class ServerExecutor {
+	private Log iLog;
+	private ThreadPoolExecutor iExecutor;
+	private Semaphore iCapacity;
+	private AtomicLong iSequence = new AtomicLong(0);
+	private Map<String, ActionStatistics> iStatistics = new ConcurrentHashMap<String, ActionStatistics>();
+	private AtomicInteger iRejected = new AtomicInteger(0);
+
+	public static enum Priority {
+		INTERACTIVE,
+		NORMAL,
+		BACKGROUND,
+		;
+	}
+
+	public ServerExecutor(final AcademicSessionInfo session, int poolSize, int queueSize, Log log) {
+		iLog = log;
+		iCapacity = new Semaphore(queueSize <= 0 ? Integer.MAX_VALUE : queueSize);
+		iExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0l, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+			private AtomicInteger iId = new AtomicInteger(0);
+			@Override
+			public Thread newThread(final Runnable r) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							ApplicationProperties.setSessionId(session.getUniqueId());
+							r.run();
+						} finally {
+							ApplicationProperties.setSessionId(null);
+							Localization.removeLocale();
+							Formats.removeFormats();
+						}
+					}
+				});
+				thread.setName("AsyncExecutor[" + session + "-" + iId.incrementAndGet() + "]");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) {
+			@Override
+			protected void afterExecute(Runnable r, Throwable t) {
+				super.afterExecute(r, t);
+				if (HibernateUtil.closeCurrentThreadSessions())
+					iLog.debug("Job " + r + " did not close current-thread hibernate session.");
+			}
+		};
+	}
+
+	/**
+	 * Execute the given job asynchronously. When the queue is full, the job is rejected (without waiting for a free slot).
+	 * @param name action name (used for statistics)
+	 * @param priority job priority
+	 * @param job job to execute
+	 * @throws RejectedExecutionException when the executor is shut down or the queue is full
+	 */
+	public void execute(String name, Priority priority, Runnable job) throws RejectedExecutionException {
+		Job j = new Job(name, priority, job);
+		if (iExecutor.isShutdown() || !iCapacity.tryAcquire()) {
+			iRejected.incrementAndGet();
+			iLog.warn("Asynchronous execution of " + name + " rejected (" + this + ").");
+			throw new RejectedExecutionException("Asynchronous execution of " + name + " rejected: " + (iExecutor.isShutdown() ? "executor is shut down" : "queue is full") + ".");
+		}
+		try {
+			iExecutor.execute(j);
+		} catch (RejectedExecutionException e) {
+			iCapacity.release();
+			iRejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/** Stop the executor, jobs that are already queued are still executed */
+	public void shutdown() {
+		iExecutor.shutdown();
+	}
+
+	public boolean isShutdown() {
+		return iExecutor.isShutdown();
+	}
+
+	/** Number of jobs waiting in the queue */
+	public int getQueueDepth() {
+		return iExecutor.getQueue().size();
+	}
+
+	/** Number of jobs that are being executed */
+	public int getActiveCount() {
+		return iExecutor.getActiveCount();
+	}
+
+	/** Number of jobs that were rejected because the queue was full (or the executor was shut down) */
+	public int getRejectedCount() {
+		return iRejected.get();
+	}
+
+	/** Execution statistics, by action name */
+	public Map<String, ActionStatistics> getStatistics() {
+		return new TreeMap<String, ActionStatistics>(iStatistics);
+	}
+
+	@Override
+	public String toString() {
+		return "queue: " + getQueueDepth() + ", active: " + getActiveCount() + ", rejected: " + getRejectedCount();
+	}
+
+	private class Job implements Runnable, Comparable<Job> {
+		private String iName;
+		private Priority iPriority;
+		private Runnable iJob;
+		private long iId;
+		private long iCreated;
+
+		Job(String name, Priority priority, Runnable job) {
+			iName = name; iPriority = (priority == null ? Priority.NORMAL : priority); iJob = job;
+			iId = iSequence.incrementAndGet();
+			iCreated = System.currentTimeMillis();
+		}
+
+		@Override
+		public void run() {
+			iCapacity.release();
+			long t0 = System.currentTimeMillis();
+			try {
+				iJob.run();
+			} finally {
+				iStatistics.computeIfAbsent(iName, n -> new ActionStatistics()).record(t0 - iCreated, System.currentTimeMillis() - t0);
+			}
+		}
+
+		@Override
+		public int compareTo(Job j) {
+			int cmp = iPriority.compareTo(j.iPriority);
+			if (cmp != 0) return cmp;
+			return Long.compare(iId, j.iId);
+		}
+
+		@Override
+		public String toString() {
+			return iName;
+		}
+	}
+
+	public static class ActionStatistics {
+		private AtomicLong iCount = new AtomicLong(0);
+		private AtomicLong iWaitTime = new AtomicLong(0), iMaxWaitTime = new AtomicLong(0);
+		private AtomicLong iRunTime = new AtomicLong(0), iMaxRunTime = new AtomicLong(0);
+
+		protected void record(long waitTime, long runTime) {
+			iCount.incrementAndGet();
+			iWaitTime.addAndGet(waitTime);
+			iMaxWaitTime.accumulateAndGet(waitTime, Math::max);
+			iRunTime.addAndGet(runTime);
+			iMaxRunTime.accumulateAndGet(runTime, Math::max);
+		}
+
+		/** Number of executed jobs */
+		public long getCount() { return iCount.get(); }
+		/** Average time spent in the queue in milliseconds */
+		public double getAverageWaitTime() { return iCount.get() == 0 ? 0.0 : ((double)iWaitTime.get()) / iCount.get(); }
+		/** Longest time spent in the queue in milliseconds */
+		public long getMaxWaitTime() { return iMaxWaitTime.get(); }
+		/** Average execution time in milliseconds */
+		public double getAverageRunTime() { return iCount.get() == 0 ? 0.0 : ((double)iRunTime.get()) / iCount.get(); }
+		/** Longest execution time in milliseconds */
+		public long getMaxRunTime() { return iMaxRunTime.get(); }
+
+		@Override
+		public String toString() {
+			return getCount() + "x (wait " + Math.round(getAverageWaitTime()) + " ms avg, " + getMaxWaitTime() + " ms max; run " +
+					Math.round(getAverageRunTime()) + " ms avg, " + getMaxRunTime() + " ms max)";
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.updates;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.DecimalFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * Load the in-memory online sectioning server from a snapshot written by {@link SaveServerSnapshot}.<br>
+ * The snapshot is only used when it was created by the same UniTime version for the same academic session and it is not
+ * older than unitime.enrollment.server.snapshot.maxAge hours. After the snapshot is loaded, the student sectioning queue
+ * is replayed from the time stamp stored in the snapshot and all the students with changes logged or enrollments
+ * made since the snapshot was taken are reloaded from the database.
+ * When there is no usable snapshot, all the data are reloaded from the database (see {@link ReloadAllData}).
+ * 
+ * @author agent
+ */
+public class LoadServerSnapshot extends ReloadAllData {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public Boolean execute(final OnlineSectioningServer server, OnlineSectioningHelper helper) {
+		File file = SaveServerSnapshot.getSnapshotFile(server.getAcademicSession().getUniqueId());
+		if (file == null || !file.exists() || !SaveServerSnapshot.isSupported(server))
+			return super.execute(server, helper);
+		
+		long t0 = System.currentTimeMillis();
+		Date created = null, queueTimeStamp = null;
+		int nrOfferings = 0, nrStudents = 0;
+		Lock lock = server.lockAll();
+		try {
+			ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file), 65536)));
+			try {
+				if (in.readInt() != SaveServerSnapshot.MAGIC)
+					throw new IOException("not a snapshot file");
+				int version = in.readInt();
+				if (version != SaveServerSnapshot.VERSION)
+					throw new IOException("unsupported snapshot version " + version);
+				String unitimeVersion = in.readUTF();
+				if (!SaveServerSnapshot.getSnapshotVersion().equals(unitimeVersion))
+					throw new IOException("snapshot was created by a different version (" + unitimeVersion + ")");
+				if (in.readLong() != server.getAcademicSession().getUniqueId())
+					throw new IOException("snapshot was created for a different academic session");
+				created = new Date(in.readLong());
+				int maxAge = ApplicationProperty.OnlineSchedulingServerSnapshotMaxAge.intValue();
+				if (maxAge > 0 && t0 - created.getTime() > 3600000l * maxAge)
+					throw new IOException("snapshot is too old (created " + created + ")");
+				long ts = in.readLong();
+				queueTimeStamp = (ts < 0 ? null : new Date(ts));
+				
+				server.clearAll();
+				nrOfferings = in.readInt();
+				for (int i = 0; i < nrOfferings; i++)
+					server.update(new XOffering(in));
+				int nrExpectations = in.readInt();
+				for (int i = 0; i < nrExpectations; i++)
+					server.update(new XExpectations(in));
+				nrStudents = in.readInt();
+				for (int i = 0; i < nrStudents; i++)
+					server.update(new XStudent(in), true);
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			helper.warn("Failed to load snapshot " + file + ": " + e.getMessage(), e);
+			lock.release(); lock = null;
+			return super.execute(server, helper);
+		} finally {
+			if (lock != null) lock.release();
+		}
+		helper.info("Snapshot of " + nrOfferings + " offerings and " + nrStudents + " students created on " + created + " loaded in " +
+				new DecimalFormat("0.0").format((System.currentTimeMillis() - t0) / 1000.0) + " seconds.");
+		
+		// Replay the student sectioning queue since the snapshot
+		if (queueTimeStamp != null)
+			server.setProperty("Updater.LastTimeStamp", queueTimeStamp);
+		
+		// Reload students that have changed since the snapshot
+		Set<Long> studentIds = new HashSet<Long>(helper.getHibSession().createQuery(
+				"select s.uniqueId from Student s where s.session.uniqueId = :sessionId and s.externalUniqueId in " +
+				"(select l.student from OnlineSectioningLog l where l.session.uniqueId = :sessionId and l.timeStamp >= :created)", Long.class)
+				.setParameter("sessionId", server.getAcademicSession().getUniqueId())
+				.setParameter("created", created)
+				.list());
+		studentIds.addAll(helper.getHibSession().createQuery(
+				"select distinct e.student.uniqueId from StudentClassEnrollment e where e.student.session.uniqueId = :sessionId and e.timestamp >= :created", Long.class)
+				.setParameter("sessionId", server.getAcademicSession().getUniqueId())
+				.setParameter("created", created)
+				.list());
+		studentIds.addAll(helper.getHibSession().createQuery(
+				"select distinct d.student.uniqueId from CourseDemand d where d.student.session.uniqueId = :sessionId and d.timestamp >= :created", Long.class)
+				.setParameter("sessionId", server.getAcademicSession().getUniqueId())
+				.setParameter("created", created)
+				.list());
+		if (!studentIds.isEmpty()) {
+			helper.info("Reloading " + studentIds.size() + " students that have changed since the snapshot.");
+			server.execute(server.createAction(ReloadStudent.class).forStudents(studentIds), helper.getUser());
+		}
+		return true;
+	}
+	
+	@Override
+	public String name() { return "load-snapshot"; }
+}
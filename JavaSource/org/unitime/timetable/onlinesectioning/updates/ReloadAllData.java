@@ -66,6 +66,7 @@ import org.unitime.timetable.onlinesectioning.model.XRequest;
 import org.unitime.timetable.onlinesectioning.model.XSection;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XSubpart;
+import org.unitime.timetable.onlinesectioning.model.XWeekPattern;
 import org.unitime.timetable.solver.TimetableDatabaseLoader;
 
 /**
@@ -192,6 +193,7 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 		        
 				long t1 = System.currentTimeMillis();
 				helper.info("  Update of session " + server.getAcademicSession() + " done " + new DecimalFormat("0.0").format((t1 - t0) / 1000.0) + " seconds.");
+				helper.debug("  Distinct week patterns: " + XWeekPattern.size());
 				
 				helper.commitTransaction();
 				return true;
@@ -0,0 +1,173 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.updates;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.model.StudentSectioningQueue;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.model.XStudentId;
+import org.unitime.timetable.onlinesectioning.server.ConcurrentInMemoryServer;
+import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
+import org.unitime.timetable.util.Constants;
+
+/**
+ * Write a binary snapshot of the in-memory online sectioning server (offerings, expectations, and students)
+ * into the directory given by the unitime.enrollment.server.snapshot.dir property.
+ * The snapshot is read back by {@link LoadServerSnapshot} when the server is started.<br>
+ * The snapshot file is a GZIP-compressed object stream with a header (magic number, format version, UniTime version,
+ * academic session, creation time, and the time stamp of the last processed student sectioning queue item) followed by
+ * the externalized {@link XOffering}, {@link XExpectations}, and {@link XStudent} objects.
+ * 
+ * @author agent
+ */
+public class SaveServerSnapshot implements OnlineSectioningAction<Boolean> {
+	private static final long serialVersionUID = 1L;
+	private static StudentSectioningMessages MSG = Localization.create(StudentSectioningMessages.class);
+	public static final int MAGIC = 0x55545353;
+	public static final int VERSION = 1;
+	
+	public static boolean isEnabled() {
+		return ApplicationProperty.OnlineSchedulingServerSnapshotDir.value() != null;
+	}
+	
+	public static boolean isSupported(OnlineSectioningServer server) {
+		return isEnabled() && (server instanceof InMemoryServer || server instanceof ConcurrentInMemoryServer);
+	}
+	
+	public static File getSnapshotFile(Long sessionId) {
+		String dir = ApplicationProperty.OnlineSchedulingServerSnapshotDir.value();
+		if (dir == null) return null;
+		return new File(dir, "snapshot-" + sessionId + ".dat");
+	}
+	
+	public static String getSnapshotVersion() {
+		return Constants.getVersion();
+	}
+
+	@Override
+	public Boolean execute(OnlineSectioningServer server, OnlineSectioningHelper helper) {
+		File file = getSnapshotFile(server.getAcademicSession().getUniqueId());
+		if (file == null || !isSupported(server)) return false;
+		
+		long t0 = System.currentTimeMillis();
+		int nrOfferings = 0, nrStudents = 0;
+		// the objects are serialized into memory while the server is locked (no updates), so that they are consistent with the queue time stamp,
+		// compression and disk I/O happen after the lock is released
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(1048576);
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(buffer);
+			Lock lock = server.lockAll();
+			try {
+				Date queueTimeStamp = server.getProperty("Updater.LastTimeStamp", null);
+				if (queueTimeStamp == null)
+					queueTimeStamp = StudentSectioningQueue.getLastTimeStamp(helper.getHibSession(), server.getAcademicSession().getUniqueId());
+				
+				List<XOffering> offerings = new ArrayList<XOffering>();
+				Set<Long> offeringIds = new LinkedHashSet<Long>();
+				for (XCourseId course: server.findCourses((CourseMatcher)null))
+					offeringIds.add(course.getOfferingId());
+				for (Long offeringId: offeringIds) {
+					XOffering offering = server.getOffering(offeringId);
+					if (offering != null) offerings.add(offering);
+				}
+				List<XStudent> students = new ArrayList<XStudent>();
+				for (XStudentId student: server.findStudents((StudentMatcher)null))
+					if (student instanceof XStudent) students.add((XStudent)student);
+				
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(getSnapshotVersion());
+				out.writeLong(server.getAcademicSession().getUniqueId());
+				out.writeLong(t0);
+				out.writeLong(queueTimeStamp == null ? -1l : queueTimeStamp.getTime());
+				out.writeInt(offerings.size());
+				for (XOffering offering: offerings)
+					offering.writeExternal(out);
+				out.writeInt(offerings.size());
+				for (XOffering offering: offerings)
+					server.getExpectations(offering.getOfferingId()).writeExternal(out);
+				out.writeInt(students.size());
+				for (XStudent student: students)
+					student.writeExternal(out);
+				out.flush();
+				nrOfferings = offerings.size(); nrStudents = students.size();
+			} finally {
+				lock.release();
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new SectioningException(MSG.exceptionUnknown(e.getMessage()), e);
+		}
+		
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try {
+			if (file.getParentFile() != null) file.getParentFile().mkdirs();
+			OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+			try {
+				buffer.writeTo(out);
+			} finally {
+				out.close();
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temp.delete();
+			throw new SectioningException(MSG.exceptionUnknown(e.getMessage()), e);
+		}
+		server.setProperty("Updater.LastSnapshot", t0);
+		
+		helper.info("Snapshot of " + nrOfferings + " offerings and " + nrStudents + " students written in " +
+				new DecimalFormat("0.0").format((System.currentTimeMillis() - t0) / 1000.0) + " seconds (" + new DecimalFormat("#,##0.0").format(file.length() / 1048576.0) + " MB).");
+		return true;
+	}
+
+	@Override
+	public String name() {
+		return "save-snapshot";
+	}
+}
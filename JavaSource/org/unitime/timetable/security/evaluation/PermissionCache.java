@@ -0,0 +1,143 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.security.evaluation;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.security.UserAuthority;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Request scoped cache of permission decisions, keyed by the user, the current authority, the right, and the target
+ * type and id. Only the checks made by an id are cached: checks on a domain object are always evaluated, as the object
+ * may have been changed since the last check. The cache is only active between {@link #begin()} and {@link #end(String)},
+ * which is done by the HibSessionFilter for each request, so that the decisions never outlive the request.
+ * Decisions made before {@link #invalidate()} is called (e.g., after an academic session
+ * or department status change or an update of the role permissions) are not used.
+ * The number of permission checks made by each request is logged on the debug level.
+ * 
+ * @author agent
+ */
+public class PermissionCache {
+	private static Log sLog = LogFactory.getLog(PermissionCache.class);
+	private static final int sMaxSize = 10000;
+	private static ThreadLocal<Scope> sScope = new ThreadLocal<Scope>();
+	private static AtomicLong sGeneration = new AtomicLong(0);
+	
+	/** Start a new scope for the current thread (nested calls are ignored) */
+	public static void begin() {
+		Scope scope = sScope.get();
+		if (scope == null) {
+			sScope.set(new Scope());
+		} else {
+			scope.iDepth ++;
+		}
+	}
+	
+	/** End the scope of the current thread, logging the number of permission checks made for the given page */
+	public static void end(String page) {
+		Scope scope = sScope.get();
+		if (scope == null) return;
+		if (scope.iDepth > 0) {
+			scope.iDepth --; return;
+		}
+		sScope.remove();
+		if (scope.iChecks > 0 && page != null && sLog.isDebugEnabled())
+			sLog.debug(page + ": " + scope.iChecks + " permission checks (" + scope.iHits + " cached, " + scope.iDecisions.size() + " decisions)");
+	}
+	
+	/** Forget all decisions made so far (in all threads) */
+	public static void invalidate() {
+		sGeneration.incrementAndGet();
+	}
+	
+	/** Cached decision, null if not known */
+	static Boolean get(UserContext user, Right right, String targetType, Serializable target) {
+		Scope scope = sScope.get();
+		if (scope == null || user == null || user.getCurrentAuthority() == null) return null;
+		scope.iChecks ++;
+		if (scope.iGeneration != sGeneration.get()) {
+			scope.iDecisions.clear();
+			scope.iGeneration = sGeneration.get();
+			return null;
+		}
+		Boolean ret = scope.iDecisions.get(new Key(user, right, targetType, target));
+		if (ret != null) scope.iHits ++;
+		return ret;
+	}
+	
+	/** Remember a decision */
+	static void put(UserContext user, Right right, String targetType, Serializable target, boolean decision) {
+		Scope scope = sScope.get();
+		if (scope == null || user == null || user.getCurrentAuthority() == null) return;
+		if (scope.iGeneration != sGeneration.get()) {
+			scope.iDecisions.clear();
+			scope.iGeneration = sGeneration.get();
+		}
+		if (scope.iDecisions.size() >= sMaxSize) scope.iDecisions.clear();
+		scope.iDecisions.put(new Key(user, right, targetType, target), decision);
+	}
+	
+	private static class Scope {
+		private Map<Key, Boolean> iDecisions = new HashMap<Key, Boolean>();
+		private long iGeneration = sGeneration.get();
+		private int iDepth = 0;
+		private int iChecks = 0, iHits = 0;
+	}
+	
+	private static class Key {
+		private String iUser, iAuthority;
+		private Long iAuthorityId;
+		private Right iRight;
+		private String iTargetType;
+		private Serializable iTarget;
+		
+		private Key(UserContext user, Right right, String targetType, Serializable target) {
+			UserAuthority authority = user.getCurrentAuthority();
+			iUser = user.getExternalUserId();
+			iAuthority = authority.getAuthority();
+			iAuthorityId = authority.getUniqueId();
+			iRight = right;
+			iTargetType = targetType;
+			iTarget = target;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(iUser, iAuthority, iAuthorityId, iRight, iTargetType, iTarget);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Key)) return false;
+			Key k = (Key)o;
+			if (iRight != k.iRight || !Objects.equals(iTargetType, k.iTargetType) || !Objects.equals(iUser, k.iUser) ||
+				!Objects.equals(iAuthority, k.iAuthority) || !Objects.equals(iAuthorityId, k.iAuthorityId)) return false;
+			return Objects.equals(iTarget, k.iTarget);
+		}
+	}
+}
@@ -20,9 +20,14 @@
 package org.unitime.timetable.security.evaluation;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -70,6 +75,18 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 	@Autowired
 	PermissionSession permissionSession;
 	
+	private Map<Right, PermissionHandle> iPermissions = new EnumMap<Right, PermissionHandle>(Right.class);
+	private static Map<String, Class<?>> sClasses = new ConcurrentHashMap<String, Class<?>>();
+	
+	private static Class<?> classForName(String className) throws ClassNotFoundException {
+		Class<?> clazz = sClasses.get(className);
+		if (clazz == null) {
+			clazz = Class.forName(className);
+			sClasses.put(className, clazz);
+		}
+		return clazz;
+	}
+	
 	@Override
     public void checkPermission(UserContext user, Serializable targetId, String targetType, Right right) throws AccessDeniedException {
 		if (user == null)
@@ -101,6 +118,14 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 			return;
 		}
 		
+		if (Boolean.TRUE.equals(PermissionCache.get(user, right, targetType, targetId))) return;
+		
+		check(user, targetId, targetType, right);
+		
+		PermissionCache.put(user, right, targetType, targetId, true);
+	}
+	
+	private void check(UserContext user, Serializable targetId, String targetType, Right right) throws AccessDeniedException {
 		try {
 			String className = targetType;
 			if (className.indexOf('.') < 0) className = "org.unitime.timetable.model." + className;
@@ -210,7 +235,7 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 				} catch (Exception e) {}
 			}
 			
-			Object domainObject = new _RootDAO().getSession().get(Class.forName(className), targetId);
+			Object domainObject = new _RootDAO().getSession().get(classForName(className), targetId);
 			if (domainObject == null)
 				throw new AccessDeniedException(MSG.domainObjectNotExists(right.toString(), targetType));
 			checkPermission(user, domainObject, right);
@@ -263,18 +288,19 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 		}
 		
 		try {
-			Permission<?> perm = (Permission<?>)applicationContext.getBean("permission" + right.name(), Permission.class);
-			if (perm != null && perm.type().isInstance(domainObject)) {
-				if ((Boolean)perm.getClass().getMethod("check", UserContext.class, perm.type()).invoke(perm, user, domainObject)) {
+			PermissionHandle perm = iPermissions.get(right);
+			if (perm != null && perm.isApplicable(domainObject)) {
+				if (perm.check(user, domainObject)) {
 					return;
 				} else {
 					throw new AccessDeniedException(MSG.permissionCheckFailed(right.toString(), domainObject.toString()));
 				}
 			}
-		} catch (BeansException e) {
 		} catch (AccessDeniedException e) {
 			throw e;
-		} catch (Exception e) {
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
 			throw new AccessDeniedException(MSG.permissionCheckFailedException(right.toString(), domainObject.toString(), e.getMessage()));
 		}
 		
@@ -298,6 +324,12 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		for (Right r: Right.values()) {
+			try {
+				if (applicationContext.containsBean("permission" + r.name()))
+					iPermissions.put(r, new PermissionHandle(applicationContext.getBean("permission" + r.name(), Permission.class)));
+			} catch (Exception e) {
+				sLog.warn("Failed to bind permission " + r + ": " + e.getMessage());
+			}
 			try {
 				if (r.hasType()) {
 					try {
@@ -403,6 +435,16 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 			return true;
 		}
 		
+		Boolean cached = PermissionCache.get(user, right, targetType, targetId);
+		if (cached != null) return cached;
+		
+		boolean ret = evaluate(user, targetId, targetType, right);
+		
+		PermissionCache.put(user, right, targetType, targetId, ret);
+		return ret;
+	}
+	
+	private boolean evaluate(UserContext user, Serializable targetId, String targetType, Right right) {
 		try {
 			String className = targetType;
 			if (className.indexOf('.') < 0) className = "org.unitime.timetable.model." + className;
@@ -474,7 +516,7 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 				} catch (Exception e) {}
 			}
 			
-			Object domainObject = new _RootDAO().getSession().get(Class.forName(className), targetId);
+			Object domainObject = new _RootDAO().getSession().get(classForName(className), targetId);
 			if (domainObject == null)
 				return false;
 
@@ -514,10 +556,12 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 		}
 		
 		try {
-			Permission<?> perm = (Permission<?>)applicationContext.getBean("permission" + right.name(), Permission.class);
-			if (perm != null && perm.type().isInstance(domainObject))
-				return (Boolean)perm.getClass().getMethod("check", UserContext.class, perm.type()).invoke(perm, user, domainObject);
-		} catch (Exception e) {
+			PermissionHandle perm = iPermissions.get(right);
+			if (perm != null && perm.isApplicable(domainObject))
+				return perm.check(user, domainObject);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
 			return false;
 		}
 		
@@ -572,6 +616,29 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 		return hasPermission(user, targetObject, right, new RoleFilter(role, filter));
 	}
 
+	/**
+	 * Permission bean with a pre-bound method handle of its check method.
+	 */
+	private static class PermissionHandle {
+		private Class<?> iType;
+		private MethodHandle iCheck;
+		
+		private PermissionHandle(Permission<?> permission) throws ReflectiveOperationException {
+			iType = permission.type();
+			iCheck = MethodHandles.publicLookup()
+					.findVirtual(Permission.class, "check", MethodType.methodType(boolean.class, UserContext.class, Object.class))
+					.bindTo(permission);
+		}
+		
+		private boolean isApplicable(Object domainObject) {
+			return iType != null && iType.isInstance(domainObject);
+		}
+		
+		private boolean check(UserContext user, Object domainObject) throws Throwable {
+			return (boolean)iCheck.invokeExact(user, domainObject);
+		}
+	}
+
 	public static class UserContextWrapper implements UserContext {
 		private static final long serialVersionUID = 1L;
 		UserAuthority iAuthority;
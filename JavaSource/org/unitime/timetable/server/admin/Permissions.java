@@ -43,6 +43,7 @@ import org.unitime.timetable.model.ChangeLog.Operation;
 import org.unitime.timetable.model.ChangeLog.Source;
 import org.unitime.timetable.model.dao.RolesDAO;
 import org.unitime.timetable.security.SessionContext;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.unitime.timetable.security.rights.Right;
 
 /**
@@ -130,6 +131,8 @@ public class Permissions implements AdminTable {
 					null,
 					null);
 		}
+		if (!changed.isEmpty())
+			PermissionCache.invalidate();
 	}
 
 	@Override
@@ -166,6 +169,8 @@ public class Permissions implements AdminTable {
 					null,
 					null);
 		}
+		if (!changed.isEmpty())
+			PermissionCache.invalidate();
 	}
 
 	@Override
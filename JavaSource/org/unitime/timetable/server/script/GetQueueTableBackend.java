@@ -74,6 +74,10 @@ public class GetQueueTableBackend implements GwtRpcImplementation<GetQueueTableR
 		q.setCreated(item.created());
 		q.setStarted(item.started());
 		q.setFinished(item.finished());
+		long now = System.currentTimeMillis();
+		q.setWaitTime(formatDuration((item.started() == null ? now : item.started().getTime()) - item.created().getTime()));
+		if (item.started() != null)
+			q.setRunTime(formatDuration((item.finished() == null ? now : item.finished().getTime()) - item.started().getTime()));
 		if (item.hasOutput()) {
 			q.setOutput(item.getOutputName());
 			q.setOutputLink(item.getOutputLink());
@@ -86,5 +90,12 @@ public class GetQueueTableBackend implements GwtRpcImplementation<GetQueueTableR
 		
 		return q;
 	}
+	
+	protected static String formatDuration(long millis) {
+		long seconds = Math.max(0l, millis / 1000l);
+		if (seconds < 60) return seconds + "s";
+		if (seconds < 3600) return (seconds / 60) + ":" + (seconds % 60 < 10 ? "0" : "") + (seconds % 60);
+		return (seconds / 3600) + ":" + ((seconds % 3600) / 60 < 10 ? "0" : "") + ((seconds % 3600) / 60) + ":" + (seconds % 60 < 10 ? "0" : "") + (seconds % 60);
+	}
 
 }
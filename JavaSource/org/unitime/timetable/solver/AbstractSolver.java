@@ -19,11 +19,15 @@
 */
 package org.unitime.timetable.solver;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
@@ -61,6 +65,7 @@ import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.CPSolverMessages;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
+import org.unitime.timetable.solver.remote.BinaryBackup;
 import org.unitime.timetable.util.Constants;
 
 /**
@@ -80,6 +85,7 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     private Map<String,String> iBestSolutionInfoBeforePassivation = null;
     private File iPassivationFolder = null;
     private String iPassivationPuid = null;
+    private long iLastBackupSize = 0, iLastBackupTime = 0, iLastRestoreTime = 0;
     protected Thread iWorkThread = null;
     
     public AbstractSolver(DataProperties properties, SolverDisposeListener disposeListener) {
@@ -413,78 +419,128 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     		}
     }
     
-    @Override
-    public boolean backup(File folder, String puid) {
-        folder.mkdirs();
-        if (currentSolution()==null) return false;
-        Lock lock = currentSolution().getLock().readLock();
-        lock.lock();
-        try {
-            File outXmlFile = new File(folder, getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
-            try {
-                FileOutputStream fos = null;
-                try {
-                    fos = new FileOutputStream(outXmlFile);
-                    Document document = createCurrentSolutionBackup(false, false);
-                    saveProperties(document);
-                    (new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
-                    fos.flush(); fos.close(); fos=null;
-                } finally {
-                    try {
-                        if (fos!=null) fos.close();
-                    } catch (IOException e) {}
-                }
-                return true;
-            } catch (Exception e) {
-                sLog.error(e.getMessage(),e);
-                if (outXmlFile.exists()) outXmlFile.delete();
-            }
-        } finally {
-        	lock.unlock();
-        }
-        return false;
-    }
-    
-    @Override
-    public boolean restore(File folder, String puid) {
-        return restore(folder, puid, false);
-    }
+	@Override
+	public boolean backup(File folder, String puid) {
+		folder.mkdirs();
+		if (currentSolution()==null) return false;
+		Lock lock = currentSolution().getLock().readLock();
+		lock.lock();
+		try {
+			boolean binary = ApplicationProperty.SolverBackupBinary.isTrue();
+			File outFile = new File(folder, getType().getPrefix() + puid + (binary ? BackupFileFilter.sBinaryExtension : BackupFileFilter.sXmlExtension));
+			File otherFile = new File(folder, getType().getPrefix() + puid + (binary ? BackupFileFilter.sXmlExtension : BackupFileFilter.sBinaryExtension));
+			try {
+				long t0 = System.currentTimeMillis();
+				OutputStream os = null;
+				try {
+					os = new BufferedOutputStream(new FileOutputStream(outFile), 65536);
+					Document document = createCurrentSolutionBackup(false, false);
+					saveProperties(document);
+					if (binary)
+						BinaryBackup.write(document, os);
+					else
+						(new XMLWriter(os,OutputFormat.createPrettyPrint())).write(document);
+					os.flush(); os.close(); os=null;
+				} finally {
+					try {
+						if (os!=null) os.close();
+					} catch (IOException e) {}
+				}
+				if (otherFile.exists()) otherFile.delete();
+				iLastBackupSize = outFile.length();
+				iLastBackupTime = System.currentTimeMillis() - t0;
+				sLog.debug("Backup of " + puid + " saved in " + iLastBackupTime + " ms (" + outFile.getName() + ", " + (iLastBackupSize >> 10) + " kB)");
+				return true;
+			} catch (Exception e) {
+				sLog.error(e.getMessage(),e);
+				if (outFile.exists()) outFile.delete();
+			}
+		} finally {
+			lock.unlock();
+		}
+		return false;
+	}
+	
+	@Override
+	public boolean restore(File folder, String puid) {
+		return restore(folder, puid, false);
+	}
+	
+	protected abstract void restureCurrentSolutionFromBackup(Document document);
+	
+	/**
+	 * Create a new model from the given backup (created by {@link #createCurrentSolutionBackup(boolean, boolean)} and {@link #saveProperties(Document)})
+	 * and restore the current solution from it. Used by {@link #restore(File, String, boolean)}, {@link #importXml(byte[])} and {@link #importBackup(byte[])}.
+	 */
+	protected M restoreFromBackup(Document document) {
+		readProperties(document);
+		
+		M model = createModel(getProperties());
+		try {
+			Progress.getInstance(model).addProgressListener(new ProgressWriter(System.out));
+			
+			setInitalSolution(model);
+			initSolver();
+			
+			restureCurrentSolutionFromBackup(document);
+			Progress.getInstance(model).setStatus(MSG.statusReady());
+			return model;
+		} catch (RuntimeException e) {
+			Progress.removeInstance(model);
+			throw e;
+		}
+	}
+	
+	@Override
+	public boolean restore(File folder, String puid, boolean removeFiles) {
+		sLog.debug("restore(folder="+folder+","+puid+")");
+		File inFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sBinaryExtension);
+		boolean binary = inFile.exists();
+		if (!binary)
+			inFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+		
+		try {
+			if (isRunning()) stopSolver();
+			disposeNoInherit(false);
+			
+			long t0 = System.currentTimeMillis();
+			Document document = null;
+			if (binary) {
+				InputStream is = new FileInputStream(inFile);
+				try {
+					document = BinaryBackup.read(is);
+				} finally {
+					is.close();
+				}
+			} else {
+				document = (new SAXReader()).read(inFile);
+			}
+			long t1 = System.currentTimeMillis();
+			
+			restoreFromBackup(document);
+			iLastRestoreTime = System.currentTimeMillis() - t0;
+			sLog.debug("Backup of " + puid + " restored in " + iLastRestoreTime + " ms (" + inFile.getName() + ", " + (inFile.length() >> 10) + " kB, " + (t1 - t0) + " ms to read)");
+			
+			if (removeFiles) {
+				inFile.delete();
+			}
+			
+			return true;
+		} catch (Exception e) {
+			sLog.error(e.getMessage(),e);
+		}
+		
+		return false;
+	}
+	
+    /** Size of the last backup in bytes */
+    public long getLastBackupSize() { return iLastBackupSize; }
     
-    protected abstract void restureCurrentSolutionFromBackup(Document document);
+    /** Time needed to create the last backup in milliseconds */
+    public long getLastBackupTime() { return iLastBackupTime; }
     
-    @Override
-    public boolean restore(File folder, String puid, boolean removeFiles) {
-        sLog.debug("restore(folder="+folder+","+puid+")");
-        File inXmlFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
-        
-        M model = null;
-        try {
-            if (isRunning()) stopSolver();
-            disposeNoInherit(false);
-
-            Document document = (new SAXReader()).read(inXmlFile);
-            readProperties(document);
-            
-            model = createModel(getProperties());
-            Progress.getInstance(model).addProgressListener(new ProgressWriter(System.out));
-            setInitalSolution(model);
-            initSolver();
-
-            restureCurrentSolutionFromBackup(document);
-            Progress.getInstance(model).setStatus(MSG.statusReady());
-            
-            if (removeFiles) {
-                inXmlFile.delete();
-            }
-            
-            return true;
-        } catch (Exception e) {
-            sLog.error(e.getMessage(),e);
-            if (model!=null) Progress.removeInstance(model);
-        }
-        
-        return false;
-    }
+    /** Time needed to restore the last backup (including model creation) in milliseconds */
+    public long getLastRestoreTime() { return iLastRestoreTime; }
     
     @Override
     public void clear() {
@@ -543,6 +599,8 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         restore(iPassivationFolder, iPassivationPuid, true);
         System.gc();
         sLog.debug(" -- memory usage after activation:"+org.unitime.commons.Debug.getMem());
+        sLog.info("Solver " + iPassivationPuid + " activated in " + iLastRestoreTime + " ms.");
+        SolverPassivationScheduler.getInstance().activated(iLastRestoreTime);
         
         return true;
     }
@@ -565,6 +623,7 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         iPassivationFolder = folder;
         iPassivationPuid = puid;
         backup(iPassivationFolder, iPassivationPuid);
+        sLog.info("Solver " + puid + " passivated in " + iLastBackupTime + " ms (" + (iLastBackupSize >> 10) + " kB).");
 
         disposeNoInherit(false);
         
@@ -650,22 +709,39 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     
     public void importXml(byte[] data) throws IOException {
         try {
-            Document document = (new SAXReader()).read(new ByteArrayInputStream(data));
-            readProperties(document);
-            
-            M model = createModel(getProperties());
-            Progress.getInstance(model).addProgressListener(new ProgressWriter(System.out));
-            
-            setInitalSolution(model);
-            initSolver();
-
-            restureCurrentSolutionFromBackup(document);
-            Progress.getInstance(model).setStatus(MSG.statusReady());
+            restoreFromBackup((new SAXReader()).read(new ByteArrayInputStream(data)));
         } catch (DocumentException e) {
         	throw new IOException(e.getMessage(), e);
         }
     }
     
+	/**
+	 * Binary backup of the solver (including the current and the best solution and the solver configuration),
+	 * used to move a running solver to another solver server
+	 */
+	public byte[] exportBackup() throws IOException {
+		activateIfNeeded();
+		Lock lock = currentSolution().getLock().readLock();
+		lock.lock();
+		try {
+			ByteArrayOutputStream ret = new ByteArrayOutputStream();
+			Document document = createCurrentSolutionBackup(false, false);
+			saveProperties(document);
+			BinaryBackup.write(document, ret);
+			ret.flush(); ret.close();
+			return ret.toByteArray();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Restore the solver from a binary backup created by {@link AbstractSolver#exportBackup()}
+	 */
+	public void importBackup(byte[] data) throws IOException {
+		restoreFromBackup(BinaryBackup.read(new ByteArrayInputStream(data)));
+	}
+    
     public static class DefaultReloadingDoneCallback<V extends Variable<V, T>, T extends Value<V, T>, M extends Model<V, T>> implements Callback {
         Map<V, T> iCurrentAssignmentTable = new Hashtable();
         Map<V, T> iBestAssignmentTable = new Hashtable();
@@ -0,0 +1,74 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.solver.SolverPassivationScheduler.Candidate;
+
+/**
+ * Default passivation policy: solvers that have not been used for more than
+ * {@link ApplicationProperty#SolverPasivationTime} minutes are passivated.
+ * Under memory pressure, solvers that are idle for at least {@link ApplicationProperty#SolverPassivationMinIdleTime}
+ * seconds are passivated as well, the largest and the longest idle first (ranked by estimated size &times; idle time),
+ * until the requested amount of memory is released.
+ * 
+ * @author agent
+ */
+public class DefaultSolverPassivationPolicy implements SolverPassivationPolicy {
+
+	@Override
+	public List<Candidate> select(Collection<Candidate> candidates, long bytesToFree) {
+		List<Candidate> ret = new ArrayList<Candidate>();
+		long inactiveTimeToPassivate = 60000l * ApplicationProperty.SolverPasivationTime.intValue();
+		if (inactiveTimeToPassivate > 0)
+			for (Candidate candidate: candidates)
+				if (candidate.getIdleTime() >= inactiveTimeToPassivate) {
+					ret.add(candidate);
+					// only estimate the size when there is memory to be released (the estimate walks the whole solver)
+					if (bytesToFree > 0) bytesToFree -= candidate.getSize();
+				}
+		if (bytesToFree <= 0) return ret;
+		
+		long minIdleTime = 1000l * ApplicationProperty.SolverPassivationMinIdleTime.intValue();
+		List<Candidate> adepts = new ArrayList<Candidate>();
+		for (Candidate candidate: candidates)
+			if (candidate.getIdleTime() >= minIdleTime && !ret.contains(candidate))
+				adepts.add(candidate);
+		Collections.sort(adepts, new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate c1, Candidate c2) {
+				return Double.compare((double)c2.getSize() * c2.getIdleTime(), (double)c1.getSize() * c1.getIdleTime());
+			}
+		});
+		for (Candidate candidate: adepts) {
+			if (bytesToFree <= 0) break;
+			ret.add(candidate);
+			bytesToFree -= candidate.getSize();
+		}
+		return ret;
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.unitime.timetable.solver.SolverPassivationScheduler.Candidate;
+
+/**
+ * Decides which solvers are to be passivated by the {@link SolverPassivationScheduler}.
+ * The implementation is set by the unitime.solver.passivation.policy application property.
+ * 
+ * @author agent
+ */
+public interface SolverPassivationPolicy {
+	
+	/**
+	 * Select solvers to be passivated
+	 * @param candidates solvers that can be passivated (not passivated and not working)
+	 * @param bytesToFree when the server is under memory pressure, the amount of memory (in bytes) that should be released; zero otherwise
+	 * @return solvers to passivate, in the order in which they should be passivated
+	 */
+	public List<Candidate> select(Collection<Candidate> candidates, long bytesToFree);
+
+}
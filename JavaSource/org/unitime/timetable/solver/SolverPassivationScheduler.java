@@ -0,0 +1,371 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.util.MemoryCounter;
+
+/**
+ * Solver passivation scheduler. Replaces the per-container passivation threads with a single
+ * scheduler that wakes up every {@link #sDelay} milliseconds or whenever the heap usage after a garbage
+ * collection exceeds {@link ApplicationProperty#SolverPassivationMemoryThreshold} (memory pool notification, only when the threshold is set).
+ * The solvers to be passivated are selected by the {@link SolverPassivationPolicy}
+ * (see {@link ApplicationProperty#SolverPassivationPolicy}) and passivated in parallel
+ * on a pool of {@link ApplicationProperty#SolverPassivationThreads} background threads.
+ * 
+ * @author agent
+ */
+public class SolverPassivationScheduler implements NotificationListener {
+	private static Log sLog = LogFactory.getLog(SolverPassivationScheduler.class);
+	private static SolverPassivationScheduler sInstance = null;
+	public static long sDelay = 30000;
+	
+	private Map<String, Map<String, ? extends AbstractSolver>> iSolvers = new ConcurrentHashMap<String, Map<String, ? extends AbstractSolver>>();
+	private Set<AbstractSolver> iInProgress = Collections.synchronizedSet(new HashSet<AbstractSolver>());
+	private Map<AbstractSolver, long[]> iSizes = Collections.synchronizedMap(new WeakHashMap<AbstractSolver, long[]>());
+	private SolverPassivationPolicy iPolicy = null;
+	private SchedulerThread iThread = null;
+	private ExecutorService iExecutor = null;
+	private PassivationStatistics iStatistics = new PassivationStatistics();
+	private List<MemoryPoolMXBean> iPools = new ArrayList<MemoryPoolMXBean>();
+	private boolean iPressure = false;
+	
+	private SolverPassivationScheduler() {
+		try {
+			iPolicy = (SolverPassivationPolicy)Class.forName(ApplicationProperty.SolverPassivationPolicyClass.value()).getConstructor().newInstance();
+		} catch (Exception e) {
+			sLog.warn("Failed to create solver passivation policy " + ApplicationProperty.SolverPassivationPolicyClass.value() + ", using the default policy instead: " + e.getMessage(), e);
+			iPolicy = new DefaultSolverPassivationPolicy();
+		}
+	}
+	
+	public static synchronized SolverPassivationScheduler getInstance() {
+		if (sInstance == null)
+			sInstance = new SolverPassivationScheduler();
+		return sInstance;
+	}
+	
+	/**
+	 * Register solvers of a solver container
+	 * @param name container name (e.g., CourseTimetabling)
+	 * @param solvers solvers of the container (user id &rarr; solver)
+	 */
+	public synchronized void register(String name, Map<String, ? extends AbstractSolver> solvers) {
+		iSolvers.put(name, solvers);
+		if (iThread == null) {
+			iExecutor = Executors.newFixedThreadPool(Math.max(1, ApplicationProperty.SolverPassivationThreads.intValue()), new PassivationThreadFactory());
+			addMemoryListener();
+			iThread = new SchedulerThread(ApplicationProperties.getPassivationFolder());
+			iThread.start();
+		}
+	}
+	
+	/**
+	 * Unregister solvers of a solver container, the scheduler is stopped when there are no registered containers
+	 */
+	public synchronized void unregister(String name) {
+		iSolvers.remove(name);
+		if (iSolvers.isEmpty() && iThread != null) {
+			iThread.destroy();
+			iThread = null;
+			iExecutor.shutdownNow();
+			iExecutor = null;
+			removeMemoryListener();
+		}
+	}
+	
+	protected void addMemoryListener() {
+		int threshold = ApplicationProperty.SolverPassivationMemoryThreshold.intValue();
+		if (threshold <= 0 || threshold >= 100) return;
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && pool.getUsage().getMax() > 0) {
+				pool.setCollectionUsageThreshold(pool.getUsage().getMax() * threshold / 100);
+				iPools.add(pool);
+			}
+		}
+		if (!iPools.isEmpty())
+			((NotificationEmitter)ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+	}
+	
+	protected void removeMemoryListener() {
+		if (iPools.isEmpty()) return;
+		try {
+			((NotificationEmitter)ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+		} catch (Exception e) {}
+		for (MemoryPoolMXBean pool: iPools)
+			pool.setCollectionUsageThreshold(0);
+		iPools.clear();
+	}
+	
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+			synchronized (this) {
+				iPressure = true;
+				if (iThread != null) iThread.interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Amount of memory (in bytes) by which the heap usage after the last garbage collection exceeds the threshold
+	 */
+	protected long getBytesToFree() {
+		long ret = 0;
+		for (MemoryPoolMXBean pool: iPools) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage != null && pool.isCollectionUsageThresholdExceeded())
+				ret += Math.max(0, usage.getUsed() - pool.getCollectionUsageThreshold());
+		}
+		return ret;
+	}
+	
+	protected long getSize(AbstractSolver solver) {
+		long refresh = 1000l * ApplicationProperty.SolverTelemetryMemUsageRefresh.intValue();
+		long[] size = iSizes.get(solver);
+		if (size == null || System.currentTimeMillis() - size[1] > refresh) {
+			size = new long[] { new MemoryCounter().estimate(solver), System.currentTimeMillis() };
+			iSizes.put(solver, size);
+		}
+		return size[0];
+	}
+	
+	protected void schedule(File folder) {
+		long bytesToFree = 0;
+		synchronized (this) {
+			if (iPressure) {
+				bytesToFree = getBytesToFree();
+				if (bytesToFree > 0) iStatistics.pressure();
+				iPressure = false;
+			}
+		}
+		
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		for (Map<String, ? extends AbstractSolver> solvers: iSolvers.values()) {
+			for (Map.Entry<String, ? extends AbstractSolver> entry: solvers.entrySet()) {
+				AbstractSolver solver = entry.getValue();
+				if (iInProgress.contains(solver) || solver.isPassivated() || !solver.canPassivate()) continue;
+				try {
+					if (solver.isWorking()) continue;
+				} catch (Exception e) { continue; }
+				candidates.add(new Candidate(entry.getKey(), solver));
+			}
+		}
+		if (candidates.isEmpty()) return;
+		
+		List<Candidate> selected = iPolicy.select(candidates, bytesToFree);
+		if (bytesToFree > 0)
+			sLog.info("Memory pressure detected (" + (bytesToFree >> 20) + " MB over the threshold), passivating " + selected.size() + " of " + candidates.size() + " solvers.");
+		for (Candidate candidate: selected)
+			if (iInProgress.add(candidate.getSolver()))
+				submit(folder, candidate);
+	}
+	
+	protected synchronized void submit(final File folder, final Candidate candidate) {
+		if (iExecutor == null) {
+			iInProgress.remove(candidate.getSolver());
+			return;
+		}
+		iExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					// skip solvers that have been used or started since they were selected
+					if (candidate.getSolver().timeFromLastUsed() < candidate.getIdleTime() || candidate.getSolver().isWorking()) return;
+					long t0 = System.currentTimeMillis();
+					if (candidate.getSolver().passivate(folder, candidate.getUser())) {
+						iStatistics.passivated(System.currentTimeMillis() - t0);
+						iSizes.remove(candidate.getSolver());
+					}
+				} catch (Exception e) {
+					sLog.warn("Failed to passivate solver " + candidate.getUser() + ": " + e.getMessage(), e);
+				} finally {
+					iInProgress.remove(candidate.getSolver());
+				}
+			}
+		});
+	}
+	
+	/**
+	 * To be called when a passivated solver is activated
+	 * @param time activation time in milliseconds
+	 */
+	public void activated(long time) {
+		iStatistics.activated(time);
+	}
+	
+	/**
+	 * Passivation and activation statistics of this server
+	 */
+	public PassivationStatistics getStatistics() {
+		return iStatistics.copy();
+	}
+	
+	/**
+	 * Solver that can be passivated
+	 */
+	public class Candidate {
+		private String iUser;
+		private AbstractSolver iSolver;
+		private long iIdleTime;
+		private long iSize = -1;
+		
+		Candidate(String user, AbstractSolver solver) {
+			iUser = user; iSolver = solver;
+			iIdleTime = solver.timeFromLastUsed();
+		}
+		
+		public String getUser() { return iUser; }
+		public AbstractSolver getSolver() { return iSolver; }
+		/** Time (in milliseconds) since the solver was last used */
+		public long getIdleTime() { return iIdleTime; }
+		/** Estimated memory usage of the solver (in bytes), computed on the first call (the estimate is also cached by the scheduler) */
+		public long getSize() {
+			if (iSize < 0) iSize = SolverPassivationScheduler.this.getSize(iSolver);
+			return iSize;
+		}
+	}
+	
+	public static class PassivationStatistics implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private long iPassivations = 0, iTotalPassivationTime = 0, iMaxPassivationTime = 0;
+		private long iActivations = 0, iTotalActivationTime = 0, iMaxActivationTime = 0;
+		private long iPressureEvents = 0;
+		
+		private synchronized void passivated(long time) {
+			iPassivations ++;
+			iTotalPassivationTime += time;
+			if (time > iMaxPassivationTime) iMaxPassivationTime = time;
+		}
+		
+		private synchronized void activated(long time) {
+			iActivations ++;
+			iTotalActivationTime += time;
+			if (time > iMaxActivationTime) iMaxActivationTime = time;
+		}
+		
+		private synchronized void pressure() {
+			iPressureEvents ++;
+		}
+		
+		private synchronized PassivationStatistics copy() {
+			PassivationStatistics ret = new PassivationStatistics();
+			ret.iPassivations = iPassivations; ret.iTotalPassivationTime = iTotalPassivationTime; ret.iMaxPassivationTime = iMaxPassivationTime;
+			ret.iActivations = iActivations; ret.iTotalActivationTime = iTotalActivationTime; ret.iMaxActivationTime = iMaxActivationTime;
+			ret.iPressureEvents = iPressureEvents;
+			return ret;
+		}
+		
+		/** Number of passivated solvers */
+		public long getPassivations() { return iPassivations; }
+		/** Total time spent passivating solvers (in milliseconds) */
+		public long getTotalPassivationTime() { return iTotalPassivationTime; }
+		/** Maximal passivation time (in milliseconds) */
+		public long getMaxPassivationTime() { return iMaxPassivationTime; }
+		/** Number of activated solvers */
+		public long getActivations() { return iActivations; }
+		/** Total time spent activating solvers (in milliseconds) */
+		public long getTotalActivationTime() { return iTotalActivationTime; }
+		/** Maximal activation time (in milliseconds) */
+		public long getMaxActivationTime() { return iMaxActivationTime; }
+		/** Number of times the passivation was triggered by a memory pressure */
+		public long getPressureEvents() { return iPressureEvents; }
+		
+		@Override
+		public String toString() {
+			return "passivations: " + iPassivations + " (avg " + (iPassivations == 0 ? 0 : iTotalPassivationTime / iPassivations) + " ms, max " + iMaxPassivationTime + " ms), " +
+					"activations: " + iActivations + " (avg " + (iActivations == 0 ? 0 : iTotalActivationTime / iActivations) + " ms, max " + iMaxActivationTime + " ms), " +
+					"memory pressure events: " + iPressureEvents;
+		}
+	}
+	
+	private static class PassivationThreadFactory implements ThreadFactory {
+		private AtomicInteger iCounter = new AtomicInteger(0);
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Passivation-" + iCounter.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	}
+	
+	private class SchedulerThread extends Thread {
+		private File iFolder = null;
+		private boolean iContinue = true;
+		
+		public SchedulerThread(File folder) {
+			iFolder = folder;
+			setName("PassivationScheduler");
+			setDaemon(true);
+			setPriority(Thread.MIN_PRIORITY);
+		}
+		
+		public void run() {
+			sLog.info("Solver passivation scheduler started.");
+			while (iContinue) {
+				try {
+					schedule(iFolder);
+				} catch (Exception e) {
+					sLog.warn("Solver passivation failed, reason: " + e.getMessage(), e);
+				}
+				try {
+					sleep(sDelay);
+				} catch (InterruptedException e) {
+					if (!iContinue) break;
+				}
+			}
+			sLog.info("Solver passivation scheduler finished.");
+		}
+		
+		public void destroy() {
+			iContinue = false;
+			if (isAlive()) interrupt();
+		}
+	}
+}
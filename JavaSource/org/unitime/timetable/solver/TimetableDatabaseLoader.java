@@ -31,11 +31,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -74,6 +78,7 @@ import org.hibernate.FlushMode;
 import org.hibernate.LazyInitializationException;
 import org.hibernate.query.Query;
 import org.hibernate.Transaction;
+import org.unitime.commons.hibernate.util.HibernateUtil;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.gwt.resources.CPSolverMessages;
@@ -216,6 +221,16 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     
     private boolean iRoomAvailabilityTimeStampIsSet = false;
     
+    private boolean iParallelLoad = false;
+    private int iParallelLoadThreads = 4;
+    private ForkJoinPool iPool = null;
+    private Map<RoomConstraint, ForkJoinTask<Collection<TimeBlock>>> iRoomAvailabilityTasks = null;
+    private Map<InstructorConstraint, ForkJoinTask<Collection<TimeBlock>>> iInstructorAvailabilityTasks = null;
+    
+    private String iPhase = null;
+    private long iPhaseStart = 0, iLoadStart = 0;
+    private Map<String, Long> iPhaseTimes = new LinkedHashMap<String, Long>();
+    
     private CommittedStudentConflictsMode iCommittedStudentConflictsMode = CommittedStudentConflictsMode.Load;
     
     private StudentCourseDemands iStudentCourseDemands = null;
@@ -344,6 +359,8 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         iLoadCommittedReservations = getModel().getProperties().getPropertyBoolean("General.LoadCommittedReservations", iLoadCommittedReservations);
         
         iUseAmPm = getModel().getProperties().getPropertyBoolean("General.UseAmPm", iUseAmPm);
+        iParallelLoad = getModel().getProperties().getPropertyBoolean("General.ParallelLoad", iParallelLoad);
+        iParallelLoadThreads = getModel().getProperties().getPropertyInt("General.ParallelLoadThreads", Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
         iShowClassSuffix = ApplicationProperty.SolverShowClassSufix.isTrue();
         iShowConfigName = ApplicationProperty.SolverShowConfiguratioName.isTrue();
         
@@ -1589,6 +1606,120 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     	incProgress();
     }
     
+    /**
+     * Parallel loading: the instructor and room availability queries are executed in separate read-only sessions,
+     * only returning identifiers. The assignments are then fetched in bulk using the main session (so that
+     * the cached placements are shared with the rest of the load) and applied in the same order as during the
+     * sequential load.
+     */
+    private void loadAvailabilitiesParallel(org.hibernate.Session hibSession) {
+    	setPhase(MSG.phaseLoadInstructorAvailabilities(), 1);
+    	List<ForkJoinTask<List<Object[]>>> instructorTasks = new ArrayList<ForkJoinTask<List<Object[]>>>();
+    	Set<String> puids = new HashSet<String>();
+    	for (Enumeration e=iInstructors.elements();e.hasMoreElements();) {
+    		InstructorConstraint ic = (InstructorConstraint)e.nextElement();
+    		if (ic.getPuid()==null) continue;
+    		puids.add(ic.getPuid());
+    		if (puids.size() == 100) {
+    			instructorTasks.add(submitInstructorAvailabilities(puids));
+    			puids = new HashSet<String>();
+    		}
+    	}
+    	if (!puids.isEmpty()) instructorTasks.add(submitInstructorAvailabilities(puids));
+    	
+    	List<ForkJoinTask<List<Object[]>>> roomTasks = new ArrayList<ForkJoinTask<List<Object[]>>>();
+    	StringBuffer roomids = new StringBuffer();
+    	int idx = 0;
+    	for (Enumeration e=iRooms.elements();e.hasMoreElements();) {
+    		RoomConstraint rc = (RoomConstraint)e.nextElement();
+    		if (roomids.length()>0) roomids.append(",");
+    		roomids.append(rc.getResourceId()); idx++;
+    		if (idx==100) {
+    			roomTasks.add(submitRoomAvailabilities(roomids.toString()));
+    			roomids = new StringBuffer();
+    			idx = 0;
+    		}
+    	}
+    	if (roomids.length()>0) roomTasks.add(submitRoomAvailabilities(roomids.toString()));
+    	
+    	List<Object[]> instructorAssignments = new ArrayList<Object[]>();
+    	for (ForkJoinTask<List<Object[]>> task: instructorTasks)
+    		instructorAssignments.addAll(task.join());
+    	List<Object[]> roomAssignments = new ArrayList<Object[]>();
+    	for (ForkJoinTask<List<Object[]>> task: roomTasks)
+    		roomAssignments.addAll(task.join());
+    	
+    	Set<Long> assignmentIds = new HashSet<Long>();
+    	for (Object[] x: instructorAssignments) assignmentIds.add((Long)x[1]);
+    	for (Object[] x: roomAssignments) assignmentIds.add((Long)x[1]);
+    	Map<Long, Assignment> assignments = new HashMap<Long, Assignment>();
+    	List<Long> ids = new ArrayList<Long>(assignmentIds);
+    	for (int i = 0; i < ids.size(); i += 1000) {
+    		for (Assignment a: hibSession.createQuery("from Assignment a where a.uniqueId in :ids", Assignment.class)
+    				.setParameterList("ids", ids.subList(i, Math.min(i + 1000, ids.size())), Long.class).list())
+    			assignments.put(a.getUniqueId(), a);
+    	}
+    	
+    	for (Object[] x: instructorAssignments) {
+			String puid = (String)x[0];
+			Assignment a = assignments.get((Long)x[1]);
+			if (a == null) continue;
+			InstructorConstraint ic = (InstructorConstraint)iInstructors.get(puid);
+			Placement p = a.getPlacement();
+			ic.setNotAvailable(p);
+			if (!iLectures.containsKey(a.getClassId())) {
+				iLectures.put(a.getClassId(), p.variable());
+				getModel().addVariable(p.variable());
+			}
+    	}
+    	incProgress();
+    	
+    	setPhase(MSG.phaseLoadRoomAvailabilities(), 1);
+    	for (Object[] x: roomAssignments) {
+			Long roomId = (Long)x[0];
+			Assignment a = assignments.get((Long)x[1]);
+			if (a == null) continue;
+			Placement p = a.getPlacement();
+			RoomConstraint rc = (RoomConstraint)iRooms.get(roomId);
+			rc.setNotAvailable(p);
+			if (!iLectures.containsKey(a.getClassId())) {
+				iLectures.put(a.getClassId(), p.variable());
+				getModel().addVariable(p.variable());
+			}
+    	}
+    	incProgress();
+    }
+    
+    private ForkJoinTask<List<Object[]>> submitInstructorAvailabilities(final Set<String> puids) {
+    	return iPool.submit(() -> readOnlyQuery(s -> s.createQuery(
+    			"select distinct i.externalUniqueId, a.uniqueId from ClassInstructor ci inner join ci.instructor i inner join ci.classInstructing.assignments a " +
+    			"where ci.lead = true and i.externalUniqueId in :puids and a.solution.owner.session.uniqueId=:sessionId and a.solution.commited=true and a.solution.owner.uniqueId not in ("+iSolverGroupIds+")",
+    			Object[].class)
+    			.setParameter("sessionId", iSessionId.longValue())
+    			.setParameterList("puids", puids, String.class)
+    			.list()));
+    }
+    
+    private ForkJoinTask<List<Object[]>> submitRoomAvailabilities(final String roomids) {
+    	return iPool.submit(() -> readOnlyQuery(s -> s.createQuery(
+    			"select distinct r.uniqueId, a.uniqueId from Location r inner join r.assignments as a "+
+				"where r.uniqueId in ("+roomids+") and a.solution.owner.session.uniqueId=:sessionId and a.solution.commited=true and " +
+				"a.solution.owner.uniqueId not in ("+iSolverGroupIds+") and r.ignoreRoomCheck = false", Object[].class)
+    			.setParameter("sessionId", iSessionId.longValue())
+    			.list()));
+    }
+    
+    private static <T> T readOnlyQuery(Function<org.hibernate.Session, T> query) {
+    	org.hibernate.Session hibSession = TimetableManagerDAO.getInstance().createNewSession();
+    	try {
+    		hibSession.setDefaultReadOnly(true);
+    		hibSession.setCacheMode(CacheMode.IGNORE);
+    		return query.apply(hibSession);
+    	} finally {
+    		hibSession.close();
+    	}
+    }
+    
     private Constraint createGroupConstraint(DistributionPref pref) {
     	return createGroupConstraint(pref.getUniqueId(), pref.getDistributionType(), pref.getPrefLevel(), pref.getOwner());
     }
@@ -2181,6 +2312,10 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     	org.hibernate.Session hibSession = null;
     	Transaction tx = null;
     	try {
+    		iLoadStart = System.currentTimeMillis();
+    		if (iParallelLoad)
+    			iPool = new ForkJoinPool(iParallelLoadThreads);
+    		
     		hibSession = TimetableManagerDAO.getInstance().getSession();
     		hibSession.setCacheMode(CacheMode.IGNORE);
     		hibSession.setHibernateFlushMode(FlushMode.COMMIT);
@@ -2194,6 +2329,13 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     		iProgress.message(msglevel("loadFailed", Progress.MSGLEVEL_FATAL), MSG.fatalLoadFailed(e.getMessage()), e);
     		tx.rollback();
     	} finally {
+    		if (iPool != null) {
+    			iPool.shutdownNow();
+    			iPool = null;
+    		}
+    		iRoomAvailabilityTasks = null;
+    		iInstructorAvailabilityTasks = null;
+    		logPhaseTimes();
     		// here we need to close the session since this code may run in a separate thread
     		if (hibSession!=null && hibSession.isOpen()) hibSession.close();
     	}
@@ -2891,9 +3033,13 @@ public class TimetableDatabaseLoader extends TimetableLoader {
 			incProgress();
 		}
 		
-		loadInstructorAvailabilities(hibSession);
-		
-		loadRoomAvailabilities(hibSession);
+		if (iPool != null) {
+			loadAvailabilitiesParallel(hibSession);
+		} else {
+			loadInstructorAvailabilities(hibSession);
+			
+			loadRoomAvailabilities(hibSession);
+		}
 		
 		setPhase(MSG.phaseLoadingOfferings(), iAllClasses.size());
     	Set<Long> loadedOfferings = new HashSet<Long>();
@@ -3567,6 +3713,8 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         if (availability != null) {
         	Date[] startEnd = initializeRoomAvailability(availability);
         	if (startEnd != null) {
+        		if (iPool != null)
+        			prefetchAvailability(availability, startEnd);
         		loadRoomAvailability(availability, startEnd);
         		loadInstructorAvailability(availability, startEnd);
         	}
@@ -3629,28 +3777,32 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         	loadInstructorStudentConflicts(hibSession);
 
         setPhase(MSG.phaseComputingJenrl(),iStudents.size());
-        Hashtable jenrls = new Hashtable();
-        for (Iterator i1=iStudents.values().iterator();i1.hasNext();) {
-            Student st = (Student)i1.next();
-            for (Iterator i2=st.getLectures().iterator();i2.hasNext();) {
-                Lecture l1 = (Lecture)i2.next();
-                for (Iterator i3=st.getLectures().iterator();i3.hasNext();) {
-                    Lecture l2 = (Lecture)i3.next();
-                    if (l1.getId()>=l2.getId()) continue;
-                    Hashtable x = (Hashtable)jenrls.get(l1);
-                    if (x==null) { x = new Hashtable(); jenrls.put(l1, x); }
-                    JenrlConstraint jenrl = (JenrlConstraint)x.get(l2);
-                    if (jenrl==null) {
-                        jenrl = new JenrlConstraint();
-                        getModel().addConstraint(jenrl);
-                        jenrl.addVariable(l1);
-                        jenrl.addVariable(l2);
-                        x.put(l2, jenrl);
+        if (iPool != null) {
+        	computeJenrlParallel();
+        } else {
+            Hashtable jenrls = new Hashtable();
+            for (Iterator i1=iStudents.values().iterator();i1.hasNext();) {
+                Student st = (Student)i1.next();
+                for (Iterator i2=st.getLectures().iterator();i2.hasNext();) {
+                    Lecture l1 = (Lecture)i2.next();
+                    for (Iterator i3=st.getLectures().iterator();i3.hasNext();) {
+                        Lecture l2 = (Lecture)i3.next();
+                        if (l1.getId()>=l2.getId()) continue;
+                        Hashtable x = (Hashtable)jenrls.get(l1);
+                        if (x==null) { x = new Hashtable(); jenrls.put(l1, x); }
+                        JenrlConstraint jenrl = (JenrlConstraint)x.get(l2);
+                        if (jenrl==null) {
+                            jenrl = new JenrlConstraint();
+                            getModel().addConstraint(jenrl);
+                            jenrl.addVariable(l1);
+                            jenrl.addVariable(l2);
+                            x.put(l2, jenrl);
+                        }
+                        jenrl.incJenrl(getAssignment(), st);
                     }
-                    jenrl.incJenrl(getAssignment(), st);
                 }
+                incProgress();
             }
-            incProgress();
         }
         
     	if (!hibSession.isOpen())
@@ -3923,7 +4075,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
             RoomConstraint room = (RoomConstraint)e.nextElement();
             incProgress();
             if (!room.getConstraint()) continue;
-            Collection<TimeBlock> times = getRoomAvailability(availability, room, startEnd[0], startEnd[1]);
+            Collection<TimeBlock> times = (iRoomAvailabilityTasks == null ? getRoomAvailability(availability, room, startEnd[0], startEnd[1]) : getAvailability(iRoomAvailabilityTasks.get(room)));
             if (times==null) continue;
             for (TimeBlock time : times) {
                 iProgress.debug(room.getName()+" not available due to "+time);
@@ -3981,15 +4133,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
             sLog.error(e.getMessage(),e);
             iProgress.message(msglevel("roomAvailabilityFailure", Progress.MSGLEVEL_WARN), MSG.warnRoomAvailableServiceFailed(e.getMessage()));
         } 
-        if (!iRoomAvailabilityTimeStampIsSet) {
-            iRoomAvailabilityTimeStampIsSet = true;
-            if (ts!=null) {
-                getModel().getProperties().setProperty("RoomAvailability.TimeStamp", ts);
-                iProgress.message(msglevel("roomAvailabilityUpdated", Progress.MSGLEVEL_INFO), MSG.infoUsingRoomAvailability(ts));
-            } else {
-                iProgress.message(msglevel("roomAvailabilityFailure", Progress.MSGLEVEL_ERROR), MSG.warnRoomAvailableServiceNotAvailable());
-            }
-        }
+        setRoomAvailabilityTimeStamp(ts);
         return ret;
     }
     
@@ -4003,7 +4147,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         int sessionYear = iSession.getSessionStartYear();
         for (InstructorConstraint instructor: getModel().getInstructorConstraints()) {
             incProgress();
-            Collection<TimeBlock> times = getInstructorAvailability(availability, instructor, startEnd[0], startEnd[1]);
+            Collection<TimeBlock> times = (iInstructorAvailabilityTasks == null ? getInstructorAvailability(availability, instructor, startEnd[0], startEnd[1]) : getAvailability(iInstructorAvailabilityTasks.get(instructor)));
             if (times==null) continue;
             for (TimeBlock time : times) {
                 iProgress.debug(instructor.getName() + " not available due to " + time);
@@ -4067,6 +4211,67 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         }
     }
     
+    protected void setRoomAvailabilityTimeStamp(String ts) {
+        if (!iRoomAvailabilityTimeStampIsSet) {
+            iRoomAvailabilityTimeStampIsSet = true;
+            if (ts!=null) {
+                getModel().getProperties().setProperty("RoomAvailability.TimeStamp", ts);
+                iProgress.message(msglevel("roomAvailabilityUpdated", Progress.MSGLEVEL_INFO), MSG.infoUsingRoomAvailability(ts));
+            } else {
+                iProgress.message(msglevel("roomAvailabilityFailure", Progress.MSGLEVEL_ERROR), MSG.warnRoomAvailableServiceNotAvailable());
+            }
+        }
+    }
+    
+    /**
+     * Parallel loading: retrieve room and instructor availabilities from the room availability service in parallel,
+     * the results are then consumed by {@link #loadRoomAvailability(RoomAvailabilityInterface, Date[])} and
+     * {@link #loadInstructorAvailability(RoomAvailabilityInterface, Date[])} in the same order as during the sequential load.
+     */
+    protected void prefetchAvailability(final RoomAvailabilityInterface availability, final Date[] startEnd) {
+    	String ts = null;
+    	try {
+    		ts = availability.getTimeStamp(startEnd[0], startEnd[1], RoomAvailabilityInterface.sClassType);
+    	} catch (Exception e) {
+            sLog.error(e.getMessage(),e);
+            iProgress.message(msglevel("roomAvailabilityFailure", Progress.MSGLEVEL_WARN), MSG.warnRoomAvailableServiceFailed(e.getMessage()));
+    	}
+    	setRoomAvailabilityTimeStamp(ts);
+    	iRoomAvailabilityTasks = new HashMap<RoomConstraint, ForkJoinTask<Collection<TimeBlock>>>();
+    	for (final RoomConstraint room: iRooms.values()) {
+    		if (!room.getConstraint()) continue;
+    		iRoomAvailabilityTasks.put(room, iPool.submit(() -> {
+    			try {
+    				return availability.getRoomAvailability(room.getResourceId(), startEnd[0], startEnd[1], RoomAvailabilityInterface.sClassType);
+    			} finally {
+    				HibernateUtil.closeCurrentThreadSessions();
+    			}
+    		}));
+    	}
+    	iInstructorAvailabilityTasks = new HashMap<InstructorConstraint, ForkJoinTask<Collection<TimeBlock>>>();
+    	for (final InstructorConstraint instructor: getModel().getInstructorConstraints()) {
+    		iInstructorAvailabilityTasks.put(instructor, iPool.submit(() -> {
+    			try {
+    				return availability.getInstructorAvailability(instructor.getResourceId(), startEnd[0], startEnd[1], RoomAvailabilityInterface.sClassType);
+    			} finally {
+    				HibernateUtil.closeCurrentThreadSessions();
+    			}
+    		}));
+    	}
+    }
+    
+    protected Collection<TimeBlock> getAvailability(ForkJoinTask<Collection<TimeBlock>> task) {
+    	if (task == null) return null;
+    	try {
+    		return task.join();
+    	} catch (Exception e) {
+    		Throwable t = (e.getCause() == null ? e : e.getCause());
+    		sLog.error(t.getMessage(),t);
+            iProgress.message(msglevel("roomAvailabilityFailure", Progress.MSGLEVEL_WARN), MSG.warnRoomAvailableServiceFailed(t.getMessage()));
+            return null;
+    	}
+    }
+    
     public Collection<TimeBlock> getInstructorAvailability(RoomAvailabilityInterface availability, InstructorConstraint instructor, Date startTime, Date endTime) {
         Collection<TimeBlock> ret = null;
         String ts = null;
@@ -4077,15 +4282,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
             sLog.error(e.getMessage(),e);
             iProgress.message(msglevel("roomAvailabilityFailure", Progress.MSGLEVEL_WARN), MSG.warnRoomAvailableServiceFailed(e.getMessage()));
         } 
-        if (!iRoomAvailabilityTimeStampIsSet) {
-            iRoomAvailabilityTimeStampIsSet = true;
-            if (ts!=null) {
-                getModel().getProperties().setProperty("RoomAvailability.TimeStamp", ts);
-                iProgress.message(msglevel("roomAvailabilityUpdated", Progress.MSGLEVEL_INFO), MSG.infoUsingRoomAvailability(ts));
-            } else {
-                iProgress.message(msglevel("roomAvailabilityFailure", Progress.MSGLEVEL_ERROR), MSG.warnRoomAvailableServiceNotAvailable());
-            }
-        }
+        setRoomAvailabilityTimeStamp(ts);
         return ret;
     }
     
@@ -4342,11 +4539,108 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     		throw new RuntimeException(MSG.fatalLoadInterrupted());
     }
     
+    /**
+     * Parallel loading: lecture pairs with their students are grouped by worker threads (each processing a continuous
+     * chunk of students), the joint enrollment constraints are then created in the main thread in the same order
+     * as during the sequential load.
+     */
+    private void computeJenrlParallel() {
+    	final List<Student> students = new ArrayList<Student>(iStudents.values());
+    	if (students.isEmpty()) return;
+    	int chunkSize = Math.max(100, (students.size() + 4 * iParallelLoadThreads - 1) / (4 * iParallelLoadThreads));
+    	List<ForkJoinTask<Map<LecturePair, List<Student>>>> tasks = new ArrayList<ForkJoinTask<Map<LecturePair, List<Student>>>>();
+    	for (int i = 0; i < students.size(); i += chunkSize) {
+    		final List<Student> chunk = students.subList(i, Math.min(i + chunkSize, students.size()));
+    		tasks.add(iPool.submit(() -> {
+    			Map<LecturePair, List<Student>> pairs = new LinkedHashMap<LecturePair, List<Student>>();
+    			for (Student st: chunk) {
+    				for (Lecture l1: st.getLectures()) {
+    					for (Lecture l2: st.getLectures()) {
+    						if (l1.getId()>=l2.getId()) continue;
+    						pairs.computeIfAbsent(new LecturePair(l1, l2), p -> new ArrayList<Student>()).add(st);
+    					}
+    				}
+    			}
+    			return pairs;
+    		}));
+    	}
+    	Map<LecturePair, List<Student>> pairs = new LinkedHashMap<LecturePair, List<Student>>();
+    	for (int i = 0; i < tasks.size(); i++) {
+    		for (Map.Entry<LecturePair, List<Student>> e: tasks.get(i).join().entrySet())
+    			pairs.computeIfAbsent(e.getKey(), p -> new ArrayList<Student>()).addAll(e.getValue());
+    		checkTermination();
+    	}
+    	for (Map.Entry<LecturePair, List<Student>> e: pairs.entrySet()) {
+    		JenrlConstraint jenrl = new JenrlConstraint();
+    		getModel().addConstraint(jenrl);
+    		jenrl.addVariable(e.getKey().getFirst());
+    		jenrl.addVariable(e.getKey().getSecond());
+    		for (Student st: e.getValue())
+    			jenrl.incJenrl(getAssignment(), st);
+    	}
+    	for (int i = 0; i < students.size(); i++)
+    		incProgress();
+    }
+    
+    private static class LecturePair {
+    	private Lecture iFirst, iSecond;
+    	
+    	LecturePair(Lecture first, Lecture second) {
+    		iFirst = first; iSecond = second;
+    	}
+    	
+    	public Lecture getFirst() { return iFirst; }
+    	public Lecture getSecond() { return iSecond; }
+    	
+    	@Override
+    	public int hashCode() {
+    		return 31 * iFirst.hashCode() + iSecond.hashCode();
+    	}
+    	
+    	@Override
+    	public boolean equals(Object o) {
+    		if (o == null || !(o instanceof LecturePair)) return false;
+    		LecturePair p = (LecturePair)o;
+    		return iFirst.equals(p.iFirst) && iSecond.equals(p.iSecond);
+    	}
+    }
+    
     protected void setPhase(String phase, long progressMax) {
     	checkTermination();
+    	endPhase();
+    	iPhase = phase;
+    	iPhaseStart = System.currentTimeMillis();
     	iProgress.setPhase(phase, progressMax);
     }
     
+    private void endPhase() {
+    	if (iPhase != null)
+    		iPhaseTimes.merge(iPhase, System.currentTimeMillis() - iPhaseStart, Long::sum);
+    	iPhase = null;
+    }
+    
+    private void logPhaseTimes() {
+    	endPhase();
+    	if (iPhaseTimes.isEmpty()) return;
+    	List<Map.Entry<String, Long>> phases = new ArrayList<Map.Entry<String, Long>>(iPhaseTimes.entrySet());
+    	Collections.sort(phases, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+				return e2.getValue().compareTo(e1.getValue());
+			}
+		});
+    	StringBuffer sb = new StringBuffer();
+    	for (int i = 0; i < Math.min(20, phases.size()); i++) {
+    		Map.Entry<String, Long> e = phases.get(i);
+    		sb.append("\n  " + e.getKey() + ": " + e.getValue() + " ms");
+    	}
+    	String message = "Model loaded in " + (System.currentTimeMillis() - iLoadStart) + " ms (" +
+    			(iParallelLoad ? "parallel, " + iParallelLoadThreads + " threads" : "sequential") + "), slowest phases:" + sb;
+    	sLog.info(message);
+    	iProgress.debug(message);
+    	iPhaseTimes.clear();
+    }
+    
     protected void incProgress() {
     	checkTermination();
     	iProgress.incProgress();
@@ -0,0 +1,342 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.Progress;
+import org.dom4j.Document;
+
+/**
+ * Portfolio (multi-start) mode of the course timetabling solver.
+ * When enabled (Portfolio.NrRuns is greater than one, or some Portfolio.Run&lt;i&gt; configurations are provided),
+ * the given number of independent solver runs is started from a snapshot of the loaded model, each on its own thread,
+ * using a different random seed and, optionally, a different solver configuration (see Portfolio.Configurations
+ * in {@link org.unitime.timetable.solver.service.CourseTimetablingSolverService#createConfig(Long, Map)}).
+ * The first run is the owner's solver itself. Every Portfolio.SyncInterval seconds, the best solution of the leading run
+ * is passed to the runs that are behind (unless Portfolio.Exchange is false). When the owner's solver finishes or is stopped,
+ * the other runs are stopped and the overall best solution (the winner) is taken over by the owner's solver.
+ * 
+ * @author agent
+ */
+public class TimetablePortfolio {
+	private static Log sLog = LogFactory.getLog(TimetablePortfolio.class);
+	private TimetableSolver iSolver;
+	private List<Run> iRuns = new ArrayList<Run>();
+	private SynchronizationThread iSynchronization = null;
+	private Run iLeader = null;
+	
+	public TimetablePortfolio(TimetableSolver solver) {
+		iSolver = solver;
+	}
+	
+	/**
+	 * Number of runs (including the owner's solver), portfolio mode is enabled when greater than one
+	 */
+	public static int getNrRuns(DataProperties properties) {
+		int nrRuns = properties.getPropertyInt("Portfolio.NrRuns", 1);
+		for (int i = 1; properties.getProperty("Portfolio.Run" + i) != null; i++)
+			nrRuns = Math.max(nrRuns, i + 1);
+		return nrRuns;
+	}
+	
+	public static boolean isEnabled(DataProperties properties) {
+		return getNrRuns(properties) > 1;
+	}
+	
+	/**
+	 * Create the other runs from a snapshot of the owner's solver and start them. To be called before the owner's solver is started.
+	 */
+	public void start() {
+		DataProperties properties = iSolver.getProperties();
+		int nrRuns = getNrRuns(properties);
+		long seed = properties.getPropertyLong("General.Seed", System.currentTimeMillis());
+		properties.setProperty("General.Seed", String.valueOf(seed));
+		// runs are independent, each using a single thread
+		properties.setProperty("Parallel.NrSolvers", "1");
+		
+		Document snapshot = null;
+		Lock lock = iSolver.currentSolution().getLock().readLock();
+		lock.lock();
+		try {
+			snapshot = iSolver.createCurrentSolutionBackup(false, false);
+		} finally {
+			lock.unlock();
+		}
+		
+		iRuns.add(new Run(0, properties.getProperty("Portfolio.Run0", "Owner"), iSolver));
+		for (int i = 1; i < nrRuns; i++) {
+			DataProperties config = new DataProperties();
+			String prefix = "Portfolio.Run" + i + ".";
+			for (Map.Entry<Object, Object> e: properties.entrySet()) {
+				String key = e.getKey().toString();
+				if (!key.startsWith("Portfolio."))
+					config.setProperty(key, e.getValue().toString());
+			}
+			for (Map.Entry<Object, Object> e: properties.entrySet()) {
+				String key = e.getKey().toString();
+				if (key.startsWith(prefix))
+					config.setProperty(key.substring(prefix.length()), e.getValue().toString());
+			}
+			config.setProperty("General.Seed", String.valueOf(seed + i));
+			config.setProperty("Parallel.NrSolvers", "1");
+			config.setProperty("General.Save", "false");
+			config.setProperty("General.Unload", "false");
+			config.setProperty("General.SwitchStudents", "false");
+			config.remove("General.SolutionId");
+			
+			TimetableSolver solver = new TimetableSolver(config, null);
+			TimetableModel model = solver.createModel(config);
+			solver.setInitalSolution(model);
+			solver.initSolver();
+			solver.restureCurrentSolutionFromBackup(snapshot);
+			iRuns.add(new Run(i, properties.getProperty("Portfolio.Run" + i, "Run " + i), solver));
+		}
+		
+		for (Run run: iRuns)
+			if (run.getIndex() > 0) run.getSolver().start();
+		iSynchronization = new SynchronizationThread(1000l * properties.getPropertyInt("Portfolio.SyncInterval", 60), properties.getPropertyBoolean("Portfolio.Exchange", true));
+		iSynchronization.start();
+		info("Portfolio started with " + iRuns.size() + " runs: " + iRuns + ".");
+	}
+	
+	/**
+	 * Stop the other runs and take over the best solution found. To be called when the owner's solver is finished or stopped.
+	 * @return the winning run
+	 */
+	public Run finish() {
+		if (iSynchronization != null) {
+			iSynchronization.destroy();
+			iSynchronization = null;
+		}
+		for (Run run: iRuns)
+			if (run.getIndex() > 0 && run.getSolver().isRunning())
+				run.getSolver().stopSolver(true);
+		Run winner = getLeader();
+		if (winner != null && winner.getIndex() > 0)
+			exchange(winner, iRuns.get(0));
+		if (winner != null) {
+			iSolver.getProperties().setProperty("Portfolio.Winner", winner.getName());
+			info("Portfolio finished, the best solution was found by " + winner + " (" + winner.getStatus() + ").");
+			for (Run run: iRuns)
+				if (run != winner) info("&nbsp;&nbsp;" + run + ": " + run.getStatus());
+		}
+		dispose();
+		return winner;
+	}
+	
+	/**
+	 * Stop and dispose the other runs
+	 */
+	public void dispose() {
+		if (iSynchronization != null) {
+			iSynchronization.destroy();
+			iSynchronization = null;
+		}
+		for (Run run: iRuns) {
+			if (run.getIndex() == 0) continue;
+			if (run.getSolver().isRunning())
+				run.getSolver().stopSolver(false);
+			run.getSolver().dispose();
+		}
+		iRuns.clear();
+	}
+	
+	public List<Run> getRuns() { return iRuns; }
+	
+	protected Run getLeader() {
+		Run leader = null;
+		for (Run run: iRuns) {
+			if (!run.hasBest()) continue;
+			if (leader == null || run.compareTo(leader) < 0) leader = run;
+		}
+		return leader;
+	}
+	
+	protected void info(String message) {
+		sLog.info(message.replace("&nbsp;", " "));
+		Progress.getInstance(iSolver.currentSolution().getModel()).info(message);
+	}
+	
+	protected void synchronize(boolean exchange) {
+		Run leader = getLeader();
+		if (leader == null) return;
+		if (leader != iLeader) {
+			iLeader = leader;
+			info("Portfolio: " + leader + " is leading (" + leader.getStatus() + ").");
+		}
+		if (!exchange) return;
+		for (Run run: iRuns)
+			if (run != leader && (!run.hasBest() || leader.isBetterThan(run)))
+				exchange(leader, run);
+	}
+	
+	/**
+	 * Replace the current and the best assignment of the target run with the best assignment of the source run
+	 */
+	protected void exchange(Run source, Run target) {
+		Map<Long, Placement> best = new HashMap<Long, Placement>();
+		Solution<Lecture, Placement> solution = source.getSolver().currentSolution();
+		Lock lock = solution.getLock().readLock();
+		lock.lock();
+		try {
+			for (Lecture lecture: solution.getModel().variables())
+				if (lecture.getBestAssignment() != null)
+					best.put(lecture.getClassId(), lecture.getBestAssignment());
+		} finally {
+			lock.unlock();
+		}
+		
+		solution = target.getSolver().currentSolution();
+		lock = solution.getLock().writeLock();
+		lock.lock();
+		try {
+			for (Lecture lecture: solution.getModel().variables())
+				solution.getAssignment().unassign(0, lecture);
+			for (Lecture lecture: solution.getModel().variables()) {
+				Placement placement = getPlacement(lecture, best.get(lecture.getClassId()));
+				if (placement != null && placement.isValid() && solution.getModel().conflictConstraints(solution.getAssignment(), placement).isEmpty())
+					solution.getAssignment().assign(0, placement);
+			}
+			solution.saveBest();
+		} finally {
+			lock.unlock();
+		}
+		sLog.debug("Best solution of " + source + " passed to " + target + ".");
+	}
+	
+	protected Placement getPlacement(Lecture lecture, Placement placement) {
+		if (placement == null) return null;
+		TimeLocation time = null;
+		for (TimeLocation t: lecture.timeLocations()) {
+			if (placement.getTimeLocation().equals(t)) {
+				time = t; break;
+			}
+		}
+		if (time == null) return null;
+		List<RoomLocation> rooms = new ArrayList<RoomLocation>();
+		for (RoomLocation r: lecture.roomLocations()) {
+			if (placement.isMultiRoom() && placement.getRoomLocations().contains(r)) {
+				rooms.add(r);
+			}
+			if (!placement.isMultiRoom() && placement.getRoomLocation().equals(r)) {
+				rooms.add(r); break;
+			}
+		}
+		if (rooms.size() != lecture.getNrRooms()) return null;
+		return new Placement(lecture, time, rooms);
+	}
+	
+	public static class Run implements Comparable<Run> {
+		private int iIndex;
+		private String iName;
+		private TimetableSolver iSolver;
+		
+		Run(int index, String name, TimetableSolver solver) {
+			iIndex = index; iName = name; iSolver = solver;
+		}
+		
+		public int getIndex() { return iIndex; }
+		public String getName() { return iName; }
+		public TimetableSolver getSolver() { return iSolver; }
+		
+		public boolean hasBest() {
+			return iSolver.currentSolution() != null && iSolver.currentSolution().getBestInfo() != null;
+		}
+		
+		public int getBestUnassignedVariables() {
+			return iSolver.currentSolution().getModel().getBestUnassignedVariables();
+		}
+		
+		public double getBestValue() {
+			return iSolver.currentSolution().getBestValue();
+		}
+		
+		public String getStatus() {
+			if (!hasBest()) return "no solution";
+			return "best value " + Math.round(100.0 * getBestValue()) / 100.0 + (getBestUnassignedVariables() > 0 ? ", " + getBestUnassignedVariables() + " not assigned" : "") +
+					", " + iSolver.currentSolution().getIteration() + " iterations";
+		}
+
+		public boolean isBetterThan(Run run) {
+			if (getBestUnassignedVariables() != run.getBestUnassignedVariables())
+				return getBestUnassignedVariables() < run.getBestUnassignedVariables();
+			return getBestValue() < run.getBestValue();
+		}
+
+		@Override
+		public int compareTo(Run run) {
+			if (isBetterThan(run)) return -1;
+			if (run.isBetterThan(this)) return 1;
+			return Integer.compare(getIndex(), run.getIndex());
+		}
+		
+		@Override
+		public String toString() {
+			return iName;
+		}
+	}
+	
+	private class SynchronizationThread extends Thread {
+		private long iInterval;
+		private boolean iExchange;
+		private boolean iContinue = true;
+		
+		public SynchronizationThread(long interval, boolean exchange) {
+			iInterval = interval; iExchange = exchange;
+			setName("Portfolio[" + iSolver.getUser() + "]");
+			setDaemon(true);
+		}
+		
+		public void run() {
+			while (iContinue) {
+				try {
+					sleep(iInterval);
+				} catch (InterruptedException e) {
+					break;
+				}
+				if (!iContinue) break;
+				try {
+					synchronize(iExchange);
+				} catch (Exception e) {
+					sLog.warn("Portfolio synchronization failed: " + e.getMessage(), e);
+				}
+			}
+		}
+		
+		public void destroy() {
+			iContinue = false;
+			if (isAlive()) interrupt();
+		}
+	}
+}
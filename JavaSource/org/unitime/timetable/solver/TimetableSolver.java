@@ -122,6 +122,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	private Vector<AssignmentRecord> iBestAssignmentRecords = new Vector<AssignmentRecord>();
 	private ConflictStatisticsInfo iCbsInfo = null;
 	private CommitedClassAssignmentProxy iCommitedClassAssignmentProxy;
+	private TimetablePortfolio iPortfolio = null;
 
 	public TimetableSolver(DataProperties properties, SolverDisposeListener solverDisposeListener) {
 		super(properties, solverDisposeListener);
@@ -211,6 +212,34 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	@Override
 	protected void beforeStart() {
 		iCbsInfo = null;
+		if (TimetablePortfolio.isEnabled(getProperties())) {
+			iPortfolio = new TimetablePortfolio(this);
+			iPortfolio.start();
+		}
+	}
+	
+	@Override
+	protected void onFinish() {
+		finishPortfolio();
+		super.onFinish();
+	}
+	
+	@Override
+	protected void onStop() {
+		finishPortfolio();
+		super.onStop();
+	}
+	
+	protected void finishPortfolio() {
+		if (iPortfolio != null) {
+			try {
+				iPortfolio.finish();
+			} catch (Exception e) {
+				sLog.error("Failed to finish the portfolio: " + e.getMessage(), e);
+			} finally {
+				iPortfolio = null;
+			}
+		}
 	}
 
 	@Override
@@ -259,6 +288,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
     @Override
     protected void disposeNoInherit(boolean unregister) {
     	iAssignmentRecords.clear(); iBestAssignmentRecords.clear(); iCbsInfo = null;
+    	if (iPortfolio != null) { iPortfolio.dispose(); iPortfolio = null; }
     	super.disposeNoInherit(unregister);
     }
     
@@ -19,10 +19,12 @@
 */
 package org.unitime.timetable.solver.exam;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeSet;
 
 import org.cpsolver.exam.model.Exam;
@@ -55,6 +57,7 @@ import org.unitime.timetable.model.dao.StudentDAO;
 import org.unitime.timetable.solver.exam.ui.ExamAssignment;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
+import org.unitime.timetable.util.RoomAvailability;
 
 
 /**
@@ -64,6 +67,8 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
     private Long iSessionId;
     private Long iExamTypeId;
     private Progress iProgress = null;
+    private List<Long> iRemovedEventIds = new ArrayList<Long>();
+    private List<ExamEvent> iSavedEvents = new ArrayList<ExamEvent>();
 
     public ExamDatabaseSaver(Solver solver) {
         super(solver);
@@ -84,6 +89,11 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
             saveSolution(hibSession);
             tx.commit();
             
+            List<Long> eventIds = new ArrayList<Long>(iRemovedEventIds);
+            for (ExamEvent event: iSavedEvents)
+            	if (event.getUniqueId() != null) eventIds.add(event.getUniqueId());
+            RoomAvailability.eventsUpdated(eventIds);
+            
             iProgress.setPhase("Refreshing solution ...", 1);
             try {
             	if (SolverServerImplementation.getInstance() != null)
@@ -126,7 +136,10 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
             exam.setAssignedPreference(null);
             exam.getAssignedRooms().clear();
             ExamEvent event = examEvents.get(exam.getUniqueId());
-            if (event!=null) hibSession.remove(event);
+            if (event!=null) {
+            	iRemovedEventIds.add(event.getUniqueId());
+            	hibSession.remove(event);
+            }
             for (Iterator j=exam.getConflicts().iterator();j.hasNext();) {
                 ExamConflict conf = (ExamConflict)j.next();
                 hibSession.remove(conf);
@@ -406,6 +419,7 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
         			hibSession.persist(event);
         		else
         			hibSession.merge(event);
+                iSavedEvents.add(event);
             }
             if (event!=null || !exam.getConflicts().isEmpty()) hibSession.merge(exam);
         }
@@ -19,10 +19,21 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,8 +50,13 @@ import org.unitime.timetable.model.DepartmentalInstructor;
 import org.unitime.timetable.model.ExamType;
 import org.unitime.timetable.model.InstructionalOffering;
 import org.unitime.timetable.model.Solution;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
 import org.unitime.timetable.model.TeachingRequest;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.solver.SolverPassivationScheduler;
+import org.unitime.timetable.solver.SolverPassivationScheduler.PassivationStatistics;
+import org.unitime.timetable.solver.jgroups.RemoteResult.RpcStatistics;
+import org.unitime.timetable.util.CalendarFeedCache;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.RoomAvailability;
 import org.unitime.timetable.util.queue.LocalQueueProcessor;
@@ -55,6 +71,9 @@ public abstract class AbstractSolverServer implements SolverServer {
 	protected int iUsageBase = 0;
 	protected Date iStartTime = new Date();
 	protected boolean iActive = false;
+	private Map<String, long[]> iMemUsageCache = new ConcurrentHashMap<String, long[]>();
+	private Set<String> iMemUsagePending = ConcurrentHashMap.newKeySet();
+	private ExecutorService iMemUsageExecutor = null;
 
 	public AbstractSolverServer() {
 	}
@@ -69,6 +88,12 @@ public abstract class AbstractSolverServer implements SolverServer {
 	public void stop() throws Exception {
 		sLog.info("Solver server is going down...");
 		iActive = false;
+		synchronized (iMemUsagePending) {
+			if (iMemUsageExecutor != null) {
+				iMemUsageExecutor.shutdownNow();
+				iMemUsageExecutor = null;
+			}
+		}
 	}
 
 	@Override
@@ -151,11 +176,124 @@ public abstract class AbstractSolverServer implements SolverServer {
 		return iActive;
 	}
 	
+	/**
+	 * Heap used after the last garbage collection (when provided by the memory pools), an estimate of the live heap
+	 * that does not require a System.gc() call
+	 */
+	public long getLiveMemoryUsage() {
+		long used = 0;
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isValid()) continue;
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage == null) usage = pool.getUsage();
+			if (usage != null) used += usage.getUsed();
+		}
+		return used;
+	}
+	
 	@Override
 	public boolean isAvailable() {
 		if (!isActive()) return false;
-		if (getMemoryLimit() > getAvailableMemory()) System.gc();
-		return getMemoryLimit() <= getAvailableMemory();
+		if (getMemoryLimit() <= getAvailableMemory()) return true;
+		return getMemoryLimit() <= Runtime.getRuntime().maxMemory() - getLiveMemoryUsage();
+	}
+	
+	protected SolverContainer<?> getSolverContainer(SolverType type) {
+		switch (type) {
+		case COURSE: return getCourseSolverContainer();
+		case EXAM: return getExamSolverContainer();
+		case STUDENT: return getStudentSolverContainer();
+		case INSTRUCTOR: return getInstructorSchedulingContainer();
+		default: return null;
+		}
+	}
+	
+	@Override
+	public List<RpcStatistics> getRpcStatistics() {
+		return RemoteResult.getStatistics();
+	}
+	
+	@Override
+	public PassivationStatistics getPassivationStatistics() {
+		return SolverPassivationScheduler.getInstance().getStatistics();
+	}
+	
+	@Override
+	public int migrateSolvers() {
+		return 0;
+	}
+	
+	/**
+	 * Current resource usage of this server, including the estimated memory usage of the live solvers.
+	 * The estimates are computed in a background thread (a solver is re-estimated at most once per {@link ApplicationProperty#SolverTelemetryMemUsageRefresh}),
+	 * a solver that has not been estimated yet is left out of the telemetry.
+	 */
+	public SolverServerTelemetry getTelemetry() {
+		SolverServerTelemetry telemetry = new SolverServerTelemetry();
+		telemetry.setActive(isActive());
+		telemetry.setUsage(getUsage());
+		telemetry.setHeapMax(Runtime.getRuntime().maxMemory());
+		telemetry.setHeapUsed(Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+		telemetry.setHeapLive(getLiveMemoryUsage());
+		telemetry.setMemoryLimit(getMemoryLimit());
+		telemetry.setAvailable(telemetry.isActive() && telemetry.getMemoryLimit() <= telemetry.getHeapMax() - telemetry.getHeapLive());
+		telemetry.setProcessors(getAvailableProcessors());
+		telemetry.setLoadAverage(ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+		long now = System.currentTimeMillis();
+		long refresh = 1000l * ApplicationProperty.SolverTelemetryMemUsageRefresh.intValue();
+		Set<String> keys = new HashSet<String>();
+		for (SolverType type: SolverType.values()) {
+			SolverContainer<?> container = getSolverContainer(type);
+			if (container == null) continue;
+			Set<String> solvers = container.getSolvers();
+			telemetry.setSolverCount(type.name(), solvers.size());
+			for (String owner: solvers) {
+				String key = SolverServerTelemetry.getSolverKey(type, owner);
+				keys.add(key);
+				long[] cached = iMemUsageCache.get(key);
+				if (cached == null || now - cached[1] > refresh)
+					estimateMemUsage(container, owner, key);
+				if (cached != null)
+					telemetry.setMemUsage(type, owner, cached[0]);
+			}
+		}
+		iMemUsageCache.keySet().retainAll(keys);
+		SolverContainer<?> online = getOnlineStudentSchedulingContainer();
+		if (online != null)
+			telemetry.setSolverCount("ONLINE", online.getSolvers().size());
+		return telemetry;
+	}
+	
+	/**
+	 * Re-estimate the memory usage of the given solver in the background, the deep walk of the solver is never done by the caller.
+	 * Nothing happens when the solver is already being estimated.
+	 */
+	protected void estimateMemUsage(final SolverContainer<?> container, final String owner, final String key) {
+		if (!iMemUsagePending.add(key)) return;
+		try {
+			synchronized (iMemUsagePending) {
+				if (iMemUsageExecutor == null)
+					iMemUsageExecutor = Executors.newSingleThreadExecutor(r -> {
+						Thread thread = new Thread(r, "SolverServer:MemUsage");
+						thread.setDaemon(true);
+						return thread;
+					});
+				iMemUsageExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							iMemUsageCache.put(key, new long[] { container.getMemUsage(owner), System.currentTimeMillis() });
+						} catch (Exception e) {
+							sLog.debug("Failed to estimate memory usage of " + key + ": " + e.getMessage());
+						} finally {
+							iMemUsagePending.remove(key);
+						}
+					}
+				});
+			}
+		} catch (RejectedExecutionException e) {
+			iMemUsagePending.remove(key);
+		}
 	}
 	
 	@Override
@@ -221,6 +359,13 @@ public abstract class AbstractSolverServer implements SolverServer {
 			hibSession.close();
 		}
 	}
+	
+	@Override
+	public void invalidateCalendarFeeds(Collection<String> dependencies) {
+		CalendarFeedCache cache = CalendarFeedCache.getInstance();
+		for (String dependency: dependencies)
+			cache.invalidate(dependency);
+	}
 
 
 	@Override
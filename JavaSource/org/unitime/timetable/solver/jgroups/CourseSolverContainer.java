@@ -31,6 +31,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationScheduler;
 import org.unitime.timetable.solver.SolverProxy;
 import org.unitime.timetable.solver.TimetableSolver;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -45,7 +46,6 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 	private static Log sLog = LogFactory.getLog(CourseSolverContainer.class);
 	
 	protected Map<String,TimetableSolver> iCourseSolvers = new Hashtable<String, TimetableSolver>();
-	private PassivationThread iPassivation = null;
 
 	@Override
 	public Set<String> getSolvers() {
@@ -97,8 +97,7 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 	
 	@Override
 	public void start() throws Exception {
-		iPassivation = new PassivationThread(ApplicationProperties.getPassivationFolder());
-		iPassivation.start();
+		SolverPassivationScheduler.getInstance().register("CourseTimetabling", iCourseSolvers);
 		File folder = ApplicationProperties.getRestoreFolder();
 		sLog.info("Restore folder: " + folder);
 		if (!folder.exists() || !folder.isDirectory()) return;
@@ -119,6 +118,7 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 	
 	@Override
 	public void stop() throws Exception {
+		SolverPassivationScheduler.getInstance().unregister("CourseTimetabling");
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (folder.exists() && !folder.isDirectory()) return;
 		
@@ -130,9 +130,10 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 		for (Map.Entry<String, TimetableSolver> entry: iCourseSolvers.entrySet()) {
 			entry.getValue().backup(folder, entry.getKey());
 		}
-		iPassivation.destroy();
 	}
 	
+	protected void solverDisposed(String user) {}
+	
     protected class SolverOnDispose implements SolverDisposeListener {
         String iUser = null;
         public SolverOnDispose(String user) {
@@ -141,44 +142,9 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
         @Override
         public void onDispose() {
             iCourseSolvers.remove(iUser);
+            solverDisposed(iUser);
         }
     }
-    
-	private class PassivationThread extends Thread {
-		private File iFolder = null;
-		public long iDelay = 30000;
-		public boolean iContinue = true;
-		
-		public PassivationThread(File folder) {
-			iFolder = folder;
-			setName("Passivation[CourseTimetabling]");
-			setDaemon(true);
-			setPriority(Thread.MIN_PRIORITY);
-		}
-		
-		public void run() {
-			try {
-				sLog.info("Solver passivation thread started.");
-				while (iContinue) {
-					for (Map.Entry<String, TimetableSolver> entry: iCourseSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
-					try {
-						sleep(iDelay);
-					} catch (InterruptedException e) {
-					    break;
-	                }
-				}
-				sLog.info("Solver passivation thread finished.");
-			} catch (Exception e) {
-				sLog.warn("Solver passivation thread failed, reason: " + e.getMessage(), e);
-			}
-		}
-		
-		public void destroy() {
-			iContinue = false;
-			if (isAlive()) interrupt();
-		}
-	}
 	
 	public TimetableInfoFileProxy getFileProxy() {
 		return TimetableInfoUtil.getLocalInstance();
@@ -48,6 +48,7 @@ import org.unitime.timetable.model.dao.Class_DAO;
 import org.unitime.timetable.solver.ClassAssignmentProxy.AssignmentInfo;
 import org.unitime.timetable.solver.CommitedClassAssignmentProxy;
 import org.unitime.timetable.solver.SolverProxy;
+import org.unitime.timetable.solver.TimetableSolver;
 import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 import org.unitime.timetable.solver.ui.TimetableInfo;
 import org.unitime.timetable.solver.ui.TimetableInfoFileProxy;
@@ -62,10 +63,12 @@ public class CourseSolverContainerRemote extends CourseSolverContainer implement
 	
 	private RpcDispatcher iDispatcher;
 	private ForkChannel iChannel;
+	private SolverDirectory iDirectory;
 		
 	public CourseSolverContainerRemote(JChannel channel, short scope, boolean saveFileInfos) throws Exception {
 		iChannel = new ForkChannel(channel, String.valueOf(scope), "fork-" + scope);
 		iDispatcher = new RpcDispatcher(iChannel, this);
+		iDirectory = new SolverDirectory(iDispatcher);
 		iSaveFileInfos = saveFileInfos;
 	}
 	
@@ -73,6 +76,8 @@ public class CourseSolverContainerRemote extends CourseSolverContainer implement
 	public void start() throws Exception {
 		iChannel.connect("UniTime:RPC:Courses");
 		super.start();
+		for (String user: getSolvers())
+			iDirectory.publishAdded(user);
 	}
 	
 	@Override
@@ -84,21 +89,49 @@ public class CourseSolverContainerRemote extends CourseSolverContainer implement
 	@Override
 	public RpcDispatcher getDispatcher() { return iDispatcher; }
 	
+	@Override
+	public SolverDirectory getDirectory() { return iDirectory; }
+	
+	@Override
+	public void solverAdded(String user, Address address) {
+		iDirectory.solverAdded(user, address);
+	}
+	
+	@Override
+	public void solverRemoved(String user, Address address) {
+		iDirectory.solverRemoved(user, address);
+	}
+	
+	@Override
+	public SolverProxy createSolver(String user, DataProperties config) {
+		SolverProxy solver = super.createSolver(user, config);
+		if (solver != null)
+			iDirectory.publishAdded(user);
+		return solver;
+	}
+	
+	@Override
+	protected void solverDisposed(String user) {
+		iDirectory.publishRemoved(user);
+	}
+	
 	@Override
 	public boolean createRemoteSolver(String user, DataProperties config, Address caller) {
-		return super.createSolver(user, config) != null;
+		return createSolver(user, config) != null;
 	}
 	
 	@Override
 	public Object invoke(String method, String user, Class[] types, Object[] args) throws Exception {
+		long t0 = System.nanoTime();
 		try {
 			SolverProxy solver = iCourseSolvers.get(user);
 			if ("exists".equals(method) && types.length == 0)
 				return solver != null;
 			if (solver == null)
 				throw new Exception("Solver " + user + " does not exist.");
-			return solver.getClass().getMethod(method, types).invoke(solver, args);
+			return RemoteResult.wrap("course." + method, solver.getClass().getMethod(method, types).invoke(solver, args), t0);
 		} catch (InvocationTargetException e) {
+			RemoteResult.failed("course." + method, t0);
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
 				throw (Exception)e.getTargetException();
 			else
@@ -111,7 +144,7 @@ public class CourseSolverContainerRemote extends CourseSolverContainer implement
 	@Override
 	public Object dispatch(Address address, String user, Method method, Object[] args) throws Exception {
 		try {
-			return iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), user, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse);
+			return RemoteResult.unwrap(iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), user, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse), iDispatcher, address);
 		} catch (InvocationTargetException e) {
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
 				throw (Exception)e.getTargetException();
@@ -151,6 +184,22 @@ public class CourseSolverContainerRemote extends CourseSolverContainer implement
 			return false;
 	}
 	
+	@Override
+	public boolean migrateSolver(String user, Address target) {
+		TimetableSolver solver = iCourseSolvers.get(user);
+		return solver != null && SolverMigration.migrate(this, solver, user, target);
+	}
+	
+	@Override
+	public boolean receiveSolver(String user, DataProperties config, Object backup, Address source, Boolean start) {
+		return SolverMigration.receive(this, (TimetableSolver)createSolver(user, config), user, backup, source, start);
+	}
+	
+	@Override
+	public byte[] getResultChunk(Long chunkId, Integer offset) {
+		return RemoteResult.getChunk(chunkId, offset);
+	}
+	
 	@Override
 	public TimetableInfoFileProxy getFileProxy() {
 		return new FileProxy();
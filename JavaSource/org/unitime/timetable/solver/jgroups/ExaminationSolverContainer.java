@@ -32,6 +32,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationScheduler;
 import org.unitime.timetable.solver.exam.ExamSolver;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -44,7 +45,6 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 	private static Log sLog = LogFactory.getLog(ExaminationSolverContainer.class);
 
 	protected Map<String,ExamSolver> iExamSolvers = new Hashtable<String, ExamSolver>();
-	private PassivationThread iPassivation = null;
 
 	@Override
 	public Set<String> getSolvers() {
@@ -96,8 +96,7 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 	
 	@Override
 	public void start() throws Exception {
-		iPassivation = new PassivationThread(ApplicationProperties.getPassivationFolder());
-		iPassivation.start();
+		SolverPassivationScheduler.getInstance().register("Examination", iExamSolvers);
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (!folder.exists() || !folder.isDirectory()) return;
 		
@@ -118,6 +117,7 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 	
 	@Override
 	public void stop() throws Exception {
+		SolverPassivationScheduler.getInstance().unregister("Examination");
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (folder.exists() && !folder.isDirectory()) return;
 		
@@ -129,9 +129,10 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 		for (Map.Entry<String, ExamSolver> entry: iExamSolvers.entrySet()) {
 			entry.getValue().backup(folder, entry.getKey());
 		}
-		iPassivation.destroy();
 	}
 	
+	protected void solverDisposed(String user) {}
+	
     protected class SolverOnDispose implements SolverDisposeListener {
         String iUser = null;
         public SolverOnDispose(String user) {
@@ -140,43 +141,7 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
         @Override
         public void onDispose() {
             iExamSolvers.remove(iUser);
+            solverDisposed(iUser);
         }
     }
-    
-	private class PassivationThread extends Thread {
-		private File iFolder = null;
-		public long iDelay = 30000;
-		public boolean iContinue = true;
-		
-		public PassivationThread(File folder) {
-			iFolder = folder;
-			setName("Passivation[Examination]");
-			setDaemon(true);
-			setPriority(Thread.MIN_PRIORITY);
-		}
-		
-		public void run() {
-			try {
-				sLog.info("Solver passivation thread started.");
-				while (iContinue) {
-					for (Map.Entry<String, ExamSolver> entry: iExamSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
-					try {
-						sleep(iDelay);
-					} catch (InterruptedException e) {
-					    break;
-	                }
-				}
-				sLog.info("Solver passivation thread finished.");
-			} catch (Exception e) {
-				sLog.warn("Solver passivation thread failed, reason: " + e.getMessage(), e);
-			}
-		}
-		
-		public void destroy() {
-			iContinue = false;
-			if (isAlive()) interrupt();
-		}
-	}
-
 }
@@ -34,6 +34,7 @@ import org.jgroups.SuspectedException;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.fork.ForkChannel;
 import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.solver.exam.ExamSolver;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 
 /**
@@ -44,16 +45,20 @@ public class ExaminationSolverContainerRemote extends ExaminationSolverContainer
 	
 	private RpcDispatcher iDispatcher;
 	private ForkChannel iChannel;
+	private SolverDirectory iDirectory;
 		
 	public ExaminationSolverContainerRemote(JChannel channel, short scope) throws Exception {
 		iChannel = new ForkChannel(channel, String.valueOf(scope), "fork-" + scope);
 		iDispatcher = new RpcDispatcher(iChannel, this);
+		iDirectory = new SolverDirectory(iDispatcher);
 	}
 	
 	@Override
 	public void start() throws Exception {
 		iChannel.connect("UniTime:RPC:Exams");
 		super.start();
+		for (String user: getSolvers())
+			iDirectory.publishAdded(user);
 	}
 	
 	@Override
@@ -65,22 +70,50 @@ public class ExaminationSolverContainerRemote extends ExaminationSolverContainer
 	@Override
 	public RpcDispatcher getDispatcher() { return iDispatcher; }
 	
+	@Override
+	public SolverDirectory getDirectory() { return iDirectory; }
+	
+	@Override
+	public void solverAdded(String user, Address address) {
+		iDirectory.solverAdded(user, address);
+	}
+	
+	@Override
+	public void solverRemoved(String user, Address address) {
+		iDirectory.solverRemoved(user, address);
+	}
+	
+	@Override
+	public ExamSolverProxy createSolver(String user, DataProperties config) {
+		ExamSolverProxy solver = super.createSolver(user, config);
+		if (solver != null)
+			iDirectory.publishAdded(user);
+		return solver;
+	}
+	
+	@Override
+	protected void solverDisposed(String user) {
+		iDirectory.publishRemoved(user);
+	}
+	
 	@Override
 	public boolean createRemoteSolver(String user, DataProperties config, Address caller) {
-		super.createSolver(user, config);
+		createSolver(user, config);
         return true;
 	}
 	
 	@Override
 	public Object invoke(String method, String user, Class[] types, Object[] args) throws Exception {
+		long t0 = System.nanoTime();
 		try {
 			ExamSolverProxy solver = iExamSolvers.get(user);
 			if ("exists".equals(method) && types.length == 0)
 				return solver != null;
 			if (solver == null)
 				throw new Exception("Solver " + user + " does not exist.");
-			return solver.getClass().getMethod(method, types).invoke(solver, args);
+			return RemoteResult.wrap("exam." + method, solver.getClass().getMethod(method, types).invoke(solver, args), t0);
 		} catch (InvocationTargetException e) {
+			RemoteResult.failed("exam." + method, t0);
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
 				throw (Exception)e.getTargetException();
 			else
@@ -93,7 +126,7 @@ public class ExaminationSolverContainerRemote extends ExaminationSolverContainer
 	@Override
 	public Object dispatch(Address address, String user, Method method, Object[] args) throws Exception {
 		try {
-			return iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), user, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse);
+			return RemoteResult.unwrap(iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), user, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse), iDispatcher, address);
 		} catch (InvocationTargetException e) {
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
 				throw (Exception)e.getTargetException();
@@ -106,6 +139,22 @@ public class ExaminationSolverContainerRemote extends ExaminationSolverContainer
 		}
 	}
 	
+	@Override
+	public boolean migrateSolver(String user, Address target) {
+		ExamSolver solver = iExamSolvers.get(user);
+		return solver != null && SolverMigration.migrate(this, solver, user, target);
+	}
+	
+	@Override
+	public boolean receiveSolver(String user, DataProperties config, Object backup, Address source, Boolean start) {
+		return SolverMigration.receive(this, (ExamSolver)createSolver(user, config), user, backup, source, start);
+	}
+	
+	@Override
+	public byte[] getResultChunk(Long chunkId, Integer offset) {
+		return RemoteResult.getChunk(chunkId, offset);
+	}
+	
 	@Override
 	public ExamSolverProxy createProxy(Address address, String user) {
 		SolverInvocationHandler handler = new SolverInvocationHandler(address, user);
@@ -31,6 +31,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationScheduler;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingProxy;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingSolver;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -43,7 +44,6 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 	private static Log sLog = LogFactory.getLog(InstructorSchedulingContainer.class);
 
 	protected Map<String, InstructorSchedulingSolver> iInstrSchdSolvers = new Hashtable<String, InstructorSchedulingSolver>();
-	private PassivationThread iPassivation = null;
 
 	@Override
 	public Set<String> getSolvers() {
@@ -95,8 +95,7 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 	
 	@Override
 	public void start() throws Exception {
-		iPassivation = new PassivationThread(ApplicationProperties.getPassivationFolder());
-		iPassivation.start();
+		SolverPassivationScheduler.getInstance().register("Instructor", iInstrSchdSolvers);
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (!folder.exists() || !folder.isDirectory()) return;
 		
@@ -117,6 +116,7 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 	
 	@Override
 	public void stop() throws Exception {
+		SolverPassivationScheduler.getInstance().unregister("Instructor");
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (folder.exists() && !folder.isDirectory()) return;
 		
@@ -128,9 +128,10 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 		for (Map.Entry<String, InstructorSchedulingSolver> entry: iInstrSchdSolvers.entrySet()) {
 			entry.getValue().backup(folder, entry.getKey());
 		}
-		iPassivation.destroy();
 	}
 	
+	protected void solverDisposed(String user) {}
+	
     protected class SolverOnDispose implements SolverDisposeListener {
         String iUser = null;
         public SolverOnDispose(String user) {
@@ -139,43 +140,7 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
         @Override
         public void onDispose() {
         	iInstrSchdSolvers.remove(iUser);
+        	solverDisposed(iUser);
         }
     }
-    
-	private class PassivationThread extends Thread {
-		private File iFolder = null;
-		public long iDelay = 30000;
-		public boolean iContinue = true;
-		
-		public PassivationThread(File folder) {
-			iFolder = folder;
-			setName("Passivation[Instructor]");
-			setDaemon(true);
-			setPriority(Thread.MIN_PRIORITY);
-		}
-		
-		public void run() {
-			try {
-				sLog.info("Solver passivation thread started.");
-				while (iContinue) {
-					for (Map.Entry<String, InstructorSchedulingSolver> entry: iInstrSchdSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
-					try {
-						sleep(iDelay);
-					} catch (InterruptedException e) {
-					    break;
-	                }
-				}
-				sLog.info("Solver passivation thread finished.");
-			} catch (Exception e) {
-				sLog.warn("Solver passivation thread failed, reason: " + e.getMessage(), e);
-			}
-		}
-		
-		public void destroy() {
-			iContinue = false;
-			if (isAlive()) interrupt();
-		}
-	}
-
-}
\ No newline at end of file
+}
@@ -23,6 +23,12 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -30,11 +36,23 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.jgroups.Address;
 import org.jgroups.JChannel;
 import org.jgroups.SuspectedException;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.ResponseMode;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.fork.ForkChannel;
 import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.dao.SessionDAO;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
+import org.unitime.timetable.onlinesectioning.server.AbstractServer;
+import org.unitime.timetable.onlinesectioning.server.ConcurrentInMemoryServer;
+import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
+import org.unitime.timetable.onlinesectioning.server.ReplicaServer;
+import org.unitime.timetable.onlinesectioning.server.ServerChange;
 import org.unitime.timetable.solver.SolverProxy;
 
 /**
@@ -43,12 +61,25 @@ import org.unitime.timetable.solver.SolverProxy;
 public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedulingContainer implements RemoteSolverContainer<OnlineSectioningServer> {
 	private static Log sLog = LogFactory.getLog(OnlineStudentSchedulingContainerRemote.class);
 	
+	private static RequestOptions sAsync = new RequestOptions(ResponseMode.GET_NONE, 0);
+	private static Set<String> sReadOnlyMethods = new HashSet<String>();
+	static {
+		// only course lookups go to a replica, student data (and enrollments) are read from the master as the replica may lag behind
+		for (String method: new String[] {
+				"findCourses", "getCourse", "getInstructedOfferings", "createAction" })
+			sReadOnlyMethods.add(method);
+	}
+	
 	private RpcDispatcher iDispatcher;
 	private ForkChannel iChannel;
+	private SolverDirectory iDirectory;
+	private Map<Long, OnlineStudentSchedulingReplicator> iReplicators = new ConcurrentHashMap<Long, OnlineStudentSchedulingReplicator>();
+	private Map<Long, Replica> iReplicas = new ConcurrentHashMap<Long, Replica>();
 
 	public OnlineStudentSchedulingContainerRemote(JChannel channel, short scope) throws Exception {
 		iChannel = new ForkChannel(channel, String.valueOf(scope), "fork-" + scope);
 		iDispatcher = new RpcDispatcher(iChannel, this);
+		iDirectory = new SolverDirectory(iDispatcher);
 	}
 	
 	@Override
@@ -63,8 +94,201 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 		super.stop();
 	}
 	
+	@Override
+	public OnlineSectioningServer createInstance(Long academicSessionId, DataProperties config) {
+		OnlineSectioningServer server = super.createInstance(academicSessionId, config);
+		if (server != null)
+			iDirectory.publishAdded(academicSessionId.toString());
+		return server;
+	}
+	
+	@Override
+	public void unload(Long academicSessionId, boolean interrupt) {
+		OnlineStudentSchedulingReplicator replicator = iReplicators.remove(academicSessionId);
+		if (replicator != null)
+			replicator.stopReplicating();
+		boolean loaded = iInstances.containsKey(academicSessionId);
+		super.unload(academicSessionId, interrupt);
+		if (loaded)
+			iDirectory.publishRemoved(academicSessionId.toString());
+	}
+	
+	@Override
+	public void unloadAll() {
+		for (Long academicSessionId: new ArrayList<Long>(iInstances.keySet()))
+			iDirectory.publishRemoved(academicSessionId.toString());
+		for (OnlineStudentSchedulingReplicator replicator: iReplicators.values())
+			replicator.stopReplicating();
+		iReplicators.clear();
+		for (Replica replica: iReplicas.values())
+			replica.getServer().unload();
+		iReplicas.clear();
+		super.unloadAll();
+	}
+	
+	/**
+	 * Called on the master: register a read-only replica of the given server
+	 * @return false if the server is not running on this node or it cannot be replicated
+	 */
+	public boolean registerReplica(String sessionId, Address address) {
+		Long id = Long.valueOf(sessionId);
+		OnlineSectioningServer server = iInstances.get(id);
+		if (server == null || !(server instanceof InMemoryServer || server instanceof ConcurrentInMemoryServer) || !server.isReady()) return false;
+		OnlineStudentSchedulingReplicator replicator = null;
+		synchronized (iReplicators) {
+			replicator = iReplicators.get(id);
+			if (replicator == null) {
+				replicator = new OnlineStudentSchedulingReplicator(this, (AbstractServer)server);
+				replicator.start();
+				iReplicators.put(id, replicator);
+			}
+		}
+		replicator.register(address);
+		return true;
+	}
+	
+	/**
+	 * Called on the master: the given replica is no longer used
+	 */
+	public void unregisterReplica(String sessionId, Address address) {
+		OnlineStudentSchedulingReplicator replicator = iReplicators.get(Long.valueOf(sessionId));
+		if (replicator != null)
+			replicator.unregister(address);
+	}
+	
+	/**
+	 * Called on a replica: apply changes published by the master
+	 */
+	public void applyReplicaChanges(String sessionId, List<ServerChange> changes) {
+		Long id = Long.valueOf(sessionId);
+		Replica replica = iReplicas.get(id);
+		if (replica == null) return;
+		try {
+			if (!replica.getServer().apply(changes)) {
+				replica.getServer().reset();
+				replica.register();
+			} else if (replica.getServer().isClosed()) {
+				sLog.info("Master of " + replica.getServer().getAcademicSession() + " has been unloaded, dropping the replica.");
+				iReplicas.remove(id);
+				replica.getServer().unload();
+			}
+		} catch (Exception e) {
+			sLog.error("Failed to apply changes on replica " + sessionId + ": " + e.getMessage(), e);
+			replica.getServer().reset();
+			replica.register();
+		} finally {
+			HibernateUtil.closeCurrentThreadSessions();
+		}
+	}
+	
+	/**
+	 * Local read-only replica of the given server running on the given address.
+	 * The replica is created (and registered with the master) when it does not exist yet.
+	 * @return null if replicas are disabled, or when the replica is not synchronized with the master yet
+	 */
+	public ReplicaServer getReplica(String sessionId, Address master) {
+		if (!ApplicationProperty.OnlineSchedulingServerReplica.isTrue() || master.equals(iChannel.getAddress())) return null;
+		Long id = Long.valueOf(sessionId);
+		Replica replica = iReplicas.get(id);
+		if (replica != null && !replica.getMaster().equals(master)) {
+			sLog.info("Master of " + replica.getServer().getAcademicSession() + " has moved to " + master + ", dropping the replica.");
+			iReplicas.remove(id);
+			replica.unregister();
+			replica.getServer().unload();
+			replica = null;
+		}
+		if (replica == null) {
+			synchronized (iReplicas) {
+				replica = iReplicas.get(id);
+				if (replica == null) {
+					try {
+						replica = new Replica(createReplicaServer(id), master);
+						iReplicas.put(id, replica);
+						replica.register();
+					} catch (Exception e) {
+						sLog.error("Failed to create replica of " + sessionId + ": " + e.getMessage(), e);
+						return null;
+					} finally {
+						HibernateUtil.closeCurrentThreadSessions();
+					}
+				}
+			}
+		}
+		if (replica.getServer().isReady()) return replica.getServer();
+		// no response from the master for a while -> try to register again
+		if (System.currentTimeMillis() - Math.max(replica.getServer().getLastUpdate(), replica.getLastRegistration()) > 60000l)
+			replica.register();
+		return null;
+	}
+	
+	protected ReplicaServer createReplicaServer(Long academicSessionId) {
+		org.hibernate.Session hibSession = SessionDAO.getInstance().createNewSession();
+		try {
+			Session session = SessionDAO.getInstance().get(academicSessionId, hibSession);
+			if (session == null) throw new IllegalArgumentException("Academic session " + academicSessionId + " does not exist.");
+			return new ReplicaServer(new AcademicSessionInfo(session));
+		} finally {
+			hibSession.close();
+		}
+	}
+	
+	/**
+	 * True if the given method can be executed on a replica
+	 */
+	protected boolean isReadOnly(Method method, Object[] args) {
+		if ("execute".equals(method.getName()) && args != null && args.length == 2 && args[0] instanceof OnlineSectioningAction) {
+			String actions = ApplicationProperty.OnlineSchedulingServerReplicaActions.value();
+			return actions != null && !actions.isEmpty() && ((OnlineSectioningAction<?>)args[0]).name().matches(actions);
+		}
+		return sReadOnlyMethods.contains(method.getName());
+	}
+	
+	private class Replica {
+		private ReplicaServer iServer;
+		private Address iMaster;
+		private long iLastRegistration = 0;
+		
+		Replica(ReplicaServer server, Address master) {
+			iServer = server; iMaster = master;
+		}
+		
+		public ReplicaServer getServer() { return iServer; }
+		public Address getMaster() { return iMaster; }
+		public long getLastRegistration() { return iLastRegistration; }
+		
+		public void register() {
+			iLastRegistration = System.currentTimeMillis();
+			try {
+				iDispatcher.callRemoteMethod(iMaster, "registerReplica", new Object[] { iServer.getAcademicSession().getUniqueId().toString(), iChannel.getAddress() }, new Class[] { String.class, Address.class }, sAsync);
+			} catch (Exception e) {
+				sLog.warn("Failed to register replica of " + iServer.getAcademicSession() + " with " + iMaster + ": " + e.getMessage());
+			}
+		}
+		
+		public void unregister() {
+			try {
+				iDispatcher.callRemoteMethod(iMaster, "unregisterReplica", new Object[] { iServer.getAcademicSession().getUniqueId().toString(), iChannel.getAddress() }, new Class[] { String.class, Address.class }, sAsync);
+			} catch (Exception e) {
+				sLog.debug("Failed to unregister replica of " + iServer.getAcademicSession() + " with " + iMaster + ": " + e.getMessage());
+			}
+		}
+	}
+	
 	@Override
 	public RpcDispatcher getDispatcher() { return iDispatcher; }
+	
+	@Override
+	public SolverDirectory getDirectory() { return iDirectory; }
+	
+	@Override
+	public void solverAdded(String sessionId, Address address) {
+		iDirectory.solverAdded(sessionId, address);
+	}
+	
+	@Override
+	public void solverRemoved(String sessionId, Address address) {
+		iDirectory.solverRemoved(sessionId, address);
+	}
 
 	@Override
 	public boolean createRemoteSolver(String sessionId, DataProperties config, Address caller) {
@@ -73,14 +297,16 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 
 	@Override
 	public Object invoke(String method, String sessionId, Class[] types, Object[] args) throws Exception {
+		long t0 = System.nanoTime();
 		try {
 			OnlineSectioningServer solver = iInstances.get(Long.valueOf(sessionId));
 			if ("exists".equals(method) && types.length == 0)
 				return solver != null;
 			if (solver == null)
 				throw new Exception("Server " + sessionId + " does not exist.");
-			return solver.getClass().getMethod(method, types).invoke(solver, args);
+			return RemoteResult.wrap("online." + method, solver.getClass().getMethod(method, types).invoke(solver, args), t0);
 		} catch (InvocationTargetException e) {
+			RemoteResult.failed("online." + method, t0);
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
 				throw (Exception)e.getTargetException();
 			else
@@ -93,7 +319,7 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 	@Override
 	public Object dispatch(Address address, String sessionId, Method method, Object[] args) throws Exception {
 		try {
-			return iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), sessionId, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse);
+			return RemoteResult.unwrap(iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), sessionId, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse), iDispatcher, address);
 		} catch (InvocationTargetException e) {
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
 				throw (Exception)e.getTargetException();
@@ -106,6 +332,22 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 		}
 	}
 	
+	@Override
+	public boolean migrateSolver(String sessionId, Address target) {
+		// online sectioning servers are not migrated, they are reloaded from the database (or replicated)
+		return false;
+	}
+	
+	@Override
+	public boolean receiveSolver(String sessionId, DataProperties config, Object backup, Address source, Boolean start) {
+		return false;
+	}
+	
+	@Override
+	public byte[] getResultChunk(Long chunkId, Integer offset) {
+		return RemoteResult.getChunk(chunkId, offset);
+	}
+	
 	@Override
 	public OnlineSectioningServer createProxy(Address address, String user) {
 		ServerInvocationHandler handler = new ServerInvocationHandler(address, user);
@@ -138,6 +380,16 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
     		try {
     			return getClass().getMethod(method.getName(), method.getParameterTypes()).invoke(this, args);
     		} catch (NoSuchMethodException e) {}
+    		if (isReadOnly(method, args)) {
+    			ReplicaServer replica = getReplica(iUser, iAddress);
+    			if (replica != null) {
+    				try {
+    					return method.invoke(replica, args);
+    				} catch (InvocationTargetException e) {
+    					throw e.getTargetException();
+    				}
+    			}
+    		}
     		return dispatch(iAddress, iUser, method, args);
         }
     }
@@ -0,0 +1,211 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jgroups.Address;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.ResponseMode;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.model.XStudentId;
+import org.unitime.timetable.onlinesectioning.server.AbstractServer;
+import org.unitime.timetable.onlinesectioning.server.ServerChange;
+
+/**
+ * Publishes changes of an online sectioning server (the master) to its read-only replicas on other nodes of the cluster.<br>
+ * Changes are numbered and sent in batches by a single thread, so that they are delivered in the order in which they were made.
+ * Changes come in already serialized ({@link ServerChange#freeze()}), so the queue holds no references to the live objects of the server.
+ * When a new replica registers, it first receives the complete content of the server (serialized while the server is locked),
+ * followed by a {@link ServerChange.Type#SYNCHRONIZED} marker with the sequence number of the last change included.
+ *
+ * @author agent
+ */
+public class OnlineStudentSchedulingReplicator extends Thread implements AbstractServer.ChangeListener {
+	private static RequestOptions sAsync = new RequestOptions(ResponseMode.GET_NONE, 0);
+	private Log iLog;
+	private OnlineStudentSchedulingContainerRemote iContainer;
+	private AbstractServer iServer;
+	private String iSessionId;
+	private Set<Address> iReplicas = new HashSet<Address>();
+	private LinkedList<Object> iQueue = new LinkedList<Object>();
+	private long iSequence = 0;
+	private int iBatchSize = 500;
+	private boolean iStopping = false;
+	
+	public OnlineStudentSchedulingReplicator(OnlineStudentSchedulingContainerRemote container, AbstractServer server) {
+		super();
+		iContainer = container;
+		iServer = server;
+		iSessionId = server.getAcademicSession().getUniqueId().toString();
+		iBatchSize = ApplicationProperty.OnlineSchedulingServerReplicaBatchSize.intValue();
+		setDaemon(true);
+		setName("Replicator[" + server.getAcademicSession().toCompactString() + "]");
+		iLog = LogFactory.getLog(OnlineStudentSchedulingReplicator.class.getName() + ".replicator[" + server.getAcademicSession().toCompactString() + "]");
+		iServer.addChangeListener(this);
+	}
+	
+	@Override
+	public synchronized void changed(ServerChange change) {
+		if (iReplicas.isEmpty() || iStopping) return;
+		change.setSequence(++iSequence);
+		iQueue.add(change);
+		notify();
+	}
+	
+	/**
+	 * Register a new replica, or re-synchronize an existing one
+	 */
+	public void register(Address address) {
+		List<ServerChange> content = new ArrayList<ServerChange>();
+		content.add(ServerChange.clearAll());
+		Lock lock = iServer.lockAll();
+		try {
+			Set<Long> offeringIds = new LinkedHashSet<Long>();
+			for (XCourseId course: iServer.findCourses((CourseMatcher)null))
+				offeringIds.add(course.getOfferingId());
+			for (Long offeringId: offeringIds) {
+				XOffering offering = iServer.getOffering(offeringId);
+				if (offering == null) continue;
+				content.add(ServerChange.update(offering).freeze());
+				XExpectations expectations = iServer.getExpectations(offeringId);
+				if (expectations != null)
+					content.add(ServerChange.update(expectations).freeze());
+			}
+			for (XStudentId student: iServer.findStudents((StudentMatcher)null))
+				if (student instanceof XStudent)
+					content.add(ServerChange.update((XStudent)student, true).freeze());
+			synchronized (this) {
+				if (iStopping) return;
+				iReplicas.add(address);
+				ServerChange marker = new ServerChange(ServerChange.Type.SYNCHRONIZED, null);
+				marker.setSequence(iSequence);
+				content.add(marker);
+				iQueue.add(new Synchronization(address, content));
+				notify();
+			}
+		} finally {
+			lock.release();
+		}
+		iLog.info("Replica " + address + " registered (" + content.size() + " records to synchronize).");
+	}
+	
+	public synchronized void unregister(Address address) {
+		iReplicas.remove(address);
+	}
+	
+	public synchronized Set<Address> getReplicas() {
+		return new HashSet<Address>(iReplicas);
+	}
+	
+	/**
+	 * Stop replication, replicas are notified that the master server is going down
+	 */
+	public void stopReplicating() {
+		iServer.removeChangeListener(this);
+		synchronized (this) {
+			if (!iReplicas.isEmpty()) {
+				ServerChange closed = new ServerChange(ServerChange.Type.CLOSED, null);
+				closed.setSequence(++iSequence);
+				iQueue.add(closed);
+			}
+			iStopping = true;
+			notify();
+		}
+		try {
+			join(10000);
+		} catch (InterruptedException e) {}
+	}
+	
+	@Override
+	public void run() {
+		iLog.info("Replicator started.");
+		while (true) {
+			Synchronization sync = null;
+			List<ServerChange> batch = null;
+			Set<Address> replicas = null;
+			synchronized (this) {
+				while (iQueue.isEmpty() && !iStopping) {
+					try {
+						wait();
+					} catch (InterruptedException e) {}
+				}
+				if (iQueue.isEmpty()) break;
+				if (iQueue.peek() instanceof Synchronization) {
+					sync = (Synchronization)iQueue.poll();
+				} else {
+					batch = new ArrayList<ServerChange>();
+					while (!iQueue.isEmpty() && batch.size() < iBatchSize && iQueue.peek() instanceof ServerChange)
+						batch.add((ServerChange)iQueue.poll());
+				}
+				iReplicas.retainAll(iContainer.getDispatcher().getChannel().getView().getMembers());
+				replicas = new HashSet<Address>(iReplicas);
+			}
+			try {
+				if (sync != null) {
+					if (!replicas.contains(sync.getAddress())) continue;
+					List<ServerChange> content = sync.getContent();
+					for (int i = 0; i < content.size(); i += iBatchSize)
+						send(sync.getAddress(), new ArrayList<ServerChange>(content.subList(i, Math.min(i + iBatchSize, content.size()))));
+				} else if (!replicas.isEmpty()) {
+					send(replicas, batch);
+				}
+			} catch (Exception e) {
+				iLog.error("Failed to send changes to replicas: " + e.getMessage(), e);
+			}
+		}
+		iLog.info("Replicator stopped.");
+	}
+	
+	protected void send(Address address, List<ServerChange> changes) throws Exception {
+		iContainer.getDispatcher().callRemoteMethod(address, "applyReplicaChanges", new Object[] { iSessionId, changes }, new Class[] { String.class, List.class }, sAsync);
+	}
+	
+	protected void send(Collection<Address> addresses, List<ServerChange> changes) throws Exception {
+		iContainer.getDispatcher().callRemoteMethods(addresses, "applyReplicaChanges", new Object[] { iSessionId, changes }, new Class[] { String.class, List.class }, sAsync);
+	}
+	
+	private static class Synchronization {
+		private Address iAddress;
+		private List<ServerChange> iContent;
+		
+		Synchronization(Address address, List<ServerChange> content) {
+			iAddress = address; iContent = content;
+		}
+		
+		public Address getAddress() { return iAddress; }
+		public List<ServerChange> getContent() { return iContent; }
+	}
+}
@@ -45,6 +45,7 @@ import org.unitime.timetable.onlinesectioning.updates.ReloadAllData;
 import org.unitime.timetable.onlinesectioning.updates.ReloadAllStudents;
 import org.unitime.timetable.onlinesectioning.updates.ReloadOfferingAction;
 import org.unitime.timetable.onlinesectioning.updates.ReloadStudent;
+import org.unitime.timetable.onlinesectioning.updates.SaveServerSnapshot;
 
 /**
  * @author Tomas Muller
@@ -86,6 +87,7 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 						if (!iRun) break;
 						checkForExpiredReservations(server);
 						persistExpectedSpaces(server);
+						saveSnapshot(server);
 					}
 				} finally {
 					HibernateUtil.closeCurrentThreadSessions();
@@ -173,6 +175,27 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 		}
 	}
 	
+	public void saveSnapshot(OnlineSectioningServer server) {
+		if (!server.isReady() || !SaveServerSnapshot.isSupported(server)) return;
+		long ts = System.currentTimeMillis(); // current time stamp
+		Long lastSnapshot = server.getProperty("Updater.LastSnapshot", null);
+		if (lastSnapshot == null) {
+			// first call after the server was loaded -> wait for the whole interval
+			server.setProperty("Updater.LastSnapshot", ts);
+			return;
+		}
+		if (ts - lastSnapshot < 60000l * ApplicationProperty.OnlineSchedulingServerSnapshotInterval.intValue()) return;
+		server.setProperty("Updater.LastSnapshot", ts);
+		server.execute(server.createAction(SaveServerSnapshot.class), user(), new ServerCallback<Boolean>() {
+			@Override
+			public void onSuccess(Boolean result) {}
+			@Override
+			public void onFailure(Throwable exception) {
+				iLog.error("Failed to save server snapshot: " + exception.getMessage(), exception);
+			}
+		});
+	}
+	
 	protected void processChange(OnlineSectioningServer server, StudentSectioningQueue q) {
 		switch (StudentSectioningQueue.Type.values()[q.getType()]) {
 		case SESSION_RELOAD:
@@ -0,0 +1,329 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jgroups.Address;
+import org.jgroups.blocks.RpcDispatcher;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Serialized (and possibly compressed) result of a remote solver method invocation.<br>
+ * Results that are larger than {@link ApplicationProperty#SolverRpcCompressionThreshold} are compressed.
+ * Results that are (after compression) larger than {@link ApplicationProperty#SolverRpcChunkSize} are
+ * returned in chunks: the response only contains the first chunk and the remaining chunks are retrieved
+ * by the caller one by one (see {@link RemoteSolverContainer#getResultChunk(Long, Integer)}), so that
+ * a large response does not block the channel for other messages.
+ * 
+ * @author agent
+ */
+public class RemoteResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final long sChunkTimeout = 300000l;
+	private static AtomicLong sChunkId = new AtomicLong(0);
+	private static Map<Long, PendingChunks> sPendingChunks = new ConcurrentHashMap<Long, PendingChunks>();
+	private static Timer sExpirationTimer = null;
+	private static Map<String, RpcStatistics> sStatistics = new ConcurrentHashMap<String, RpcStatistics>();
+	
+	private byte[] iData;
+	private boolean iCompressed;
+	private Long iChunkId = null;
+	private int iSize = 0;
+	
+	private RemoteResult(byte[] data, boolean compressed) {
+		iData = data; iCompressed = compressed;
+		iSize = data.length;
+	}
+	
+	/**
+	 * Server side: serialize the result of a remote method call
+	 * @param method method name, used to record the statistics (e.g., course.getAssignedClasses)
+	 * @param result result of the method call
+	 * @param t0 time when the call has started (in nanoseconds, see {@link System#nanoTime()})
+	 */
+	public static Object wrap(String method, Object result, long t0) throws IOException {
+		if (result == null || result instanceof Boolean || result instanceof Number || result instanceof Enum) {
+			record(method, t0, 0, 0, false);
+			return result;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(result);
+		out.flush(); out.close();
+		byte[] data = bytes.toByteArray();
+		int size = data.length;
+		int threshold = ApplicationProperty.SolverRpcCompressionThreshold.intValue();
+		boolean compressed = false;
+		if (threshold >= 0 && size > threshold) {
+			ByteArrayOutputStream zipped = new ByteArrayOutputStream(size / 4);
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				DeflaterOutputStream zip = new DeflaterOutputStream(zipped, deflater, 65536);
+				zip.write(data);
+				zip.finish(); zip.close();
+			} finally {
+				deflater.end();
+			}
+			if (zipped.size() < size) {
+				data = zipped.toByteArray();
+				compressed = true;
+			}
+		}
+		RemoteResult ret = null;
+		int chunkSize = ApplicationProperty.SolverRpcChunkSize.intValue();
+		if (chunkSize > 0 && data.length > chunkSize) {
+			byte[] first = new byte[chunkSize];
+			System.arraycopy(data, 0, first, 0, chunkSize);
+			ret = new RemoteResult(first, compressed);
+			ret.iSize = data.length;
+			ret.iChunkId = sChunkId.incrementAndGet();
+			sPendingChunks.put(ret.iChunkId, new PendingChunks(data));
+			scheduleExpiration();
+		} else {
+			ret = new RemoteResult(data, compressed);
+		}
+		record(method, t0, size, data.length, ret.iChunkId != null);
+		return ret;
+	}
+	
+	/**
+	 * Client side: deserialize the result of a remote method call, retrieving the remaining chunks if needed
+	 * @param result object returned by the remote method call
+	 * @param dispatcher dispatcher to be used to retrieve the remaining chunks
+	 * @param address address of the server that has returned the result
+	 */
+	public static Object unwrap(Object result, RpcDispatcher dispatcher, Address address) throws Exception {
+		if (result == null || !(result instanceof RemoteResult)) return result;
+		RemoteResult rr = (RemoteResult)result;
+		byte[] data = rr.iData;
+		if (rr.iChunkId != null) {
+			data = new byte[rr.iSize];
+			System.arraycopy(rr.iData, 0, data, 0, rr.iData.length);
+			int offset = rr.iData.length;
+			while (offset < data.length) {
+				byte[] chunk = dispatcher.callRemoteMethod(address, "getResultChunk", new Object[] { rr.iChunkId, offset }, new Class[] { Long.class, Integer.class }, SolverServerImplementation.sFirstResponse);
+				if (chunk == null || chunk.length == 0)
+					throw new IOException("Failed to retrieve the result: chunk " + rr.iChunkId + " at " + offset + " is not available.");
+				System.arraycopy(chunk, 0, data, offset, chunk.length);
+				offset += chunk.length;
+			}
+		}
+		Inflater inflater = (rr.iCompressed ? new Inflater() : null);
+		try {
+			ObjectInputStream in = new ClassLoaderObjectInputStream(inflater != null ? new InflaterInputStream(new ByteArrayInputStream(data), inflater, 65536) : new ByteArrayInputStream(data));
+			try {
+				return in.readObject();
+			} finally {
+				in.close();
+			}
+		} finally {
+			if (inflater != null) inflater.end();
+		}
+	}
+	
+	/**
+	 * Server side: return next chunk of a chunked result
+	 * @param chunkId chunk id, as returned in the first response
+	 * @param offset number of bytes that the caller has already received
+	 */
+	public static byte[] getChunk(Long chunkId, Integer offset) {
+		PendingChunks pending = sPendingChunks.get(chunkId);
+		if (pending == null) return null;
+		int chunkSize = Math.max(1024, ApplicationProperty.SolverRpcChunkSize.intValue());
+		int length = Math.min(chunkSize, pending.getData().length - offset);
+		if (length <= 0) return null;
+		byte[] chunk = new byte[length];
+		System.arraycopy(pending.getData(), offset, chunk, 0, length);
+		if (offset + length >= pending.getData().length)
+			sPendingChunks.remove(chunkId);
+		else
+			pending.touch();
+		return chunk;
+	}
+	
+	private static void expireChunks() {
+		long now = System.currentTimeMillis();
+		for (Iterator<PendingChunks> i = sPendingChunks.values().iterator(); i.hasNext(); ) {
+			if (now - i.next().getLastAccess() > sChunkTimeout) i.remove();
+		}
+	}
+	
+	/**
+	 * Make sure that chunks that are never retrieved (e.g., the caller has failed) get expired, even when there are no other calls.
+	 * The timer is stopped when there are no more pending chunks.
+	 */
+	private static synchronized void scheduleExpiration() {
+		if (sExpirationTimer != null) return;
+		sExpirationTimer = new Timer("RemoteResultChunkExpiration", true);
+		sExpirationTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				expireChunks();
+				synchronized (RemoteResult.class) {
+					if (sPendingChunks.isEmpty() && sExpirationTimer != null) {
+						sExpirationTimer.cancel();
+						sExpirationTimer = null;
+					}
+				}
+			}
+		}, sChunkTimeout / 5, sChunkTimeout / 5);
+	}
+	
+	private static void record(String method, long t0, int size, int transferred, boolean chunked) {
+		RpcStatistics stats = sStatistics.get(method);
+		if (stats == null) {
+			stats = new RpcStatistics(method);
+			RpcStatistics old = sStatistics.putIfAbsent(method, stats);
+			if (old != null) stats = old;
+		}
+		stats.record((System.nanoTime() - t0) / 1000, size, transferred, chunked);
+	}
+	
+	/**
+	 * Server side: record a failed call in the statistics
+	 */
+	public static void failed(String method, long t0) {
+		record(method, t0, 0, 0, false);
+	}
+	
+	/**
+	 * Per-method payload size and latency statistics of this server, sorted by the total number of transferred bytes
+	 */
+	public static List<RpcStatistics> getStatistics() {
+		List<RpcStatistics> ret = new ArrayList<RpcStatistics>();
+		for (RpcStatistics stats: sStatistics.values())
+			ret.add(stats.copy());
+		Collections.sort(ret, new Comparator<RpcStatistics>() {
+			@Override
+			public int compare(RpcStatistics s1, RpcStatistics s2) {
+				int cmp = Long.compare(s2.getTransferredBytes(), s1.getTransferredBytes());
+				if (cmp != 0) return cmp;
+				return s1.getMethod().compareTo(s2.getMethod());
+			}
+		});
+		return ret;
+	}
+	
+	private static class PendingChunks {
+		private byte[] iData;
+		private long iLastAccess;
+		
+		PendingChunks(byte[] data) {
+			iData = data; iLastAccess = System.currentTimeMillis();
+		}
+		
+		byte[] getData() { return iData; }
+		long getLastAccess() { return iLastAccess; }
+		void touch() { iLastAccess = System.currentTimeMillis(); }
+	}
+	
+	private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+		ClassLoaderObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, RemoteResult.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+	
+	/**
+	 * Payload size and latency statistics of a remote method
+	 */
+	public static class RpcStatistics implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private String iMethod;
+		private long iCalls = 0, iChunked = 0;
+		private long iTotalTime = 0, iMaxTime = 0;
+		private long iTotalBytes = 0, iMaxBytes = 0, iTransferredBytes = 0;
+		
+		public RpcStatistics(String method) {
+			iMethod = method;
+		}
+		
+		private synchronized void record(long time, long size, long transferred, boolean chunked) {
+			iCalls ++;
+			iTotalTime += time;
+			if (time > iMaxTime) iMaxTime = time;
+			iTotalBytes += size;
+			if (size > iMaxBytes) iMaxBytes = size;
+			iTransferredBytes += transferred;
+			if (chunked) iChunked ++;
+		}
+		
+		private synchronized RpcStatistics copy() {
+			RpcStatistics ret = new RpcStatistics(iMethod);
+			ret.iCalls = iCalls; ret.iChunked = iChunked;
+			ret.iTotalTime = iTotalTime; ret.iMaxTime = iMaxTime;
+			ret.iTotalBytes = iTotalBytes; ret.iMaxBytes = iMaxBytes; ret.iTransferredBytes = iTransferredBytes;
+			return ret;
+		}
+		
+		public String getMethod() { return iMethod; }
+		/** Number of calls */
+		public long getCalls() { return iCalls; }
+		/** Number of calls which result was returned in chunks */
+		public long getChunkedCalls() { return iChunked; }
+		/** Total time spent (in microseconds), including the serialization of the result */
+		public long getTotalTime() { return iTotalTime; }
+		/** Maximal time of a call (in microseconds) */
+		public long getMaxTime() { return iMaxTime; }
+		/** Total size of the serialized results (in bytes) */
+		public long getTotalBytes() { return iTotalBytes; }
+		/** Maximal size of a serialized result (in bytes) */
+		public long getMaxBytes() { return iMaxBytes; }
+		/** Total number of bytes transferred (after compression) */
+		public long getTransferredBytes() { return iTransferredBytes; }
+		
+		@Override
+		public String toString() {
+			return iMethod + "{calls=" + iCalls + ", avgTime=" + (iCalls == 0 ? 0 : iTotalTime / iCalls / 1000) + "ms, maxTime=" + (iMaxTime / 1000) + "ms" +
+					", avgSize=" + (iCalls == 0 ? 0 : iTotalBytes / iCalls) + "B, maxSize=" + iMaxBytes + "B, transferred=" + iTransferredBytes + "B" +
+					(iChunked > 0 ? ", chunked=" + iChunked : "") + "}";
+		}
+	}
+}
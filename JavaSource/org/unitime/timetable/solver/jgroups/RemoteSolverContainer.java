@@ -38,5 +38,17 @@ public interface RemoteSolverContainer<T> extends SolverContainer<T> {
 	
 	public Object invoke(String method, String user, Class[] types, Object[] args) throws Exception;
 	
+	public byte[] getResultChunk(Long chunkId, Integer offset);
+	
+	public boolean migrateSolver(String user, Address target);
+	
+	public boolean receiveSolver(String user, DataProperties config, Object backup, Address source, Boolean start);
+	
 	public T createProxy(Address address, String user);
+	
+	public SolverDirectory getDirectory();
+	
+	public void solverAdded(String user, Address address);
+	
+	public void solverRemoved(String user, Address address);
 }
@@ -20,6 +20,7 @@
 package org.unitime.timetable.solver.jgroups;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import org.jgroups.Address;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
 
 
 /**
@@ -43,16 +45,28 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 	private RpcDispatcher iDispatcher;
 	private RemoteSolverContainer<T> iContainer;
 	private boolean iCheckLocal = true;
+	private SolverPlacement iPlacement = null;
+	private SolverType iType = null;
 
 	public SolverContainerWrapper(RpcDispatcher dispatcher, RemoteSolverContainer<T> container, boolean checkLocal) {
 		iDispatcher = dispatcher;
 		iContainer = container;
 		iCheckLocal = checkLocal;
 	}
+	
+	public SolverContainerWrapper(RpcDispatcher dispatcher, RemoteSolverContainer<T> container, boolean checkLocal, SolverPlacement placement, SolverType type) {
+		this(dispatcher, container, checkLocal);
+		iPlacement = placement;
+		iType = type;
+	}
 
 	@Override
 	public Set<String> getSolvers() {
 		Set<String> solvers = new HashSet<String>(iContainer.getSolvers());
+		if (iContainer.getDirectory().isAvailable()) {
+			solvers.addAll(iContainer.getDirectory().getSolvers());
+			return solvers;
+		}
 		try {
 			RspList<Set<String>> ret = iContainer.getDispatcher().callRemoteMethods(null, "getSolvers", new Object[] {}, new Class[] {}, SolverServerImplementation.sAllResponses);
 			for (Rsp<Set<String>> rsp : ret) {
@@ -72,6 +86,16 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 				T solver = iContainer.getSolver(user);
 				if (solver != null) return solver;				
 			}
+			
+			if (iContainer.getDirectory().isAvailable()) {
+				List<Address> owners = new ArrayList<Address>(iContainer.getDirectory().getOwners(user));
+				if (owners.isEmpty())
+					return null;
+				else if (owners.size() == 1)
+					return iContainer.createProxy(owners.get(0), user);
+				else
+					return iContainer.createProxy(ToolBox.random(owners), user);
+			}
 
 			RspList<Boolean> ret = iContainer.getDispatcher().callRemoteMethods(null, "hasSolver", new Object[] { user }, new Class[] { String.class }, SolverServerImplementation.sAllResponses);
 			List<Address> senders = new ArrayList<Address>();
@@ -98,8 +122,14 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 		try {
 			if (iCheckLocal && iContainer.hasSolver(user))
 				return iContainer.getMemUsage(user);
+			
+			Collection<Address> owners = null;
+			if (iContainer.getDirectory().isAvailable()) {
+				owners = iContainer.getDirectory().getOwners(user);
+				if (owners.isEmpty()) return 0;
+			}
 
-			RspList<Long> ret = iContainer.getDispatcher().callRemoteMethods(null, "getMemUsage", new Object[] { user }, new Class[] { String.class }, SolverServerImplementation.sAllResponses);
+			RspList<Long> ret = iContainer.getDispatcher().callRemoteMethods(owners, "getMemUsage", new Object[] { user }, new Class[] { String.class }, SolverServerImplementation.sAllResponses);
 			long total = 0, count = 0;
 			for (Rsp<Long> rsp : ret) {
 				if (rsp != null && rsp.getValue() != null && rsp.getValue() > 0) {
@@ -119,6 +149,9 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 	public boolean hasSolver(String user) {
 		try {
 			if (iContainer.hasSolver(user)) return true;
+			
+			if (iContainer.getDirectory().isAvailable())
+				return !iContainer.getDirectory().getOwners(user).isEmpty();
 
 			RspList<Boolean> ret = iContainer.getDispatcher().callRemoteMethods(null, "hasSolver", new Object[] { user }, new Class[] { String.class }, SolverServerImplementation.sAllResponses);
 			for (Rsp<Boolean> rsp : ret)
@@ -134,17 +167,22 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 	public T createSolver(String user, DataProperties config) {
 		try {
 			Address bestAddress = null;
-			int bestUsage = 0;
-			RspList<Boolean> ret = iDispatcher.callRemoteMethods(null, "isAvailable", new Object[] {}, new Class[] {}, SolverServerImplementation.sAllResponses);
-			for (Map.Entry<Address, Rsp<Boolean>> entry : ret.entrySet()) {
-				Address sender = entry.getKey();
-				Rsp<Boolean> rsp = entry.getValue();
-				if (Boolean.TRUE.equals(rsp.getValue())) {
-					Integer usage = iDispatcher.callRemoteMethod(sender, "getUsage", new Object[] {}, new Class[] {}, SolverServerImplementation.sFirstResponse);
-					if (bestAddress == null || bestUsage > usage) {
-						bestAddress = sender;
-		                bestUsage = usage;
-		            }
+			if (iPlacement != null)
+				bestAddress = iPlacement.select(iType, user, iDispatcher.getChannel().getView().getMembers());
+			
+			if (bestAddress == null) {
+				int bestUsage = 0;
+				RspList<Boolean> ret = iDispatcher.callRemoteMethods(null, "isAvailable", new Object[] {}, new Class[] {}, SolverServerImplementation.sAllResponses);
+				for (Map.Entry<Address, Rsp<Boolean>> entry : ret.entrySet()) {
+					Address sender = entry.getKey();
+					Rsp<Boolean> rsp = entry.getValue();
+					if (Boolean.TRUE.equals(rsp.getValue())) {
+						Integer usage = iDispatcher.callRemoteMethod(sender, "getUsage", new Object[] {}, new Class[] {}, SolverServerImplementation.sFirstResponse);
+						if (bestAddress == null || bestUsage > usage) {
+							bestAddress = sender;
+			                bestUsage = usage;
+			            }
+					}
 				}
 			}
 				
@@ -155,6 +193,8 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 				return iContainer.createSolver(user, config);
 			
 			iContainer.getDispatcher().callRemoteMethod(bestAddress, "createRemoteSolver", new Object[] { user, config, iDispatcher.getChannel().getAddress() }, new Class[] { String.class, DataProperties.class, Address.class }, SolverServerImplementation.sFirstResponse);
+			// the owner publishes the new solver asynchronously, make sure this node knows about it right away
+			iContainer.getDirectory().solverAdded(user, bestAddress);
 			return iContainer.createProxy(bestAddress, user);
 		} catch (RuntimeException e) {
 			throw e;
@@ -169,6 +209,16 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 			if (iContainer.hasSolver(user))
 				iContainer.unloadSolver(user);
 			
+			if (iContainer.getDirectory().isAvailable()) {
+				Address local = iContainer.getDispatcher().getChannel().getAddress();
+				for (Address owner: iContainer.getDirectory().getOwners(user)) {
+					if (owner.equals(local)) continue;
+					iContainer.getDispatcher().callRemoteMethod(owner, "unloadSolver", new Object[] { user }, new Class[] { String.class }, SolverServerImplementation.sFirstResponse);
+					iContainer.getDirectory().solverRemoved(user, owner);
+				}
+				return;
+			}
+			
 			RspList<Boolean> ret = iContainer.getDispatcher().callRemoteMethods(null, "hasSolver", new Object[] { user }, new Class[] { String.class }, SolverServerImplementation.sAllResponses);
 			for (Map.Entry<Address, Rsp<Boolean>> entry : ret.entrySet()) {
 				Address sender = entry.getKey();
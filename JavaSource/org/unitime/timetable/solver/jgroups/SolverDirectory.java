@@ -0,0 +1,171 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jgroups.Address;
+import org.jgroups.View;
+import org.jgroups.ViewId;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.ResponseMode;
+import org.jgroups.blocks.RpcDispatcher;
+import org.jgroups.util.Rsp;
+import org.jgroups.util.RspList;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Cluster-wide directory of solver instances (owner id &rarr; addresses of the nodes that have the solver loaded).<br>
+ * Each node keeps its own copy of the directory, which is updated by the solverAdded / solverRemoved notifications
+ * that the owning container broadcasts when a solver is created or disposed. The directory is rebuilt (using a single
+ * getSolvers broadcast) only when the cluster membership changes.
+ * 
+ * @author agent
+ */
+public class SolverDirectory {
+	private static Log sLog = LogFactory.getLog(SolverDirectory.class);
+	private static RequestOptions sAsync = new RequestOptions(ResponseMode.GET_NONE, 0);
+	
+	private RpcDispatcher iDispatcher;
+	private volatile ConcurrentHashMap<String, Set<Address>> iOwners = new ConcurrentHashMap<String, Set<Address>>();
+	private volatile ViewId iViewId = null;
+	
+	public SolverDirectory(RpcDispatcher dispatcher) {
+		iDispatcher = dispatcher;
+	}
+	
+	/**
+	 * Is the directory enabled and up to date with the current view? If the view has changed since the last time,
+	 * the directory is rebuilt.
+	 */
+	public boolean isAvailable() {
+		if (!ApplicationProperty.SolverClusterDirectory.isTrue()) return false;
+		View view = iDispatcher.getChannel().getView();
+		if (view == null) return false;
+		if (view.getViewId().equals(iViewId)) return true;
+		synchronized (this) {
+			if (view.getViewId().equals(iViewId)) return true;
+			return rebuild(view);
+		}
+	}
+	
+	protected boolean rebuild(View view) {
+		try {
+			long t0 = System.currentTimeMillis();
+			ConcurrentHashMap<String, Set<Address>> owners = new ConcurrentHashMap<String, Set<Address>>();
+			// make sure that notifications received during the rebuild are not lost
+			iOwners = owners;
+			RspList<Set<String>> ret = iDispatcher.callRemoteMethods(null, "getSolvers", new Object[] {}, new Class[] {}, SolverServerImplementation.sAllResponses);
+			for (Map.Entry<Address, Rsp<Set<String>>> entry : ret.entrySet()) {
+				Rsp<Set<String>> rsp = entry.getValue();
+				if (rsp != null && rsp.getValue() != null)
+					for (String user: rsp.getValue())
+						add(owners, user, entry.getKey());
+			}
+			iViewId = view.getViewId();
+			sLog.debug("Solver directory rebuilt for " + view.getViewId() + ": " + owners.size() + " solvers found in " + (System.currentTimeMillis() - t0) + " ms.");
+			return true;
+		} catch (Exception e) {
+			sLog.error("Failed to rebuild solver directory: " + e.getMessage(), e);
+			iViewId = null;
+			return false;
+		}
+	}
+	
+	private static void add(ConcurrentHashMap<String, Set<Address>> owners, String user, Address address) {
+		owners.compute(user, (u, addresses) -> {
+			if (addresses == null) addresses = ConcurrentHashMap.newKeySet();
+			addresses.add(address);
+			return addresses;
+		});
+	}
+	
+	/**
+	 * Addresses of the nodes that have the given solver loaded
+	 */
+	public Set<Address> getOwners(String user) {
+		Set<Address> addresses = iOwners.get(user);
+		return addresses == null ? Collections.<Address>emptySet() : new HashSet<Address>(addresses);
+	}
+	
+	/**
+	 * All solvers in the cluster
+	 */
+	public Set<String> getSolvers() {
+		Set<String> solvers = new TreeSet<String>();
+		for (Map.Entry<String, Set<Address>> entry: iOwners.entrySet())
+			if (!entry.getValue().isEmpty()) solvers.add(entry.getKey());
+		return solvers;
+	}
+	
+	/**
+	 * Record that a solver has been created on the given node (local update only)
+	 */
+	public void solverAdded(String user, Address address) {
+		add(iOwners, user, address);
+	}
+	
+	/**
+	 * Record that a solver has been removed from the given node (local update only)
+	 */
+	public void solverRemoved(String user, Address address) {
+		iOwners.computeIfPresent(user, (u, addresses) -> {
+			addresses.remove(address);
+			return addresses.isEmpty() ? null : addresses;
+		});
+	}
+	
+	/**
+	 * Notify all nodes that a solver has been created on this node
+	 */
+	public void publishAdded(String user) {
+		Address address = iDispatcher.getChannel().getAddress();
+		if (address == null) return;
+		solverAdded(user, address);
+		try {
+			iDispatcher.callRemoteMethods(null, "solverAdded", new Object[] { user, address }, new Class[] { String.class, Address.class }, sAsync);
+		} catch (Exception e) {
+			sLog.warn("Failed to publish solver " + user + ": " + e.getMessage(), e);
+			iViewId = null;
+		}
+	}
+	
+	/**
+	 * Notify all nodes that a solver has been removed from this node
+	 */
+	public void publishRemoved(String user) {
+		Address address = iDispatcher.getChannel().getAddress();
+		if (address == null) return;
+		solverRemoved(user, address);
+		try {
+			iDispatcher.callRemoteMethods(null, "solverRemoved", new Object[] { user, address }, new Class[] { String.class, Address.class }, sAsync);
+		} catch (Exception e) {
+			sLog.warn("Failed to unpublish solver " + user + ": " + e.getMessage(), e);
+			iViewId = null;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.ifs.util.DataProperties;
+import org.jgroups.Address;
+import org.jgroups.Message.Flag;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.ResponseMode;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.solver.AbstractSolver;
+
+/**
+ * Live migration of a solver instance between two solver servers. The solver is serialized
+ * (current and best solution, solver configuration) on the source server, the target server
+ * pulls the (possibly chunked, see {@link RemoteResult}) backup, restores the solver and registers
+ * it in the solver directory, and the source server unloads its copy.
+ * 
+ * @author agent
+ */
+public class SolverMigration {
+	private static Log sLog = LogFactory.getLog(SolverMigration.class);
+	
+	/**
+	 * Source server: send the solver to the target server, unload the local copy on success
+	 */
+	public static boolean migrate(RemoteSolverContainer<?> container, AbstractSolver<?, ?, ?> solver, String user, Address target) {
+		try {
+			long t0 = System.nanoTime();
+			boolean running = solver.isRunning();
+			if (running) solver.stopSolver();
+			if (solver.isWorking()) {
+				sLog.info("Solver " + user + " is busy, it cannot be migrated.");
+				return false;
+			}
+			byte[] backup = solver.exportBackup();
+			Object payload = RemoteResult.wrap(solver.getType().name().toLowerCase() + ".migrate", backup, t0);
+			Boolean ret = container.getDispatcher().callRemoteMethod(target, "receiveSolver",
+					new Object[] { user, solver.getProperties(), payload, container.getDispatcher().getChannel().getAddress(), running },
+					new Class[] { String.class, DataProperties.class, Object.class, Address.class, Boolean.class },
+					new RequestOptions(ResponseMode.GET_FIRST, ApplicationProperty.SolverMigrationTimeout.intValue()).setFlags(Flag.DONT_BUNDLE, Flag.OOB));
+			if (Boolean.TRUE.equals(ret)) {
+				sLog.info("Solver " + user + " migrated to " + target + " in " + ((System.nanoTime() - t0) / 1000000) + " ms (" + (backup.length >> 10) + " kB).");
+				container.unloadSolver(user);
+				return true;
+			}
+			sLog.warn("Solver " + user + " was not accepted by " + target + ".");
+			if (running) solver.start();
+		} catch (Exception e) {
+			sLog.error("Failed to migrate solver " + user + " to " + target + ": " + e.getMessage(), e);
+		}
+		return false;
+	}
+	
+	/**
+	 * Target server: restore the solver that is being migrated from the source server
+	 * @param solver newly created solver instance
+	 * @param payload serialized backup, as returned by {@link RemoteResult#wrap(String, Object, long)}
+	 * @param start true if the solver was running on the source server
+	 */
+	public static boolean receive(RemoteSolverContainer<?> container, AbstractSolver<?, ?, ?> solver, String user, Object payload, Address source, Boolean start) {
+		try {
+			long t0 = System.currentTimeMillis();
+			byte[] backup = (byte[])RemoteResult.unwrap(payload, container.getDispatcher(), source);
+			solver.importBackup(backup);
+			if (Boolean.TRUE.equals(start)) solver.start();
+			sLog.info("Solver " + user + " received from " + source + " in " + (System.currentTimeMillis() - t0) + " ms (" + (backup.length >> 10) + " kB).");
+			return true;
+		} catch (Exception e) {
+			sLog.error("Failed to receive solver " + user + " from " + source + ": " + e.getMessage(), e);
+			container.unloadSolver(user);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jgroups.Address;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
+
+/**
+ * Resource-aware placement of new solver instances, based on the telemetry that the solver servers periodically
+ * broadcast (see {@link SolverServerTelemetry}). The memory footprint of the new solver is estimated from the
+ * past loads of the same owner (or from the average of the solvers of the same type when there is no history).
+ * 
+ * @author agent
+ */
+public class SolverPlacement {
+	private static Log sLog = LogFactory.getLog(SolverPlacement.class);
+	
+	private Map<Address, SolverServerTelemetry> iTelemetry = new ConcurrentHashMap<Address, SolverServerTelemetry>();
+	private Map<Address, Long> iReceived = new ConcurrentHashMap<Address, Long>();
+	private Map<Address, Long> iReserved = new ConcurrentHashMap<Address, Long>();
+	private Map<String, Long> iFootprints = new ConcurrentHashMap<String, Long>();
+	
+	public SolverPlacement() {}
+	
+	/**
+	 * Telemetry received from a cluster member
+	 */
+	public void update(Address address, SolverServerTelemetry telemetry) {
+		iTelemetry.put(address, telemetry);
+		iReceived.put(address, System.currentTimeMillis());
+		// the new telemetry already includes solvers placed on the server since the last update
+		iReserved.remove(address);
+		for (Map.Entry<String, Long> entry: telemetry.getMemUsage().entrySet())
+			if (entry.getValue() != null && entry.getValue() > 0)
+				iFootprints.merge(entry.getKey(), entry.getValue(), Math::max);
+		if (sLog.isTraceEnabled())
+			sLog.trace(address + ": " + telemetry);
+	}
+	
+	/**
+	 * Cluster view has changed, forget the telemetry of the members that have left
+	 */
+	public void viewChanged(Collection<Address> members) {
+		iTelemetry.keySet().retainAll(members);
+		iReceived.keySet().retainAll(members);
+		iReserved.keySet().retainAll(members);
+	}
+	
+	public SolverServerTelemetry getTelemetry(Address address) {
+		return iTelemetry.get(address);
+	}
+	
+	/**
+	 * Estimated memory footprint of a solver of the given type and owner, 0 if not known
+	 */
+	public long estimateFootprint(SolverType type, String owner) {
+		if (type == null) return 0;
+		Long footprint = iFootprints.get(SolverServerTelemetry.getSolverKey(type, owner));
+		if (footprint != null) return footprint;
+		String prefix = type.name() + ":";
+		long total = 0; int count = 0;
+		for (Map.Entry<String, Long> entry: iFootprints.entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				total += entry.getValue(); count ++;
+			}
+		}
+		return (count == 0 ? 0 : total / count);
+	}
+	
+	/**
+	 * Select the cluster member on which a new solver should be created.
+	 * @return null if there is no suitable member or if the telemetry is not available (or not up to date) for some of the members
+	 */
+	public Address select(SolverType type, String owner, Collection<Address> members) {
+		int interval = ApplicationProperty.SolverTelemetryInterval.intValue();
+		if (interval <= 0) return null;
+		long maxAge = 3000l * interval;
+		long now = System.currentTimeMillis();
+		long footprint = estimateFootprint(type, owner);
+		Address best = null;
+		double bestCost = 0.0;
+		for (Address address: members) {
+			SolverServerTelemetry telemetry = iTelemetry.get(address);
+			Long received = iReceived.get(address);
+			if (telemetry == null || received == null || now - received > maxAge) {
+				sLog.debug("No recent telemetry from " + address + ", falling back to the default placement.");
+				return null;
+			}
+			if (!telemetry.isActive() || telemetry.getHeapMax() <= 0) continue;
+			Long reserved = iReserved.get(address);
+			long used = telemetry.getHeapLive() + (reserved == null ? 0l : reserved.longValue()) + footprint;
+			if (telemetry.getHeapMax() - used < telemetry.getMemoryLimit()) continue;
+			double cost = telemetry.getUsage() + 100.0 * used / telemetry.getHeapMax();
+			if (telemetry.getLoadAverage() >= 0.0 && telemetry.getProcessors() > 0)
+				cost += 100.0 * Math.min(1.0, telemetry.getLoadAverage() / telemetry.getProcessors());
+			if (best == null || cost < bestCost) {
+				best = address; bestCost = cost;
+			}
+		}
+		if (best != null) {
+			if (footprint > 0) iReserved.merge(best, footprint, Long::sum);
+			sLog.debug("Placing " + (type == null ? "server" : type.name().toLowerCase() + " solver") + " " + owner + " on " + best +
+					" (estimated footprint " + (footprint >> 20) + "M, cost " + Math.round(bestCost) + ")");
+		}
+		return best;
+	}
+}
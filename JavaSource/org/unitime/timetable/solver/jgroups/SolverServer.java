@@ -27,9 +27,11 @@ import org.jgroups.Address;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface;
 import org.unitime.timetable.model.SolverParameterGroup.SolverType;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.solver.SolverPassivationScheduler.PassivationStatistics;
 import org.unitime.timetable.solver.SolverProxy;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingProxy;
+import org.unitime.timetable.solver.jgroups.RemoteResult.RpcStatistics;
 import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
 import org.unitime.timetable.util.queue.QueueProcessor;
 
@@ -93,6 +95,8 @@ public interface SolverServer {
 	
 	public void refreshInstructorSolution(Collection<Long> solverGroupIds);
 	
+	public void invalidateCalendarFeeds(Collection<String> dependencies);
+	
 	public void setApplicationProperty(Long sessionId, String key, String value);
 	
 	public void setLoggingLevel(String name, String level);
@@ -106,4 +110,10 @@ public interface SolverServer {
 	public SolverServer crateServerProxy(Address address);
 	
 	public QueueProcessor getQueueProcessor();
+	
+	public List<RpcStatistics> getRpcStatistics();
+	
+	public PassivationStatistics getPassivationStatistics();
+	
+	public int migrateSolvers();
 }
@@ -86,6 +86,7 @@ public class SolverServerImplementation extends AbstractSolverServer {
 	private static SolverServerImplementation sInstance = null;
 	public static final RequestOptions sFirstResponse = new RequestOptions(ResponseMode.GET_FIRST, ApplicationProperty.SolverClusterTimeout.intValue()).setFlags(Flag.DONT_BUNDLE, Flag.OOB);
 	public static final RequestOptions sAllResponses = new RequestOptions(ResponseMode.GET_ALL, ApplicationProperty.SolverClusterTimeout.intValue()).setFlags(Flag.DONT_BUNDLE, Flag.OOB);
+	public static final RequestOptions sNoResponse = new RequestOptions(ResponseMode.GET_NONE, 0).setFlags(Flag.OOB);
 	
 	private JChannel iChannel;
 	private ForkChannel iServerChannel;
@@ -99,6 +100,8 @@ public class SolverServerImplementation extends AbstractSolverServer {
 	private RemoteRoomAvailability iRemoteRoomAvailability;
 	private OnlineStudentSchedulingGenericUpdater iUpdater;
 	private RemoteQueueProcessor iRemoteQueueProcessor;
+	private SolverPlacement iPlacement = new SolverPlacement();
+	private TelemetryThread iTelemetry = null;
 	
 	protected boolean iLocal = false;
 	
@@ -116,6 +119,8 @@ public class SolverServerImplementation extends AbstractSolverServer {
 					View view=evt.getArg();
 					sLog.info("viewAccepted(" + view + ")");
 					if (iUpdater != null) iUpdater.viewChanged();
+					if (iPlacement != null) iPlacement.viewChanged(view.getMembers());
+					if (iTelemetry != null) iTelemetry.wakeUp();
 					if (view instanceof MergeView) {
 						Thread t = new Thread() {
 							public void run() {
@@ -145,6 +150,12 @@ public class SolverServerImplementation extends AbstractSolverServer {
 	
 	public RpcDispatcher getDispatcher() { return iDispatcher; }
 	
+	public SolverPlacement getSolverPlacement() { return iPlacement; }
+	
+	public void updateTelemetry(Address address, SolverServerTelemetry telemetry) {
+		iPlacement.update(address, telemetry);
+	}
+	
 	@Override
 	public void start() throws Exception {
 		iServerChannel.connect("UniTime:RPC:Server");
@@ -159,10 +170,18 @@ public class SolverServerImplementation extends AbstractSolverServer {
 		iRemoteQueueProcessor.start();
 
 		super.start();
+		
+		iTelemetry = new TelemetryThread();
+		iTelemetry.start();
 	}
 	
 	@Override
 	public void stop() throws Exception {
+		if (iTelemetry != null) {
+			iTelemetry.interrupt();
+			iTelemetry = null;
+		}
+		
 		super.stop();
 		
 		iServerChannel.disconnect();
@@ -395,6 +414,20 @@ public class SolverServerImplementation extends AbstractSolverServer {
 		}
 	}
 	
+	public void invalidateCalendarFeedsLocal(Collection<String> dependencies) {
+		if (isLocal())
+			super.invalidateCalendarFeeds(dependencies);
+	}
+	
+	@Override
+	public void invalidateCalendarFeeds(Collection<String> dependencies) {
+		try {
+			iDispatcher.callRemoteMethods(null, "invalidateCalendarFeedsLocal", new Object[] { dependencies }, new Class[] { Collection.class }, sNoResponse);
+		} catch (Exception e) {
+			sLog.error("Failed to invalidate calendar feeds: " + e.getMessage(), e);
+		}
+	}
+	
 	public void unloadSolverLocal(Integer type, String id) {
 		switch (SolverType.values()[type]) {
 		case COURSE:
@@ -535,6 +568,50 @@ public class SolverServerImplementation extends AbstractSolverServer {
 		new ShutdownThread().start();
 	}
 	
+	@Override
+	public int migrateSolvers() {
+		Address local = iChannel.getAddress();
+		List<Address> members = new ArrayList<Address>(iChannel.getView().getMembers());
+		members.remove(local);
+		if (members.isEmpty()) return 0;
+		int migrated = 0;
+		for (RemoteSolverContainer<?> container: new RemoteSolverContainer<?>[] {iCourseSolverContainer, iExamSolverContainer, iStudentSolverContainer, iInstructorSchedulingContainer}) {
+			SolverType type = (container == iCourseSolverContainer ? SolverType.COURSE : container == iExamSolverContainer ? SolverType.EXAM :
+				container == iStudentSolverContainer ? SolverType.STUDENT : SolverType.INSTRUCTOR);
+			for (String owner: container.getSolvers()) {
+				Address target = iPlacement.select(type, owner, members);
+				if (target == null) target = selectMigrationTarget(local);
+				if (target == null) {
+					sLog.warn("No server is available to take over " + type.name().toLowerCase() + " solver " + owner + ".");
+					continue;
+				}
+				if (container.migrateSolver(owner, target)) migrated ++;
+			}
+		}
+		return migrated;
+	}
+	
+	private Address selectMigrationTarget(Address local) {
+		try {
+			Address bestAddress = null;
+			int bestUsage = 0;
+			RspList<Boolean> ret = iDispatcher.callRemoteMethods(null, "isAvailable", new Object[] {}, new Class[] {}, sAllResponses);
+			for (Map.Entry<Address, Rsp<Boolean>> entry : ret.entrySet()) {
+				Address sender = entry.getKey();
+				if (sender.equals(local) || !Boolean.TRUE.equals(entry.getValue().getValue())) continue;
+				Integer usage = iDispatcher.callRemoteMethod(sender, "getUsage", new Object[] {}, new Class[] {}, sFirstResponse);
+				if (bestAddress == null || bestUsage > usage) {
+					bestAddress = sender;
+					bestUsage = usage;
+				}
+			}
+			return bestAddress;
+		} catch (Exception e) {
+			sLog.error("Failed to select a server for solver migration: " + e.getMessage(), e);
+			return null;
+		}
+	}
+	
 	public static SolverServer getInstance() {
 		if (sInstance == null && SpringApplicationContextHolder.isInitialized()) {
 			return ((SolverServerService)SpringApplicationContextHolder.getBean("solverServerService")).getLocalServer();
@@ -543,6 +620,49 @@ public class SolverServerImplementation extends AbstractSolverServer {
 		return sInstance;
 	}
 	
+	private class TelemetryThread extends Thread {
+		private RequestOptions iAsync = new RequestOptions(ResponseMode.GET_NONE, 0);
+		private Object iLock = new Object();
+		private boolean iWakeUp = false;
+		
+		TelemetryThread() {
+			setName("SolverServer:Telemetry");
+			setDaemon(true);
+		}
+		
+		public void wakeUp() {
+			synchronized (iLock) {
+				iWakeUp = true;
+				iLock.notify();
+			}
+		}
+		
+		@Override
+		public void run() {
+			sLog.info("Solver server telemetry started.");
+			while (!isInterrupted()) {
+				int interval = ApplicationProperty.SolverTelemetryInterval.intValue();
+				try {
+					if (interval > 0 && iChannel.getAddress() != null) {
+						SolverServerTelemetry telemetry = getTelemetry();
+						iDispatcher.callRemoteMethods(null, "updateTelemetry", new Object[] { iChannel.getAddress(), telemetry }, new Class[] { Address.class, SolverServerTelemetry.class }, iAsync);
+					}
+				} catch (Exception e) {
+					sLog.warn("Failed to broadcast solver server telemetry: " + e.getMessage(), e);
+				}
+				try {
+					synchronized (iLock) {
+						if (!iWakeUp) iLock.wait(1000l * (interval > 0 ? interval : 60));
+						iWakeUp = false;
+					}
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			sLog.info("Solver server telemetry stopped.");
+		}
+	}
+	
 	private class ShutdownThread extends Thread {
 		ShutdownThread() {
 			setName("SolverServer:Shutdown");
@@ -557,6 +677,12 @@ public class SolverServerImplementation extends AbstractSolverServer {
 				
 				sLog.info("Server is going down...");
 				
+				if (ApplicationProperty.SolverMigrateOnShutdown.isTrue()) {
+					sLog.info("Migrating solvers to other servers...");
+					int migrated = migrateSolvers();
+					sLog.info(migrated + " solvers migrated.");
+				}
+				
 				SolverServerImplementation.this.stop();
 				
 				sLog.info("Disconnecting from the channel...");
@@ -0,0 +1,101 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
+
+/**
+ * Periodic resource usage record of a solver server, gossiped to all the cluster members
+ * and used by the {@link SolverPlacement} to decide where a new solver instance should be created.
+ * 
+ * @author agent
+ */
+public class SolverServerTelemetry implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	private long iTimeStamp = System.currentTimeMillis();
+	private boolean iActive = false, iAvailable = false;
+	private int iUsage = 0;
+	private long iHeapMax = 0, iHeapUsed = 0, iHeapLive = 0, iMemoryLimit = 0;
+	private int iProcessors = 0;
+	private double iLoadAverage = -1.0;
+	private Map<String, Integer> iSolverCounts = new HashMap<String, Integer>();
+	private Map<String, Long> iMemUsage = new HashMap<String, Long>();
+	
+	public SolverServerTelemetry() {}
+	
+	public long getTimeStamp() { return iTimeStamp; }
+	
+	public boolean isActive() { return iActive; }
+	public void setActive(boolean active) { iActive = active; }
+	
+	public boolean isAvailable() { return iAvailable; }
+	public void setAvailable(boolean available) { iAvailable = available; }
+	
+	public int getUsage() { return iUsage; }
+	public void setUsage(int usage) { iUsage = usage; }
+	
+	/** Maximal heap size in bytes */
+	public long getHeapMax() { return iHeapMax; }
+	public void setHeapMax(long heapMax) { iHeapMax = heapMax; }
+	
+	/** Currently used heap in bytes (including garbage) */
+	public long getHeapUsed() { return iHeapUsed; }
+	public void setHeapUsed(long heapUsed) { iHeapUsed = heapUsed; }
+	
+	/** Heap used after the last garbage collection in bytes */
+	public long getHeapLive() { return iHeapLive; }
+	public void setHeapLive(long heapLive) { iHeapLive = heapLive; }
+	
+	/** Minimal amount of free memory that is needed for a new solver to be created on the server */
+	public long getMemoryLimit() { return iMemoryLimit; }
+	public void setMemoryLimit(long memoryLimit) { iMemoryLimit = memoryLimit; }
+	
+	public int getProcessors() { return iProcessors; }
+	public void setProcessors(int processors) { iProcessors = processors; }
+	
+	/** System load average for the last minute, negative if not available */
+	public double getLoadAverage() { return iLoadAverage; }
+	public void setLoadAverage(double loadAverage) { iLoadAverage = loadAverage; }
+	
+	/** Number of live solvers by type (solver type name, or ONLINE for the online student scheduling servers) */
+	public Map<String, Integer> getSolverCounts() { return iSolverCounts; }
+	public void setSolverCount(String type, int count) { iSolverCounts.put(type, count); }
+	
+	/** Estimated memory usage of the live solvers, see {@link #getSolverKey(SolverType, String)} */
+	public Map<String, Long> getMemUsage() { return iMemUsage; }
+	public void setMemUsage(SolverType type, String owner, long memUsage) { iMemUsage.put(getSolverKey(type, owner), memUsage); }
+	
+	public static String getSolverKey(SolverType type, String owner) {
+		return type.name() + ":" + owner;
+	}
+	
+	@Override
+	public String toString() {
+		return "Telemetry{active=" + iActive + ", usage=" + iUsage +
+				", heap=" + (iHeapLive >> 20) + "/" + (iHeapUsed >> 20) + "/" + (iHeapMax >> 20) + "M" +
+				", load=" + (iLoadAverage < 0 ? "N/A" : String.format("%.2f", iLoadAverage)) + "/" + iProcessors +
+				", solvers=" + iSolverCounts + "}";
+	}
+}
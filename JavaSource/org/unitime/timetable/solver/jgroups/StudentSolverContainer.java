@@ -32,6 +32,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationScheduler;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
 import org.unitime.timetable.solver.studentsct.StudentSolver;
 import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
@@ -44,7 +45,6 @@ public class StudentSolverContainer implements SolverContainer<StudentSolverProx
 	private static Log sLog = LogFactory.getLog(StudentSolverContainer.class);
 	
 	protected Map<String,StudentSolver> iStudentSolvers = new Hashtable<String, StudentSolver>();
-	private PassivationThread iPassivation = null;
 
 	@Override
 	public Set<String> getSolvers() {
@@ -96,8 +96,7 @@ public class StudentSolverContainer implements SolverContainer<StudentSolverProx
 	
 	@Override
 	public void start() throws Exception {
-		iPassivation = new PassivationThread(ApplicationProperties.getPassivationFolder());
-		iPassivation.start();
+		SolverPassivationScheduler.getInstance().register("StudentSectioning", iStudentSolvers);
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (!folder.exists() || !folder.isDirectory()) return;
 
@@ -117,6 +116,7 @@ public class StudentSolverContainer implements SolverContainer<StudentSolverProx
 	
 	@Override
 	public void stop() throws Exception {
+		SolverPassivationScheduler.getInstance().unregister("StudentSectioning");
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (folder.exists() && !folder.isDirectory()) return;
 		
@@ -128,9 +128,10 @@ public class StudentSolverContainer implements SolverContainer<StudentSolverProx
 		for (Map.Entry<String, StudentSolver> entry: iStudentSolvers.entrySet()) {
 			entry.getValue().backup(folder, entry.getKey());
 		}
-		iPassivation.destroy();
 	}
 	
+	protected void solverDisposed(String user) {}
+	
     protected class SolverOnDispose implements SolverDisposeListener {
         String iUser = null;
         public SolverOnDispose(String user) {
@@ -139,42 +140,7 @@ public class StudentSolverContainer implements SolverContainer<StudentSolverProx
         @Override
         public void onDispose() {
             iStudentSolvers.remove(iUser);
+            solverDisposed(iUser);
         }
     }
-    
-	private class PassivationThread extends Thread {
-		private File iFolder = null;
-		public long iDelay = 30000;
-		public boolean iContinue = true;
-		
-		public PassivationThread(File folder) {
-			iFolder = folder;
-			setName("Passivation[StudentSectioning]");
-			setDaemon(true);
-			setPriority(Thread.MIN_PRIORITY);
-		}
-		
-		public void run() {
-			try {
-				sLog.info("Solver passivation thread started.");
-				while (iContinue) {
-					for (Map.Entry<String, StudentSolver> entry: iStudentSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
-					try {
-						sleep(iDelay);
-					} catch (InterruptedException e) {
-					    break;
-	                }
-				}
-				sLog.info("Solver passivation thread finished.");
-			} catch (Exception e) {
-				sLog.warn("Solver passivation thread failed, reason: " + e.getMessage(), e);
-			}
-		}
-		
-		public void destroy() {
-			iContinue = false;
-			if (isAlive()) interrupt();
-		}
-	}
 }
\ No newline at end of file
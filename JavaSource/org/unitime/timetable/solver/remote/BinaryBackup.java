@@ -0,0 +1,242 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.dom4j.Attribute;
+import org.dom4j.Document;
+import org.dom4j.DocumentFactory;
+import org.dom4j.Element;
+import org.dom4j.Node;
+
+/**
+ * Compact binary form of a solver backup document, used for solver passivation and backups instead of the pretty-printed XML.<br>
+ * Only elements, attributes and text are kept. Element and attribute names and short values are written only once and then
+ * referenced by their index in a dictionary that both the writer and the reader build in the same order. The whole stream is
+ * deflated and read back directly into a dom4j document, without any XML parsing.
+ * 
+ * @author agent
+ */
+public class BinaryBackup {
+	private static final int MAGIC = 0x55544231; // UTB1
+	private static final byte START = 1, END = 2, TEXT = 3, EOD = 0;
+	private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+	private static final int MAX_DICTIONARY_STRING = 32;
+	
+	private BinaryBackup() {}
+	
+	/**
+	 * Write the given document into the output stream (the stream is not closed)
+	 */
+	public static void write(Document document, OutputStream out) throws IOException {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			DeflaterOutputStream dos = new DeflaterOutputStream(out, deflater, 65536);
+			Writer writer = new Writer(new DataOutputStream(new BufferedOutputStream(dos, 65536)));
+			writer.writeDocument(document);
+			writer.flush();
+			dos.finish();
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	/**
+	 * Read a document from the given input stream (the stream is not closed)
+	 */
+	public static Document read(InputStream in) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			Reader reader = new Reader(new DataInputStream(new BufferedInputStream(new InflaterInputStream(in, inflater, 65536), 65536)));
+			return reader.readDocument();
+		} finally {
+			inflater.end();
+		}
+	}
+	
+	private static boolean isDictionaryCandidate(String text, int size) {
+		return size < MAX_DICTIONARY_SIZE && text.length() <= MAX_DICTIONARY_STRING;
+	}
+	
+	private static class Writer {
+		private DataOutputStream iOut;
+		private Map<String, Integer> iDictionary = new HashMap<String, Integer>();
+		
+		Writer(DataOutputStream out) { iOut = out; }
+		
+		void writeDocument(Document document) throws IOException {
+			iOut.writeInt(MAGIC);
+			if (document.getRootElement() != null)
+				writeElement(document.getRootElement());
+			iOut.writeByte(EOD);
+		}
+		
+		void writeElement(Element root) throws IOException {
+			// iterative traversal, backup documents can be deep enough
+			List<Iterator<Node>> stack = new ArrayList<Iterator<Node>>();
+			writeStart(root);
+			stack.add(root.nodeIterator());
+			while (!stack.isEmpty()) {
+				Iterator<Node> i = stack.get(stack.size() - 1);
+				if (!i.hasNext()) {
+					stack.remove(stack.size() - 1);
+					iOut.writeByte(END);
+					continue;
+				}
+				Node node = i.next();
+				switch (node.getNodeType()) {
+				case Node.ELEMENT_NODE:
+					Element element = (Element)node;
+					writeStart(element);
+					stack.add(element.nodeIterator());
+					break;
+				case Node.TEXT_NODE:
+				case Node.CDATA_SECTION_NODE:
+					String text = node.getText();
+					if (text != null && !text.isEmpty()) {
+						iOut.writeByte(TEXT);
+						writeString(text);
+					}
+					break;
+				}
+			}
+		}
+		
+		void writeStart(Element element) throws IOException {
+			iOut.writeByte(START);
+			writeString(element.getName());
+			writeInt(element.attributeCount());
+			for (Iterator<Attribute> i = element.attributeIterator(); i.hasNext(); ) {
+				Attribute attribute = i.next();
+				writeString(attribute.getName());
+				writeString(attribute.getValue());
+			}
+		}
+		
+		void writeInt(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				iOut.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			iOut.writeByte(value);
+		}
+		
+		void writeString(String text) throws IOException {
+			Integer index = iDictionary.get(text);
+			if (index != null) {
+				writeInt(index + 1);
+				return;
+			}
+			writeInt(0);
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			writeInt(bytes.length);
+			iOut.write(bytes);
+			if (isDictionaryCandidate(text, iDictionary.size()))
+				iDictionary.put(text, iDictionary.size());
+		}
+		
+		void flush() throws IOException {
+			iOut.flush();
+		}
+	}
+	
+	private static class Reader {
+		private DataInputStream iIn;
+		private List<String> iDictionary = new ArrayList<String>();
+		private DocumentFactory iFactory = DocumentFactory.getInstance();
+		
+		Reader(DataInputStream in) { iIn = in; }
+		
+		Document readDocument() throws IOException {
+			if (iIn.readInt() != MAGIC)
+				throw new IOException("Not a binary solver backup.");
+			Document document = iFactory.createDocument();
+			List<Element> stack = new ArrayList<Element>();
+			while (true) {
+				byte type = iIn.readByte();
+				switch (type) {
+				case EOD:
+					if (!stack.isEmpty()) throw new EOFException("Unexpected end of the binary solver backup.");
+					return document;
+				case START:
+					Element element = iFactory.createElement(readString());
+					int attributes = readInt();
+					for (int i = 0; i < attributes; i++) {
+						String name = readString();
+						element.addAttribute(name, readString());
+					}
+					if (stack.isEmpty())
+						document.setRootElement(element);
+					else
+						stack.get(stack.size() - 1).add(element);
+					stack.add(element);
+					break;
+				case END:
+					stack.remove(stack.size() - 1);
+					break;
+				case TEXT:
+					stack.get(stack.size() - 1).addText(readString());
+					break;
+				default:
+					throw new IOException("Corrupted binary solver backup (unknown node type " + type + ").");
+				}
+			}
+		}
+		
+		int readInt() throws IOException {
+			int value = 0, shift = 0;
+			while (true) {
+				int b = iIn.readUnsignedByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return value;
+				shift += 7;
+			}
+		}
+		
+		String readString() throws IOException {
+			int index = readInt();
+			if (index > 0) return iDictionary.get(index - 1);
+			byte[] bytes = new byte[readInt()];
+			iIn.readFully(bytes);
+			String text = new String(bytes, StandardCharsets.UTF_8);
+			if (isDictionaryCandidate(text, iDictionary.size()))
+				iDictionary.add(text);
+			return text;
+		}
+	}
+}
@@ -154,6 +154,10 @@ public class CourseTimetablingSolverService implements SolverService<SolverProxy
 
 	@Override
 	public DataProperties createConfig(Long settingsId, Map<Long, String> options) {
+		return createConfig(settingsId, options, true);
+	}
+	
+	protected DataProperties createConfig(Long settingsId, Map<Long, String> options, boolean portfolio) {
 		DataProperties properties = new DataProperties();
 		
 		// Load properties
@@ -273,6 +277,28 @@ public class CourseTimetablingSolverService implements SolverService<SolverProxy
         }
         
         properties.setProperty("General.UseAmPm", CONSTANTS.useAmPm() ? "true" : "false");
+        
+        // Portfolio mode: store the differences of each listed configuration as Portfolio.Run<i>.* properties
+        String configurations = properties.getProperty("Portfolio.Configurations");
+        if (portfolio && configurations != null && !configurations.trim().isEmpty()) {
+        	properties.setProperty("Portfolio.Run0", settings.getDescription());
+        	int run = 1;
+        	for (String name: configurations.split(",")) {
+        		SolverPredefinedSetting runSettings = SolverPredefinedSetting.findByName(name.trim());
+        		if (runSettings == null) {
+        			sLog.warn("Portfolio configuration " + name.trim() + " does not exist.");
+        			continue;
+        		}
+        		DataProperties runProperties = createConfig(runSettings.getUniqueId(), options, false);
+        		properties.setProperty("Portfolio.Run" + run, runSettings.getDescription());
+        		for (Map.Entry<Object, Object> e: runProperties.entrySet()) {
+        			if (e.getKey().toString().startsWith("Portfolio.")) continue;
+        			if (!e.getValue().equals(properties.get(e.getKey())))
+        				properties.setProperty("Portfolio.Run" + run + "." + e.getKey(), e.getValue().toString());
+        		}
+        		run++;
+        	}
+        }
 
         properties.expand();
                 
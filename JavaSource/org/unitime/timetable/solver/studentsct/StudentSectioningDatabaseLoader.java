@@ -38,6 +38,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.zip.CRC32;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -266,6 +267,9 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     private boolean iReplacePendingWithAlternative = false;
     private boolean iReplaceCancelledWitAlternative = false;
     private boolean iReplaceNotOfferedWithAlternative = false;
+    private boolean iBulkFetch = false;
+    private int iBulkFetchBatchSize = 1000;
+    private boolean iLogFingerprint = false;
     
     public StudentSectioningDatabaseLoader(StudentSolver solver, StudentSectioningModel model, org.cpsolver.ifs.assignment.Assignment<Request, Enrollment> assignment) {
         super(model, assignment);
@@ -442,6 +446,9 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         iReplacePendingWithAlternative = model.getProperties().getPropertyBoolean("Load.ReplacePendingWithSubstitute", iReplacePendingWithAlternative);
         iReplaceCancelledWitAlternative = model.getProperties().getPropertyBoolean("Load.ReplaceCancelledWithSubstitute", iReplaceCancelledWitAlternative);
         iReplaceNotOfferedWithAlternative = model.getProperties().getPropertyBoolean("Load.ReplaceNotOfferedWithSubstitute", iReplaceNotOfferedWithAlternative);
+        iBulkFetch = model.getProperties().getPropertyBoolean("Load.BulkFetch", iBulkFetch);
+        iBulkFetchBatchSize = model.getProperties().getPropertyInt("Load.BulkFetchBatchSize", iBulkFetchBatchSize);
+        iLogFingerprint = model.getProperties().getPropertyBoolean("Load.LogFingerprint", iLogFingerprint);
     }
     
     public void load() {
@@ -2674,6 +2681,9 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     "where s.session.uniqueId=:sessionId", org.unitime.timetable.model.Student.class).
                     setParameter("sessionId", session.getUniqueId().longValue()).
                     setFetchSize(1000).list();
+            long t0 = System.currentTimeMillis();
+            if (iBulkFetch)
+            	bulkFetchStudents(hibSession, students);
             if (iValidateOverrides && iValidationProvider != null) {
             	validateOverrides(hibSession, students);
             } else if (iCheckOverrideStatus && iValidationProvider != null) {
@@ -2745,6 +2755,7 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     // assignStudent(student);
                 }
             }
+            iProgress.info("Student requests loaded in " + new DecimalFormat("0.00").format((System.currentTimeMillis() - t0) / 1000.0) + " s" + (iBulkFetch ? " (bulk fetch)" : "") + ".");
         }
         
         if (iIncludeUnavailabilities) {
@@ -3165,9 +3176,106 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         	}	
         }
         
+        if (iLogFingerprint)
+        	iProgress.info("Model fingerprint: " + getModelFingerprint());
+        
         setPhase("Done",1);incProgress();
     }
     
+    /**
+     * Initialize the lazy collections of the given students (and their course demands and course requests)
+     * using a few flat queries per batch of students, instead of a query for each collection of each student
+     * that would be otherwise executed when the student is being loaded.
+     */
+    protected void bulkFetchStudents(org.hibernate.Session hibSession, List<org.unitime.timetable.model.Student> students) {
+    	setPhase("Fetching student data...", students.size());
+    	List<Long> studentIds = new ArrayList<Long>(iBulkFetchBatchSize);
+    	for (org.unitime.timetable.model.Student s: students) {
+    		studentIds.add(s.getUniqueId());
+    		if (studentIds.size() >= iBulkFetchBatchSize) {
+    			bulkFetchStudentBatch(hibSession, studentIds);
+    			studentIds.clear();
+    		}
+    		incProgress();
+    	}
+    	if (!studentIds.isEmpty())
+    		bulkFetchStudentBatch(hibSession, studentIds);
+    }
+    
+    private void bulkFetchStudentBatch(org.hibernate.Session hibSession, List<Long> studentIds) {
+    	String[] studentCollections = new String[] {
+    			"courseDemands", "classEnrollments", "waitlists", "advisorCourseRequests", "areaClasfMajors", "areaClasfMinors", "groups", "accomodations", "advisors"
+    	};
+    	for (String collection: studentCollections)
+    		hibSession.createQuery("select distinct s from Student s left join fetch s." + collection + " where s.uniqueId in :studentIds", org.unitime.timetable.model.Student.class)
+    			.setParameterList("studentIds", studentIds, Long.class).list();
+    	hibSession.createQuery("select distinct cd from CourseDemand cd left join fetch cd.courseRequests where cd.student.uniqueId in :studentIds", CourseDemand.class)
+    		.setParameterList("studentIds", studentIds, Long.class).list();
+    	String[] requestCollections = new String[] {
+    			"courseRequestOptions", "classWaitLists", "preferences"
+    	};
+    	for (String collection: requestCollections)
+    		hibSession.createQuery("select distinct cr from CourseRequest cr left join fetch cr." + collection + " where cr.courseDemand.student.uniqueId in :studentIds", org.unitime.timetable.model.CourseRequest.class)
+    			.setParameterList("studentIds", studentIds, Long.class).list();
+    	checkTermination();
+    }
+    
+    /**
+     * Checksum of the loaded model (offerings, students, their requests and initial assignments), that can be used
+     * to verify that two different ways of loading the same data have produced the same model.
+     */
+    public String getModelFingerprint() {
+    	CRC32 crc = new CRC32();
+    	int nrOfferings = 0, nrStudents = 0, nrRequests = 0, nrEnrollments = 0;
+    	List<Offering> offerings = new ArrayList<Offering>(getModel().getOfferings());
+    	Collections.sort(offerings, new Comparator<Offering>() {
+			@Override
+			public int compare(Offering o1, Offering o2) {
+				return Long.compare(o1.getId(), o2.getId());
+			}
+		});
+    	for (Offering offering: offerings) {
+    		nrOfferings ++;
+    		StringBuffer sb = new StringBuffer("O" + offering.getId());
+    		for (Course course: offering.getCourses())
+    			sb.append("|C" + course.getId() + ":" + course.getLimit());
+    		for (Config config: offering.getConfigs()) {
+    			sb.append("|G" + config.getId() + ":" + config.getLimit());
+    			for (Subpart subpart: config.getSubparts())
+    				for (Section section: subpart.getSections())
+    					sb.append("|S" + section.getId() + ":" + section.getLimit() + ":" + (section.getTime() == null ? "" : section.getTime().getLongName(true)));
+    		}
+    		for (Reservation reservation: offering.getReservations())
+    			sb.append("|R" + reservation.getId() + ":" + reservation.getReservationLimit());
+    		crc.update(sb.toString().getBytes());
+    	}
+    	List<Student> students = new ArrayList<Student>(getModel().getStudents());
+    	Collections.sort(students, new Comparator<Student>() {
+			@Override
+			public int compare(Student s1, Student s2) {
+				return Long.compare(s1.getId(), s2.getId());
+			}
+		});
+    	for (Student student: students) {
+    		nrStudents ++;
+    		StringBuffer sb = new StringBuffer("T" + student.getId());
+    		for (Request request: student.getRequests()) {
+    			nrRequests ++;
+    			sb.append("|Q" + request.getId() + ":" + request.getPriority() + ":" + request.isAlternative() + ":" + request.getName());
+    			Enrollment enrollment = request.getInitialAssignment();
+    			if (enrollment != null) {
+    				nrEnrollments ++;
+    				sb.append("=");
+    				if (enrollment.isCourseRequest())
+    					for (Section section: enrollment.getSections())
+    						sb.append(section.getId() + ",");
+    			}
+    		}
+    		crc.update(sb.toString().getBytes());
+    	}
+    	return "offerings=" + nrOfferings + ", students=" + nrStudents + ", requests=" + nrRequests + ", enrollments=" + nrEnrollments + ", crc=" + Long.toHexString(crc.getValue());
+    }
+    
     protected void checkTermination() {
     	if (getTerminationCondition() != null && !getTerminationCondition().canContinue(new Solution<Request, Enrollment>(getModel(), getAssignment())))
     		throw new RuntimeException("The load was interrupted.");
@@ -19,11 +19,15 @@
 */
 package org.unitime.timetable.solver.studentsct;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -79,6 +83,8 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
     private boolean iResetStatus = false;
     private boolean iUpdateCourseRequests = true;
     private String iOwnerId = null;
+    private boolean iIncrementalSave = false;
+    private int iJdbcBatchSize = 100;
     
     private int iInsert = 0;
     
@@ -95,6 +101,8 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         iProjections = "Projection".equals(solver.getProperties().getProperty("StudentSctBasic.Mode", "Initial"));
         iUpdateCourseRequests = solver.getProperties().getPropertyBoolean("Interactive.UpdateCourseRequests", true);
         iOwnerId = solver.getProperties().getProperty("General.OwnerPuid");
+        iIncrementalSave = solver.getProperties().getPropertyBoolean("Save.Incremental", iIncrementalSave);
+        iJdbcBatchSize = solver.getProperties().getPropertyInt("Save.JdbcBatchSize", iJdbcBatchSize);
     }
     
     public void save() {
@@ -334,30 +342,70 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
             }
             incProgress();
 
+            Set<Long> changedStudentIds = null;
+            if (iIncrementalSave) {
+            	setPhase("Checking for changed students...", 1);
+            	changedStudentIds = getChangedStudentIds(hibSession, session);
+            	iProgress.info("Saving " + changedStudentIds.size() + " changed students (incremental save).");
+            	if (iJdbcBatchSize > 0)
+            		hibSession.setJdbcBatchSize(iJdbcBatchSize);
+            	incProgress();
+            }
+            
             iStudents = new Hashtable<Long, org.unitime.timetable.model.Student>();
             setPhase("Loading students...", 1);
-            for (org.unitime.timetable.model.Student student: hibSession.createQuery(
-            		"select distinct s from Student s " +
-                    "left join fetch s.courseDemands as cd "+
-                    "left join fetch cd.courseRequests as cr "+
-                    "left join fetch s.classEnrollments as e " +
-                    "left join fetch s.waitlists as w " +
-            		"where s.session.uniqueId = :sessionId", org.unitime.timetable.model.Student.class)
-            		.setParameter("sessionId", session.getUniqueId()).list()) {
-            	iStudents.put(student.getUniqueId(), student);
+            if (changedStudentIds == null) {
+                for (org.unitime.timetable.model.Student student: hibSession.createQuery(
+                		"select distinct s from Student s " +
+                        "left join fetch s.courseDemands as cd "+
+                        "left join fetch cd.courseRequests as cr "+
+                        "left join fetch s.classEnrollments as e " +
+                        "left join fetch s.waitlists as w " +
+                		"where s.session.uniqueId = :sessionId", org.unitime.timetable.model.Student.class)
+                		.setParameter("sessionId", session.getUniqueId()).list()) {
+                	iStudents.put(student.getUniqueId(), student);
+                }
+            } else {
+            	for (List<Long> studentIds: split(changedStudentIds)) {
+            		for (org.unitime.timetable.model.Student student: hibSession.createQuery(
+                    		"select distinct s from Student s " +
+                            "left join fetch s.courseDemands as cd "+
+                            "left join fetch cd.courseRequests as cr "+
+                            "left join fetch s.classEnrollments as e " +
+                            "left join fetch s.waitlists as w " +
+                    		"where s.uniqueId in :studentIds", org.unitime.timetable.model.Student.class)
+                    		.setParameterList("studentIds", studentIds, Long.class).list()) {
+                    	iStudents.put(student.getUniqueId(), student);
+                    }
+            	}
             }
             incProgress();
             
             
             iRequests = new Hashtable<String, org.unitime.timetable.model.CourseRequest>();
             setPhase("Loading course demands...", 1);
-            for (CourseDemand demand: hibSession.createQuery(
-            		"select distinct c from CourseDemand c " +
-            		"left join fetch c.courseRequests r " +
-            		"left join fetch r.courseOffering as co " +
-            		"left join fetch co.instructionalOffering as io " +
-            		"where c.student.session.uniqueId=:sessionId", CourseDemand.class)
-            		.setParameter("sessionId", session.getUniqueId()).list()) {
+            List<CourseDemand> demands = null;
+            if (changedStudentIds == null) {
+            	demands = hibSession.createQuery(
+                		"select distinct c from CourseDemand c " +
+                		"left join fetch c.courseRequests r " +
+                		"left join fetch r.courseOffering as co " +
+                		"left join fetch co.instructionalOffering as io " +
+                		"where c.student.session.uniqueId=:sessionId", CourseDemand.class)
+                		.setParameter("sessionId", session.getUniqueId()).list();
+            } else {
+            	demands = new ArrayList<CourseDemand>();
+            	for (List<Long> studentIds: split(changedStudentIds)) {
+            		demands.addAll(hibSession.createQuery(
+                    		"select distinct c from CourseDemand c " +
+                    		"left join fetch c.courseRequests r " +
+                    		"left join fetch r.courseOffering as co " +
+                    		"left join fetch co.instructionalOffering as io " +
+                    		"where c.student.uniqueId in :studentIds", CourseDemand.class)
+                    		.setParameterList("studentIds", studentIds, Long.class).list());
+            	}
+            }
+            for (CourseDemand demand: demands) {
                 for (org.unitime.timetable.model.CourseRequest request: demand.getCourseRequests()) {
                     iRequests.put(demand.getUniqueId()+":"+request.getCourseOffering().getInstructionalOffering().getUniqueId(), request);
                 }
@@ -378,12 +426,30 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
             }
             if (iStatusToSet == null && !iResetStatus)
             	iProgress.info("Keeping student sectioning status unchanged.");
+            List<Long> unchangedStudentIds = new ArrayList<Long>();
             for (Iterator e=getModel().getStudents().iterator();e.hasNext();) {
                 Student student = (Student)e.next(); incProgress();
                 if (student.isDummy()) continue;
+                if (changedStudentIds != null && !changedStudentIds.contains(student.getId())) {
+                	unchangedStudentIds.add(student.getId());
+                	continue;
+                }
                 saveStudent(hibSession, student);
             }
             flush(hibSession);
+            
+            if (changedStudentIds != null && (iStatusToSet != null || iResetStatus) && !unchangedStudentIds.isEmpty()) {
+            	setPhase("Updating student sectioning statuses...", 1);
+            	for (List<Long> studentIds: split(unchangedStudentIds)) {
+            		if (iStatusToSet != null)
+            			hibSession.createMutationQuery("update Student s set s.sectioningStatus = :status where s.uniqueId in :studentIds")
+            				.setParameter("status", iStatusToSet).setParameterList("studentIds", studentIds, Long.class).executeUpdate();
+            		else
+            			hibSession.createMutationQuery("update Student s set s.sectioningStatus = null where s.uniqueId in :studentIds")
+            				.setParameterList("studentIds", studentIds, Long.class).executeUpdate();
+            	}
+            	incProgress();
+            }
         }
         
         if (getModel().getNrLastLikeRequests(false) > 0 || iProjections) {
@@ -467,6 +533,57 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         setPhase("Done",1);incProgress();
     }
     
+    /**
+     * Incremental save: identify students whose enrollments in the solution differ from the ones that are stored in the database
+     * (or that have their course requests changed by the solver). The enrollments are compared using a flat projection query,
+     * so that there is no need to load the student entities that are not going to be changed.
+     */
+    protected Set<Long> getChangedStudentIds(org.hibernate.Session hibSession, Session session) {
+    	Map<Long, Set<String>> dbEnrollments = new HashMap<Long, Set<String>>();
+    	for (Object[] o: hibSession.createQuery(
+    			"select e.student.uniqueId, e.clazz.uniqueId, co.uniqueId from StudentClassEnrollment e left join e.courseOffering co where e.student.session.uniqueId = :sessionId", Object[].class)
+    			.setParameter("sessionId", session.getUniqueId()).setFetchSize(1000).list()) {
+    		Set<String> enrollments = dbEnrollments.get((Long)o[0]);
+    		if (enrollments == null) {
+    			enrollments = new HashSet<String>();
+    			dbEnrollments.put((Long)o[0], enrollments);
+    		}
+    		enrollments.add(o[1] + ":" + o[2]);
+    	}
+    	Set<Long> changed = new HashSet<Long>();
+    	for (Student student: getModel().getStudents()) {
+    		if (student.isDummy()) continue;
+    		if (iUpdateCourseRequests && BatchEnrollStudent.sRequestsChangedStatus.equals(student.getStatus())) {
+    			changed.add(student.getId()); continue;
+    		}
+    		Set<String> enrollments = new HashSet<String>();
+    		for (Request request: student.getRequests()) {
+    			Enrollment enrollment = getAssignment().getValue(request);
+    			if (enrollment == null || !(request instanceof CourseRequest)) continue;
+    			for (Section section: enrollment.getSections())
+    				enrollments.add(section.getId() + ":" + (enrollment.getCourse() == null ? null : enrollment.getCourse().getId()));
+    		}
+    		Set<String> original = dbEnrollments.get(student.getId());
+    		if (original == null) original = new HashSet<String>();
+    		if (!original.equals(enrollments))
+    			changed.add(student.getId());
+    	}
+    	return changed;
+    }
+    
+    private List<List<Long>> split(Collection<Long> ids) {
+    	List<List<Long>> ret = new ArrayList<List<Long>>();
+    	List<Long> batch = new ArrayList<Long>();
+    	for (Long id: ids) {
+    		batch.add(id);
+    		if (batch.size() == 1000) {
+    			ret.add(batch); batch = new ArrayList<Long>();
+    		}
+    	}
+    	if (!batch.isEmpty()) ret.add(batch);
+    	return ret;
+    }
+    
     protected void checkTermination() {
     	if (getTerminationCondition() != null && !getTerminationCondition().canContinue(getSolution()))
     		throw new RuntimeException("The save was interrupted.");
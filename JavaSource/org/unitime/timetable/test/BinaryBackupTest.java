@@ -0,0 +1,98 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.XMLWriter;
+import org.unitime.timetable.solver.remote.BinaryBackup;
+
+/**
+ * Round-trip check of {@link BinaryBackup}: random documents (nested elements, attributes, text including
+ * non-ASCII characters, more distinct names than fit in the dictionary) are written and read back and compared
+ * with the original in the XML form. Exits with a non-zero status when a document does not match.
+ *
+ * @author agent
+ */
+public class BinaryBackupTest {
+	
+	public static void main(String[] args) throws IOException {
+		long seed = (args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis());
+		Random rnd = new Random(seed);
+		int errors = 0;
+		long xmlSize = 0, binarySize = 0;
+		for (int round = 0; round < 50; round++) {
+			Document document = DocumentHelper.createDocument();
+			Element root = document.addElement("solution");
+			root.addAttribute("version", "1.0");
+			fill(root, rnd, 0, round == 0 ? 70000 : 1 + rnd.nextInt(20));
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			BinaryBackup.write(document, out);
+			Document copy = BinaryBackup.read(new ByteArrayInputStream(out.toByteArray()));
+			
+			String expected = document.asXML(), actual = copy.asXML();
+			if (!expected.equals(actual)) {
+				System.err.println("Round " + round + ": documents differ (" + expected.length() + " vs " + actual.length() + " characters).");
+				errors++;
+			}
+			ByteArrayOutputStream xml = new ByteArrayOutputStream();
+			new XMLWriter(xml, OutputFormat.createPrettyPrint()).write(document);
+			xmlSize += xml.size(); binarySize += out.size();
+		}
+		System.out.println("50 documents, " + errors + " errors, XML " + (xmlSize >> 10) + " kB, binary " + (binarySize >> 10) + " kB (seed " + seed + ")");
+		if (errors > 0) System.exit(1);
+	}
+	
+	private static void fill(Element parent, Random rnd, int depth, int children) {
+		for (int i = 0; i < children; i++) {
+			// the first round uses many distinct element names, exceeding the dictionary size
+			Element e = parent.addElement(children > 1000 ? "e" + i : "element" + rnd.nextInt(10));
+			for (int a = 0; a < rnd.nextInt(4); a++)
+				e.addAttribute("attr" + a, value(rnd));
+			// empty text nodes are not kept (same as when the XML form is parsed back)
+			String text = value(rnd);
+			if (rnd.nextInt(3) == 0 && !text.isEmpty())
+				e.addText(text);
+			if (children <= 1000 && depth < 4 && rnd.nextInt(3) == 0)
+				fill(e, rnd, depth + 1, rnd.nextInt(10));
+		}
+	}
+	
+	private static String value(Random rnd) {
+		switch (rnd.nextInt(5)) {
+		case 0: return String.valueOf(rnd.nextInt(1000));
+		case 1: return "";
+		case 2: return "P\u0159\u00edli\u0161 \u017elu\u0165ou\u010dk\u00fd k\u016f\u0148 \u00e9\u4e2d <&> \"" + rnd.nextInt(100) + "\"";
+		case 3:
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 100 + rnd.nextInt(1000); i++) sb.append((char)('a' + rnd.nextInt(26)));
+			return sb.toString();
+		default: return "value" + rnd.nextInt(50);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.unitime.timetable.security.UserAuthority;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.authority.AbstractAuthority;
+import org.unitime.timetable.security.context.AbstractUserContext;
+import org.unitime.timetable.security.evaluation.PermissionCache;
+import org.unitime.timetable.security.rights.HasRights;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Checks the keying of the {@link PermissionCache}: a decision is only returned for the same user, authority, right,
+ * target type and an equal target (not necessarily the same instance), and only within the scope it was made in.
+ * Exits with a non-zero status when a check fails.
+ *
+ * @author agent
+ */
+public class PermissionCacheTest {
+	private static Method sGet, sPut;
+	private static List<String> sErrors = new ArrayList<String>();
+	
+	public static void main(String[] args) throws Exception {
+		// get and put are only visible to the permission check
+		sGet = PermissionCache.class.getDeclaredMethod("get", UserContext.class, Right.class, String.class, Serializable.class);
+		sGet.setAccessible(true);
+		sPut = PermissionCache.class.getDeclaredMethod("put", UserContext.class, Right.class, String.class, Serializable.class, boolean.class);
+		sPut.setAccessible(true);
+		
+		User user = new User("u1", new Authority(1l, "Dept Sch Mgr"), new Authority(2l, "Administrator"));
+		User same = new User("u1", new Authority(1l, "Dept Sch Mgr"), new Authority(2l, "Administrator"));
+		User other = new User("u2", new Authority(1l, "Dept Sch Mgr"));
+		
+		put(user, Right.ClassEdit, "Class_", 1234567l, true);
+		check("no scope", get(user, Right.ClassEdit, "Class_", 1234567l), null);
+		
+		PermissionCache.begin();
+		try {
+			put(user, Right.ClassEdit, "Class_", 1234567l, true);
+			put(user, Right.ClassDetail, "Class_", new String("A"), false);
+			check("same key", get(user, Right.ClassEdit, "Class_", 1234567l), true);
+			check("equal target", get(user, Right.ClassEdit, "Class_", Long.valueOf(1234567l)), true);
+			check("equal string target", get(user, Right.ClassDetail, "Class_", new String("A")), false);
+			check("equal user", get(same, Right.ClassEdit, "Class_", 1234567l), true);
+			check("other target", get(user, Right.ClassEdit, "Class_", 1234568l), null);
+			check("other target type", get(user, Right.ClassEdit, "Department", 1234567l), null);
+			check("other right", get(user, Right.ClassDetail, "Class_", 1234567l), null);
+			check("other user", get(other, Right.ClassEdit, "Class_", 1234567l), null);
+			check("null target", get(user, Right.ClassEdit, "Class_", null), null);
+			
+			user.setCurrentAuthority(user.getAuthority("Administrator", 2l));
+			check("other authority", get(user, Right.ClassEdit, "Class_", 1234567l), null);
+			put(user, Right.ClassEdit, "Class_", null, false);
+			check("null target", get(user, Right.ClassEdit, "Class_", null), false);
+			user.setCurrentAuthority(user.getAuthority("Dept Sch Mgr", 1l));
+			check("authority restored", get(user, Right.ClassEdit, "Class_", 1234567l), true);
+			
+			PermissionCache.begin();
+			PermissionCache.end(null);
+			check("nested scope", get(user, Right.ClassEdit, "Class_", 1234567l), true);
+			
+			final Boolean[] otherThread = new Boolean[] { true };
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					PermissionCache.begin();
+					try {
+						otherThread[0] = get(user, Right.ClassEdit, "Class_", 1234567l);
+					} finally {
+						PermissionCache.end(null);
+					}
+				}
+			};
+			thread.start(); thread.join();
+			check("other thread", otherThread[0], null);
+			
+			PermissionCache.invalidate();
+			check("invalidated", get(user, Right.ClassEdit, "Class_", 1234567l), null);
+			put(user, Right.ClassEdit, "Class_", 1234567l, false);
+			check("after invalidate", get(user, Right.ClassEdit, "Class_", 1234567l), false);
+		} finally {
+			PermissionCache.end(null);
+		}
+		
+		PermissionCache.begin();
+		try {
+			check("new scope", get(user, Right.ClassEdit, "Class_", 1234567l), null);
+		} finally {
+			PermissionCache.end(null);
+		}
+		
+		for (String error: sErrors)
+			System.err.println(error);
+		System.out.println(sErrors.size() + " errors");
+		if (!sErrors.isEmpty()) System.exit(1);
+	}
+	
+	private static Boolean get(UserContext user, Right right, String targetType, Serializable target) {
+		try {
+			return (Boolean)sGet.invoke(null, user, right, targetType, target);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static void put(UserContext user, Right right, String targetType, Serializable target, boolean decision) {
+		try {
+			sPut.invoke(null, user, right, targetType, target, decision);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static void check(String test, Boolean actual, Boolean expected) {
+		if (expected == null ? actual != null : !expected.equals(actual))
+			sErrors.add(test + ": expected " + expected + ", got " + actual);
+	}
+	
+	private static class Authority extends AbstractAuthority {
+		private static final long serialVersionUID = 1L;
+		
+		Authority(Long uniqueId, String role) {
+			super(uniqueId, role, role, new HasRights() {
+				@Override
+				public boolean hasRight(Right right) { return true; }
+			});
+		}
+	}
+	
+	private static class User extends AbstractUserContext {
+		private static final long serialVersionUID = 1L;
+		private String iExternalId;
+		
+		User(String externalId, UserAuthority... authorities) {
+			iExternalId = externalId;
+			for (UserAuthority authority: authorities)
+				addAuthority(authority);
+			setCurrentAuthority(authorities[0]);
+		}
+		
+		@Override
+		public String getExternalUserId() { return iExternalId; }
+		@Override
+		public String getName() { return iExternalId; }
+		@Override
+		public String getEmail() { return null; }
+		@Override
+		public String getUsername() { return iExternalId; }
+	}
+}
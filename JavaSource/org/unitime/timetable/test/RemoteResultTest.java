@@ -0,0 +1,126 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.jgroups.Address;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.RpcDispatcher;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.solver.jgroups.RemoteResult;
+
+/**
+ * Checks that {@link RemoteResult} returns the original object for various result sizes, compression thresholds
+ * and chunk sizes, that the chunks are retrieved in order, and that no pending chunks are left behind.
+ * Exits with a non-zero status when a difference is found.
+ *
+ * @author agent
+ */
+public class RemoteResultTest {
+	
+	public static void main(String[] args) throws Exception {
+		long seed = (args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis());
+		Random rnd = new Random(seed);
+		int errors = 0, checks = 0, chunked = 0;
+		int[] thresholds = new int[] { -1, 0, 1024, 65536 };
+		int[] chunkSizes = new int[] { 0, 1024, 4096, 100000 };
+		for (int round = 0; round < 200; round++) {
+			int threshold = thresholds[rnd.nextInt(thresholds.length)];
+			int chunkSize = chunkSizes[rnd.nextInt(chunkSizes.length)];
+			ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.SolverRpcCompressionThreshold.key(), String.valueOf(threshold));
+			ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.SolverRpcChunkSize.key(), String.valueOf(chunkSize));
+			
+			ArrayList<String> result = new ArrayList<String>();
+			int size = (rnd.nextInt(3) == 0 ? rnd.nextInt(10) : rnd.nextInt(20000));
+			boolean random = rnd.nextBoolean();
+			for (int i = 0; i < size; i++)
+				result.add(random ? Long.toHexString(rnd.nextLong()) : "item" + (i % 100));
+			
+			ChunkDispatcher dispatcher = new ChunkDispatcher();
+			Object wrapped = RemoteResult.wrap("test", result, System.nanoTime());
+			Object unwrapped = RemoteResult.unwrap(wrapped, dispatcher, null);
+			checks++;
+			if (!result.equals(unwrapped)) {
+				System.err.println("Round " + round + ": " + size + " items (threshold " + threshold + ", chunk size " + chunkSize + ") not returned correctly.");
+				errors++;
+			}
+			if (dispatcher.getError() != null) {
+				System.err.println("Round " + round + ": " + dispatcher.getError());
+				errors++;
+			}
+			if (!dispatcher.getChunkIds().isEmpty()) chunked++;
+			for (Long chunkId: dispatcher.getChunkIds()) {
+				if (RemoteResult.getChunk(chunkId, 0) != null) {
+					System.err.println("Round " + round + ": chunk " + chunkId + " is still pending.");
+					errors++;
+				}
+			}
+		}
+		
+		Object[] simple = new Object[] { null, Boolean.TRUE, 42, 3.14, ApplicationProperty.SolverRpcChunkSize };
+		for (Object value: simple) {
+			checks++;
+			if (RemoteResult.wrap("test", value, System.nanoTime()) != value || RemoteResult.unwrap(value, null, null) != value) {
+				System.err.println("Value " + value + " has not been passed through.");
+				errors++;
+			}
+		}
+		
+		System.out.println(checks + " checks (" + chunked + " chunked), " + errors + " errors (seed " + seed + ")");
+		if (errors > 0) System.exit(1);
+	}
+	
+	/**
+	 * Dispatcher that retrieves the chunks from {@link RemoteResult#getChunk(Long, Integer)} directly,
+	 * checking that they are asked for in order.
+	 */
+	private static class ChunkDispatcher extends RpcDispatcher {
+		private Set<Long> iChunkIds = new HashSet<Long>();
+		private List<Integer> iOffsets = new ArrayList<Integer>();
+		private String iError = null;
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T callRemoteMethod(Address dest, String method, Object[] args, Class<?>[] types, RequestOptions options) throws Exception {
+			if (!"getResultChunk".equals(method)) {
+				iError = "Unexpected method " + method + " called.";
+				return null;
+			}
+			Long chunkId = (Long)args[0];
+			Integer offset = (Integer)args[1];
+			iChunkIds.add(chunkId);
+			if (iChunkIds.size() > 1)
+				iError = "More than one chunk id used: " + iChunkIds;
+			if (!iOffsets.isEmpty() && iOffsets.get(iOffsets.size() - 1) >= offset)
+				iError = "Chunk at " + offset + " requested after " + iOffsets;
+			iOffsets.add(offset);
+			return (T)RemoteResult.getChunk(chunkId, offset);
+		}
+		
+		public Set<Long> getChunkIds() { return iChunkIds; }
+		public String getError() { return iError; }
+	}
+}
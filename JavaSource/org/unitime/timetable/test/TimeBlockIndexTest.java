@@ -0,0 +1,119 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
+import org.unitime.timetable.util.TimeBlockIndex;
+
+/**
+ * Checks {@link TimeBlockIndex} against a brute force scan on random time blocks, including event removals.
+ * Exits with a non-zero status when a difference is found.
+ *
+ * @author agent
+ */
+public class TimeBlockIndexTest {
+	
+	public static void main(String[] args) {
+		long seed = (args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis());
+		Random rnd = new Random(seed);
+		int errors = 0, checks = 0;
+		for (int round = 0; round < 100; round++) {
+			TimeBlockIndex<Long> index = new TimeBlockIndex<Long>();
+			List<Block> blocks = new ArrayList<Block>();
+			int nrKeys = 1 + rnd.nextInt(5), nrEvents = 1 + rnd.nextInt(50);
+			for (int i = 0; i < 1 + rnd.nextInt(200); i++) {
+				long start = rnd.nextInt(10000);
+				Block block = new Block(i, (long)rnd.nextInt(nrEvents), (long)rnd.nextInt(nrKeys), start, start + 1 + rnd.nextInt(rnd.nextBoolean() ? 50 : 1000));
+				blocks.add(block);
+				index.add(block.iKey, block);
+			}
+			for (int step = 0; step < 50; step++) {
+				if (rnd.nextInt(10) == 0) {
+					Long eventId = (long)rnd.nextInt(nrEvents);
+					index.removeEvent(eventId);
+					for (Iterator<Block> i = blocks.iterator(); i.hasNext(); )
+						if (eventId.equals(i.next().getEventId())) i.remove();
+				}
+				Long key = (long)rnd.nextInt(nrKeys);
+				long start = rnd.nextInt(11000) - 500;
+				long end = start + rnd.nextInt(rnd.nextBoolean() ? 20 : 2000);
+				if (!blocks.isEmpty() && rnd.nextInt(4) == 0) {
+					// touching windows: [a, b) and [b, c) do not overlap
+					Block other = blocks.get(rnd.nextInt(blocks.size()));
+					if (rnd.nextBoolean()) { start = other.iEnd; end = start + 1 + rnd.nextInt(100); }
+					else { end = other.iStart; start = end - 1 - rnd.nextInt(100); }
+				}
+				Set<Block> expected = new HashSet<Block>();
+				for (Block block: blocks)
+					if (block.iKey.equals(key) && block.iStart < end && start < block.iEnd) expected.add(block);
+				TreeSet<TimeBlock> actual = index.get(key, new Date(start), new Date(end));
+				boolean free = index.isFree(key, new Date(start), new Date(end));
+				checks++;
+				if (free != expected.isEmpty() || !expected.equals(actual == null ? new HashSet<TimeBlock>() : new HashSet<TimeBlock>(actual))) {
+					System.err.println("Round " + round + ", step " + step + ": key " + key + ", window [" + start + ", " + end + ") expected " + expected + ", got " + actual + " (free: " + free + ")");
+					errors++;
+				}
+			}
+		}
+		System.out.println(checks + " checks, " + errors + " errors (seed " + seed + ")");
+		if (errors > 0) System.exit(1);
+	}
+	
+	private static class Block implements TimeBlock, Comparable<TimeBlock> {
+		private static final long serialVersionUID = 1L;
+		private int iId;
+		private Long iEventId, iKey;
+		private long iStart, iEnd;
+		
+		Block(int id, Long eventId, Long key, long start, long end) {
+			iId = id; iEventId = eventId; iKey = key; iStart = start; iEnd = end;
+		}
+		
+		@Override
+		public Long getEventId() { return iEventId; }
+		@Override
+		public String getEventName() { return "E" + iEventId; }
+		@Override
+		public String getEventType() { return "Special Event"; }
+		@Override
+		public Date getStartTime() { return new Date(iStart); }
+		@Override
+		public Date getEndTime() { return new Date(iEnd); }
+		
+		@Override
+		public int compareTo(TimeBlock block) {
+			int cmp = getStartTime().compareTo(block.getStartTime());
+			if (cmp != 0) return cmp;
+			return Integer.compare(iId, ((Block)block).iId);
+		}
+		
+		@Override
+		public String toString() { return getEventName() + "[" + iStart + "," + iEnd + ")"; }
+	}
+}
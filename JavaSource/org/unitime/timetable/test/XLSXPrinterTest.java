@@ -0,0 +1,312 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.dom4j.QName;
+import org.dom4j.io.SAXReader;
+import org.unitime.timetable.export.PDFPrinter.A;
+import org.unitime.timetable.export.PDFPrinter.F;
+import org.unitime.timetable.export.XLSXPrinter;
+
+/**
+ * Prints random sheets with the {@link XLSXPrinter}, reads the resulting file back (as a zip of XML documents) and
+ * checks that it is a consistent workbook (relationships, content types, styles) and that each sheet contains
+ * the printed values, including escaped characters, numbers, hidden columns, and repeated values being left out.
+ * Exits with a non-zero status when a difference is found.
+ *
+ * @author agent
+ */
+public class XLSXPrinterTest {
+	private static Pattern sNumber = Pattern.compile("[+-]?[0-9]*\\.?[0-9]*[a-z]?");
+	private static final String sAlphabet = "abcXYZ &<>\"'\n\t\r\u0001\u00e9\u010d-+.0123456789";
+	private static List<String> sErrors = new ArrayList<String>();
+	
+	public static void main(String[] args) throws Exception {
+		long seed = (args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis());
+		Random rnd = new Random(seed);
+		int files = 0, cells = 0;
+		for (int round = 0; round < 20; round++) {
+			boolean checkLast = rnd.nextBoolean();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			XLSXPrinter printer = new XLSXPrinter(bytes, checkLast);
+			List<String> names = new ArrayList<String>();
+			List<List<List<Object>>> expected = new ArrayList<List<List<Object>>>();
+			Set<Integer> hidden = new HashSet<Integer>();
+			try {
+				int nrSheets = 1 + rnd.nextInt(3);
+				for (int sheet = 0; sheet < nrSheets; sheet++) {
+					String name = (rnd.nextBoolean() ? null : "Sheet/" + round + "[" + sheet + "]" + (rnd.nextBoolean() ? "" : " with a name longer than 31 characters"));
+					if (sheet > 0) printer.newSheet(name);
+					else printer.setSheetName(name);
+					names.add(name == null || name.isEmpty() ? "Sheet" + (sheet + 1) : sheetName(name));
+					List<List<Object>> rows = new ArrayList<List<Object>>();
+					expected.add(rows);
+					
+					int nrColumns = 1 + rnd.nextInt(8);
+					if (rnd.nextInt(3) == 0) {
+						int col = rnd.nextInt(nrColumns);
+						printer.hideColumn(col); hidden.add(col);
+					}
+					String[] header = new String[nrColumns];
+					for (int i = 0; i < nrColumns; i++)
+						header[i] = (rnd.nextInt(5) == 0 ? null : "Column " + i);
+					printer.printHeader(header);
+					List<Object> row = new ArrayList<Object>();
+					for (int i = 0; i < nrColumns; i++)
+						if (!hidden.contains(i)) row.add(header[i]);
+					rows.add(row);
+					
+					String[] last = null;
+					boolean lastA = false;
+					int nrRows = rnd.nextInt(rnd.nextBoolean() ? 10 : 2000);
+					for (int r = 0; r < nrRows; r++) {
+						if (rnd.nextInt(100) == 0) {
+							A[] line = new A[] { new A("Bold", F.BOLD), new A(r), new A(new A("first"), new A("second", F.ITALIC)), new A(new A("a"), new A("b")).inline(), new A() };
+							printer.printLine(line);
+							row = new ArrayList<Object>();
+							// cells equal to the previous line are left out too
+							boolean repeated = (checkLast && lastA);
+							Object[] values = new Object[] { repeated ? null : "Bold", Double.valueOf(r), repeated ? null : "first\nsecond", repeated ? null : "a b", null };
+							for (int i = 0; i < line.length; i++)
+								if (!hidden.contains(i)) row.add(values[i]);
+							rows.add(row);
+							last = null; lastA = true;
+							continue;
+						}
+						if (rnd.nextInt(200) == 0) {
+							printer.flush(); last = null; lastA = false;
+						}
+						String[] line = new String[nrColumns];
+						for (int i = 0; i < nrColumns; i++)
+							line[i] = (last != null && rnd.nextInt(4) == 0 ? last[i] : randomValue(rnd));
+						printer.printLine(line);
+						row = new ArrayList<Object>();
+						for (int i = 0; i < nrColumns; i++) {
+							if (hidden.contains(i)) continue;
+							String f = line[i];
+							if (f == null || f.isEmpty() || (checkLast && last != null && f.equals(last[i])))
+								row.add(null);
+							else
+								row.add(expectedValue(f));
+						}
+						rows.add(row);
+						last = line; lastA = false;
+					}
+				}
+				printer.close();
+			} finally {
+				printer.dispose();
+			}
+			files++;
+			cells += check("Round " + round, bytes.toByteArray(), names, expected);
+		}
+		for (String error: sErrors)
+			System.err.println(error);
+		System.out.println(files + " files, " + cells + " cells, " + sErrors.size() + " errors (seed " + seed + ")");
+		if (!sErrors.isEmpty()) System.exit(1);
+	}
+	
+	private static String randomValue(Random rnd) {
+		switch (rnd.nextInt(6)) {
+		case 0: return null;
+		case 1: return String.valueOf(rnd.nextInt(1000) - 500);
+		case 2: return String.valueOf(rnd.nextInt(100000) / 100.0);
+		case 3: return rnd.nextInt(10) + "d";
+		default:
+			StringBuilder text = new StringBuilder();
+			for (int i = rnd.nextInt(20); i > 0; i--)
+				text.append(sAlphabet.charAt(rnd.nextInt(sAlphabet.length())));
+			return text.toString();
+		}
+	}
+	
+	/** Value as it should be read back: a number when printed as a number, otherwise the text without the characters that cannot be written in XML */
+	private static Object expectedValue(String text) {
+		if (sNumber.matcher(text).matches()) {
+			try {
+				return Double.valueOf(text);
+			} catch (NumberFormatException e) {}
+		}
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (ch >= 0x20 || ch == '\n' || ch == '\t') ret.append(ch);
+		}
+		return ret.toString();
+	}
+	
+	private static String sheetName(String name) {
+		name = name.replaceAll("[\\[\\]\\*\\?/\\\\:]", " ");
+		return (name.length() > 31 ? name.substring(0, 31) : name);
+	}
+	
+	private static int check(String test, byte[] data, List<String> names, List<List<List<Object>>> expected) throws IOException {
+		Map<String, Document> entries = new HashMap<String, Document>();
+		ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(data));
+		try {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				byte[] buffer = new byte[16384];
+				int read;
+				while ((read = zip.read(buffer)) > 0) content.write(buffer, 0, read);
+				try {
+					if (entries.put(entry.getName(), new SAXReader().read(new ByteArrayInputStream(content.toByteArray()))) != null)
+						sErrors.add(test + ": duplicate entry " + entry.getName());
+				} catch (Exception e) {
+					sErrors.add(test + ": " + entry.getName() + " is not a valid XML document (" + e.getMessage() + ")");
+				}
+			}
+		} finally {
+			zip.close();
+		}
+		for (String part: new String[] { "[Content_Types].xml", "_rels/.rels", "xl/workbook.xml", "xl/_rels/workbook.xml.rels", "xl/styles.xml" })
+			if (!entries.containsKey(part)) sErrors.add(test + ": " + part + " is missing");
+		if (!sErrors.isEmpty()) return 0;
+		
+		// content types and relationships must point to existing parts
+		for (Element override: elements(entries.get("[Content_Types].xml").getRootElement(), "Override"))
+			if (!entries.containsKey(override.attributeValue("PartName").substring(1)))
+				sErrors.add(test + ": content type of a missing part " + override.attributeValue("PartName"));
+		Map<String, String> targets = new HashMap<String, String>();
+		for (Element rel: elements(entries.get("xl/_rels/workbook.xml.rels").getRootElement(), "Relationship")) {
+			targets.put(rel.attributeValue("Id"), "xl/" + rel.attributeValue("Target"));
+			if (!entries.containsKey("xl/" + rel.attributeValue("Target")))
+				sErrors.add(test + ": relationship to a missing part " + rel.attributeValue("Target"));
+		}
+		
+		// cell styles must only use defined fonts, fills, borders and number formats
+		Element styles = entries.get("xl/styles.xml").getRootElement();
+		Set<String> formats = new HashSet<String>();
+		for (Element numFmts: elements(styles, "numFmts"))
+			for (Element numFmt: elements(numFmts, "numFmt")) formats.add(numFmt.attributeValue("numFmtId"));
+		int nrFonts = elements(first(styles, "fonts"), "font").size();
+		int nrFills = elements(first(styles, "fills"), "fill").size();
+		int nrBorders = elements(first(styles, "borders"), "border").size();
+		List<Element> xfs = elements(first(styles, "cellXfs"), "xf");
+		for (Element xf: xfs) {
+			int numFmtId = Integer.parseInt(xf.attributeValue("numFmtId"));
+			if (Integer.parseInt(xf.attributeValue("fontId")) >= nrFonts || Integer.parseInt(xf.attributeValue("fillId")) >= nrFills ||
+				Integer.parseInt(xf.attributeValue("borderId")) >= nrBorders || (numFmtId >= 164 && !formats.contains(String.valueOf(numFmtId))))
+				sErrors.add(test + ": invalid cell style " + xf.asXML());
+		}
+		
+		List<Element> sheets = elements(first(entries.get("xl/workbook.xml").getRootElement(), "sheets"), "sheet");
+		if (sheets.size() != names.size()) {
+			sErrors.add(test + ": expected " + names.size() + " sheets, got " + sheets.size());
+			return 0;
+		}
+		int cells = 0;
+		for (int s = 0; s < sheets.size(); s++) {
+			Element sheet = sheets.get(s);
+			if (!names.get(s).equals(sheet.attributeValue("name")))
+				sErrors.add(test + ": sheet " + (s + 1) + " expected name " + names.get(s) + ", got " + sheet.attributeValue("name"));
+			String part = targets.get(sheet.attributeValue(QName.get("id", "r", "http://schemas.openxmlformats.org/officeDocument/2006/relationships")));
+			Document document = (part == null ? null : entries.get(part));
+			if (document == null) {
+				sErrors.add(test + ": sheet " + (s + 1) + " has no worksheet");
+				continue;
+			}
+			List<Element> rows = elements(first(document.getRootElement(), "sheetData"), "row");
+			List<List<Object>> rowsExpected = expected.get(s);
+			if (rows.size() != rowsExpected.size()) {
+				sErrors.add(test + ": sheet " + (s + 1) + " expected " + rowsExpected.size() + " rows, got " + rows.size());
+				continue;
+			}
+			for (int r = 0; r < rows.size(); r++) {
+				Element row = rows.get(r);
+				if (!String.valueOf(r + 1).equals(row.attributeValue("r")))
+					sErrors.add(test + ": sheet " + (s + 1) + " row " + (r + 1) + " is numbered " + row.attributeValue("r"));
+				List<Element> cols = elements(row, "c");
+				List<Object> values = rowsExpected.get(r);
+				if (cols.size() != values.size()) {
+					sErrors.add(test + ": sheet " + (s + 1) + " row " + (r + 1) + " expected " + values.size() + " cells, got " + cols.size());
+					continue;
+				}
+				for (int c = 0; c < cols.size(); c++) {
+					Element cell = cols.get(c);
+					cells++;
+					String ref = columnName(c) + (r + 1);
+					if (!ref.equals(cell.attributeValue("r")))
+						sErrors.add(test + ": sheet " + (s + 1) + " cell " + ref + " is referenced as " + cell.attributeValue("r"));
+					if (cell.attributeValue("s") != null && Integer.parseInt(cell.attributeValue("s")) >= xfs.size())
+						sErrors.add(test + ": sheet " + (s + 1) + " cell " + ref + " has an invalid style " + cell.attributeValue("s"));
+					Object value = null;
+					if ("inlineStr".equals(cell.attributeValue("t"))) {
+						value = text(first(cell, "is"));
+					} else if (first(cell, "v") != null) {
+						value = Double.valueOf(first(cell, "v").getText());
+					}
+					Object expectedValue = values.get(c);
+					if (expectedValue == null ? value != null : !expectedValue.equals(value))
+						sErrors.add(test + ": sheet " + (s + 1) + " cell " + ref + " expected " + expectedValue + ", got " + value);
+				}
+			}
+		}
+		return cells;
+	}
+	
+	private static List<Element> elements(Element parent, String name) {
+		List<Element> ret = new ArrayList<Element>();
+		if (parent == null) return ret;
+		for (Element e: parent.elements())
+			if (name.equals(e.getName())) ret.add(e);
+		return ret;
+	}
+	
+	/** Text of an inline string, concatenating the rich text runs (if any) */
+	private static String text(Element is) {
+		if (is == null) return null;
+		StringBuilder ret = new StringBuilder();
+		for (Element e: is.elements()) {
+			if ("t".equals(e.getName())) ret.append(e.getText());
+			else if ("r".equals(e.getName()) && first(e, "t") != null) ret.append(first(e, "t").getText());
+		}
+		return ret.toString();
+	}
+	
+	private static Element first(Element parent, String name) {
+		List<Element> ret = elements(parent, name);
+		return (ret.isEmpty() ? null : ret.get(0));
+	}
+	
+	private static String columnName(int col) {
+		String name = "";
+		for (int c = col + 1; c > 0; c = (c - 1) / 26)
+			name = (char)('A' + (c - 1) % 26) + name;
+		return name;
+	}
+}
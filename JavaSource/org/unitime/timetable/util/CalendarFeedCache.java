@@ -0,0 +1,218 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.ClassEvent;
+import org.unitime.timetable.model.Event;
+import org.unitime.timetable.model.ExamEvent;
+import org.unitime.timetable.solver.jgroups.SolverServer;
+import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
+
+/**
+ * Bounded in-memory cache of rendered iCalendar feeds (see {@link org.unitime.timetable.gwt.server.CalendarServlet}),
+ * keyed by the normalized feed query. Each feed records the objects it depends on (e.g., session:&lt;id&gt;, event:&lt;id&gt;,
+ * student:&lt;id&gt;, class:&lt;id&gt;, exam:&lt;id&gt;), and the feeds are indexed by these dependencies, so that the feeds
+ * depending on a changed object are found without going through the whole cache. An invalidated or expired feed is kept
+ * in the cache as stale, so that its last modification time is retained when the feed is re-generated with the same content.<br>
+ * Changes should be reported through {@link #notifyChanged(Collection)} (or {@link #eventUpdated(Event)}), which
+ * invalidates the feeds on all the web servers of the cluster, as the change can be made on a different node
+ * (e.g., enrollments stored by an online sectioning server running on a remote solver server).
+ * 
+ * @author agent
+ */
+public class CalendarFeedCache {
+	private static CalendarFeedCache sInstance = new CalendarFeedCache();
+	private Map<String, Set<Feed>> iFeedsByDependency = new HashMap<String, Set<Feed>>();
+	private Map<String, Feed> iFeeds = new LinkedHashMap<String, Feed>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Feed> eldest) {
+			if (size() > ApplicationProperty.EventCalendarFeedCacheSize.intValue()) {
+				unindex(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+	
+	public static CalendarFeedCache getInstance() { return sInstance; }
+	
+	public boolean isEnabled() {
+		return ApplicationProperty.EventCalendarFeedCacheSize.intValue() > 0;
+	}
+	
+	/**
+	 * Return a cached feed, null if there is no valid feed for the given key
+	 */
+	public synchronized Feed get(String key) {
+		Feed feed = iFeeds.get(key);
+		if (feed == null || feed.isStale()) return null;
+		if (System.currentTimeMillis() - feed.getCreated() > 1000l * ApplicationProperty.EventCalendarFeedCacheTTL.intValue()) {
+			feed.iStale = true;
+			return null;
+		}
+		return feed;
+	}
+	
+	/**
+	 * Store a newly rendered feed, the last modification time is kept when the content did not change
+	 */
+	public synchronized Feed put(String key, byte[] data, Collection<String> dependencies) {
+		Feed feed = new Feed(data, dependencies);
+		Feed old = iFeeds.get(key);
+		if (old != null && old.getETag().equals(feed.getETag()))
+			feed.iLastModified = old.getLastModified();
+		if (isEnabled()) {
+			if (old != null) unindex(old);
+			iFeeds.put(key, feed);
+			for (String dependency: feed.getDependencies()) {
+				Set<Feed> feeds = iFeedsByDependency.get(dependency);
+				if (feeds == null) {
+					feeds = new HashSet<Feed>();
+					iFeedsByDependency.put(dependency, feeds);
+				}
+				feeds.add(feed);
+			}
+		}
+		return feed;
+	}
+	
+	private void unindex(Feed feed) {
+		for (String dependency: feed.getDependencies()) {
+			Set<Feed> feeds = iFeedsByDependency.get(dependency);
+			if (feeds != null && feeds.remove(feed) && feeds.isEmpty())
+				iFeedsByDependency.remove(dependency);
+		}
+	}
+	
+	/**
+	 * Invalidate all feeds (of this server) that depend on the given object
+	 * @param dependency e.g., session:&lt;id&gt;, event:&lt;id&gt;, student:&lt;id&gt;, class:&lt;id&gt;, exam:&lt;id&gt;, or user:&lt;external id&gt;
+	 */
+	public synchronized void invalidate(String dependency) {
+		Set<Feed> feeds = iFeedsByDependency.get(dependency);
+		if (feeds != null)
+			for (Feed feed: feeds)
+				feed.iStale = true;
+	}
+	
+	/**
+	 * Invalidate all feeds that depend on any of the given objects on all the servers of the cluster
+	 */
+	public static void notifyChanged(Collection<String> dependencies) {
+		if (dependencies == null || dependencies.isEmpty()) return;
+		SolverServer server = SolverServerImplementation.getInstance();
+		if (server != null) {
+			server.invalidateCalendarFeeds(new ArrayList<String>(dependencies));
+		} else {
+			for (String dependency: dependencies)
+				getInstance().invalidate(dependency);
+		}
+	}
+	
+	public static void notifyChanged(String... dependencies) {
+		notifyChanged(Arrays.asList(dependencies));
+	}
+	
+	/**
+	 * Invalidate all feeds containing the given event, including the personal feeds that contain the class or the
+	 * examination of a class or an examination event
+	 */
+	public static void eventUpdated(Event event) {
+		if (event == null || event.getUniqueId() == null) return;
+		List<String> dependencies = new ArrayList<String>();
+		dependencies.add("event:" + event.getUniqueId());
+		if (event instanceof ClassEvent && ((ClassEvent)event).getClazz() != null)
+			dependencies.add("class:" + ((ClassEvent)event).getClazz().getUniqueId());
+		if (event instanceof ExamEvent && ((ExamEvent)event).getExam() != null)
+			dependencies.add("exam:" + ((ExamEvent)event).getExam().getUniqueId());
+		notifyChanged(dependencies);
+	}
+	
+	public synchronized void invalidateAll() {
+		for (Feed feed: iFeeds.values())
+			feed.iStale = true;
+	}
+	
+	public static class Feed {
+		private byte[] iData;
+		private String iETag;
+		private long iCreated, iLastModified;
+		private Set<String> iDependencies;
+		private boolean iStale = false;
+		
+		private Feed(byte[] data, Collection<String> dependencies) {
+			iData = data;
+			iDependencies = new HashSet<String>(dependencies);
+			iCreated = System.currentTimeMillis();
+			// HTTP dates have a precision of one second
+			iLastModified = 1000l * (iCreated / 1000l);
+			iETag = computeETag(data);
+		}
+		
+		/**
+		 * Digest of the content, ignoring the DTSTAMP lines (which contain the time the feed was generated)
+		 */
+		private static String computeETag(byte[] data) {
+			try {
+				MessageDigest md = MessageDigest.getInstance("MD5");
+				int start = 0;
+				for (int i = 0; i <= data.length; i++) {
+					if (i == data.length || data[i] == '\n') {
+						if (!startsWith(data, start, "DTSTAMP"))
+							md.update(data, start, Math.min(i + 1, data.length) - start);
+						start = i + 1;
+					}
+				}
+				return "\"" + new BigInteger(1, md.digest()).toString(16) + "\"";
+			} catch (NoSuchAlgorithmException e) {
+				return "\"" + Integer.toHexString(Arrays.hashCode(data)) + "-" + data.length + "\"";
+			}
+		}
+		
+		private static boolean startsWith(byte[] data, int offset, String prefix) {
+			if (offset + prefix.length() > data.length) return false;
+			for (int i = 0; i < prefix.length(); i++)
+				if (data[offset + i] != prefix.charAt(i)) return false;
+			return true;
+		}
+		
+		public byte[] getData() { return iData; }
+		public String getETag() { return iETag; }
+		public long getCreated() { return iCreated; }
+		public long getLastModified() { return iLastModified; }
+		public Set<String> getDependencies() { return iDependencies; }
+		public boolean isStale() { return iStale; }
+	}
+}
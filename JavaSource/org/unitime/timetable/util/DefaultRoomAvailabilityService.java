@@ -20,16 +20,19 @@
 package org.unitime.timetable.util;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeSet;
-import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.hibernate.query.Query;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface;
 import org.unitime.timetable.model.ClassEvent;
@@ -46,10 +49,16 @@ import org.unitime.timetable.model.dao.DepartmentalInstructorDAO;
 import org.unitime.timetable.model.dao.LocationDAO;
 
 /**
+ * Room and instructor availability cached for the time frames the solvers have activated.<br>
+ * Meetings saved, approved or deleted through the event pages and exam assignments changed outside of the solver are applied
+ * incrementally (see {@link RoomAvailability#eventUpdated(Long)}). Class events created or removed by a solution commit or uncommit
+ * are not: they are picked up by the full reload in {@link #activate(Long, Date, Date, String, boolean)}, which the solvers call before loading
+ * (and the course timetabling solver excludes class events anyway).
+ *
  * @author Tomas Muller
  */
 public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface {
-    private Vector<CacheElement> iCache = new Vector<CacheElement>();
+    private List<CacheElement> iCache = new CopyOnWriteArrayList<CacheElement>();
     private boolean iInstructorAvailabilityEnabled = false;
     
     public String getTimeStamp(Date startTime, Date endTime, String excludeType) {
@@ -59,9 +68,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
     }
     
     public CacheElement get(TimeFrame time, String excludeType) {
-        synchronized (iCache) {
-            for (CacheElement cache : iCache) if (cache.cover(time) && cache.exclude(excludeType)) return cache;
-        }
+        for (CacheElement cache : iCache) if (cache.cover(time) && cache.exclude(excludeType)) return cache;
         return null;
     }
     
@@ -71,94 +78,127 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         if (location == null || location.getPermanentId() == null) return null;
         EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(location.getSession().getUniqueId()) : null);
         TimeFrame time = new TimeFrame(startTime, endTime);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
-            if (cache!=null) return cache.get(location.getPermanentId(), excludeType);
-            TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
-            Class<? extends Event> exclude = null;
-            ExamType examType = null;
-            if (excludeType!=null) {
-                if (sFinalExamType.equals(excludeType))
-                    exclude = FinalExamEvent.class;
-                else if (sMidtermExamType.equals(excludeType))
-                    exclude = MidtermExamEvent.class;
-                else if (sClassType.equals(excludeType))
-                    exclude = ClassEvent.class;
-                else {
-                	exclude = ExamEvent.class;
-                	examType = ExamType.findByReference(excludeType);
-                }
-            }
-            for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
-                    "select m from Meeting m inner join m.event e where m.locationPermanentId=:locPermId and "+
-                    "m.approvalStatus = 1 and "+
-                    "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                    "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                    (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
-                    exclude != null ? " and type(e)!=" + exclude.getSimpleName() : ""), Meeting.class)
-                    .setParameter("locPermId", location.getPermanentId())
-                    .setParameter("startDate", time.getStartDate())
-                    .setParameter("endDate", time.getEndDate())
-                    .setParameter("startSlot", time.getStartSlot())
-                    .setParameter("endSlot", time.getEndSlot())
-                    .setCacheable(true).list()) {
-                MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                if (block.getStartTime() != null)
-                	ret.add(block);
-            }
-            if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
-            	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
-                            "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
-                            "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Meeting.class)
-                            .setParameter("locPermId", location.getPermanentId())
-                            .setParameter("sessionId", location.getSession().getUniqueId())
-                            .setParameter("startDate", time.getStartDate())
-                            .setParameter("endDate", time.getEndDate())
-                            .setParameter("startSlot", time.getStartSlot())
-                            .setParameter("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
-                            "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
-                            "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                            (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""), Meeting.class)
-                            .setParameter("locPermId", location.getPermanentId())
-                            .setParameter("sessionId", location.getSession().getUniqueId())
-                            .setParameter("startDate", time.getStartDate())
-                            .setParameter("endDate", time.getEndDate())
-                            .setParameter("startSlot", time.getStartSlot())
-                            .setParameter("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	}
+        CacheElement cache = get(time, excludeType);
+        if (cache!=null) return cache.get(location.getPermanentId(), excludeType, time);
+        TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+        Class<? extends Event> exclude = null;
+        ExamType examType = null;
+        if (excludeType!=null) {
+            if (sFinalExamType.equals(excludeType))
+                exclude = FinalExamEvent.class;
+            else if (sMidtermExamType.equals(excludeType))
+                exclude = MidtermExamEvent.class;
+            else if (sClassType.equals(excludeType))
+                exclude = ClassEvent.class;
+            else {
+            	exclude = ExamEvent.class;
+            	examType = ExamType.findByReference(excludeType);
             }
-            return ret;
         }
+        for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
+                "select m from Meeting m inner join m.event e where m.locationPermanentId=:locPermId and "+
+                "m.approvalStatus = 1 and "+
+                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
+                exclude != null ? " and type(e)!=" + exclude.getSimpleName() : ""), Meeting.class)
+                .setParameter("locPermId", location.getPermanentId())
+                .setParameter("startDate", time.getStartDate())
+                .setParameter("endDate", time.getEndDate())
+                .setParameter("startSlot", time.getStartSlot())
+                .setParameter("endSlot", time.getEndSlot())
+                .setCacheable(true).list()) {
+            MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+            if (block.getStartTime() != null)
+            	ret.add(block);
+        }
+        if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
+        	if (ClassEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
+                        "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
+                        "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Meeting.class)
+                        .setParameter("locPermId", location.getPermanentId())
+                        .setParameter("sessionId", location.getSession().getUniqueId())
+                        .setParameter("startDate", time.getStartDate())
+                        .setParameter("endDate", time.getEndDate())
+                        .setParameter("startSlot", time.getStartSlot())
+                        .setParameter("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
+                        "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
+                        "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                        (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""), Meeting.class)
+                        .setParameter("locPermId", location.getPermanentId())
+                        .setParameter("sessionId", location.getSession().getUniqueId())
+                        .setParameter("startDate", time.getStartDate())
+                        .setParameter("endDate", time.getEndDate())
+                        .setParameter("startSlot", time.getStartSlot())
+                        .setParameter("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	}
+        }
+        return ret;
     }
+    /**
+     * True if the room (given by its permanent id) has no meeting overlapping with the given time window, regardless of the event type.
+     * The cached index is used when there is a cached time frame covering the window, the database is queried otherwise.
+     * Returns true when any of the parameters is null.
+     */
+    public boolean isRoomAvailable(Long roomPermId, Date startTime, Date endTime) {
+    	if (roomPermId == null || startTime == null || endTime == null) return true;
+    	TimeFrame time = new TimeFrame(startTime, endTime);
+    	CacheElement cache = get(time, null);
+    	if (cache != null) return cache.isRoomAvailable(roomPermId, startTime, endTime);
+        for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
+                "select m from Meeting m where m.locationPermanentId=:locPermId and m.approvalStatus = 1 and "+
+                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Meeting.class)
+                .setParameter("locPermId", roomPermId)
+                .setParameter("startDate", time.getStartDate())
+                .setParameter("endDate", time.getEndDate())
+                .setParameter("startSlot", time.getStartSlot())
+                .setParameter("endSlot", time.getEndSlot())
+                .setCacheable(true).list()) {
+        	MeetingTimeBlock block = new MeetingTimeBlock(m, null);
+        	if (block.getStartTime() != null && block.getStartTime().before(endTime) && startTime.before(block.getEndTime())) return false;
+        }
+        return true;
+    }
+    
     public void activate(Long sessionId, Date startTime, Date endTime, String excludeType, boolean waitForSync) {
         iInstructorAvailabilityEnabled = ApplicationProperty.RoomAvailabilityIncludeInstructors.isTrue();
         TimeFrame time = new TimeFrame(startTime, endTime);
         EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(sessionId) : null);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
+        CacheElement cache = null;
+        synchronized(this) {
+            cache = get(time, excludeType);
             if (cache==null) {
                 cache = new CacheElement(time, excludeType);
-                iCache.insertElementAt(cache, 0);
+                iCache.add(0, cache);
             }
-            cache.update(class2eventDateMap, sessionId, iInstructorAvailabilityEnabled);
         }
+        cache.update(class2eventDateMap, sessionId, iInstructorAvailabilityEnabled);
+    }
+    
+    /**
+     * Incremental update of the cached availabilities, to be called when meetings of the given events have been changed (or deleted).
+     */
+    public void eventsUpdated(Collection<Long> eventIds) {
+    	if (eventIds == null || eventIds.isEmpty()) return;
+    	for (CacheElement cache: iCache)
+    		cache.update(eventIds);
     }
     
     public void startService() {}
@@ -203,18 +243,49 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
 
     public static class CacheElement{
         private TimeFrame iTime;
-        private Map<Long, TreeSet<TimeBlock>> iAvailability = new HashMap<Long, TreeSet<TimeBlock>>();
-        private Map<String, TreeSet<TimeBlock>> iInstructorAvailability = new HashMap<String, TreeSet<TimeBlock>>();
+        private volatile TimeBlockIndex<Long> iAvailability = new TimeBlockIndex<Long>();
+        private volatile TimeBlockIndex<String> iInstructorAvailability = new TimeBlockIndex<String>();
         private String iTimestamp = null;
         private String iExcludeType = null;
+        private Long iSessionId = null;
+        private boolean iIncludeInstructors = false;
         public CacheElement(TimeFrame time, String excludeType) {
             iTime = time;
             iExcludeType = excludeType;
         }
 
-        public void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId, boolean includeInstructors) {
-        	iAvailability.clear();
-        	iInstructorAvailability.clear();
+        public synchronized void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId, boolean includeInstructors) {
+            iSessionId = sessionId;
+            iIncludeInstructors = includeInstructors;
+            // build new indexes, readers keep using the old ones until the swap
+            TimeBlockIndex<Long> availability = new TimeBlockIndex<Long>();
+            TimeBlockIndex<String> instructorAvailability = new TimeBlockIndex<String>();
+            load(null, class2eventDateMap, availability, instructorAvailability);
+            iAvailability = availability;
+            iInstructorAvailability = instructorAvailability;
+            iTimestamp = new Date().toString();
+        }
+        
+        /**
+         * Incremental update: drop all time blocks of the given events and load their current meetings
+         */
+        public synchronized void update(Collection<Long> eventIds) {
+            if (iTimestamp == null || eventIds == null || eventIds.isEmpty()) return;
+            EventDateMapping.Class2EventDateMap class2eventDateMap = (iSessionId != null && sClassType.equals(iExcludeType) ? EventDateMapping.getMapping(iSessionId) : null);
+            TimeBlockIndex<Long> availability = new TimeBlockIndex<Long>();
+            TimeBlockIndex<String> instructorAvailability = new TimeBlockIndex<String>();
+            load(eventIds, class2eventDateMap, availability, instructorAvailability);
+            for (Long eventId: eventIds) {
+                iAvailability.removeEvent(eventId);
+                iInstructorAvailability.removeEvent(eventId);
+            }
+            for (Long roomPermId: availability.keySet())
+            	iAvailability.addAll(roomPermId, availability.get(roomPermId));
+            for (String instructorExternalId: instructorAvailability.keySet())
+            	iInstructorAvailability.addAll(instructorExternalId, instructorAvailability.get(instructorExternalId));
+        }
+        
+        private void load(Collection<Long> eventIds, EventDateMapping.Class2EventDateMap class2eventDateMap, TimeBlockIndex<Long> availability, TimeBlockIndex<String> instructorAvailability) {
             Class<? extends Event> exclude = null;
             ExamType examType = null;
             if (iExcludeType!=null) {
@@ -229,49 +300,35 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                 	examType = ExamType.findByReference(iExcludeType);
                 }
             }
-            addAll(LocationDAO.getInstance().getSession().createQuery(
+            Map<Long, List<TimeBlock>> rooms = new HashMap<Long, List<TimeBlock>>();
+            addAll(rooms, list(
                     "select m from Meeting m inner join m.event e where m.locationPermanentId!=null and "+
                     "m.approvalStatus = 1 and "+
                     "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                     "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" +
                     (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType.uniqueId = " + examType.getUniqueId() + ")" :
-                    	exclude == null ? "" : " and type(e)!=" + exclude.getSimpleName()), Meeting.class)
-                    .setParameter("startDate", iTime.getStartDate())
-                    .setParameter("endDate", iTime.getEndDate())
-                    .setParameter("startSlot", iTime.getStartSlot())
-                    .setParameter("endSlot", iTime.getEndSlot())
-                    .setCacheable(true)
-                    .list(), class2eventDateMap);
-            if (sessionId != null && ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
+                    	exclude == null ? "" : " and type(e)!=" + exclude.getSimpleName()), Meeting.class, eventIds), class2eventDateMap);
+            if (iSessionId != null && ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
+            		addAll(rooms, list(
                             "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session.uniqueId = :sessionId) and "+
                             "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Meeting.class)
-                            .setParameter("sessionId", sessionId)
-                            .setParameter("startDate", iTime.getStartDate())
-                            .setParameter("endDate", iTime.getEndDate())
-                            .setParameter("startSlot", iTime.getStartSlot())
-                            .setParameter("endSlot", iTime.getEndSlot())
-                            .setCacheable(true).list(), class2eventDateMap);
+                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Meeting.class, eventIds), class2eventDateMap);
             	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
+            		addAll(rooms, list(
                             "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session.uniqueId = :sessionId) and "+
                             "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                             "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" +
-                            (examType != null ? " and e.exam.examType.uniqueId = " + examType.getUniqueId() : ""), Meeting.class)
-                            .setParameter("sessionId", sessionId)
-                            .setParameter("startDate", iTime.getStartDate())
-                            .setParameter("endDate", iTime.getEndDate())
-                            .setParameter("startSlot", iTime.getStartSlot())
-                            .setParameter("endSlot", iTime.getEndSlot())
-                            .setCacheable(true).list(), class2eventDateMap);
+                            (examType != null ? " and e.exam.examType.uniqueId = " + examType.getUniqueId() : ""), Meeting.class, eventIds), class2eventDateMap);
             	}
             }
-            if (sessionId != null && includeInstructors) {
-            	addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+            for (Map.Entry<Long, List<TimeBlock>> e: rooms.entrySet())
+            	availability.addAll(e.getKey(), e.getValue());
+            if (iSessionId != null && iIncludeInstructors) {
+            	Map<String, List<TimeBlock>> instructors = new HashMap<String, List<TimeBlock>>();
+            	addAllInstructors(instructors, list(
             			"select distinct m, i.externalUniqueId from Meeting m inner join m.event e left outer join m.event.additionalContacts c, DepartmentalInstructor i where " +
                          "i.department.session.uniqueId = :sessionId and i.externalUniqueId is not null and "+
                          "(m.event.mainContact.externalUniqueId = i.externalUniqueId or c.externalUniqueId = i.externalUniqueId) and "+
@@ -279,97 +336,100 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                          "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                          "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
                          (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType.uniqueId = " + examType.getUniqueId() + ")" :
-                        	 exclude!=null?" and type(e)!="+exclude.getSimpleName():""), Object[].class)
-                         .setParameter("startDate", iTime.getStartDate())
-                         .setParameter("endDate", iTime.getEndDate())
-                         .setParameter("sessionId", sessionId)
-                         .setParameter("startSlot", iTime.getStartSlot())
-                         .setParameter("endSlot", iTime.getEndSlot())
-                         .setCacheable(true).list(), class2eventDateMap);
+                        	 exclude!=null?" and type(e)!="+exclude.getSimpleName():""), Object[].class, eventIds), class2eventDateMap);
             	if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             		if (ClassEvent.class.isAssignableFrom(exclude)) {
-            			addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+            			addAllInstructors(instructors, list(
                                 "select m, ci.instructor.externalUniqueId from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
                                 "ci.lead = true and m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Object[].class)
-                                .setParameter("sessionId", sessionId)
-                                .setParameter("startDate", iTime.getStartDate())
-                                .setParameter("endDate", iTime.getEndDate())
-                                .setParameter("startSlot", iTime.getStartSlot())
-                                .setParameter("endSlot", iTime.getEndSlot())
-                                .setCacheable(true).list(), class2eventDateMap);
+                                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Object[].class, eventIds), class2eventDateMap);
                 	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-                		addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+                		addAllInstructors(instructors, list(
                                 "select m, di.externalUniqueId from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
                                 "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                                 "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" +
-                                (examType != null ? " and e.exam.examType.uniqueId = " + examType.getUniqueId() : ""), Object[].class)
-                                .setParameter("sessionId", sessionId)
-                                .setParameter("startDate", iTime.getStartDate())
-                                .setParameter("endDate", iTime.getEndDate())
-                                .setParameter("startSlot", iTime.getStartSlot())
-                                .setParameter("endSlot", iTime.getEndSlot())
-                                .setCacheable(true).list(), class2eventDateMap);
+                                (examType != null ? " and e.exam.examType.uniqueId = " + examType.getUniqueId() : ""), Object[].class, eventIds), class2eventDateMap);
                 	}
                 }
+            	for (Map.Entry<String, List<TimeBlock>> e: instructors.entrySet())
+            		instructorAvailability.addAll(e.getKey(), e.getValue());
             }
-            iTimestamp = new Date().toString();
         }
         
-        private void add(Meeting m, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iAvailability.get(m.getLocationPermanentId());
-            if (blocks==null) {
-                blocks = new TreeSet(); iAvailability.put(m.getLocationPermanentId(), blocks);
-            }
-            MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-            if (block.getStartTime() != null)
-            	blocks.add(block);
+        private <T> List<T> list(String query, Class<T> type, Collection<Long> eventIds) {
+        	Query<T> q = LocationDAO.getInstance().getSession().createQuery(
+        			eventIds == null ? query : query + " and e.uniqueId in :eventIds", type)
+        			.setParameter("startDate", iTime.getStartDate())
+        			.setParameter("endDate", iTime.getEndDate())
+        			.setParameter("startSlot", iTime.getStartSlot())
+        			.setParameter("endSlot", iTime.getEndSlot());
+        	if (query.contains(":sessionId"))
+        		q.setParameter("sessionId", iSessionId);
+        	if (eventIds != null)
+        		q.setParameterList("eventIds", eventIds, Long.class);
+        	else
+        		q.setCacheable(true);
+        	return q.list();
         }
-        private void addAll(List<Meeting> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        
+        private void addAll(Map<Long, List<TimeBlock>> rooms, List<Meeting> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
         	if (meetings != null)
-        		for (Meeting m: meetings)
-        			add(m, class2eventDateMap);
-        }
-        private void add(Meeting m, String instructorExternalId, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iInstructorAvailability.get(instructorExternalId);
-            if (blocks==null) {
-                blocks = new TreeSet(); iInstructorAvailability.put(instructorExternalId, blocks);
-            }
-            MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-            if (block.getStartTime() != null)
-            	blocks.add(block);
+        		for (Meeting m: meetings) {
+        			MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+        			if (block.getStartTime() == null) continue;
+        			List<TimeBlock> blocks = rooms.get(m.getLocationPermanentId());
+        			if (blocks == null) {
+        				blocks = new ArrayList<TimeBlock>(); rooms.put(m.getLocationPermanentId(), blocks);
+        			}
+        			blocks.add(block);
+        		}
         }
-        private void addAllInstructors(List<Object[]> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        private void addAllInstructors(Map<String, List<TimeBlock>> instructors, List<Object[]> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
         	if (meetings != null)
         		for (Object[] o: meetings) {
         			Meeting m = (Meeting)o[0];
                 	String id = (String)o[1];
-        			add(m, id, class2eventDateMap);
+                	MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+                	if (block.getStartTime() == null) continue;
+                	List<TimeBlock> blocks = instructors.get(id);
+                	if (blocks == null) {
+                		blocks = new ArrayList<TimeBlock>(); instructors.put(id, blocks);
+                	}
+                	blocks.add(block);
         		}
         }
         
         public TreeSet<TimeBlock> get(Long roomPermId, String excludeType) {
-            TreeSet<TimeBlock> roomAvailability = iAvailability.get(roomPermId);
-            if (roomAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return roomAvailability;
-            TreeSet<TimeBlock> ret = new TreeSet();
-            for (TimeBlock block : roomAvailability) {
-            	if (excludeType.equals(block.getEventType())) continue;
-                ret.add(block);
-            }
-            return ret;
+        	return filter(iAvailability.get(roomPermId), excludeType);
+        }
+        /** True if the room (given by its permanent id) has no cached time block overlapping with the given time window, true when any of the parameters is null */
+        public boolean isRoomAvailable(Long roomPermId, Date startTime, Date endTime) {
+        	if (roomPermId == null || startTime == null || endTime == null) return true;
+        	return iAvailability.isFree(roomPermId, startTime, endTime);
+        }
+        public TreeSet<TimeBlock> get(Long roomPermId, String excludeType, TimeFrame time) {
+        	return filter(iAvailability.get(roomPermId, time.getStartDate(), nextDay(time.getEndDate())), excludeType);
         }
         public TreeSet<TimeBlock> get(String instructorExternalId, String excludeType) {
         	if (instructorExternalId == null) return null;
-            TreeSet<TimeBlock> instructorAvailability = iInstructorAvailability.get(instructorExternalId);
-            if (instructorAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return instructorAvailability;
-            TreeSet<TimeBlock> ret = new TreeSet();
-            for (TimeBlock block : instructorAvailability) {
-            	if (excludeType.equals(block.getEventType())) continue;
-                ret.add(block);
-            }
-            return ret;
+        	return filter(iInstructorAvailability.get(instructorExternalId), excludeType);
+        }
+        public TreeSet<TimeBlock> get(String instructorExternalId, String excludeType, TimeFrame time) {
+        	if (instructorExternalId == null) return null;
+        	return filter(iInstructorAvailability.get(instructorExternalId, time.getStartDate(), nextDay(time.getEndDate())), excludeType);
+        }
+        private static Date nextDay(Date date) {
+        	Calendar c = Calendar.getInstance(Locale.US); c.setTime(date);
+        	c.add(Calendar.DAY_OF_YEAR, 1);
+        	return c.getTime();
+        }
+        private TreeSet<TimeBlock> filter(TreeSet<TimeBlock> blocks, String excludeType) {
+            if (blocks==null || excludeType==null || excludeType.equals(iExcludeType)) return blocks;
+            for (Iterator<TimeBlock> i = blocks.iterator(); i.hasNext(); )
+            	if (excludeType.equals(i.next().getEventType())) i.remove();
+            return blocks;
         }
         public TimeFrame getTimeFrame() { return iTime; }
         public String getExcludeType() { return iExcludeType; }
@@ -491,94 +551,92 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         }
         EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(instructor.getDepartment().getSession().getUniqueId()) : null);
         TimeFrame time = new TimeFrame(startTime, endTime);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
-            if (cache!=null) {
-            	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType);
-            	if (instructor.hasUnavailabilities()) {
-            		Collection<TimeBlock> ret = instructor.listUnavailableDays();
-            		if (cached != null) ret.addAll(cached);
-            		return ret;
-            	} else {
-            		return cached;
-            	}
+        CacheElement cache = get(time, excludeType);
+        if (cache!=null) {
+        	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType, time);
+        	if (instructor.hasUnavailabilities()) {
+        		Collection<TimeBlock> ret = instructor.listUnavailableDays();
+        		if (cached != null) ret.addAll(cached);
+        		return ret;
+        	} else {
+        		return cached;
+        	}
+        }
+        TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+        Class<? extends Event> exclude = null;
+        ExamType examType = null;
+        if (excludeType!=null) {
+            if (sFinalExamType.equals(excludeType))
+                exclude = FinalExamEvent.class;
+            else if (sMidtermExamType.equals(excludeType))
+                exclude = MidtermExamEvent.class;
+            else if (sClassType.equals(excludeType))
+                exclude = ClassEvent.class;
+            else {
+            	exclude = ExamEvent.class;
+            	examType = ExamType.findByReference(excludeType);
             }
-            TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
-            Class<? extends Event> exclude = null;
-            ExamType examType = null;
-            if (excludeType!=null) {
-                if (sFinalExamType.equals(excludeType))
-                    exclude = FinalExamEvent.class;
-                else if (sMidtermExamType.equals(excludeType))
-                    exclude = MidtermExamEvent.class;
-                else if (sClassType.equals(excludeType))
-                    exclude = ClassEvent.class;
-                else {
-                	exclude = ExamEvent.class;
-                	examType = ExamType.findByReference(excludeType);
+        }
+        for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
+        		"select m from Meeting m inner join m.event e left outer join m.event.additionalContacts c where " +
+        		"(m.event.mainContact.externalUniqueId = :user or c.externalUniqueId = :user) and "+
+        		"m.approvalStatus = 1 and "+
+                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType.uniqueId = " + examType.getUniqueId() + ")" :
+                	exclude != null ? " and type(e)!=" + exclude.getSimpleName() : ""), Meeting.class)
+                .setParameter("user", instructor.getExternalUniqueId())
+                .setParameter("startDate", time.getStartDate())
+                .setParameter("endDate", time.getEndDate())
+                .setParameter("startSlot", time.getStartSlot())
+                .setParameter("endSlot", time.getEndSlot())
+                .setCacheable(true).list()) {
+            MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+            if (block.getStartTime() != null)
+            	ret.add(block);
+        }
+        if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
+        	if (ClassEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
+                        "select m from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
+                        "ci.instructor.externalUniqueId = :user and ci.lead = true and "+
+                        "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Meeting.class)
+        				.setParameter("user", instructor.getExternalUniqueId())
+                        .setParameter("sessionId", instructor.getDepartment().getSession().getUniqueId())
+                        .setParameter("startDate", time.getStartDate())
+                        .setParameter("endDate", time.getEndDate())
+                        .setParameter("startSlot", time.getStartSlot())
+                        .setParameter("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
                 }
-            }
-            for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
-            		"select m from Meeting m inner join m.event e left outer join m.event.additionalContacts c where " +
-            		"(m.event.mainContact.externalUniqueId = :user or c.externalUniqueId = :user) and "+
-            		"m.approvalStatus = 1 and "+
-                    "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                    "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                    (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType.uniqueId = " + examType.getUniqueId() + ")" :
-                    	exclude != null ? " and type(e)!=" + exclude.getSimpleName() : ""), Meeting.class)
-                    .setParameter("user", instructor.getExternalUniqueId())
-                    .setParameter("startDate", time.getStartDate())
-                    .setParameter("endDate", time.getEndDate())
-                    .setParameter("startSlot", time.getStartSlot())
-                    .setParameter("endSlot", time.getEndSlot())
-                    .setCacheable(true).list()) {
-                MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                if (block.getStartTime() != null)
-                	ret.add(block);
-            }
-            if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
-            	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
-                            "select m from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
-                            "ci.instructor.externalUniqueId = :user and ci.lead = true and "+
-                            "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot", Meeting.class)
-            				.setParameter("user", instructor.getExternalUniqueId())
-                            .setParameter("sessionId", instructor.getDepartment().getSession().getUniqueId())
-                            .setParameter("startDate", time.getStartDate())
-                            .setParameter("endDate", time.getEndDate())
-                            .setParameter("startSlot", time.getStartSlot())
-                            .setParameter("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
-                            "select m from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
-                            "di.externalUniqueId = :user and "+
-                            "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + 
-                            (examType != null ? " and e.exam.examType.uniqueId = " + examType.getUniqueId() : ""), Meeting.class)
-            				.setParameter("user", instructor.getExternalUniqueId())
-                            .setParameter("sessionId", instructor.getDepartment().getSession().getUniqueId())
-                            .setParameter("startDate", time.getStartDate())
-                            .setParameter("endDate", time.getEndDate())
-                            .setParameter("startSlot", time.getStartSlot())
-                            .setParameter("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	}
-            }
-            if (instructor.hasUnavailabilities())
-            	ret.addAll(instructor.listUnavailableDays());
-            return ret;
+        	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: LocationDAO.getInstance().getSession().createQuery(
+                        "select m from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
+                        "di.externalUniqueId = :user and "+
+                        "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + 
+                        (examType != null ? " and e.exam.examType.uniqueId = " + examType.getUniqueId() : ""), Meeting.class)
+        				.setParameter("user", instructor.getExternalUniqueId())
+                        .setParameter("sessionId", instructor.getDepartment().getSession().getUniqueId())
+                        .setParameter("startDate", time.getStartDate())
+                        .setParameter("endDate", time.getEndDate())
+                        .setParameter("startSlot", time.getStartSlot())
+                        .setParameter("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	}
         }
+        if (instructor.hasUnavailabilities())
+        	ret.addAll(instructor.listUnavailableDays());
+        return ret;
 	}
 }
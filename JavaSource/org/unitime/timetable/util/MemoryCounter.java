@@ -46,6 +46,14 @@ public final class MemoryCounter {
 		}
 	}
 	
+	/**
+	 * Do not count the given object in the subsequent {@link #deepSizeOfObject(Object)} calls,
+	 * e.g., when it is shared by many objects and it is counted separately.
+	 */
+	public void ignore(Object obj) {
+		if (obj != null) iVisited.put(obj, null);
+	}
+	
 	private boolean skipObject(Object obj) {
 		if ((obj instanceof String) && (obj == ((String) obj).intern())) return true;
 		if (obj instanceof Thread || obj instanceof Log || obj instanceof Logger || obj instanceof SolverContainer) return true;
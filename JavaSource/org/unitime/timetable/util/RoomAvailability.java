@@ -19,6 +19,8 @@
 */
 package org.unitime.timetable.util;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 
 import javax.servlet.http.HttpServletRequest;
@@ -56,6 +58,31 @@ public class RoomAvailability {
         }
     }
     
+    /**
+     * Update the cached room and instructor availabilities after the meetings of the given event have been changed.
+     * Only applies to the {@link DefaultRoomAvailabilityService}.
+     */
+    public static void eventUpdated(Long eventId) {
+    	if (eventId == null) return;
+    	eventsUpdated(Collections.singleton(eventId));
+    }
+    
+    /**
+     * Update the cached room and instructor availabilities after the meetings of the given events have been changed (or the events have been deleted).
+     * To be called after the changes are committed. Only applies to the {@link DefaultRoomAvailabilityService}.
+     */
+    public static void eventsUpdated(Collection<Long> eventIds) {
+    	if (eventIds == null || eventIds.isEmpty() || ApplicationProperty.RoomAvailabilityImplementation.value() == null) return;
+    	RoomAvailabilityInterface instance = getInstance();
+    	if (instance instanceof DefaultRoomAvailabilityService) {
+    		try {
+    			((DefaultRoomAvailabilityService)instance).eventsUpdated(eventIds);
+    		} catch (Exception e) {
+    			Debug.error("Failed to update room availability: " + e.getMessage(), e);
+    		}
+    	}
+    }
+    
     public static void setAvailabilityWarning(HttpServletRequest request, Session acadSession, Long examType, boolean checkSolver, boolean checkAvailability) {
         if (acadSession==null || examType==null || getInstance()==null) return;
         if (checkSolver) {
@@ -0,0 +1,175 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
+
+/**
+ * Room (or instructor) availability index. For each key (e.g., a room permanent id or an instructor
+ * external id), the busy time blocks are kept in an immutable interval tree (an array sorted by
+ * start time, with the maximal end time of each sub-tree), so that the questions whether the key
+ * is free in a given time window and what blocks overlap with the window are answered in
+ * logarithmic time. Changes replace the tree of the affected key (copy-on-write), so readers
+ * do not need any locking.
+ * 
+ * @author agent
+ */
+public class TimeBlockIndex<K> {
+	private static Comparator<TimeBlock> sCmp = new Comparator<TimeBlock>() {
+		@Override
+		public int compare(TimeBlock b1, TimeBlock b2) {
+			int cmp = b1.getStartTime().compareTo(b2.getStartTime());
+			if (cmp != 0) return cmp;
+			return b1.getEndTime().compareTo(b2.getEndTime());
+		}
+	};
+	private ConcurrentMap<K, IntervalTree> iTrees = new ConcurrentHashMap<K, IntervalTree>();
+	private ConcurrentMap<Long, Set<K>> iEventKeys = new ConcurrentHashMap<Long, Set<K>>();
+	
+	/** Add time blocks to the given key */
+	public void addAll(K key, final Collection<? extends TimeBlock> blocks) {
+		if (blocks == null || blocks.isEmpty()) return;
+		iTrees.compute(key, (k, tree) -> new IntervalTree(tree, blocks, null));
+		for (TimeBlock block: blocks)
+			if (block.getEventId() != null)
+				iEventKeys.computeIfAbsent(block.getEventId(), id -> ConcurrentHashMap.newKeySet()).add(key);
+	}
+	
+	/** Add a time block to the given key */
+	public void add(K key, TimeBlock block) {
+		addAll(key, Arrays.asList(block));
+	}
+	
+	/** Remove all time blocks of the given event */
+	public void removeEvent(Long eventId) {
+		Set<K> keys = iEventKeys.remove(eventId);
+		if (keys == null) return;
+		for (K key: keys)
+			iTrees.computeIfPresent(key, (k, tree) -> {
+				IntervalTree t = new IntervalTree(tree, null, eventId);
+				return (t.size() == 0 ? null : t);
+			});
+	}
+	
+	/** True if there is no time block of the given key overlapping with the given time window */
+	public boolean isFree(K key, Date start, Date end) {
+		IntervalTree tree = iTrees.get(key);
+		return tree == null || !tree.overlaps(start.getTime(), end.getTime(), null);
+	}
+	
+	/** All time blocks of the given key that overlap with the given time window */
+	public TreeSet<TimeBlock> get(K key, Date start, Date end) {
+		IntervalTree tree = iTrees.get(key);
+		if (tree == null) return null;
+		TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+		tree.overlaps(start.getTime(), end.getTime(), ret);
+		return ret;
+	}
+	
+	/** All time blocks of the given key */
+	public TreeSet<TimeBlock> get(K key) {
+		IntervalTree tree = iTrees.get(key);
+		if (tree == null) return null;
+		return new TreeSet<TimeBlock>(Arrays.asList(tree.iBlocks));
+	}
+	
+	public boolean containsKey(K key) {
+		return iTrees.containsKey(key);
+	}
+	
+	public Set<K> keySet() {
+		return iTrees.keySet();
+	}
+	
+	public void clear() {
+		iTrees.clear();
+		iEventKeys.clear();
+	}
+	
+	/**
+	 * Immutable interval tree: blocks sorted by start time, the tree is implicit (the root of
+	 * the range [lo, hi) is the middle element), iMaxEnd contains the maximal end of each sub-tree.
+	 */
+	private static class IntervalTree {
+		private TimeBlock[] iBlocks;
+		private long[] iStart, iEnd, iMaxEnd;
+		
+		private IntervalTree(IntervalTree tree, Collection<? extends TimeBlock> add, Long removeEventId) {
+			Set<TimeBlock> blocks = new LinkedHashSet<TimeBlock>();
+			if (tree != null)
+				for (TimeBlock block: tree.iBlocks)
+					if (removeEventId == null || !removeEventId.equals(block.getEventId())) blocks.add(block);
+			if (add != null)
+				for (TimeBlock block: add) {
+					if (block.getStartTime() == null || block.getEndTime() == null) continue;
+					blocks.remove(block); blocks.add(block);
+				}
+			iBlocks = blocks.toArray(new TimeBlock[blocks.size()]);
+			Arrays.sort(iBlocks, sCmp);
+			iStart = new long[iBlocks.length]; iEnd = new long[iBlocks.length]; iMaxEnd = new long[iBlocks.length];
+			for (int i = 0; i < iBlocks.length; i++) {
+				iStart[i] = iBlocks[i].getStartTime().getTime();
+				iEnd[i] = iBlocks[i].getEndTime().getTime();
+			}
+			computeMaxEnd(0, iBlocks.length);
+		}
+		
+		private long computeMaxEnd(int lo, int hi) {
+			if (lo >= hi) return Long.MIN_VALUE;
+			int mid = (lo + hi) >>> 1;
+			iMaxEnd[mid] = Math.max(iEnd[mid], Math.max(computeMaxEnd(lo, mid), computeMaxEnd(mid + 1, hi)));
+			return iMaxEnd[mid];
+		}
+		
+		private int size() { return iBlocks.length; }
+		
+		/**
+		 * Find blocks overlapping with [start, end). If ret is null, stop on the first overlap.
+		 * @return true if there is at least one overlapping block
+		 */
+		private boolean overlaps(long start, long end, Collection<TimeBlock> ret) {
+			return overlaps(0, iBlocks.length, start, end, ret);
+		}
+		
+		private boolean overlaps(int lo, int hi, long start, long end, Collection<TimeBlock> ret) {
+			if (lo >= hi) return false;
+			int mid = (lo + hi) >>> 1;
+			if (iMaxEnd[mid] <= start) return false;
+			boolean found = overlaps(lo, mid, start, end, ret);
+			if (found && ret == null) return true;
+			if (iStart[mid] >= end) return found;
+			if (iEnd[mid] > start) {
+				if (ret == null) return true;
+				ret.add(iBlocks[mid]); found = true;
+			}
+			return overlaps(mid + 1, hi, start, end, ret) || found;
+		}
+	}
+}
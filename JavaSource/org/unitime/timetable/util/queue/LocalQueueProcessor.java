@@ -21,9 +21,11 @@ package org.unitime.timetable.util.queue;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
 
@@ -32,9 +34,14 @@ import jakarta.activation.FileDataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.defaults.ApplicationProperty;
 
 
 /**
+ * Local queue processor. Up to unitime.queue.workers items are executed at the same time, each in its own thread,
+ * with at most unitime.queue.concurrency.[type] items of the same type running at once (see {@link QueueItem#type()},
+ * with spaces removed). The next item to run is the first waiting item (of a type that is below its limit) of the owner
+ * with the least running items, preferring the owner whose item was started the longest time ago.
  * 
  * @author Tomas Muller
  *
@@ -47,8 +54,8 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 
 	private Queue<QueueItem> iQueue = new LinkedList<QueueItem>();
 	private List<QueueItem> iFinished = new ArrayList<QueueItem>();
-	private QueueItem iItem = null;
-	private RunningItem iRunningItem = null;
+	private List<RunningItem> iRunning = new ArrayList<RunningItem>();
+	private Map<String, Long> iOwnerLastStart = new HashMap<String, Long>();
 	
 	protected static LocalQueueProcessor sInstance = null;
 
@@ -72,48 +79,81 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 					if (item.finished() == null || now - item.finished().getTime() > sTimeToKeep) i.remove();
 				}
 				
-				// Check for a new item from the queue
-				if (iQueue.isEmpty()) {
-					// Sleep for it, if there is nothing to do
-					sLog.info("Waiting for tasks to run...");
-					try {
-						iQueue.wait(sTimeToSleep);
-					} catch (InterruptedException e) {
-						sLog.info("Interrupted.");
-					}
+				// Start as many items as the limits allow
+				int workers = Math.max(1, ApplicationProperty.QueueProcessorWorkers.intValue());
+				while (iRunning.size() < workers) {
+					QueueItem item = next();
+					if (item == null) break;
+					iQueue.remove(item);
+					iOwnerLastStart.put(item.getOwnerId(), now);
+					sLog.info("Executing " + item.name());
+					RunningItem running = new RunningItem(item);
+					iRunning.add(running);
+					running.start();
 				}
 				
-				// Take new item from the top of the queue
-				iItem = iQueue.poll();
-				
-				// Null if queue is empty
-				if (iItem == null) continue;
-			}
-			
-			// Execute the item
-			sLog.info("Executing " + iItem.name());
-			iRunningItem = new RunningItem(iItem);
-			iRunningItem.start();
-			try {
-				iRunningItem.join();
-			} catch (InterruptedException e) {
-				sLog.info("Task " + iItem.name() + " was interrupted.");
+				// Sleep until there is a new item or a running item is finished
+				if (iQueue.isEmpty() && iRunning.isEmpty())
+					sLog.info("Waiting for tasks to run...");
+				try {
+					iQueue.wait(sTimeToSleep);
+				} catch (InterruptedException e) {
+					sLog.info("Interrupted.");
+				}
 			}
-			
-			sLog.info("Task " + iItem.name() + (iItem.hasError() ? " failed (" + iItem.error().getMessage() + ")." : " is done."));
-
-			// Put the item into the list of finished items
-			synchronized (iQueue) {
-				iFinished.add(iItem);
-				
-				iItem = null;
-			}				
 		}
 		
 		sLog.info("Queue processor is down.");
 		sInstance = null;
 	}
 	
+	/**
+	 * Maximal number of items of the given type that can run at the same time
+	 */
+	protected int getConcurrency(String type) {
+		Integer concurrency = ApplicationProperty.QueueProcessorTypeConcurrency.intValue(type == null ? "" : type.replace(" ", ""));
+		return Math.max(1, concurrency == null ? ApplicationProperty.QueueProcessorDefaultConcurrency.intValue() : concurrency);
+	}
+	
+	/**
+	 * Next item to execute, null if there is no item that can be started (to be called within synchronized (iQueue))
+	 */
+	protected QueueItem next() {
+		Map<String, Integer> runningTypes = new HashMap<String, Integer>();
+		Map<String, Integer> runningOwners = new HashMap<String, Integer>();
+		for (RunningItem running: iRunning) {
+			QueueItem item = running.getItem();
+			runningTypes.put(item.type(), 1 + (runningTypes.containsKey(item.type()) ? runningTypes.get(item.type()) : 0));
+			runningOwners.put(item.getOwnerId(), 1 + (runningOwners.containsKey(item.getOwnerId()) ? runningOwners.get(item.getOwnerId()) : 0));
+		}
+		QueueItem best = null;
+		int bestRunning = 0; long bestLastStart = 0;
+		for (QueueItem item: iQueue) {
+			Integer typeRunning = runningTypes.get(item.type());
+			if (typeRunning != null && typeRunning >= getConcurrency(item.type())) continue;
+			Integer ownerRunning = runningOwners.get(item.getOwnerId());
+			Long ownerLastStart = iOwnerLastStart.get(item.getOwnerId());
+			int running = (ownerRunning == null ? 0 : ownerRunning);
+			long lastStart = (ownerLastStart == null ? 0 : ownerLastStart);
+			if (best == null || running < bestRunning || (running == bestRunning && lastStart < bestLastStart)) {
+				best = item; bestRunning = running; bestLastStart = lastStart;
+			}
+		}
+		return best;
+	}
+	
+	protected void finished(RunningItem running) {
+		QueueItem item = running.getItem();
+		sLog.info("Task " + item.name() + (item.hasError() ? " failed (" + item.error().getMessage() + ")" : " is done") +
+				" (waited " + (item.started() == null ? 0 : item.started().getTime() - item.created().getTime()) / 1000 + " s" +
+				(item.started() == null || item.finished() == null ? "" : ", executed in " + (item.finished().getTime() - item.started().getTime()) / 1000 + " s") + ").");
+		synchronized (iQueue) {
+			iRunning.remove(running);
+			iFinished.add(item);
+			iQueue.notify();
+		}
+	}
+	
 	public static synchronized QueueProcessor getInstance() {
 		if (sInstance == null) {
 			sInstance = new LocalQueueProcessor();
@@ -150,12 +190,12 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 				ret.add(item);
 			}
 			
-			if (iItem != null) {
-				boolean add = true;
-				if (ownerId != null && !ownerId.equals(iItem.getOwnerId())) add = false;
-				if (sessionId != null && !sessionId.equals(iItem.getSessionId())) add = false;
-				if (type!=null && !type.equals(iItem.type())) add = false;
-				if (add) ret.add(iItem);
+			for (RunningItem running: iRunning) {
+				QueueItem item = running.getItem();
+				if (ownerId != null && !ownerId.equals(item.getOwnerId())) continue;
+				if (sessionId != null && !sessionId.equals(item.getSessionId())) continue;
+				if (type!=null && !type.equals(item.type())) continue;
+				ret.add(item);
 			}
 			
 			for (QueueItem item: iQueue) {
@@ -179,8 +219,9 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 				QueueItem item = i.next();
 				if (id.equals(item.getId())) return item;
 			}
+			for (RunningItem running: iRunning)
+				if (id.equals(running.getItem().getId())) return running.getItem();
 		}
-		if (iItem != null && id.equals(iItem.getId())) return iItem;
 		return null;
 	}
 	
@@ -194,8 +235,9 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 				QueueItem item = i.next();
 				if (id.equals(item.getTaskExecutionId())) return item;
 			}
+			for (RunningItem running: iRunning)
+				if (id.equals(running.getItem().getTaskExecutionId())) return running.getItem();
 		}
-		if (iItem != null && id.equals(iItem.getTaskExecutionId())) return iItem;
 		return null;
 	}
 	
@@ -215,9 +257,8 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 					return true;
 				}
 			}
-		}
-		if (iItem != null && id.equals(iItem.getId())) {
-			iRunningItem.cancel();
+			for (RunningItem running: iRunning)
+				if (id.equals(running.getItem().getId())) running.cancel();
 		}
 		return false;
 	}
@@ -234,7 +275,7 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 		}
 	}
 	
-	static class RunningItem extends Thread {
+	class RunningItem extends Thread {
 		boolean iInterrupted = false;
 		QueueItem iRunningItem = null;
 		
@@ -244,9 +285,15 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 			setDaemon(true);
 		}
 		
+		public QueueItem getItem() { return iRunningItem; }
+		
 		@Override
 		public void run() {
-			iRunningItem.executeItem();
+			try {
+				iRunningItem.executeItem();
+			} finally {
+				finished(this);
+			}
 		}
 		
 		@SuppressWarnings("deprecation")